@@ -0,0 +1,59 @@
+package org.phenopackets.schema.benchmarks;
+
+import com.google.protobuf.Message;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.phenopackets.schema.v2.Cohort;
+import org.phenopackets.schema.v2.io.CohortReader;
+import org.phenopackets.schema.v2.io.ParallelCohortParser;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Parsing and serialising synthetic binary {@link Cohort}s of up to a million members, both as a whole and by
+ * streaming the members with a {@link CohortReader}, and in parallel with a {@link ParallelCohortParser}.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 3, time = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx8g")
+@State(Scope.Benchmark)
+public class CohortBenchmark {
+
+    @Param({"1000", "10000", "100000", "1000000"})
+    public int members;
+
+    private Cohort cohort;
+    private byte[] encoded;
+
+    @Setup
+    public void setUp() {
+        cohort = Fixtures.syntheticCohort(members);
+        encoded = cohort.toByteArray();
+    }
+
+    @Benchmark
+    public byte[] serialize() throws IOException {
+        return Format.BINARY.write(cohort);
+    }
+
+    @Benchmark
+    public Message parse() throws IOException {
+        return Format.BINARY.read(encoded, cohort);
+    }
+
+    @Benchmark
+    public Cohort parseParallel() throws IOException {
+        return new ParallelCohortParser().parse(encoded);
+    }
+
+    @Benchmark
+    public void streamMembers(Blackhole blackhole) throws IOException {
+        try (CohortReader reader = CohortReader.of(new ByteArrayInputStream(encoded))) {
+            reader.forEach(blackhole::consume);
+        }
+    }
+}
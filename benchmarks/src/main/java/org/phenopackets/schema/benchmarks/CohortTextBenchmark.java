@@ -0,0 +1,46 @@
+package org.phenopackets.schema.benchmarks;
+
+import com.google.protobuf.Message;
+import org.openjdk.jmh.annotations.*;
+import org.phenopackets.schema.v2.Cohort;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Parsing and serialising synthetic {@link Cohort}s in the text formats. These stop at 100,000 members as a JSON or
+ * YAML document of a million members no longer fits into a single Java String.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 3, time = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx8g")
+@State(Scope.Benchmark)
+public class CohortTextBenchmark {
+
+    @Param({"1000", "10000", "100000"})
+    public int members;
+
+    @Param({"JSON", "JSON_FORMAT", "YAML"})
+    public Format format;
+
+    private Cohort cohort;
+    private byte[] encoded;
+
+    @Setup
+    public void setUp() throws IOException {
+        cohort = Fixtures.syntheticCohort(members);
+        encoded = format.write(cohort);
+    }
+
+    @Benchmark
+    public byte[] serialize() throws IOException {
+        return format.write(cohort);
+    }
+
+    @Benchmark
+    public Message parse() throws IOException {
+        return format.read(encoded, cohort);
+    }
+}
@@ -0,0 +1,109 @@
+package org.phenopackets.schema.benchmarks;
+
+import com.google.protobuf.ByteString;
+import org.ga4gh.vrsatile.v1.VariationDescriptor;
+import org.ga4gh.vrsatile.v1.VcfRecord;
+import org.openjdk.jmh.annotations.*;
+import org.phenopackets.schema.v2.Cohort;
+import org.phenopackets.schema.v2.Phenopacket;
+import org.phenopackets.schema.v2.core.Diagnosis;
+import org.phenopackets.schema.v2.core.GenomicInterpretation;
+import org.phenopackets.schema.v2.core.Individual;
+import org.phenopackets.schema.v2.core.Interpretation;
+import org.phenopackets.schema.v2.core.OntologyClass;
+import org.phenopackets.schema.v2.core.VariantInterpretation;
+import org.phenopackets.schema.v2.variant.CohortVariantAggregator;
+import org.phenopackets.schema.v2.variant.IndexedFasta;
+import org.phenopackets.schema.v2.variant.VariantAggregation;
+import org.phenopackets.schema.v2.variant.VariantNormalizer;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Streaming aggregation of an encoded cohort with a {@link CohortVariantAggregator}, for synthetic members with five
+ * SNVs each drawn from 10,000 sites of a random 1 Mb reference.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 3, time = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx8g")
+@State(Scope.Benchmark)
+public class CohortVariantAggregatorBenchmark {
+
+    private static final int VARIANTS_PER_MEMBER = 5;
+    private static final int SITES = 10_000;
+    private static final int REFERENCE_LENGTH = 1_000_000;
+    private static final char[] BASES = {'A', 'C', 'G', 'T'};
+    private static final String[] ALLELIC_STATES = {"GENO:0000135", "GENO:0000136", "GENO:0000134"};
+
+    @Param({"100000", "1000000"})
+    public int members;
+
+    private Path directory;
+    private CohortVariantAggregator aggregator;
+    private ByteString cohort;
+
+    @Setup
+    public void setUp() throws IOException {
+        Random random = new Random(42);
+        char[] reference = new char[REFERENCE_LENGTH];
+        for (int i = 0; i < reference.length; i++) {
+            reference[i] = BASES[random.nextInt(BASES.length)];
+        }
+        directory = Files.createTempDirectory("aggregator-benchmark");
+        Path fasta = directory.resolve("reference.fa");
+        Files.writeString(fasta, ">chr1\n" + new String(reference) + '\n');
+        Files.writeString(IndexedFasta.indexFile(fasta), "chr1\t" + REFERENCE_LENGTH + "\t6\t" + REFERENCE_LENGTH + '\t' + (REFERENCE_LENGTH + 1) + '\n');
+        aggregator = new CohortVariantAggregator(new VariantNormalizer(IndexedFasta.open(fasta), "GRCh38"));
+
+        int[] sites = new int[SITES];
+        for (int i = 0; i < sites.length; i++) {
+            sites[i] = random.nextInt(REFERENCE_LENGTH);
+        }
+        Cohort.Builder builder = Cohort.newBuilder().setId("cohort");
+        for (int i = 0; i < members; i++) {
+            builder.addMembers(member(i, random, reference, sites));
+        }
+        cohort = builder.build().toByteString();
+    }
+
+    private static Phenopacket member(int index, Random random, char[] reference, int[] sites) {
+        Diagnosis.Builder diagnosis = Diagnosis.newBuilder();
+        for (int i = 0; i < VARIANTS_PER_MEMBER; i++) {
+            int site = sites[random.nextInt(sites.length)];
+            char ref = reference[site];
+            diagnosis.addGenomicInterpretations(GenomicInterpretation.newBuilder()
+                    .setVariantInterpretation(VariantInterpretation.newBuilder().setVariationDescriptor(VariationDescriptor.newBuilder()
+                            .setAllelicState(OntologyClass.newBuilder().setId(ALLELIC_STATES[random.nextInt(ALLELIC_STATES.length)]))
+                            .setVcfRecord(VcfRecord.newBuilder()
+                                    .setGenomeAssembly("GRCh38")
+                                    .setChrom("chr1")
+                                    .setPos(site + 1)
+                                    .setRef(String.valueOf(ref))
+                                    .setAlt(String.valueOf(ref == 'A' ? 'G' : 'A'))))));
+        }
+        return Phenopacket.newBuilder()
+                .setId("member-" + index)
+                .setSubject(Individual.newBuilder().setId("member-" + index).setSexValue(1 + random.nextInt(2)).setKaryotypicSexValue(1 + random.nextInt(2)))
+                .addInterpretations(Interpretation.newBuilder().setId("interpretation-" + index).setDiagnosis(diagnosis))
+                .build();
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        Path fasta = directory.resolve("reference.fa");
+        Files.deleteIfExists(IndexedFasta.indexFile(fasta));
+        Files.deleteIfExists(fasta);
+        Files.deleteIfExists(directory);
+    }
+
+    @Benchmark
+    public VariantAggregation aggregateStream() throws IOException {
+        return aggregator.aggregate(cohort.newInput());
+    }
+}
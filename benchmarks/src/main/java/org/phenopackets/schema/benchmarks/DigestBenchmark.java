@@ -0,0 +1,51 @@
+package org.phenopackets.schema.benchmarks;
+
+import com.google.protobuf.ByteString;
+import com.google.protobuf.InvalidProtocolBufferException;
+import org.openjdk.jmh.annotations.*;
+import org.phenopackets.schema.v2.Phenopacket;
+import org.phenopackets.schema.v2.digest.CanonicalDigest;
+import org.phenopackets.schema.v2.digest.Digest;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Digesting encoded {@link Phenopacket}s with a {@link CanonicalDigest}, compared with SHA-256 of the plain encoding.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class DigestBenchmark {
+
+    @Param({"covid", "urothelial", "synthetic"})
+    public String fixture;
+
+    private final CanonicalDigest canonicalDigest = new CanonicalDigest(CanonicalDigest.VOLATILE_FIELDS);
+    private ByteString encoded;
+
+    @Setup
+    public void setUp() {
+        Phenopacket phenopacket = fixture.equals("synthetic")
+                ? Fixtures.syntheticMember(0, new Random(0))
+                : Fixtures.phenopacket(fixture);
+        encoded = phenopacket.toByteString();
+    }
+
+    @Benchmark
+    public Digest canonical() throws InvalidProtocolBufferException {
+        return canonicalDigest.digest(Phenopacket.getDescriptor(), encoded);
+    }
+
+    @Benchmark
+    public byte[] plainSha256() throws NoSuchAlgorithmException {
+        MessageDigest messageDigest = MessageDigest.getInstance("SHA-256");
+        messageDigest.update(encoded.asReadOnlyByteBuffer());
+        return messageDigest.digest();
+    }
+}
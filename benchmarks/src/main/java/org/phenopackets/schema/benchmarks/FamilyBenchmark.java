@@ -0,0 +1,45 @@
+package org.phenopackets.schema.benchmarks;
+
+import com.google.protobuf.Message;
+import org.openjdk.jmh.annotations.*;
+import org.phenopackets.schema.v2.Family;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Parsing and serialising the example {@link Family} messages in each {@link Format}.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class FamilyBenchmark {
+
+    @Param({"bethlem", "rareDisease"})
+    public String fixture;
+
+    @Param({"BINARY", "JSON", "JSON_FORMAT", "YAML"})
+    public Format format;
+
+    private Family family;
+    private byte[] encoded;
+
+    @Setup
+    public void setUp() throws IOException {
+        family = Fixtures.family(fixture);
+        encoded = format.write(family);
+    }
+
+    @Benchmark
+    public byte[] serialize() throws IOException {
+        return format.write(family);
+    }
+
+    @Benchmark
+    public Message parse() throws IOException {
+        return format.read(encoded, family);
+    }
+}
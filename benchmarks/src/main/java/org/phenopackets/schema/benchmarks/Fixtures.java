@@ -0,0 +1,138 @@
+package org.phenopackets.schema.benchmarks;
+
+import com.google.protobuf.Timestamp;
+import org.phenopackets.schema.v2.Cohort;
+import org.phenopackets.schema.v2.Family;
+import org.phenopackets.schema.v2.Phenopacket;
+import org.phenopackets.schema.v2.core.*;
+import org.phenopackets.schema.v2.examples.TestExamples;
+import org.phenopackets.schema.v2.ontology.Ontology;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.Random;
+
+/**
+ * The example phenopackets from the test sources, plus synthetic cohorts of any size.
+ */
+final class Fixtures {
+
+    private static final OntologyClass HOMO_SAPIENS = ontologyClass("NCBITaxon:9606", "Homo sapiens");
+    private static final OntologyClass[] ONSETS = {
+            ontologyClass("HP:0003577", "Congenital onset"),
+            ontologyClass("HP:0003623", "Neonatal onset"),
+            ontologyClass("HP:0410280", "Pediatric onset"),
+            ontologyClass("HP:0003581", "Adult onset"),
+    };
+    private static final int HPO_TERMS = 2_000;
+    private static final int DISEASES = 200;
+
+    private Fixtures() {
+    }
+
+    static Phenopacket phenopacket(String name) {
+        switch (name) {
+            case "covid":
+                return TestExamples.severeCovidCaseWithCardiacComplications();
+            case "bethlem":
+                return TestExamples.rareDiseaseBethlemMyopathyFamily().getProband();
+            case "urothelial":
+                return TestExamples.urothelialCarcinomaPhenopacket();
+            case "rareDisease":
+                return TestExamples.rareDiseasePhenopacket();
+            default:
+                throw new IllegalArgumentException("Unknown phenopacket fixture " + name);
+        }
+    }
+
+    static Family family(String name) {
+        switch (name) {
+            case "bethlem":
+                return TestExamples.rareDiseaseBethlemMyopathyFamily();
+            case "rareDisease":
+                return TestExamples.rareDiseaseKindred1aFamily();
+            default:
+                throw new IllegalArgumentException("Unknown family fixture " + name);
+        }
+    }
+
+    /**
+     * @return a reproducible cohort of small rare-disease phenopackets drawing on a fixed vocabulary of terms, so that
+     * terms repeat across members the way they do in real cohorts.
+     */
+    static Cohort syntheticCohort(int members) {
+        Random random = new Random(members);
+        Cohort.Builder cohort = Cohort.newBuilder()
+                .setId("synthetic-" + members)
+                .setDescription("Synthetic cohort of " + members + " members")
+                .setMetaData(metaData());
+        for (int i = 0; i < members; i++) {
+            cohort.addMembers(syntheticMember(i, random));
+        }
+        return cohort.build();
+    }
+
+    /**
+     * @return a reproducible ontology over the {@code HP} terms of the synthetic cohorts, rooted at {@code HP:0000000},
+     * in which every other term has one or two parents among the terms numbered before it.
+     */
+    static Ontology syntheticOntology() {
+        Random random = new Random(HPO_TERMS);
+        StringBuilder obo = new StringBuilder("format-version: 1.2\n");
+        for (int term = 0; term < HPO_TERMS; term++) {
+            obo.append(String.format("%n[Term]%nid: HP:%07d%nname: Phenotype %d%n", term, term));
+            int parents = term == 0 ? 0 : 1 + random.nextInt(2);
+            for (int i = 0; i < parents; i++) {
+                obo.append(String.format("is_a: HP:%07d%n", random.nextInt(term)));
+            }
+        }
+        try {
+            return Ontology.readObo(new StringReader(obo.toString()));
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    static Phenopacket syntheticMember(int index, Random random) {
+        String id = String.format("PPKT:%07d", index);
+        Individual subject = Individual.newBuilder()
+                .setId("patient-" + index)
+                .setSex(random.nextBoolean() ? Sex.FEMALE : Sex.MALE)
+                .setTimeAtLastEncounter(TimeElement.newBuilder().setAge(Age.newBuilder().setIso8601Duration("P" + random.nextInt(80) + "Y")))
+                .setTaxonomy(HOMO_SAPIENS)
+                .build();
+        Phenopacket.Builder phenopacket = Phenopacket.newBuilder()
+                .setId(id)
+                .setSubject(subject)
+                .addDiseases(Disease.newBuilder()
+                        .setTerm(ontologyClass(String.format("OMIM:%06d", 100_000 + random.nextInt(DISEASES)), "Disease")));
+        int features = 3 + random.nextInt(8);
+        for (int i = 0; i < features; i++) {
+            int term = random.nextInt(HPO_TERMS);
+            phenopacket.addPhenotypicFeatures(PhenotypicFeature.newBuilder()
+                    .setType(ontologyClass(String.format("HP:%07d", term), "Phenotype " + term))
+                    .setExcluded(random.nextInt(10) == 0)
+                    .setOnset(TimeElement.newBuilder().setOntologyClass(ONSETS[random.nextInt(ONSETS.length)])));
+        }
+        return phenopacket.setMetaData(metaData()).build();
+    }
+
+    private static MetaData metaData() {
+        return MetaData.newBuilder()
+                .setCreated(Timestamp.newBuilder().setSeconds(1_600_000_000L))
+                .setCreatedBy("phenopacket-schema-benchmarks")
+                .addResources(Resource.newBuilder()
+                        .setId("hp")
+                        .setName("human phenotype ontology")
+                        .setNamespacePrefix("HP")
+                        .setUrl("http://purl.obolibrary.org/obo/hp.owl")
+                        .setVersion("2021-08-02")
+                        .setIriPrefix("http://purl.obolibrary.org/obo/HP_"))
+                .setPhenopacketSchemaVersion("2.0")
+                .build();
+    }
+
+    private static OntologyClass ontologyClass(String id, String label) {
+        return OntologyClass.newBuilder().setId(id).setLabel(label).build();
+    }
+}
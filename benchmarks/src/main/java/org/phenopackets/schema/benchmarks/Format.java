@@ -0,0 +1,81 @@
+package org.phenopackets.schema.benchmarks;
+
+import com.google.protobuf.Message;
+import com.google.protobuf.util.JsonFormat;
+import org.phenopackets.schema.v2.io.JsonMessageReader;
+import org.phenopackets.schema.v2.io.JsonMessageWriter;
+import org.phenopackets.schema.v2.io.YamlMessageReader;
+import org.phenopackets.schema.v2.io.YamlMessageWriter;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * The wire formats under test. Text formats are encoded to and decoded from UTF-8 bytes, as they would be when sent
+ * over the network or stored on disk.
+ */
+public enum Format {
+
+    BINARY {
+        @Override
+        byte[] write(Message message) {
+            return message.toByteArray();
+        }
+
+        @Override
+        Message read(byte[] encoded, Message prototype) throws IOException {
+            return prototype.getParserForType().parseFrom(encoded);
+        }
+    },
+
+    JSON {
+        @Override
+        byte[] write(Message message) {
+            return JsonMessageWriter.toJson(message).getBytes(StandardCharsets.UTF_8);
+        }
+
+        @Override
+        Message read(byte[] encoded, Message prototype) throws IOException {
+            Message.Builder builder = prototype.newBuilderForType();
+            JsonMessageReader.merge(new InputStreamReader(new ByteArrayInputStream(encoded), StandardCharsets.UTF_8), builder);
+            return builder.build();
+        }
+    },
+
+    /**
+     * The reference JSON implementation from protobuf-java-util.
+     */
+    JSON_FORMAT {
+        @Override
+        byte[] write(Message message) throws IOException {
+            return JsonFormat.printer().print(message).getBytes(StandardCharsets.UTF_8);
+        }
+
+        @Override
+        Message read(byte[] encoded, Message prototype) throws IOException {
+            Message.Builder builder = prototype.newBuilderForType();
+            JsonFormat.parser().merge(new InputStreamReader(new ByteArrayInputStream(encoded), StandardCharsets.UTF_8), builder);
+            return builder.build();
+        }
+    },
+
+    YAML {
+        @Override
+        byte[] write(Message message) throws IOException {
+            return YamlMessageWriter.toYaml(message).getBytes(StandardCharsets.UTF_8);
+        }
+
+        @Override
+        Message read(byte[] encoded, Message prototype) throws IOException {
+            Message.Builder builder = prototype.newBuilderForType();
+            YamlMessageReader.merge(new InputStreamReader(new ByteArrayInputStream(encoded), StandardCharsets.UTF_8), builder);
+            return builder.build();
+        }
+    };
+
+    abstract byte[] write(Message message) throws IOException;
+
+    abstract Message read(byte[] encoded, Message prototype) throws IOException;
+}
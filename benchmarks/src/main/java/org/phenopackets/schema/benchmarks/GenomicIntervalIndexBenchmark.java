@@ -0,0 +1,80 @@
+package org.phenopackets.schema.benchmarks;
+
+import org.ga4gh.vrsatile.v1.VariationDescriptor;
+import org.ga4gh.vrsatile.v1.VcfRecord;
+import org.openjdk.jmh.annotations.*;
+import org.phenopackets.schema.v2.Phenopacket;
+import org.phenopackets.schema.v2.core.Diagnosis;
+import org.phenopackets.schema.v2.core.GenomicInterpretation;
+import org.phenopackets.schema.v2.core.GenomicInterpretation.InterpretationStatus;
+import org.phenopackets.schema.v2.core.Interpretation;
+import org.phenopackets.schema.v2.core.VariantInterpretation;
+import org.phenopackets.schema.v2.index.GenomicIntervalIndex;
+import org.phenopackets.schema.v2.index.MemberSet;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Region queries with a {@link GenomicIntervalIndex} over synthetic members with 100 variants each, spread over the
+ * 24 chromosomes, with one in a thousand a structural variant of up to a megabase.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx8g")
+@State(Scope.Benchmark)
+public class GenomicIntervalIndexBenchmark {
+
+    private static final int VARIANTS_PER_MEMBER = 100;
+    private static final int CHROMOSOME_LENGTH = 150_000_000;
+
+    @Param({"10000", "100000"})
+    public int members;
+
+    private GenomicIntervalIndex index;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        GenomicIntervalIndex.Builder builder = GenomicIntervalIndex.builder();
+        for (int i = 0; i < members; i++) {
+            builder.add(member(i, random));
+        }
+        index = builder.build();
+    }
+
+    private static Phenopacket member(int index, Random random) {
+        Diagnosis.Builder diagnosis = Diagnosis.newBuilder();
+        for (int i = 0; i < VARIANTS_PER_MEMBER; i++) {
+            long pos = 1 + random.nextInt(CHROMOSOME_LENGTH);
+            String info = random.nextInt(1_000) == 0 ? "SVTYPE=DEL;END=" + (pos + random.nextInt(1_000_000)) : "";
+            diagnosis.addGenomicInterpretations(GenomicInterpretation.newBuilder()
+                    .setInterpretationStatusValue(random.nextInt(5))
+                    .setVariantInterpretation(VariantInterpretation.newBuilder().setVariationDescriptor(VariationDescriptor.newBuilder()
+                            .setVcfRecord(VcfRecord.newBuilder()
+                                    .setGenomeAssembly("GRCh38")
+                                    .setChrom("chr" + (1 + random.nextInt(24)))
+                                    .setPos(pos)
+                                    .setRef("A")
+                                    .setAlt("G")
+                                    .setInfo(info)))));
+        }
+        return Phenopacket.newBuilder()
+                .setId("member-" + index)
+                .addInterpretations(Interpretation.newBuilder().setId("interpretation-" + index).setDiagnosis(diagnosis))
+                .build();
+    }
+
+    @Benchmark
+    public MemberSet causativeInMegabase() {
+        return index.members("GRCh38", "chr6", 31_000_000, 32_000_000, InterpretationStatus.CAUSATIVE);
+    }
+
+    @Benchmark
+    public List<GenomicIntervalIndex.Hit> hitsInKilobase() {
+        return index.hits("GRCh38", "6", 31_000_000, 31_001_000);
+    }
+}
@@ -0,0 +1,83 @@
+package org.phenopackets.schema.benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+import org.phenopackets.schema.v2.Phenopacket;
+import org.phenopackets.schema.v2.core.Age;
+import org.phenopackets.schema.v2.core.OntologyClass;
+import org.phenopackets.schema.v2.core.PhenotypicFeature;
+import org.phenopackets.schema.v2.core.TimeElement;
+import org.phenopackets.schema.v2.core.Update;
+import org.phenopackets.schema.v2.validation.IncrementalValidator;
+import org.phenopackets.schema.v2.validation.PhenopacketValidator;
+import org.phenopackets.schema.v2.validation.ValidationError;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Re-validating a large phenopacket after an edit of one phenotypic feature plus an {@link Update}, with an
+ * {@link IncrementalValidator} and with a {@link PhenopacketValidator}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class IncrementalValidatorBenchmark {
+
+    @Param({"100", "2000"})
+    public int features;
+
+    private final PhenopacketValidator validator = new PhenopacketValidator();
+    private final IncrementalValidator incrementalValidator = new IncrementalValidator();
+    private Phenopacket phenopacket;
+    private int edits;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(features);
+        Phenopacket.Builder builder = Fixtures.syntheticMember(0, random).toBuilder().clearPhenotypicFeatures();
+        for (int i = 0; i < features; i++) {
+            builder.addPhenotypicFeatures(feature(random.nextInt(2_000)));
+        }
+        phenopacket = builder.build();
+        incrementalValidator.validate(phenopacket);
+    }
+
+    private static PhenotypicFeature feature(int term) {
+        return PhenotypicFeature.newBuilder()
+                .setType(OntologyClass.newBuilder().setId(String.format("HP:%07d", term)).setLabel("Phenotype " + term))
+                .setOnset(TimeElement.newBuilder().setAge(Age.newBuilder().setIso8601Duration("P" + term % 80 + "Y")))
+                .build();
+    }
+
+    private Phenopacket edit() {
+        int edit = edits++;
+        Phenopacket.Builder edited = phenopacket.toBuilder()
+                .setPhenotypicFeatures(edit % features, feature(edit % 2_000));
+        // replaces the update of the previous edit, so that the phenopacket does not grow
+        edited.getMetaDataBuilder().clearUpdates().addUpdates(Update.newBuilder().setUpdatedBy("curator").setComment("Edit " + edit));
+        phenopacket = edited.build();
+        return phenopacket;
+    }
+
+    /**
+     * The cost of the edit itself, included in the other benchmarks.
+     */
+    @Benchmark
+    public Phenopacket baseline() {
+        return edit();
+    }
+
+    @Benchmark
+    public List<ValidationError> incremental() {
+        return incrementalValidator.validate(edit()).errors();
+    }
+
+    @Benchmark
+    public List<ValidationError> full() {
+        return validator.validate(edit());
+    }
+}
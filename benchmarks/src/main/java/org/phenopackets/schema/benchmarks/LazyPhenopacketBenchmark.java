@@ -0,0 +1,48 @@
+package org.phenopackets.schema.benchmarks;
+
+import com.google.protobuf.InvalidProtocolBufferException;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.phenopackets.schema.v2.Phenopacket;
+import org.phenopackets.schema.v2.io.LazyPhenopacket;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reading the {@code id}, {@code subject} and {@code phenotypic_features} of a binary {@link Phenopacket}, by parsing
+ * the whole message or through a {@link LazyPhenopacket}.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class LazyPhenopacketBenchmark {
+
+    @Param({"covid", "bethlem", "urothelial", "rareDisease"})
+    public String fixture;
+
+    private byte[] encoded;
+
+    @Setup
+    public void setUp() {
+        encoded = Fixtures.phenopacket(fixture).toByteArray();
+    }
+
+    @Benchmark
+    public void parse(Blackhole blackhole) throws InvalidProtocolBufferException {
+        Phenopacket phenopacket = Phenopacket.parseFrom(encoded);
+        blackhole.consume(phenopacket.getId());
+        blackhole.consume(phenopacket.getSubject());
+        blackhole.consume(phenopacket.getPhenotypicFeaturesList());
+    }
+
+    @Benchmark
+    public void lazy(Blackhole blackhole) throws InvalidProtocolBufferException {
+        LazyPhenopacket phenopacket = LazyPhenopacket.of(encoded);
+        blackhole.consume(phenopacket.getId());
+        blackhole.consume(phenopacket.getSubject());
+        blackhole.consume(phenopacket.getPhenotypicFeaturesList());
+    }
+}
@@ -0,0 +1,204 @@
+package org.phenopackets.schema.benchmarks;
+
+import org.ga4gh.vrsatile.v1.GeneDescriptor;
+import org.matchmakerexchange.api.v1.LocalMatchmaker;
+import org.matchmakerexchange.api.v1.MmeGenomicFeature;
+import org.matchmakerexchange.api.v1.MmeMatchRequest;
+import org.matchmakerexchange.api.v1.MmeMatchResponse;
+import org.matchmakerexchange.api.v1.MmePatient;
+import org.phenopackets.schema.v1.core.Gene;
+import org.phenopackets.schema.v1.core.OntologyClass;
+import org.phenopackets.schema.v1.core.PhenotypicFeature;
+import org.phenopackets.schema.v2.Phenopacket;
+import org.phenopackets.schema.v2.core.Diagnosis;
+import org.phenopackets.schema.v2.core.GenomicInterpretation;
+import org.phenopackets.schema.v2.core.Interpretation;
+import org.phenopackets.schema.v2.similarity.Matchmaker;
+import org.phenopackets.schema.v2.similarity.PhenotypeSimilarity;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Replays recorded {@link MmeMatchRequest}s against a {@link LocalMatchmaker} over a synthetic cohort from several
+ * threads at once, and reports the throughput and latency percentiles. Requests are recorded as length-delimited
+ * messages, as written by {@link MmeMatchRequest#writeDelimitedTo(OutputStream)}.
+ * <pre>
+ * java -cp benchmarks/target/benchmarks.jar org.phenopackets.schema.benchmarks.MatchmakerLoadTest record requests.bin 1000
+ * java -cp benchmarks/target/benchmarks.jar org.phenopackets.schema.benchmarks.MatchmakerLoadTest replay requests.bin [members] [threads] [seconds]
+ * </pre>
+ */
+public final class MatchmakerLoadTest {
+
+    private static final int GENES = 500;
+
+    private MatchmakerLoadTest() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        if (args.length >= 3 && args[0].equals("record")) {
+            record(Path.of(args[1]), Integer.parseInt(args[2]));
+        } else if (args.length >= 2 && args[0].equals("replay")) {
+            int members = args.length > 2 ? Integer.parseInt(args[2]) : 100_000;
+            int threads = args.length > 3 ? Integer.parseInt(args[3]) : Runtime.getRuntime().availableProcessors();
+            int seconds = args.length > 4 ? Integer.parseInt(args[4]) : 30;
+            replay(Path.of(args[1]), members, threads, seconds);
+        } else {
+            System.err.println("Usage: MatchmakerLoadTest record <requests> <count>");
+            System.err.println("       MatchmakerLoadTest replay <requests> [members] [threads] [seconds]");
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Writes reproducible requests of one to five phenotypes, half of them with a candidate gene.
+     */
+    static void record(Path path, int count) throws IOException {
+        Random random = new Random(count);
+        try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(path))) {
+            for (int i = 0; i < count; i++) {
+                MmePatient.Builder patient = MmePatient.newBuilder();
+                int features = 1 + random.nextInt(5);
+                for (int j = 0; j < features; j++) {
+                    patient.addFeatures(PhenotypicFeature.newBuilder()
+                            .setType(OntologyClass.newBuilder().setId(String.format("HP:%07d", random.nextInt(2_000)))));
+                }
+                if (random.nextBoolean()) {
+                    patient.addGenomicFeatures(MmeGenomicFeature.newBuilder()
+                            .setGene(Gene.newBuilder().setSymbol(gene(random.nextInt(GENES)))));
+                }
+                MmeMatchRequest.newBuilder()
+                        .setDisclaimer("Synthetic request " + i)
+                        .setPatient(patient)
+                        .build()
+                        .writeDelimitedTo(out);
+            }
+        }
+    }
+
+    static List<MmeMatchRequest> read(Path path) throws IOException {
+        List<MmeMatchRequest> requests = new ArrayList<>();
+        try (InputStream in = new BufferedInputStream(Files.newInputStream(path))) {
+            MmeMatchRequest request;
+            while ((request = MmeMatchRequest.parseDelimitedFrom(in)) != null) {
+                requests.add(request);
+            }
+        }
+        return requests;
+    }
+
+    static void replay(Path path, int members, int threads, int seconds) throws Exception {
+        List<MmeMatchRequest> requests = read(path);
+        if (requests.isEmpty()) {
+            throw new IOException("No requests in " + path);
+        }
+        List<Phenopacket> cohort = new ArrayList<>(members);
+        Random random = new Random(members);
+        for (Phenopacket member : Fixtures.syntheticCohort(members).getMembersList()) {
+            cohort.add(member.toBuilder()
+                    .addInterpretations(Interpretation.newBuilder()
+                            .setId("interpretation")
+                            .setDiagnosis(Diagnosis.newBuilder()
+                                    .addGenomicInterpretations(GenomicInterpretation.newBuilder()
+                                            .setInterpretationStatus(GenomicInterpretation.InterpretationStatus.CANDIDATE)
+                                            .setGene(GeneDescriptor.newBuilder().setSymbol(gene(random.nextInt(GENES)))))))
+                    .build());
+        }
+        Matchmaker matchmaker = Matchmaker.builder(PhenotypeSimilarity.of(Fixtures.syntheticOntology(), cohort))
+                .addAll(cohort)
+                .timeout(Duration.ofSeconds(1))
+                .build();
+        LocalMatchmaker localMatchmaker = new LocalMatchmaker(matchmaker, "Synthetic data");
+        System.out.printf("Replaying %d requests against %d members from %d threads for %d s%n",
+                requests.size(), members, threads, seconds);
+
+        long end = System.nanoTime() + Duration.ofSeconds(seconds).toNanos();
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        List<Future<Stats>> futures = new ArrayList<>();
+        for (int thread = 0; thread < threads; thread++) {
+            int first = thread * requests.size() / threads;
+            futures.add(executor.submit(() -> {
+                Stats stats = new Stats();
+                for (int i = first; System.nanoTime() - end < 0; i++) {
+                    MmeMatchRequest request = requests.get(i % requests.size());
+                    long start = System.nanoTime();
+                    try {
+                        MmeMatchResponse response = localMatchmaker.match(request);
+                        stats.add(System.nanoTime() - start, response.getResultsCount() == 0);
+                    } catch (RejectedExecutionException e) {
+                        stats.rejected++;
+                    }
+                }
+                return stats;
+            }));
+        }
+        Stats total = new Stats();
+        for (Future<Stats> future : futures) {
+            total.addAll(future.get());
+        }
+        executor.shutdown();
+        total.print(seconds);
+    }
+
+    private static String gene(int gene) {
+        return String.format("GENE%04d", gene);
+    }
+
+    /**
+     * The latencies of the requests answered by one thread, in nanoseconds. Not thread-safe.
+     */
+    private static class Stats {
+
+        private long[] latencies = new long[1024];
+        private int answered;
+        private int empty;
+        private int rejected;
+
+        private void add(long latency, boolean noResults) {
+            if (answered == latencies.length) {
+                latencies = Arrays.copyOf(latencies, answered * 2);
+            }
+            latencies[answered++] = latency;
+            if (noResults) {
+                empty++;
+            }
+        }
+
+        private void addAll(Stats other) {
+            for (int i = 0; i < other.answered; i++) {
+                add(other.latencies[i], false);
+            }
+            empty += other.empty;
+            rejected += other.rejected;
+        }
+
+        private void print(int seconds) {
+            long[] sorted = Arrays.copyOf(latencies, answered);
+            Arrays.sort(sorted);
+            System.out.printf("answered %d (%.1f/s), without results %d, rejected %d%n",
+                    answered, (double) answered / seconds, empty, rejected);
+            if (answered > 0) {
+                System.out.printf("latency ms: p50 %.2f, p95 %.2f, p99 %.2f, max %.2f%n",
+                        percentile(sorted, 0.50), percentile(sorted, 0.95), percentile(sorted, 0.99), sorted[answered - 1] / 1e6);
+            }
+        }
+
+        private static double percentile(long[] sorted, double fraction) {
+            return sorted[Math.min(sorted.length - 1, (int) (fraction * sorted.length))] / 1e6;
+        }
+    }
+}
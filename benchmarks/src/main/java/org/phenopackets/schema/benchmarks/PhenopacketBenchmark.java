@@ -0,0 +1,45 @@
+package org.phenopackets.schema.benchmarks;
+
+import com.google.protobuf.Message;
+import org.openjdk.jmh.annotations.*;
+import org.phenopackets.schema.v2.Phenopacket;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Parsing and serialising single example {@link Phenopacket}s in each {@link Format}.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class PhenopacketBenchmark {
+
+    @Param({"covid", "bethlem", "urothelial", "rareDisease"})
+    public String fixture;
+
+    @Param({"BINARY", "JSON", "JSON_FORMAT", "YAML"})
+    public Format format;
+
+    private Phenopacket phenopacket;
+    private byte[] encoded;
+
+    @Setup
+    public void setUp() throws IOException {
+        phenopacket = Fixtures.phenopacket(fixture);
+        encoded = format.write(phenopacket);
+    }
+
+    @Benchmark
+    public byte[] serialize() throws IOException {
+        return format.write(phenopacket);
+    }
+
+    @Benchmark
+    public Message parse() throws IOException {
+        return format.read(encoded, phenopacket);
+    }
+}
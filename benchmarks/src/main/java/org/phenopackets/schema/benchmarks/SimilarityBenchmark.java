@@ -0,0 +1,44 @@
+package org.phenopackets.schema.benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+import org.phenopackets.schema.v2.Cohort;
+import org.phenopackets.schema.v2.Phenopacket;
+import org.phenopackets.schema.v2.similarity.CohortSimilarityIndex;
+import org.phenopackets.schema.v2.similarity.PhenotypeSimilarity;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Finding the phenotypically most similar members of synthetic cohorts with a {@link CohortSimilarityIndex}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx8g")
+@State(Scope.Benchmark)
+public class SimilarityBenchmark {
+
+    @Param({"100000", "500000"})
+    public int members;
+
+    @Param({"RESNIK", "JACCARD"})
+    public PhenotypeSimilarity.Method method;
+
+    private CohortSimilarityIndex index;
+    private Phenopacket query;
+
+    @Setup
+    public void setUp() {
+        Cohort cohort = Fixtures.syntheticCohort(members);
+        index = CohortSimilarityIndex.of(Fixtures.syntheticOntology(), cohort);
+        query = Fixtures.syntheticMember(members, new Random(0));
+    }
+
+    @Benchmark
+    public List<CohortSimilarityIndex.Match> topTen() {
+        return index.topK(query, 10, method);
+    }
+}
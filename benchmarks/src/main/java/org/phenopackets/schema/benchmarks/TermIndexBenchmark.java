@@ -0,0 +1,47 @@
+package org.phenopackets.schema.benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+import org.phenopackets.schema.v2.index.MemberSet;
+import org.phenopackets.schema.v2.index.TermIndex;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Answering feature and disease queries over synthetic cohorts with a {@link TermIndex}.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx8g")
+@State(Scope.Benchmark)
+public class TermIndexBenchmark {
+
+    @Param({"100000", "1000000"})
+    public int members;
+
+    private TermIndex index;
+
+    @Setup
+    public void setUp() {
+        index = TermIndex.of(Fixtures.syntheticCohort(members));
+    }
+
+    @Benchmark
+    public MemberSet featureAndDisease() {
+        return index.members(TermIndex.TermField.PHENOTYPIC_FEATURE, "HP:0000042")
+                .and(index.members(TermIndex.TermField.DISEASE, "OMIM:100042"));
+    }
+
+    @Benchmark
+    public MemberSet featureOrFeatureNotExcluded() {
+        return index.members(TermIndex.TermField.PHENOTYPIC_FEATURE, "HP:0000042")
+                .or(index.members(TermIndex.TermField.PHENOTYPIC_FEATURE, "HP:0000043"))
+                .andNot(index.members(TermIndex.TermField.EXCLUDED_PHENOTYPIC_FEATURE, "HP:0000044"));
+    }
+
+    @Benchmark
+    public MemberSet notFeature() {
+        return index.not(index.members(TermIndex.TermField.PHENOTYPIC_FEATURE, "HP:0000042"));
+    }
+}
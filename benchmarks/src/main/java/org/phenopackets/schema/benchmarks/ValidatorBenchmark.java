@@ -0,0 +1,48 @@
+package org.phenopackets.schema.benchmarks;
+
+import com.google.protobuf.ByteString;
+import com.google.protobuf.InvalidProtocolBufferException;
+import org.openjdk.jmh.annotations.*;
+import org.phenopackets.schema.v2.Phenopacket;
+import org.phenopackets.schema.v2.validation.PhenopacketValidator;
+import org.phenopackets.schema.v2.validation.ValidationError;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Validating encoded {@link Phenopacket}s with a {@link PhenopacketValidator}, compared with only parsing them.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ValidatorBenchmark {
+
+    @Param({"covid", "bethlem", "urothelial", "rareDisease", "synthetic"})
+    public String fixture;
+
+    private final PhenopacketValidator validator = new PhenopacketValidator();
+    private ByteString encoded;
+
+    @Setup
+    public void setUp() {
+        Phenopacket phenopacket = fixture.equals("synthetic")
+                ? Fixtures.syntheticMember(0, new Random(0))
+                : Fixtures.phenopacket(fixture);
+        encoded = phenopacket.toByteString();
+    }
+
+    @Benchmark
+    public List<ValidationError> validate() throws InvalidProtocolBufferException {
+        return validator.validatePhenopacket(encoded);
+    }
+
+    @Benchmark
+    public Phenopacket parse() throws InvalidProtocolBufferException {
+        return Phenopacket.parseFrom(encoded);
+    }
+}
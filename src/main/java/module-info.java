@@ -1,12 +1,25 @@
 module org.phenopackets.schema {
     requires transitive com.google.protobuf;
+    // only needed by the YAML reader and writer
+    requires static com.fasterxml.jackson.core;
+    requires static com.fasterxml.jackson.dataformat.yaml;
 
     exports org.phenopackets.schema.v1;
     exports org.phenopackets.schema.v1.core;
 
     exports org.phenopackets.schema.v2;
     exports org.phenopackets.schema.v2.core;
+    exports org.phenopackets.schema.v2.columnar;
+    exports org.phenopackets.schema.v2.diff;
+    exports org.phenopackets.schema.v2.digest;
+    exports org.phenopackets.schema.v2.index;
+    exports org.phenopackets.schema.v2.io;
+    exports org.phenopackets.schema.v2.migration;
+    exports org.phenopackets.schema.v2.ontology;
+    exports org.phenopackets.schema.v2.similarity;
+    exports org.phenopackets.schema.v2.validation;
+    exports org.phenopackets.schema.v2.variant;
 
     exports org.ga4gh.vrs.v1;
     exports org.ga4gh.vrsatile.v1;
-}
\ No newline at end of file
+}
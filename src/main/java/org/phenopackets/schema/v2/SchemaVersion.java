@@ -0,0 +1,33 @@
+package org.phenopackets.schema.v2;
+
+/**
+ * The versions of the phenopacket schema, as recorded in {@code MetaData.phenopacket_schema_version}.
+ */
+public enum SchemaVersion {
+    v1_0("1.0"),
+    v2_0("2.0");
+
+    private final String version;
+
+    SchemaVersion(String version) {
+        this.version = version;
+    }
+
+    /**
+     * @param schemaVersion a version such as {@code 2.0}, or a patch release of it such as {@code 2.0.2}
+     * @throws IllegalArgumentException if the version is not one of the known schema versions
+     */
+    public static SchemaVersion parse(String schemaVersion) {
+        for (SchemaVersion value : values()) {
+            if (schemaVersion.equals(value.version) || schemaVersion.startsWith(value.version + '.')) {
+                return value;
+            }
+        }
+        throw new IllegalArgumentException("Unknown phenopacket schema version '" + schemaVersion + "'");
+    }
+
+    @Override
+    public String toString() {
+        return version;
+    }
+}
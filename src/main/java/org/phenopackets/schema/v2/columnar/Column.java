@@ -0,0 +1,105 @@
+package org.phenopackets.schema.v2.columnar;
+
+/**
+ * The columns of a {@link ColumnarCohort}. Each column belongs to one {@link Table} and holds either ints, e.g. enum
+ * numbers, booleans as 0 or 1 and row numbers, or strings, which are dictionary encoded.
+ */
+public enum Column {
+
+    /**
+     * {@code Phenopacket.id}
+     */
+    MEMBER_ID(Table.MEMBERS, Type.STRING),
+    /**
+     * {@code Phenopacket.subject.id}
+     */
+    SUBJECT_ID(Table.MEMBERS, Type.STRING),
+    /**
+     * The number of the {@code Phenopacket.subject.sex} enum value.
+     */
+    SEX(Table.MEMBERS, Type.INT),
+    /**
+     * The number of the {@code Phenopacket.subject.karyotypic_sex} enum value.
+     */
+    KARYOTYPIC_SEX(Table.MEMBERS, Type.INT),
+    /**
+     * {@code Phenopacket.subject.taxonomy.id}
+     */
+    TAXONOMY(Table.MEMBERS, Type.STRING),
+
+    /**
+     * The row in the {@link Table#MEMBERS} table of the phenopacket that the feature belongs to.
+     */
+    FEATURE_MEMBER(Table.PHENOTYPIC_FEATURES, Type.INT),
+    /**
+     * {@code PhenotypicFeature.type.id}
+     */
+    FEATURE_TYPE(Table.PHENOTYPIC_FEATURES, Type.STRING),
+    /**
+     * {@code PhenotypicFeature.excluded}, as 0 or 1.
+     */
+    FEATURE_EXCLUDED(Table.PHENOTYPIC_FEATURES, Type.INT),
+    /**
+     * {@code PhenotypicFeature.onset.ontology_class.id}, or the empty string if the onset is not given as an ontology
+     * class.
+     */
+    FEATURE_ONSET(Table.PHENOTYPIC_FEATURES, Type.STRING),
+
+    /**
+     * The row in the {@link Table#MEMBERS} table of the phenopacket that the disease belongs to.
+     */
+    DISEASE_MEMBER(Table.DISEASES, Type.INT),
+    /**
+     * {@code Disease.term.id}
+     */
+    DISEASE_TERM(Table.DISEASES, Type.STRING),
+    /**
+     * {@code Disease.excluded}, as 0 or 1.
+     */
+    DISEASE_EXCLUDED(Table.DISEASES, Type.INT),
+
+    /**
+     * The row in the {@link Table#MEMBERS} table of the phenopacket that the genomic interpretation belongs to.
+     */
+    GENOMIC_INTERPRETATION_MEMBER(Table.GENOMIC_INTERPRETATIONS, Type.INT),
+    /**
+     * {@code Interpretation.diagnosis.disease.id} of the enclosing interpretation.
+     */
+    GENOMIC_INTERPRETATION_DISEASE(Table.GENOMIC_INTERPRETATIONS, Type.STRING),
+    /**
+     * The number of the {@code GenomicInterpretation.interpretation_status} enum value.
+     */
+    GENOMIC_INTERPRETATION_STATUS(Table.GENOMIC_INTERPRETATIONS, Type.INT);
+
+    /**
+     * The tables of a {@link ColumnarCohort}. There is one row in the {@link #MEMBERS} table for each member of the
+     * cohort, and one row in each of the other tables for each of the corresponding elements of all the members.
+     */
+    public enum Table {
+        MEMBERS,
+        PHENOTYPIC_FEATURES,
+        DISEASES,
+        GENOMIC_INTERPRETATIONS
+    }
+
+    public enum Type {
+        INT,
+        STRING
+    }
+
+    private final Table table;
+    private final Type type;
+
+    Column(Table table, Type type) {
+        this.table = table;
+        this.type = type;
+    }
+
+    public Table table() {
+        return table;
+    }
+
+    public Type type() {
+        return type;
+    }
+}
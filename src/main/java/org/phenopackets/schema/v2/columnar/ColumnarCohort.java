@@ -0,0 +1,140 @@
+package org.phenopackets.schema.v2.columnar;
+
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * Read access to the columns of a cohort written by a {@link ColumnarCohortWriter}.
+ * <p>
+ * Opening the file only reads the directory of columns. Each column is then read from the file when it is asked for,
+ * so that a scan reads just the columns it needs. Values are handed out as primitive arrays for tight loops, e.g.
+ * counting the members with a non-excluded feature, grouped by sex:
+ * <pre>
+ * StringColumn types = cohort.stringColumn(Column.FEATURE_TYPE);
+ * int seizure = types.code("HP:0001250");
+ * int[] type = types.codes().toArray();
+ * int[] excluded = cohort.intColumn(Column.FEATURE_EXCLUDED).toArray();
+ * int[] member = cohort.intColumn(Column.FEATURE_MEMBER).toArray();
+ * int[] sex = cohort.intColumn(Column.SEX).toArray();
+ * </pre>
+ * Instances are thread-safe.
+ */
+public class ColumnarCohort implements Closeable {
+
+    static final byte[] MAGIC = {'P', 'P', 'K', 'C'};
+    static final int FORMAT_VERSION = 1;
+
+    private final FileChannel channel;
+    private final int[] rows;
+    private final Map<Column, long[]> directory;
+    private final long dataStart;
+
+    private ColumnarCohort(FileChannel channel, int[] rows, Map<Column, long[]> directory, long dataStart) {
+        this.channel = channel;
+        this.rows = rows;
+        this.directory = directory;
+        this.dataStart = dataStart;
+    }
+
+    public static ColumnarCohort open(Path path) throws IOException {
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+        try {
+            // the stream is not buffered, so that it reads no further than the end of the directory
+            DataInputStream input = new DataInputStream(Channels.newInputStream(channel));
+            byte[] magic = new byte[MAGIC.length];
+            input.readFully(magic);
+            if (!Arrays.equals(magic, MAGIC)) {
+                throw new IOException("Not a columnar cohort - missing magic bytes");
+            }
+            int formatVersion = input.readInt();
+            if (formatVersion != FORMAT_VERSION) {
+                throw new IOException("Unsupported columnar cohort format version " + formatVersion);
+            }
+            int[] rows = new int[input.readInt()];
+            if (rows.length != Column.Table.values().length) {
+                throw new IOException("Expected " + Column.Table.values().length + " tables, found " + rows.length);
+            }
+            for (int i = 0; i < rows.length; i++) {
+                rows[i] = input.readInt();
+            }
+            Map<Column, long[]> directory = new EnumMap<>(Column.class);
+            int columns = input.readInt();
+            for (int i = 0; i < columns; i++) {
+                String name = input.readUTF();
+                long offset = input.readLong();
+                int length = input.readInt();
+                try {
+                    directory.put(Column.valueOf(name), new long[]{offset, length});
+                } catch (IllegalArgumentException e) {
+                    // a column added by a later version
+                }
+            }
+            return new ColumnarCohort(channel, rows, directory, channel.position());
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * @return the number of members of the cohort.
+     */
+    public int size() {
+        return rows(Column.Table.MEMBERS);
+    }
+
+    public int rows(Column.Table table) {
+        return rows[table.ordinal()];
+    }
+
+    /**
+     * @throws IllegalArgumentException if the column does not hold ints
+     */
+    public IntColumn intColumn(Column column) throws IOException {
+        if (column.type() != Column.Type.INT) {
+            throw new IllegalArgumentException(column + " is not an int column");
+        }
+        return IntColumn.readFrom(read(column));
+    }
+
+    /**
+     * @throws IllegalArgumentException if the column does not hold strings
+     */
+    public StringColumn stringColumn(Column column) throws IOException {
+        if (column.type() != Column.Type.STRING) {
+            throw new IllegalArgumentException(column + " is not a string column");
+        }
+        return StringColumn.readFrom(read(column));
+    }
+
+    private ByteBuffer read(Column column) throws IOException {
+        long[] entry = directory.get(column);
+        if (entry == null) {
+            throw new IOException("Columnar cohort has no column " + column);
+        }
+        ByteBuffer buffer = ByteBuffer.allocate((int) entry[1]);
+        long position = dataStart + entry[0];
+        while (buffer.hasRemaining()) {
+            // positional reads leave the channel position alone, so concurrent reads do not interfere
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new EOFException("Columnar cohort is truncated in column " + column);
+            }
+        }
+        return buffer.flip();
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
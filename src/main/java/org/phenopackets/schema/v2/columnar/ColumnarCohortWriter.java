@@ -0,0 +1,197 @@
+package org.phenopackets.schema.v2.columnar;
+
+import org.phenopackets.schema.v2.Phenopacket;
+import org.phenopackets.schema.v2.core.*;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Shreds the members of a cohort into the {@link Column}s of a {@link ColumnarCohort} and writes them to a file.
+ * Members are added one at a time, e.g. whilst streaming them from a {@code CohortReader}, and only the compact column
+ * values are kept in memory until the file is written.
+ * <p>
+ * The file consists of
+ * <ol>
+ *     <li>the four magic bytes {@code PPKC} and the format version as an int</li>
+ *     <li>the number of tables, followed by the number of rows in each {@link Column.Table}, as ints</li>
+ *     <li>the number of columns, followed by the name, as written by {@link DataOutputStream#writeUTF(String)}, the
+ *     offset from the end of this directory as a long and the length as an int of each column</li>
+ *     <li>the columns, as written by {@link IntColumn} and {@link StringColumn}</li>
+ * </ol>
+ * All values are big-endian.
+ * <p>
+ * Instances are not thread-safe.
+ */
+public class ColumnarCohortWriter {
+
+    private final Map<Column, IntColumnBuilder> intColumns = new EnumMap<>(Column.class);
+    private final Map<Column, StringColumnBuilder> stringColumns = new EnumMap<>(Column.class);
+    private final int[] rows = new int[Column.Table.values().length];
+
+    public ColumnarCohortWriter() {
+        for (Column column : Column.values()) {
+            if (column.type() == Column.Type.INT) {
+                intColumns.put(column, new IntColumnBuilder());
+            } else {
+                stringColumns.put(column, new StringColumnBuilder());
+            }
+        }
+    }
+
+    /**
+     * Writes the members to a new file, replacing any existing file at the given path.
+     */
+    public static void write(Iterable<Phenopacket> members, Path path) throws IOException {
+        ColumnarCohortWriter writer = new ColumnarCohortWriter();
+        for (Phenopacket member : members) {
+            writer.add(member);
+        }
+        writer.write(path);
+    }
+
+    public void add(Phenopacket member) {
+        int memberRow = rows[Column.Table.MEMBERS.ordinal()]++;
+        Individual subject = member.getSubject();
+        append(Column.MEMBER_ID, member.getId());
+        append(Column.SUBJECT_ID, subject.getId());
+        append(Column.SEX, subject.getSexValue());
+        append(Column.KARYOTYPIC_SEX, subject.getKaryotypicSexValue());
+        append(Column.TAXONOMY, subject.getTaxonomy().getId());
+
+        for (PhenotypicFeature feature : member.getPhenotypicFeaturesList()) {
+            rows[Column.Table.PHENOTYPIC_FEATURES.ordinal()]++;
+            append(Column.FEATURE_MEMBER, memberRow);
+            append(Column.FEATURE_TYPE, feature.getType().getId());
+            append(Column.FEATURE_EXCLUDED, feature.getExcluded() ? 1 : 0);
+            append(Column.FEATURE_ONSET, feature.getOnset().getOntologyClass().getId());
+        }
+        for (Disease disease : member.getDiseasesList()) {
+            rows[Column.Table.DISEASES.ordinal()]++;
+            append(Column.DISEASE_MEMBER, memberRow);
+            append(Column.DISEASE_TERM, disease.getTerm().getId());
+            append(Column.DISEASE_EXCLUDED, disease.getExcluded() ? 1 : 0);
+        }
+        for (Interpretation interpretation : member.getInterpretationsList()) {
+            Diagnosis diagnosis = interpretation.getDiagnosis();
+            for (GenomicInterpretation genomicInterpretation : diagnosis.getGenomicInterpretationsList()) {
+                rows[Column.Table.GENOMIC_INTERPRETATIONS.ordinal()]++;
+                append(Column.GENOMIC_INTERPRETATION_MEMBER, memberRow);
+                append(Column.GENOMIC_INTERPRETATION_DISEASE, diagnosis.getDisease().getId());
+                append(Column.GENOMIC_INTERPRETATION_STATUS, genomicInterpretation.getInterpretationStatusValue());
+            }
+        }
+    }
+
+    /**
+     * @return the number of members added so far.
+     */
+    public int size() {
+        return rows[Column.Table.MEMBERS.ordinal()];
+    }
+
+    private void append(Column column, int value) {
+        intColumns.get(column).add(value);
+    }
+
+    private void append(Column column, String value) {
+        stringColumns.get(column).add(value);
+    }
+
+    /**
+     * Writes the members added so far to a new file, replacing any existing file at the given path.
+     */
+    public void write(Path path) throws IOException {
+        try (OutputStream outputStream = Files.newOutputStream(path)) {
+            write(outputStream);
+        }
+    }
+
+    /**
+     * Writes the members added so far. The {@link OutputStream} is flushed, but not closed.
+     */
+    public void write(OutputStream outputStream) throws IOException {
+        List<byte[]> encodedColumns = new ArrayList<>();
+        for (Column column : Column.values()) {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            DataOutputStream columnOutput = new DataOutputStream(bytes);
+            if (column.type() == Column.Type.INT) {
+                intColumns.get(column).build().writeTo(columnOutput);
+            } else {
+                stringColumns.get(column).build().writeTo(columnOutput);
+            }
+            columnOutput.flush();
+            encodedColumns.add(bytes.toByteArray());
+        }
+
+        DataOutputStream output = new DataOutputStream(new BufferedOutputStream(outputStream, 64 * 1024));
+        output.write(ColumnarCohort.MAGIC);
+        output.writeInt(ColumnarCohort.FORMAT_VERSION);
+        output.writeInt(rows.length);
+        for (int tableRows : rows) {
+            output.writeInt(tableRows);
+        }
+        output.writeInt(encodedColumns.size());
+        long offset = 0;
+        for (Column column : Column.values()) {
+            byte[] encoded = encodedColumns.get(column.ordinal());
+            output.writeUTF(column.name());
+            output.writeLong(offset);
+            output.writeInt(encoded.length);
+            offset += encoded.length;
+        }
+        for (byte[] encoded : encodedColumns) {
+            output.write(encoded);
+        }
+        output.flush();
+    }
+
+    private static class IntColumnBuilder {
+
+        private int[] values = new int[1024];
+        private int size;
+
+        private void add(int value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = value;
+        }
+
+        private IntColumn build() {
+            return IntColumn.of(values, size);
+        }
+    }
+
+    private static class StringColumnBuilder {
+
+        private final Map<String, Integer> codes = new HashMap<>();
+        private final List<String> dictionary = new ArrayList<>();
+        private final IntColumnBuilder rows = new IntColumnBuilder();
+
+        private void add(String value) {
+            Integer code = codes.get(value);
+            if (code == null) {
+                code = dictionary.size();
+                codes.put(value, code);
+                dictionary.add(value);
+            }
+            rows.add(code);
+        }
+
+        private StringColumn build() {
+            return new StringColumn(dictionary.toArray(new String[0]), rows.build());
+        }
+    }
+}
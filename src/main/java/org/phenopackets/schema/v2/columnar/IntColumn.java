@@ -0,0 +1,137 @@
+package org.phenopackets.schema.v2.columnar;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * A column of ints, stored either as plain values or as runs of equal values, whichever is smaller. Columns which
+ * repeat the same value for consecutive rows, such as the member row of the features of each member or a flag which is
+ * rarely set, collapse to a few runs.
+ */
+public final class IntColumn {
+
+    private static final byte PLAIN = 0;
+    private static final byte RUN_LENGTH = 1;
+
+    private final int size;
+    // the value of each row if plain, otherwise the value of each run
+    private final int[] values;
+    // the length of each run, or null if plain
+    private final int[] runLengths;
+
+    private IntColumn(int size, int[] values, int[] runLengths) {
+        this.size = size;
+        this.values = values;
+        this.runLengths = runLengths;
+    }
+
+    /**
+     * @return the first {@code size} values, run-length encoded if that saves space.
+     */
+    static IntColumn of(int[] values, int size) {
+        int runs = 0;
+        for (int i = 0; i < size; i++) {
+            if (i == 0 || values[i] != values[i - 1]) {
+                runs++;
+            }
+        }
+        if (runs * 2 >= size) {
+            return new IntColumn(size, Arrays.copyOf(values, size), null);
+        }
+        int[] runValues = new int[runs];
+        int[] runLengths = new int[runs];
+        int run = -1;
+        for (int i = 0; i < size; i++) {
+            if (i == 0 || values[i] != values[i - 1]) {
+                run++;
+                runValues[run] = values[i];
+            }
+            runLengths[run]++;
+        }
+        return new IntColumn(size, runValues, runLengths);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isRunLengthEncoded() {
+        return runLengths != null;
+    }
+
+    /**
+     * @return the value of every row, decoded into a new array.
+     */
+    public int[] toArray() {
+        if (runLengths == null) {
+            return values.clone();
+        }
+        int[] array = new int[size];
+        int row = 0;
+        for (int run = 0; run < values.length; run++) {
+            Arrays.fill(array, row, row + runLengths[run], values[run]);
+            row += runLengths[run];
+        }
+        return array;
+    }
+
+    /**
+     * @return the number of rows with the given value, counted without decoding the runs.
+     */
+    public int count(int value) {
+        int count = 0;
+        if (runLengths == null) {
+            for (int v : values) {
+                if (v == value) {
+                    count++;
+                }
+            }
+        } else {
+            for (int run = 0; run < values.length; run++) {
+                if (values[run] == value) {
+                    count += runLengths[run];
+                }
+            }
+        }
+        return count;
+    }
+
+    void writeTo(DataOutputStream output) throws IOException {
+        output.writeByte(runLengths == null ? PLAIN : RUN_LENGTH);
+        output.writeInt(size);
+        if (runLengths == null) {
+            for (int value : values) {
+                output.writeInt(value);
+            }
+        } else {
+            output.writeInt(values.length);
+            for (int run = 0; run < values.length; run++) {
+                output.writeInt(values[run]);
+                output.writeInt(runLengths[run]);
+            }
+        }
+    }
+
+    static IntColumn readFrom(ByteBuffer buffer) throws IOException {
+        byte encoding = buffer.get();
+        int size = buffer.getInt();
+        if (encoding == PLAIN) {
+            int[] values = new int[size];
+            buffer.asIntBuffer().get(values);
+            buffer.position(buffer.position() + size * Integer.BYTES);
+            return new IntColumn(size, values, null);
+        } else if (encoding == RUN_LENGTH) {
+            int runs = buffer.getInt();
+            int[] values = new int[runs];
+            int[] runLengths = new int[runs];
+            for (int run = 0; run < runs; run++) {
+                values[run] = buffer.getInt();
+                runLengths[run] = buffer.getInt();
+            }
+            return new IntColumn(size, values, runLengths);
+        }
+        throw new IOException("Unknown column encoding " + encoding);
+    }
+}
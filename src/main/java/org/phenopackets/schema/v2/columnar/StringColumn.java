@@ -0,0 +1,87 @@
+package org.phenopackets.schema.v2.columnar;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A dictionary encoded column of strings. Each distinct value is stored once in the dictionary, and each row holds the
+ * code of its value, i.e. its index in the dictionary, in an {@link IntColumn}. Scans can look up the code of the value
+ * they are after once and then compare codes.
+ */
+public final class StringColumn {
+
+    private final String[] dictionary;
+    private final IntColumn codes;
+    private final Map<String, Integer> codesByValue;
+
+    StringColumn(String[] dictionary, IntColumn codes) {
+        this.dictionary = dictionary;
+        this.codes = codes;
+        this.codesByValue = new HashMap<>();
+        for (int i = 0; i < dictionary.length; i++) {
+            codesByValue.put(dictionary[i], i);
+        }
+    }
+
+    public int size() {
+        return codes.size();
+    }
+
+    public List<String> dictionary() {
+        return Collections.unmodifiableList(Arrays.asList(dictionary));
+    }
+
+    /**
+     * @return the code of the value, or -1 if no row has the value.
+     */
+    public int code(String value) {
+        return codesByValue.getOrDefault(value, -1);
+    }
+
+    public String value(int code) {
+        return dictionary[code];
+    }
+
+    public IntColumn codes() {
+        return codes;
+    }
+
+    /**
+     * @return the value of every row, decoded into a new array.
+     */
+    public String[] toArray() {
+        int[] rowCodes = codes.toArray();
+        String[] values = new String[rowCodes.length];
+        for (int i = 0; i < rowCodes.length; i++) {
+            values[i] = dictionary[rowCodes[i]];
+        }
+        return values;
+    }
+
+    void writeTo(DataOutputStream output) throws IOException {
+        output.writeInt(dictionary.length);
+        for (String value : dictionary) {
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            output.writeInt(bytes.length);
+            output.write(bytes);
+        }
+        codes.writeTo(output);
+    }
+
+    static StringColumn readFrom(ByteBuffer buffer) throws IOException {
+        String[] dictionary = new String[buffer.getInt()];
+        for (int i = 0; i < dictionary.length; i++) {
+            byte[] bytes = new byte[buffer.getInt()];
+            buffer.get(bytes);
+            dictionary[i] = new String(bytes, StandardCharsets.UTF_8);
+        }
+        return new StringColumn(dictionary, IntColumn.readFrom(buffer));
+    }
+}
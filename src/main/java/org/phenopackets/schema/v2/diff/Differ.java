@@ -0,0 +1,212 @@
+package org.phenopackets.schema.v2.diff;
+
+import com.google.protobuf.ByteString;
+import com.google.protobuf.Descriptors.FieldDescriptor;
+import com.google.protobuf.Message;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * Works out the {@link Operation}s turning one message into another by walking the fields of both. Sub-messages that
+ * are equal, which is an identity check for those shared between versions built with {@code toBuilder()}, are not
+ * walked, so the cost of a diff mostly depends on the size of the changes.
+ */
+final class Differ {
+
+    private final List<Operation> operations = new ArrayList<>();
+    private final List<Operation.Step> path = new ArrayList<>();
+
+    private Differ() {
+    }
+
+    static List<Operation> diff(Message from, Message to) {
+        Differ differ = new Differ();
+        if (!from.equals(to)) {
+            differ.diffMessage(from, to);
+        }
+        return differ.operations;
+    }
+
+    private void diffMessage(Message from, Message to) {
+        for (FieldDescriptor field : from.getDescriptorForType().getFields()) {
+            if (field.isRepeated()) {
+                diffRepeated(from, to, field);
+            } else if (field.getJavaType() == FieldDescriptor.JavaType.MESSAGE) {
+                boolean inFrom = from.hasField(field);
+                boolean inTo = to.hasField(field);
+                if (inFrom && inTo) {
+                    Message fromValue = (Message) from.getField(field);
+                    Message toValue = (Message) to.getField(field);
+                    if (!fromValue.equals(toValue)) {
+                        path.add(new Operation.Step(field.getNumber(), null));
+                        diffMessage(fromValue, toValue);
+                        path.remove(path.size() - 1);
+                    }
+                } else if (inTo) {
+                    set(to, field);
+                } else if (inFrom) {
+                    operations.add(Operation.clear(path(), field.getNumber()));
+                }
+            } else if (from.hasField(field) != to.hasField(field) || !from.getField(field).equals(to.getField(field))) {
+                if (to.hasField(field)) {
+                    set(to, field);
+                } else {
+                    operations.add(Operation.clear(path(), field.getNumber()));
+                }
+            }
+        }
+    }
+
+    private void diffRepeated(Message from, Message to, FieldDescriptor field) {
+        List<?> fromValues = (List<?>) from.getField(field);
+        List<?> toValues = (List<?>) to.getField(field);
+        if (fromValues.equals(toValues)) {
+            return;
+        }
+        if (toValues.isEmpty()) {
+            operations.add(Operation.clear(path(), field.getNumber()));
+            return;
+        }
+        Function<Message, String> key = Keys.of(field);
+        if (key != null) {
+            Map<String, Integer> fromIndexes = indexes(fromValues, key);
+            Map<String, Integer> toIndexes = fromIndexes == null ? null : indexes(toValues, key);
+            if (toIndexes != null) {
+                diffKeyed(to, field, key, fromValues, toValues, fromIndexes, toIndexes);
+                return;
+            }
+        }
+        diffPositional(to, field, fromValues, toValues);
+    }
+
+    /**
+     * @return the index of each element by key, or {@code null} if two elements have the same key
+     */
+    private static Map<String, Integer> indexes(List<?> values, Function<Message, String> key) {
+        Map<String, Integer> indexes = new HashMap<>(values.size() * 2);
+        for (int i = 0; i < values.size(); i++) {
+            if (indexes.put(key.apply((Message) values.get(i)), i) != null) {
+                return null;
+            }
+        }
+        return indexes;
+    }
+
+    private void diffKeyed(Message to, FieldDescriptor field, Function<Message, String> key, List<?> fromValues, List<?> toValues,
+                           Map<String, Integer> fromIndexes, Map<String, Integer> toIndexes) {
+        String[] toKeys = new String[toValues.size()];
+        int previous = -1;
+        for (int j = 0; j < toValues.size(); j++) {
+            toKeys[j] = key.apply((Message) toValues.get(j));
+            Integer i = fromIndexes.get(toKeys[j]);
+            if (i != null) {
+                // the elements kept must stay in the same order, otherwise the whole field is replaced
+                if (i < previous) {
+                    replace(to, field, toValues);
+                    return;
+                }
+                previous = i;
+            }
+        }
+        List<Operation.Selector> removed = new ArrayList<>();
+        for (int i = 0; i < fromValues.size(); i++) {
+            String fromKey = key.apply((Message) fromValues.get(i));
+            if (!toIndexes.containsKey(fromKey)) {
+                removed.add(Operation.Selector.key(fromKey));
+            }
+        }
+        List<Integer> inserted = new ArrayList<>();
+        for (int j = 0; j < toValues.size(); j++) {
+            Integer i = fromIndexes.get(toKeys[j]);
+            if (i == null) {
+                inserted.add(j);
+                continue;
+            }
+            Message fromValue = (Message) fromValues.get(i);
+            Message toValue = (Message) toValues.get(j);
+            if (fromValue.equals(toValue)) {
+                continue;
+            }
+            if (field.isMapField()) {
+                // the reflection API has no builders for map entries, so a changed entry is replaced
+                removed.add(Operation.Selector.key(toKeys[j]));
+                inserted.add(j);
+            } else {
+                path.add(new Operation.Step(field.getNumber(), Operation.Selector.key(toKeys[j])));
+                diffMessage(fromValue, toValue);
+                path.remove(path.size() - 1);
+            }
+        }
+        list(to, field, removed, inserted);
+    }
+
+    /**
+     * Matches the elements before and after the changed range, and either walks the elements of the range pairwise if
+     * it has the same length in both versions, or replaces it.
+     */
+    private void diffPositional(Message to, FieldDescriptor field, List<?> fromValues, List<?> toValues) {
+        int shortest = Math.min(fromValues.size(), toValues.size());
+        int prefix = 0;
+        while (prefix < shortest && fromValues.get(prefix).equals(toValues.get(prefix))) {
+            prefix++;
+        }
+        int suffix = 0;
+        while (suffix < shortest - prefix && fromValues.get(fromValues.size() - 1 - suffix).equals(toValues.get(toValues.size() - 1 - suffix))) {
+            suffix++;
+        }
+        int fromEnd = fromValues.size() - suffix;
+        int toEnd = toValues.size() - suffix;
+        if (fromEnd == toEnd && field.getJavaType() == FieldDescriptor.JavaType.MESSAGE && !field.isMapField()) {
+            for (int i = prefix; i < fromEnd; i++) {
+                path.add(new Operation.Step(field.getNumber(), Operation.Selector.index(i)));
+                diffMessage((Message) fromValues.get(i), (Message) toValues.get(i));
+                path.remove(path.size() - 1);
+            }
+            return;
+        }
+        List<Operation.Selector> removed = new ArrayList<>();
+        for (int i = prefix; i < fromEnd; i++) {
+            removed.add(Operation.Selector.index(i));
+        }
+        List<Integer> inserted = new ArrayList<>();
+        for (int j = prefix; j < toEnd; j++) {
+            inserted.add(j);
+        }
+        list(to, field, removed, inserted);
+    }
+
+    private void list(Message to, FieldDescriptor field, List<Operation.Selector> removed, List<Integer> inserted) {
+        if (removed.isEmpty() && inserted.isEmpty()) {
+            return;
+        }
+        Message.Builder values = to.newBuilderForType();
+        int[] insertedAt = new int[inserted.size()];
+        for (int i = 0; i < insertedAt.length; i++) {
+            insertedAt[i] = inserted.get(i);
+            values.addRepeatedField(field, to.getRepeatedField(field, insertedAt[i]));
+        }
+        operations.add(Operation.list(path(), field.getNumber(), removed.toArray(new Operation.Selector[0]), insertedAt, values.build().toByteString()));
+    }
+
+    private void replace(Message to, FieldDescriptor field, List<?> toValues) {
+        operations.add(Operation.clear(path(), field.getNumber()));
+        List<Integer> inserted = new ArrayList<>(toValues.size());
+        for (int i = 0; i < toValues.size(); i++) {
+            inserted.add(i);
+        }
+        list(to, field, List.of(), inserted);
+    }
+
+    private void set(Message to, FieldDescriptor field) {
+        ByteString value = to.newBuilderForType().setField(field, to.getField(field)).build().toByteString();
+        operations.add(Operation.set(path(), field.getNumber(), value));
+    }
+
+    private Operation.Step[] path() {
+        return path.toArray(new Operation.Step[0]);
+    }
+}
@@ -0,0 +1,80 @@
+package org.phenopackets.schema.v2.diff;
+
+import com.google.protobuf.Descriptors.Descriptor;
+import com.google.protobuf.Descriptors.FieldDescriptor;
+import com.google.protobuf.Message;
+import com.google.protobuf.Timestamp;
+import org.phenopackets.schema.v2.Phenopacket;
+import org.phenopackets.schema.v2.core.*;
+
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * How the elements of repeated fields are matched between two versions of a message. Elements of the types listed
+ * here, and the entries of map fields, are matched by key wherever they occur, so that an edit, insertion or removal
+ * of one element does not affect the others. The elements of other repeated fields are matched by position.
+ */
+final class Keys {
+
+    private static final Map<Descriptor, Function<Message, String>> KEYS = Map.of(
+            Phenopacket.getDescriptor(), message -> ((Phenopacket) message).getId(),
+            PhenotypicFeature.getDescriptor(), message -> ((PhenotypicFeature) message).getType().getId(),
+            Measurement.getDescriptor(), Keys::measurementKey,
+            Biosample.getDescriptor(), message -> ((Biosample) message).getId(),
+            Interpretation.getDescriptor(), message -> ((Interpretation) message).getId(),
+            Disease.getDescriptor(), message -> ((Disease) message).getTerm().getId(),
+            File.getDescriptor(), message -> ((File) message).getUri(),
+            Resource.getDescriptor(), message -> ((Resource) message).getId());
+
+    private Keys() {
+    }
+
+    /**
+     * @return the function computing the key of the elements of the field, or {@code null} if they are matched by
+     * position
+     */
+    static Function<Message, String> of(FieldDescriptor field) {
+        if (field.isMapField()) {
+            FieldDescriptor keyField = field.getMessageType().findFieldByNumber(1);
+            return entry -> String.valueOf(entry.getField(keyField));
+        }
+        return field.getJavaType() == FieldDescriptor.JavaType.MESSAGE ? KEYS.get(field.getMessageType()) : null;
+    }
+
+    /**
+     * A measurement is identified by its assay and the time of the observation, as the same assay is often repeated.
+     * Keys are written into patches, so they are built from the fields of the time rather than from a debug string
+     * whose format may change between versions of protobuf.
+     */
+    private static String measurementKey(Message message) {
+        Measurement measurement = (Measurement) message;
+        if (!measurement.hasTimeObserved()) {
+            return measurement.getAssay().getId();
+        }
+        return measurement.getAssay().getId() + ' ' + timeKey(measurement.getTimeObserved());
+    }
+
+    private static String timeKey(TimeElement time) {
+        switch (time.getElementCase()) {
+            case GESTATIONAL_AGE:
+                return "gestational_age " + time.getGestationalAge().getWeeks() + 'w' + time.getGestationalAge().getDays() + 'd';
+            case AGE:
+                return "age " + time.getAge().getIso8601Duration();
+            case AGE_RANGE:
+                return "age_range " + time.getAgeRange().getStart().getIso8601Duration() + '/' + time.getAgeRange().getEnd().getIso8601Duration();
+            case ONTOLOGY_CLASS:
+                return "ontology_class " + time.getOntologyClass().getId();
+            case TIMESTAMP:
+                return "timestamp " + timestampKey(time.getTimestamp());
+            case INTERVAL:
+                return "interval " + timestampKey(time.getInterval().getStart()) + '/' + timestampKey(time.getInterval().getEnd());
+            default:
+                return "";
+        }
+    }
+
+    private static String timestampKey(Timestamp timestamp) {
+        return timestamp.getSeconds() + "." + String.format("%09d", timestamp.getNanos());
+    }
+}
@@ -0,0 +1,236 @@
+package org.phenopackets.schema.v2.diff;
+
+import com.google.protobuf.ByteString;
+import com.google.protobuf.CodedInputStream;
+import com.google.protobuf.CodedOutputStream;
+import com.google.protobuf.Descriptors.Descriptor;
+import com.google.protobuf.Descriptors.FieldDescriptor;
+import com.google.protobuf.InvalidProtocolBufferException;
+
+import java.io.IOException;
+
+/**
+ * One change of a {@link PhenopacketPatch}: a field of the message at the end of a path is set, cleared, or has
+ * elements removed from and inserted into it.
+ * <p>
+ * Values are held as the encoding of a message of the type holding the field, in which only that field is set, so
+ * that values of every type are encoded by protobuf itself.
+ */
+final class Operation {
+
+    enum Kind {
+        /**
+         * Sets a singular field to the value in {@link #values}.
+         */
+        SET,
+        /**
+         * Clears a singular or repeated field.
+         */
+        CLEAR,
+        /**
+         * Removes the {@link #removed} elements of a repeated field, then inserts the elements in {@link #values} so
+         * that they end up at the {@link #insertedAt} indexes.
+         */
+        LIST
+    }
+
+    private static final Selector[] NO_SELECTORS = new Selector[0];
+    private static final int[] NO_INDEXES = new int[0];
+    // bounds the arrays allocated for a corrupt patch
+    private static final int MAX_COUNT = 1 << 24;
+
+    final Kind kind;
+    // the fields leading from the root to the message holding the field, with the element for repeated ones
+    final Step[] path;
+    final int fieldNumber;
+    final ByteString values;
+    final Selector[] removed;
+    final int[] insertedAt;
+
+    private Operation(Kind kind, Step[] path, int fieldNumber, ByteString values, Selector[] removed, int[] insertedAt) {
+        this.kind = kind;
+        this.path = path;
+        this.fieldNumber = fieldNumber;
+        this.values = values;
+        this.removed = removed;
+        this.insertedAt = insertedAt;
+    }
+
+    static Operation set(Step[] path, int fieldNumber, ByteString values) {
+        return new Operation(Kind.SET, path, fieldNumber, values, NO_SELECTORS, NO_INDEXES);
+    }
+
+    static Operation clear(Step[] path, int fieldNumber) {
+        return new Operation(Kind.CLEAR, path, fieldNumber, ByteString.EMPTY, NO_SELECTORS, NO_INDEXES);
+    }
+
+    static Operation list(Step[] path, int fieldNumber, Selector[] removed, int[] insertedAt, ByteString values) {
+        return new Operation(Kind.LIST, path, fieldNumber, values, removed, insertedAt);
+    }
+
+    void writeTo(CodedOutputStream output) throws IOException {
+        output.writeUInt32NoTag(kind.ordinal());
+        output.writeUInt32NoTag(path.length);
+        for (Step step : path) {
+            output.writeUInt32NoTag(step.fieldNumber);
+            Selector.writeTo(step.selector, output);
+        }
+        output.writeUInt32NoTag(fieldNumber);
+        if (kind == Kind.LIST) {
+            output.writeUInt32NoTag(removed.length);
+            for (Selector selector : removed) {
+                Selector.writeTo(selector, output);
+            }
+            output.writeUInt32NoTag(insertedAt.length);
+            for (int index : insertedAt) {
+                output.writeUInt32NoTag(index);
+            }
+        }
+        if (kind != Kind.CLEAR) {
+            output.writeBytesNoTag(values);
+        }
+    }
+
+    static Operation readFrom(CodedInputStream input) throws IOException {
+        int kindOrdinal = input.readUInt32();
+        if (kindOrdinal < 0 || kindOrdinal >= Kind.values().length) {
+            throw new InvalidProtocolBufferException("Unknown patch operation " + kindOrdinal);
+        }
+        Kind kind = Kind.values()[kindOrdinal];
+        Step[] path = new Step[readCount(input)];
+        for (int i = 0; i < path.length; i++) {
+            path[i] = new Step(input.readUInt32(), Selector.readFrom(input));
+        }
+        int fieldNumber = input.readUInt32();
+        switch (kind) {
+            case SET:
+                return set(path, fieldNumber, input.readBytes());
+            case CLEAR:
+                return clear(path, fieldNumber);
+            default:
+                Selector[] removed = new Selector[readCount(input)];
+                for (int i = 0; i < removed.length; i++) {
+                    removed[i] = Selector.readFrom(input);
+                    if (removed[i] == null) {
+                        throw new InvalidProtocolBufferException("Missing element of a removal");
+                    }
+                }
+                int[] insertedAt = new int[readCount(input)];
+                for (int i = 0; i < insertedAt.length; i++) {
+                    insertedAt[i] = input.readUInt32();
+                }
+                return list(path, fieldNumber, removed, insertedAt, input.readBytes());
+        }
+    }
+
+    private static int readCount(CodedInputStream input) throws IOException {
+        int count = input.readUInt32();
+        if (count < 0 || count > MAX_COUNT) {
+            throw new InvalidProtocolBufferException("Invalid count " + count + " in patch");
+        }
+        return count;
+    }
+
+    /**
+     * @return e.g. {@code SET phenotypicFeatures[HP:0001250].onset.age.iso8601duration}, with the JSON names of the
+     * fields from the root type
+     */
+    String toString(Descriptor root) {
+        StringBuilder text = new StringBuilder(kind.name()).append(' ');
+        Descriptor type = root;
+        for (Step step : path) {
+            FieldDescriptor field = type.findFieldByNumber(step.fieldNumber);
+            if (field == null || field.getJavaType() != FieldDescriptor.JavaType.MESSAGE) {
+                return text.append("<invalid path>").toString();
+            }
+            text.append(field.getJsonName());
+            if (step.selector != null) {
+                text.append('[').append(step.selector).append(']');
+            }
+            text.append('.');
+            type = field.getMessageType();
+        }
+        FieldDescriptor field = type.findFieldByNumber(fieldNumber);
+        text.append(field == null ? String.valueOf(fieldNumber) : field.getJsonName());
+        if (kind == Kind.LIST) {
+            for (Selector selector : removed) {
+                text.append(" -[").append(selector).append(']');
+            }
+            for (int index : insertedAt) {
+                text.append(" +[").append(index).append(']');
+            }
+        }
+        return text.toString();
+    }
+
+    /**
+     * A message field on the path of an operation, and for a repeated field the element which the path goes through.
+     */
+    static final class Step {
+
+        final int fieldNumber;
+        final Selector selector;
+
+        Step(int fieldNumber, Selector selector) {
+            this.fieldNumber = fieldNumber;
+            this.selector = selector;
+        }
+    }
+
+    /**
+     * An element of a repeated field, either the one with a {@link Keys key} or the one at an index.
+     */
+    static final class Selector {
+
+        private static final int NONE = 0;
+        private static final int INDEX = 1;
+        private static final int KEY = 2;
+
+        final String key;
+        final int index;
+
+        private Selector(String key, int index) {
+            this.key = key;
+            this.index = index;
+        }
+
+        static Selector key(String key) {
+            return new Selector(key, -1);
+        }
+
+        static Selector index(int index) {
+            return new Selector(null, index);
+        }
+
+        private static void writeTo(Selector selector, CodedOutputStream output) throws IOException {
+            if (selector == null) {
+                output.writeUInt32NoTag(NONE);
+            } else if (selector.key != null) {
+                output.writeUInt32NoTag(KEY);
+                output.writeStringNoTag(selector.key);
+            } else {
+                output.writeUInt32NoTag(INDEX);
+                output.writeUInt32NoTag(selector.index);
+            }
+        }
+
+        private static Selector readFrom(CodedInputStream input) throws IOException {
+            int kind = input.readUInt32();
+            switch (kind) {
+                case NONE:
+                    return null;
+                case INDEX:
+                    return index(input.readUInt32());
+                case KEY:
+                    return key(input.readStringRequireUtf8());
+                default:
+                    throw new InvalidProtocolBufferException("Unknown element selector " + kind);
+            }
+        }
+
+        @Override
+        public String toString() {
+            return key != null ? key : String.valueOf(index);
+        }
+    }
+}
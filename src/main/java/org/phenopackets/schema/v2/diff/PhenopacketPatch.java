@@ -0,0 +1,303 @@
+package org.phenopackets.schema.v2.diff;
+
+import com.google.protobuf.CodedInputStream;
+import com.google.protobuf.CodedOutputStream;
+import com.google.protobuf.Descriptors.FieldDescriptor;
+import com.google.protobuf.InvalidProtocolBufferException;
+import com.google.protobuf.Message;
+import org.phenopackets.schema.v2.Phenopacket;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * The field-level changes turning one version of a {@link Phenopacket} into another, to send revisions of a phenopacket
+ * without sending the whole of it.
+ * <p>
+ * A patch is a list of operations, each of which sets or clears a field, or removes and inserts elements of a
+ * repeated field. Unchanged fields and elements do not appear in the patch, and changed messages are described by the
+ * changes to their fields, so a patch for a typical edit is a few dozen bytes whatever the size of the phenopacket.
+ * <p>
+ * The elements of repeated fields are matched between the versions by key where they have a natural one, which the
+ * patch refers to them by:
+ * <ul>
+ *     <li>phenotypic features by {@code type.id}</li>
+ *     <li>measurements by {@code assay.id} and {@code time_observed}</li>
+ *     <li>diseases by {@code term.id}</li>
+ *     <li>biosamples, interpretations and resources by {@code id}, and files by {@code uri}</li>
+ *     <li>the entries of map fields by their key</li>
+ * </ul>
+ * The elements of other repeated fields, and of those in which two elements have the same key, are matched by position.
+ * A patch referring to elements by key can be applied to a phenopacket other than the one it was made from, e.g. one
+ * with features added on another site, as long as the elements it changes or removes are there.
+ * <p>
+ * Unknown fields are not compared. Instances are immutable and thread-safe.
+ */
+public final class PhenopacketPatch {
+
+    private static final byte[] MAGIC = {'P', 'P', 'K', 'D'};
+    private static final int FORMAT_VERSION = 1;
+
+    private final List<Operation> operations;
+
+    private PhenopacketPatch(List<Operation> operations) {
+        this.operations = operations;
+    }
+
+    /**
+     * @return the patch which turns {@code from} into {@code to}
+     */
+    public static PhenopacketPatch diff(Phenopacket from, Phenopacket to) {
+        return new PhenopacketPatch(Collections.unmodifiableList(Differ.diff(from, to)));
+    }
+
+    /**
+     * @return true if the two versions the patch was made from are equal
+     */
+    public boolean isEmpty() {
+        return operations.isEmpty();
+    }
+
+    /**
+     * @return the number of operations in the patch
+     */
+    public int size() {
+        return operations.size();
+    }
+
+    /**
+     * @return a copy of the phenopacket with the patch applied
+     * @throws IllegalArgumentException if the phenopacket lacks a field or element the patch changes
+     */
+    public Phenopacket apply(Phenopacket phenopacket) {
+        Phenopacket.Builder builder = phenopacket.toBuilder();
+        applyTo(builder);
+        return builder.build();
+    }
+
+    /**
+     * Applies the patch in place. If it does not apply, the builder is left partially patched.
+     *
+     * @throws IllegalArgumentException if the builder lacks a field or element the patch changes
+     */
+    public void applyTo(Phenopacket.Builder builder) {
+        new Patcher().apply(builder);
+    }
+
+    public byte[] toByteArray() {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try {
+            writeTo(bytes);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Writes the four magic bytes {@code PPKD}, the format version and the operations of the patch. The stream is not
+     * closed.
+     */
+    public void writeTo(OutputStream outputStream) throws IOException {
+        CodedOutputStream output = CodedOutputStream.newInstance(outputStream);
+        output.writeRawBytes(MAGIC);
+        output.writeUInt32NoTag(FORMAT_VERSION);
+        output.writeUInt32NoTag(operations.size());
+        for (Operation operation : operations) {
+            operation.writeTo(output);
+        }
+        output.flush();
+    }
+
+    public static PhenopacketPatch parseFrom(byte[] bytes) throws IOException {
+        return readFrom(CodedInputStream.newInstance(bytes));
+    }
+
+    /**
+     * Reads a patch written by {@link #writeTo(OutputStream)}. The stream is not closed.
+     *
+     * @throws IOException if the stream could not be read or does not hold a patch
+     */
+    public static PhenopacketPatch parseFrom(InputStream inputStream) throws IOException {
+        return readFrom(CodedInputStream.newInstance(inputStream));
+    }
+
+    private static PhenopacketPatch readFrom(CodedInputStream input) throws IOException {
+        byte[] magic = input.isAtEnd() ? new byte[0] : input.readRawBytes(MAGIC.length);
+        if (!Arrays.equals(magic, MAGIC)) {
+            throw new IOException("Not a phenopacket patch - missing magic bytes");
+        }
+        int formatVersion = input.readUInt32();
+        if (formatVersion != FORMAT_VERSION) {
+            throw new IOException("Unsupported phenopacket patch format version " + formatVersion);
+        }
+        int count = input.readUInt32();
+        if (count < 0) {
+            throw new InvalidProtocolBufferException("Invalid number of patch operations " + count);
+        }
+        List<Operation> operations = new ArrayList<>(Math.min(count, 1024));
+        for (int i = 0; i < count; i++) {
+            operations.add(Operation.readFrom(input));
+        }
+        return new PhenopacketPatch(Collections.unmodifiableList(operations));
+    }
+
+    /**
+     * @return the operations of the patch, one per line, e.g. {@code SET phenotypicFeatures[HP:0001250].excluded}
+     */
+    @Override
+    public String toString() {
+        StringBuilder text = new StringBuilder();
+        for (Operation operation : operations) {
+            text.append(operation.toString(Phenopacket.getDescriptor())).append('\n');
+        }
+        return text.toString();
+    }
+
+    /**
+     * Applies the operations to a builder, keeping the index of the elements of each keyed field that has been looked
+     * up until the field is changed.
+     */
+    private class Patcher {
+
+        private final Map<Message.Builder, Map<FieldDescriptor, Map<String, Integer>>> keyIndexes = new IdentityHashMap<>();
+
+        private void apply(Message.Builder root) {
+            for (Operation operation : operations) {
+                Message.Builder builder = root;
+                for (Operation.Step step : operation.path) {
+                    FieldDescriptor field = field(builder, step.fieldNumber);
+                    if (field.getJavaType() != FieldDescriptor.JavaType.MESSAGE || field.isMapField() || field.isRepeated() != (step.selector != null)) {
+                        throw new IllegalArgumentException("Cannot patch through field " + field.getFullName());
+                    }
+                    builder = step.selector == null
+                            ? builder.getFieldBuilder(field)
+                            : builder.getRepeatedFieldBuilder(field, index(builder, field, step.selector));
+                }
+                FieldDescriptor field = field(builder, operation.fieldNumber);
+                switch (operation.kind) {
+                    case SET:
+                        if (field.isRepeated()) {
+                            throw new IllegalArgumentException("Cannot set repeated field " + field.getFullName());
+                        }
+                        builder.setField(field, values(builder, operation).getField(field));
+                        break;
+                    case CLEAR:
+                        builder.clearField(field);
+                        break;
+                    default:
+                        list(builder, field, operation);
+                        break;
+                }
+                // after the change, as a LIST looks up the elements it removes and so indexes the field again
+                forget(builder, field);
+            }
+        }
+
+        private FieldDescriptor field(Message.Builder builder, int fieldNumber) {
+            FieldDescriptor field = builder.getDescriptorForType().findFieldByNumber(fieldNumber);
+            if (field == null) {
+                throw new IllegalArgumentException("No field " + fieldNumber + " in " + builder.getDescriptorForType().getFullName());
+            }
+            return field;
+        }
+
+        private Message values(Message.Builder builder, Operation operation) {
+            try {
+                return builder.getDefaultInstanceForType().getParserForType().parseFrom(operation.values);
+            } catch (InvalidProtocolBufferException e) {
+                throw new IllegalArgumentException("Invalid value for " + operation.toString(Phenopacket.getDescriptor()), e);
+            }
+        }
+
+        private void list(Message.Builder builder, FieldDescriptor field, Operation operation) {
+            if (!field.isRepeated()) {
+                throw new IllegalArgumentException("Cannot insert into singular field " + field.getFullName());
+            }
+            int count = builder.getRepeatedFieldCount(field);
+            boolean[] removed = new boolean[count];
+            for (Operation.Selector selector : operation.removed) {
+                removed[index(builder, field, selector)] = true;
+            }
+            List<Object> kept = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                if (!removed[i]) {
+                    kept.add(builder.getRepeatedField(field, i));
+                }
+            }
+            Message values = values(builder, operation);
+            if (values.getRepeatedFieldCount(field) != operation.insertedAt.length) {
+                throw new IllegalArgumentException("Invalid values for " + operation.toString(Phenopacket.getDescriptor()));
+            }
+            builder.clearField(field);
+            int size = kept.size() + operation.insertedAt.length;
+            int nextKept = 0;
+            int nextInserted = 0;
+            for (int i = 0; i < size; i++) {
+                if (nextInserted < operation.insertedAt.length && operation.insertedAt[nextInserted] == i) {
+                    builder.addRepeatedField(field, values.getRepeatedField(field, nextInserted++));
+                } else if (nextKept < kept.size()) {
+                    builder.addRepeatedField(field, kept.get(nextKept++));
+                } else {
+                    throw new IllegalArgumentException("Invalid insertion index in " + operation.toString(Phenopacket.getDescriptor()));
+                }
+            }
+            if (nextInserted != operation.insertedAt.length) {
+                throw new IllegalArgumentException("Invalid insertion index in " + operation.toString(Phenopacket.getDescriptor()));
+            }
+        }
+
+        private int index(Message.Builder builder, FieldDescriptor field, Operation.Selector selector) {
+            if (selector.key == null) {
+                if (selector.index < 0 || selector.index >= builder.getRepeatedFieldCount(field)) {
+                    throw new IllegalArgumentException("No element " + selector.index + " of " + field.getFullName());
+                }
+                return selector.index;
+            }
+            Map<String, Integer> indexes = keyIndexes.computeIfAbsent(builder, b -> new HashMap<>())
+                    .computeIfAbsent(field, f -> keyIndexes(builder, f));
+            Integer index = indexes.get(selector.key);
+            if (index == null) {
+                throw new IllegalArgumentException("No element of " + field.getFullName() + " with key '" + selector.key + "'");
+            } else if (index < 0) {
+                throw new IllegalArgumentException("More than one element of " + field.getFullName() + " with key '" + selector.key + "'");
+            }
+            return index;
+        }
+
+        /**
+         * @return the index of the element with each key, or -1 for keys of more than one element
+         */
+        private Map<String, Integer> keyIndexes(Message.Builder builder, FieldDescriptor field) {
+            Function<Message, String> key = Keys.of(field);
+            if (key == null) {
+                throw new IllegalArgumentException("The elements of " + field.getFullName() + " have no key");
+            }
+            int count = builder.getRepeatedFieldCount(field);
+            Map<String, Integer> indexes = new HashMap<>(count * 2);
+            for (int i = 0; i < count; i++) {
+                if (indexes.putIfAbsent(key.apply((Message) builder.getRepeatedField(field, i)), i) != null) {
+                    indexes.put(key.apply((Message) builder.getRepeatedField(field, i)), -1);
+                }
+            }
+            return indexes;
+        }
+
+        private void forget(Message.Builder builder, FieldDescriptor field) {
+            Map<FieldDescriptor, Map<String, Integer>> fields = keyIndexes.get(builder);
+            if (fields != null) {
+                fields.remove(field);
+            }
+        }
+    }
+}
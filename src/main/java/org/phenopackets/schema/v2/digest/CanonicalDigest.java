@@ -0,0 +1,321 @@
+package org.phenopackets.schema.v2.digest;
+
+import com.google.protobuf.ByteString;
+import com.google.protobuf.CodedInputStream;
+import com.google.protobuf.CodedOutputStream;
+import com.google.protobuf.Descriptors.Descriptor;
+import com.google.protobuf.Descriptors.FieldDescriptor;
+import com.google.protobuf.InvalidProtocolBufferException;
+import com.google.protobuf.Message;
+import com.google.protobuf.WireFormat;
+import org.phenopackets.schema.v2.core.MetaData;
+import org.phenopackets.schema.v2.internal.WireFields;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Computes SHA-256 digests of messages, e.g. {@link org.phenopackets.schema.v2.Phenopacket}s, {@link
+ * org.phenopackets.schema.v2.Family families} and {@link org.phenopackets.schema.v2.Cohort cohorts}, from their binary
+ * encoding, such that messages which are equal get the same digest.
+ * <p>
+ * The digest is that of a canonical form of the encoding, which differs from the encoding written by protobuf only
+ * where the encoding of equal messages may differ:
+ * <ul>
+ *     <li>the entries of map fields, e.g. {@code File.file_attributes}, are sorted</li>
+ *     <li>scalar fields set to their default value are left out, and repeated scalar fields are unpacked</li>
+ *     <li>fields are in field number order</li>
+ *     <li>the excluded fields, e.g. {@link #VOLATILE_FIELDS}, are left out</li>
+ * </ul>
+ * Only the messages of types in which one of those applies are walked field by field. The others, which are most of
+ * the content of a phenopacket, are hashed as they are encoded, so digesting runs close to the speed of SHA-256. The
+ * bytes of those messages are assumed to be in field number order, as every protobuf library writes them. Unknown
+ * fields are hashed as they are encoded.
+ * <p>
+ * The digest also covers the full name of the message type, so messages of different types never share a digest.
+ * Instances are thread-safe.
+ */
+public class CanonicalDigest {
+
+    /**
+     * The fields which change whenever a message is written again without its content changing: {@code
+     * MetaData.created}.
+     */
+    public static final Set<FieldDescriptor> VOLATILE_FIELDS = Set.of(
+            MetaData.getDescriptor().findFieldByNumber(MetaData.CREATED_FIELD_NUMBER));
+
+    private static final String ALGORITHM = "SHA-256";
+    private static final int BUFFER_SIZE = 8192;
+    private static final Comparator<byte[]> UNSIGNED = Arrays::compareUnsigned;
+
+    private final Set<FieldDescriptor> excludedFields;
+    private final Map<Descriptor, DigestPlan> plans = new ConcurrentHashMap<>();
+    private final MessageDigest prototype;
+
+    /**
+     * Creates an instance which digests every field.
+     */
+    public CanonicalDigest() {
+        this(Set.of());
+    }
+
+    /**
+     * @param excludedFields the fields left out of digests, e.g. {@link #VOLATILE_FIELDS}
+     */
+    public CanonicalDigest(Collection<FieldDescriptor> excludedFields) {
+        this.excludedFields = Set.copyOf(excludedFields);
+        try {
+            this.prototype = MessageDigest.getInstance(ALGORITHM);
+        } catch (NoSuchAlgorithmException e) {
+            // every Java platform supports SHA-256
+            throw new IllegalStateException(e);
+        }
+    }
+
+    public Set<FieldDescriptor> excludedFields() {
+        return excludedFields;
+    }
+
+    public Digest digest(Message message) {
+        try {
+            return digest(message.getDescriptorForType(), message.toByteString());
+        } catch (InvalidProtocolBufferException e) {
+            // a message serialised by protobuf itself is always well-formed
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * @param type  the type of the encoded message
+     * @param bytes the binary encoding of a message
+     * @throws InvalidProtocolBufferException if the bytes are not a well-formed encoding
+     */
+    public Digest digest(Descriptor type, ByteString bytes) throws InvalidProtocolBufferException {
+        DigestPlan plan = plan(type);
+        MessageDigest messageDigest = newMessageDigest();
+        messageDigest.update(type.getFullName().getBytes(StandardCharsets.UTF_8));
+        messageDigest.update((byte) 0);
+        if (!plan.walked) {
+            for (ByteBuffer buffer : bytes.asReadOnlyByteBufferList()) {
+                messageDigest.update(buffer);
+            }
+        } else {
+            CodedOutputStream output = CodedOutputStream.newInstance(new DigestOutputStream(OutputStream.nullOutputStream(), messageDigest), BUFFER_SIZE);
+            try {
+                writeFields(plan, bytes, output);
+                output.flush();
+            } catch (InvalidProtocolBufferException e) {
+                throw e;
+            } catch (IOException e) {
+                // neither the digest nor the byte arrays the canonical form is written to fail
+                throw new IllegalStateException(e);
+            }
+        }
+        return Digest.wrap(messageDigest.digest());
+    }
+
+    MessageDigest newMessageDigest() {
+        try {
+            return (MessageDigest) prototype.clone();
+        } catch (CloneNotSupportedException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private DigestPlan plan(Descriptor type) {
+        DigestPlan plan = plans.get(type);
+        if (plan == null) {
+            synchronized (this) {
+                if (!plans.containsKey(type)) {
+                    DigestPlan.compile(type, excludedFields, plans);
+                }
+            }
+            plan = plans.get(type);
+        }
+        return plan;
+    }
+
+    /**
+     * Writes the canonical form of the fields of a message of a walked type.
+     */
+    private static void writeFields(DigestPlan plan, ByteString bytes, CodedOutputStream output) throws IOException {
+        CodedInputStream input = (inFieldNumberOrder(bytes) ? bytes : sortFields(bytes)).newCodedInput();
+        input.enableAliasing(true);
+        int tag = input.readTag();
+        while (tag != 0) {
+            int fieldNumber = WireFormat.getTagFieldNumber(tag);
+            int wireType = WireFormat.getTagWireType(tag);
+            switch (plan.action(fieldNumber, wireType)) {
+                case DigestPlan.EXCLUDED:
+                    input.skipField(tag);
+                    break;
+                case DigestPlan.SCALAR:
+                    writeScalar(tag, input, output);
+                    break;
+                case DigestPlan.MESSAGE:
+                    output.writeUInt32NoTag(tag(fieldNumber, WireFormat.WIRETYPE_START_GROUP));
+                    writeFields(plan.child(fieldNumber), input.readBytes(), output);
+                    output.writeUInt32NoTag(tag(fieldNumber, WireFormat.WIRETYPE_END_GROUP));
+                    break;
+                case DigestPlan.MAP:
+                    // the entries of a map field are consecutive as the fields are in order
+                    tag = writeMap(tag, plan.child(fieldNumber), input, output);
+                    continue;
+                case DigestPlan.REPEATED_SCALAR:
+                    writeRepeatedScalar(tag, plan.wireType(fieldNumber), input, output);
+                    break;
+                default:
+                    if (wireType == WireFormat.WIRETYPE_END_GROUP) {
+                        throw new InvalidProtocolBufferException("Unexpected end of group " + fieldNumber);
+                    }
+                    WireFields.copyField(tag, input, output);
+                    break;
+            }
+            tag = input.readTag();
+        }
+    }
+
+    private static void writeScalar(int tag, CodedInputStream input, CodedOutputStream output) throws IOException {
+        switch (WireFormat.getTagWireType(tag)) {
+            case WireFormat.WIRETYPE_VARINT:
+                long varint = input.readRawVarint64();
+                if (varint != 0) {
+                    output.writeUInt32NoTag(tag);
+                    output.writeUInt64NoTag(varint);
+                }
+                break;
+            case WireFormat.WIRETYPE_FIXED32:
+                int fixed32 = input.readRawLittleEndian32();
+                if (fixed32 != 0) {
+                    output.writeUInt32NoTag(tag);
+                    output.writeFixed32NoTag(fixed32);
+                }
+                break;
+            case WireFormat.WIRETYPE_FIXED64:
+                long fixed64 = input.readRawLittleEndian64();
+                if (fixed64 != 0) {
+                    output.writeUInt32NoTag(tag);
+                    output.writeFixed64NoTag(fixed64);
+                }
+                break;
+            default:
+                ByteString value = input.readBytes();
+                if (!value.isEmpty()) {
+                    output.writeUInt32NoTag(tag);
+                    output.writeBytesNoTag(value);
+                }
+                break;
+        }
+    }
+
+    private static void writeRepeatedScalar(int tag, int elementWireType, CodedInputStream input, CodedOutputStream output) throws IOException {
+        int elementTag = tag(WireFormat.getTagFieldNumber(tag), elementWireType);
+        if (WireFormat.getTagWireType(tag) != WireFormat.WIRETYPE_LENGTH_DELIMITED) {
+            output.writeUInt32NoTag(elementTag);
+            writeElement(elementWireType, input, output);
+            return;
+        }
+        CodedInputStream packed = input.readBytes().newCodedInput();
+        while (!packed.isAtEnd()) {
+            output.writeUInt32NoTag(elementTag);
+            writeElement(elementWireType, packed, output);
+        }
+    }
+
+    private static void writeElement(int wireType, CodedInputStream input, CodedOutputStream output) throws IOException {
+        switch (wireType) {
+            case WireFormat.WIRETYPE_VARINT:
+                output.writeUInt64NoTag(input.readRawVarint64());
+                break;
+            case WireFormat.WIRETYPE_FIXED32:
+                output.writeFixed32NoTag(input.readRawLittleEndian32());
+                break;
+            default:
+                output.writeFixed64NoTag(input.readRawLittleEndian64());
+                break;
+        }
+    }
+
+    /**
+     * Writes the entries of a map field sorted by their canonical form, which starts with the key.
+     *
+     * @return the tag following the entries
+     */
+    private static int writeMap(int tag, DigestPlan entryPlan, CodedInputStream input, CodedOutputStream output) throws IOException {
+        int fieldNumber = WireFormat.getTagFieldNumber(tag);
+        List<byte[]> entries = new ArrayList<>();
+        ByteArrayOutputStream entryBytes = new ByteArrayOutputStream();
+        int next = tag;
+        while (next == tag) {
+            entryBytes.reset();
+            CodedOutputStream entry = CodedOutputStream.newInstance(entryBytes, 256);
+            writeFields(entryPlan, input.readBytes(), entry);
+            entry.flush();
+            entries.add(entryBytes.toByteArray());
+            next = input.readTag();
+        }
+        entries.sort(UNSIGNED);
+        for (byte[] entry : entries) {
+            output.writeUInt32NoTag(tag(fieldNumber, WireFormat.WIRETYPE_START_GROUP));
+            output.writeRawBytes(entry);
+            output.writeUInt32NoTag(tag(fieldNumber, WireFormat.WIRETYPE_END_GROUP));
+        }
+        return next;
+    }
+
+    private static boolean inFieldNumberOrder(ByteString bytes) throws IOException {
+        CodedInputStream input = bytes.newCodedInput();
+        int previous = 0;
+        int tag = input.readTag();
+        while (tag != 0) {
+            int fieldNumber = WireFormat.getTagFieldNumber(tag);
+            if (fieldNumber < previous) {
+                return false;
+            }
+            previous = fieldNumber;
+            input.skipField(tag);
+            tag = input.readTag();
+        }
+        return true;
+    }
+
+    /**
+     * @return the fields of the encoded message in field number order, keeping the order of the elements of each field
+     */
+    private static ByteString sortFields(ByteString bytes) throws IOException {
+        CodedInputStream input = bytes.newCodedInput();
+        List<int[]> fields = new ArrayList<>();
+        int start = input.getTotalBytesRead();
+        int tag = input.readTag();
+        while (tag != 0) {
+            input.skipField(tag);
+            fields.add(new int[]{WireFormat.getTagFieldNumber(tag), start, input.getTotalBytesRead()});
+            start = input.getTotalBytesRead();
+            tag = input.readTag();
+        }
+        fields.sort(Comparator.comparingInt(field -> field[0]));
+        ByteString.Output sorted = ByteString.newOutput(bytes.size());
+        for (int[] field : fields) {
+            bytes.substring(field[1], field[2]).writeTo(sorted);
+        }
+        return sorted.toByteString();
+    }
+
+    private static int tag(int fieldNumber, int wireType) {
+        return fieldNumber << 3 | wireType;
+    }
+}
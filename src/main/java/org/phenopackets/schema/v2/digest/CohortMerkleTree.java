@@ -0,0 +1,324 @@
+package org.phenopackets.schema.v2.digest;
+
+import org.phenopackets.schema.v2.Cohort;
+import org.phenopackets.schema.v2.Phenopacket;
+
+import java.nio.charset.StandardCharsets;
+import java.security.DigestException;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+/**
+ * A Merkle tree over the {@link CanonicalDigest digests} of the members of a cohort, to find which members differ
+ * between two copies of a cohort by comparing a few hashes rather than the members.
+ * <p>
+ * Members are identified by {@code id} and put into one of {@code 2^depth} buckets by a hash of their id, which is
+ * the same on every JVM, and are sorted by id within a bucket. The buckets are the leaves of a complete binary tree
+ * whose nodes are the SHA-256 of their two children, so the tree has the same shape whatever the members. Adding,
+ * replacing or removing a member only changes the hashes of its bucket and the nodes above it, which are all that is
+ * hashed again, and the nodes of two trees with the same members are equal.
+ * <p>
+ * Two copies of a cohort are reconciled by descending from the root, comparing the two children of each node which
+ * differs, down to the buckets which differ, then comparing the ids and digests in those. The {@link #node(int, int)}
+ * and {@link #bucket(int)} methods give what is exchanged in each step, and {@link #diff(CohortMerkleTree)} does it
+ * between two trees in the same process. With the default depth of 16, a million-member cohort has about 15 members
+ * per bucket, so finding a changed member takes 32 hashes on the way down and a bucket of about a kilobyte.
+ * <p>
+ * Instances are not thread-safe.
+ */
+public class CohortMerkleTree {
+
+    public static final int DEFAULT_DEPTH = 16;
+    private static final int MAX_DEPTH = 24;
+    private static final byte BUCKET = 0;
+    private static final byte NODE = 1;
+
+    private final CanonicalDigest canonicalDigest;
+    private final int depth;
+    private final TreeMap<String, Digest>[] buckets;
+    // the nodes level by level from the root, 32 bytes each, with all zeros for subtrees without members
+    private final byte[] nodes;
+    private final BitSet dirtyBuckets = new BitSet();
+    private final MessageDigest messageDigest;
+    private int size;
+
+    /**
+     * Creates an empty tree of the default depth whose digests leave out {@link CanonicalDigest#VOLATILE_FIELDS}.
+     */
+    public CohortMerkleTree() {
+        this(new CanonicalDigest(CanonicalDigest.VOLATILE_FIELDS), DEFAULT_DEPTH);
+    }
+
+    /**
+     * @param canonicalDigest computes the digests of the members
+     * @param depth           the number of levels below the root, from 1 to 24. Trees can only be compared if they
+     *                        have the same depth and digest the members in the same way.
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public CohortMerkleTree(CanonicalDigest canonicalDigest, int depth) {
+        if (depth < 1 || depth > MAX_DEPTH) {
+            throw new IllegalArgumentException("depth must be between 1 and " + MAX_DEPTH + ", got " + depth);
+        }
+        this.canonicalDigest = canonicalDigest;
+        this.depth = depth;
+        this.buckets = new TreeMap[1 << depth];
+        this.nodes = new byte[((2 << depth) - 1) * Digest.LENGTH];
+        this.messageDigest = canonicalDigest.newMessageDigest();
+    }
+
+    /**
+     * @throws IllegalArgumentException if two members have the same id
+     */
+    public static CohortMerkleTree of(Cohort cohort) {
+        CohortMerkleTree tree = new CohortMerkleTree();
+        tree.putAll(cohort.getMembersList());
+        return tree;
+    }
+
+    /**
+     * Adds the members which are not in the tree yet.
+     *
+     * @throws IllegalArgumentException if a member has the id of one in the tree, in which case the members before
+     *                                  it have been added
+     */
+    public void putAll(Iterable<Phenopacket> members) {
+        for (Phenopacket member : members) {
+            if (put(member.getId(), canonicalDigest.digest(member)) != null) {
+                throw new IllegalArgumentException("More than one member with id '" + member.getId() + "'");
+            }
+        }
+    }
+
+    /**
+     * Adds the member, or replaces the member with the same id.
+     *
+     * @return the digest of the member replaced, or {@code null}
+     */
+    public Digest put(Phenopacket member) {
+        return put(member.getId(), canonicalDigest.digest(member));
+    }
+
+    /**
+     * Adds or replaces a member by its digest, e.g. one kept alongside the member in a store.
+     *
+     * @return the digest of the member replaced, or {@code null}
+     */
+    public Digest put(String id, Digest digest) {
+        int index = bucketOf(id);
+        if (buckets[index] == null) {
+            buckets[index] = new TreeMap<>();
+        }
+        Digest previous = buckets[index].put(id, digest);
+        if (!digest.equals(previous)) {
+            dirtyBuckets.set(index);
+        }
+        if (previous == null) {
+            size++;
+        }
+        return previous;
+    }
+
+    /**
+     * @return the digest of the member removed, or {@code null} if there was no member with the id
+     */
+    public Digest remove(String id) {
+        int index = bucketOf(id);
+        Digest previous = buckets[index] == null ? null : buckets[index].remove(id);
+        if (previous != null) {
+            dirtyBuckets.set(index);
+            size--;
+        }
+        return previous;
+    }
+
+    /**
+     * @return the digest of the member with the id, or {@code null}
+     */
+    public Digest get(String id) {
+        TreeMap<String, Digest> bucket = buckets[bucketOf(id)];
+        return bucket == null ? null : bucket.get(id);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int depth() {
+        return depth;
+    }
+
+    public Digest root() {
+        return node(0, 0);
+    }
+
+    /**
+     * @param level from 0 for the root to {@link #depth()} for the buckets
+     * @param index from 0 to {@code 2^level - 1}, from left to right
+     * @return the hash of the node, which is all zeros if there are no members beneath it
+     */
+    public Digest node(int level, int index) {
+        if (level < 0 || level > depth || index < 0 || index >= 1 << level) {
+            throw new IllegalArgumentException("No node " + index + " at level " + level + " of a tree of depth " + depth);
+        }
+        rehash();
+        int offset = ((1 << level) - 1 + index) * Digest.LENGTH;
+        byte[] bytes = new byte[Digest.LENGTH];
+        System.arraycopy(nodes, offset, bytes, 0, Digest.LENGTH);
+        return Digest.wrap(bytes);
+    }
+
+    /**
+     * @return the ids and digests of the members in the bucket, sorted by id
+     */
+    public SortedMap<String, Digest> bucket(int index) {
+        if (index < 0 || index >= buckets.length) {
+            throw new IllegalArgumentException("No bucket " + index + " in a tree of depth " + depth);
+        }
+        return buckets[index] == null ? Collections.emptySortedMap() : Collections.unmodifiableSortedMap(buckets[index]);
+    }
+
+    /**
+     * @return the bucket of the member with the id
+     */
+    public int bucketOf(String id) {
+        // a hash of the id which does not depend on the JVM, with the bits mixed as in MurmurHash3
+        int hash = id.hashCode();
+        hash ^= hash >>> 16;
+        hash *= 0x85ebca6b;
+        hash ^= hash >>> 13;
+        hash *= 0xc2b2ae35;
+        hash ^= hash >>> 16;
+        return hash >>> (32 - depth);
+    }
+
+    /**
+     * @return the ids of the members which are in only one of the trees or have different digests, sorted
+     * @throws IllegalArgumentException if the trees do not have the same depth
+     */
+    public List<String> diff(CohortMerkleTree other) {
+        if (other.depth != depth) {
+            throw new IllegalArgumentException("Cannot compare trees of depth " + depth + " and " + other.depth);
+        }
+        rehash();
+        other.rehash();
+        List<String> ids = new ArrayList<>();
+        diff(other, 0, 0, ids);
+        Collections.sort(ids);
+        return ids;
+    }
+
+    private void diff(CohortMerkleTree other, int level, int index, List<String> ids) {
+        int node = (1 << level) - 1 + index;
+        if (equalNodes(other, node)) {
+            return;
+        }
+        if (level < depth) {
+            diff(other, level + 1, 2 * index, ids);
+            diff(other, level + 1, 2 * index + 1, ids);
+            return;
+        }
+        SortedMap<String, Digest> bucket = bucket(index);
+        SortedMap<String, Digest> otherBucket = other.bucket(index);
+        for (Map.Entry<String, Digest> member : bucket.entrySet()) {
+            if (!member.getValue().equals(otherBucket.get(member.getKey()))) {
+                ids.add(member.getKey());
+            }
+        }
+        for (String id : otherBucket.keySet()) {
+            if (!bucket.containsKey(id)) {
+                ids.add(id);
+            }
+        }
+    }
+
+    private boolean equalNodes(CohortMerkleTree other, int node) {
+        int offset = node * Digest.LENGTH;
+        return Arrays.equals(nodes, offset, offset + Digest.LENGTH, other.nodes, offset, offset + Digest.LENGTH);
+    }
+
+    /**
+     * Hashes the buckets which changed since the last rehash, and the nodes above them.
+     */
+    private void rehash() {
+        if (dirtyBuckets.isEmpty()) {
+            return;
+        }
+        BitSet dirty = dirtyBuckets;
+        for (int index = dirty.nextSetBit(0); index >= 0; index = dirty.nextSetBit(index + 1)) {
+            hashBucket(index);
+        }
+        for (int level = depth - 1; level >= 0; level--) {
+            BitSet parents = new BitSet();
+            for (int index = dirty.nextSetBit(0); index >= 0; index = dirty.nextSetBit(index + 1)) {
+                parents.set(index >>> 1);
+            }
+            for (int index = parents.nextSetBit(0); index >= 0; index = parents.nextSetBit(index + 1)) {
+                hashNode(level, index);
+            }
+            dirty = parents;
+        }
+        dirtyBuckets.clear();
+    }
+
+    private void hashBucket(int index) {
+        int offset = ((1 << depth) - 1 + index) * Digest.LENGTH;
+        TreeMap<String, Digest> bucket = buckets[index];
+        if (bucket == null || bucket.isEmpty()) {
+            Arrays.fill(nodes, offset, offset + Digest.LENGTH, (byte) 0);
+            return;
+        }
+        messageDigest.update(BUCKET);
+        for (Map.Entry<String, Digest> member : bucket.entrySet()) {
+            byte[] id = member.getKey().getBytes(StandardCharsets.UTF_8);
+            updateLength(id.length);
+            messageDigest.update(id);
+            member.getValue().update(messageDigest);
+        }
+        digestInto(offset);
+    }
+
+    private void hashNode(int level, int index) {
+        int offset = ((1 << level) - 1 + index) * Digest.LENGTH;
+        int children = ((2 << level) - 1 + 2 * index) * Digest.LENGTH;
+        if (isZero(children, 2 * Digest.LENGTH)) {
+            Arrays.fill(nodes, offset, offset + Digest.LENGTH, (byte) 0);
+            return;
+        }
+        messageDigest.update(NODE);
+        messageDigest.update(nodes, children, 2 * Digest.LENGTH);
+        digestInto(offset);
+    }
+
+    private void updateLength(int length) {
+        while ((length & ~0x7f) != 0) {
+            messageDigest.update((byte) (length & 0x7f | 0x80));
+            length >>>= 7;
+        }
+        messageDigest.update((byte) length);
+    }
+
+    private void digestInto(int offset) {
+        try {
+            messageDigest.digest(nodes, offset, Digest.LENGTH);
+        } catch (DigestException e) {
+            // the 32 bytes at the offset always hold a SHA-256 digest
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private boolean isZero(int offset, int length) {
+        for (int i = offset; i < offset + length; i++) {
+            if (nodes[i] != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
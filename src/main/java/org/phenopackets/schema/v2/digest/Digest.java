@@ -0,0 +1,93 @@
+package org.phenopackets.schema.v2.digest;
+
+import java.security.MessageDigest;
+import java.util.Arrays;
+
+/**
+ * A SHA-256 digest computed by {@link CanonicalDigest}, usable as a key for de-duplication and change detection.
+ * Digests are ordered by the unsigned value of their bytes. Instances are immutable and thread-safe.
+ */
+public final class Digest implements Comparable<Digest> {
+
+    static final int LENGTH = 32;
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    private final byte[] bytes;
+
+    private Digest(byte[] bytes) {
+        this.bytes = bytes;
+    }
+
+    static Digest wrap(byte[] bytes) {
+        return new Digest(bytes);
+    }
+
+    /**
+     * @param bytes the 32 bytes of a digest, as returned by {@link #toByteArray()}
+     */
+    public static Digest fromBytes(byte[] bytes) {
+        if (bytes.length != LENGTH) {
+            throw new IllegalArgumentException("A digest has " + LENGTH + " bytes, got " + bytes.length);
+        }
+        return new Digest(bytes.clone());
+    }
+
+    /**
+     * @param hex the 64 hexadecimal digits of a digest, as returned by {@link #toString()}
+     */
+    public static Digest fromHex(String hex) {
+        if (hex.length() != LENGTH * 2) {
+            throw new IllegalArgumentException("A digest has " + LENGTH * 2 + " hexadecimal digits, got " + hex.length());
+        }
+        byte[] bytes = new byte[LENGTH];
+        for (int i = 0; i < LENGTH; i++) {
+            int high = Character.digit(hex.charAt(2 * i), 16);
+            int low = Character.digit(hex.charAt(2 * i + 1), 16);
+            if (high < 0 || low < 0) {
+                throw new IllegalArgumentException("Not a hexadecimal digest: " + hex);
+            }
+            bytes[i] = (byte) (high << 4 | low);
+        }
+        return new Digest(bytes);
+    }
+
+    public byte[] toByteArray() {
+        return bytes.clone();
+    }
+
+    /**
+     * Adds the bytes of the digest to a message digest without copying them.
+     */
+    void update(MessageDigest messageDigest) {
+        messageDigest.update(bytes);
+    }
+
+    @Override
+    public int compareTo(Digest other) {
+        return Arrays.compareUnsigned(bytes, other.bytes);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return this == o || o instanceof Digest && Arrays.equals(bytes, ((Digest) o).bytes);
+    }
+
+    @Override
+    public int hashCode() {
+        // the bytes of a digest are uniformly distributed
+        return (bytes[0] & 0xff) << 24 | (bytes[1] & 0xff) << 16 | (bytes[2] & 0xff) << 8 | (bytes[3] & 0xff);
+    }
+
+    /**
+     * @return the digest as 64 lower-case hexadecimal digits
+     */
+    @Override
+    public String toString() {
+        char[] hex = new char[LENGTH * 2];
+        for (int i = 0; i < LENGTH; i++) {
+            hex[2 * i] = HEX[(bytes[i] & 0xff) >>> 4];
+            hex[2 * i + 1] = HEX[bytes[i] & 0x0f];
+        }
+        return new String(hex);
+    }
+}
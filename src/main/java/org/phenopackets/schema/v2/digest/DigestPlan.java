@@ -0,0 +1,186 @@
+package org.phenopackets.schema.v2.digest;
+
+import com.google.protobuf.Descriptors.Descriptor;
+import com.google.protobuf.Descriptors.FieldDescriptor;
+import com.google.protobuf.WireFormat;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * What {@link CanonicalDigest} does with each field of a message type, worked out once from the {@link Descriptor}.
+ * <p>
+ * The encoding of a message written by protobuf is canonical already, unless the message has a map field, whose
+ * entries are written in the order of insertion, an excluded field, or a repeated scalar field, which may be packed or
+ * not. Messages of types from which none of those can be reached are hashed as they are encoded, and only the messages
+ * of the other types, e.g. a phenopacket and its {@code meta_data} and {@code files}, are walked field by field.
+ */
+final class DigestPlan {
+
+    /**
+     * The field is unknown, or its value is hashed as it is encoded.
+     */
+    static final byte COPY = 0;
+    /**
+     * A scalar field without presence, which is left out if it has the default value.
+     */
+    static final byte SCALAR = 1;
+    static final byte EXCLUDED = 2;
+    /**
+     * A message field of a type which is walked.
+     */
+    static final byte MESSAGE = 3;
+    static final byte MAP = 4;
+    /**
+     * A repeated scalar field, which is hashed unpacked.
+     */
+    static final byte REPEATED_SCALAR = 5;
+
+    private static final byte[] NO_ACTIONS = new byte[0];
+
+    /**
+     * Whether messages of the type are walked field by field rather than hashed as they are encoded.
+     */
+    final boolean walked;
+    // indexed by field number
+    private final byte[] actions;
+    private final int[] wireTypes;
+    private final DigestPlan[] children;
+
+    private DigestPlan(boolean walked, int maxFieldNumber) {
+        this.walked = walked;
+        this.actions = walked ? new byte[maxFieldNumber + 1] : NO_ACTIONS;
+        this.wireTypes = new int[actions.length];
+        this.children = new DigestPlan[actions.length];
+    }
+
+    /**
+     * @return the action for a field encoded with the wire type, which is {@link #COPY} for unknown fields and those
+     * whose wire type is not that of their type
+     */
+    byte action(int fieldNumber, int wireType) {
+        if (fieldNumber >= actions.length) {
+            return COPY;
+        }
+        byte action = actions[fieldNumber];
+        if (wireType == wireTypes[fieldNumber]
+                || action == REPEATED_SCALAR && wireType == WireFormat.WIRETYPE_LENGTH_DELIMITED) {
+            return action;
+        }
+        return COPY;
+    }
+
+    /**
+     * @return the wire type of the field, or of the elements of a repeated scalar field
+     */
+    int wireType(int fieldNumber) {
+        return wireTypes[fieldNumber];
+    }
+
+    DigestPlan child(int fieldNumber) {
+        return children[fieldNumber];
+    }
+
+    /**
+     * Compiles the plans of the root type and of every type reachable from it which is not yet in {@code plans}.
+     */
+    static void compile(Descriptor root, Set<FieldDescriptor> excludedFields, Map<Descriptor, DigestPlan> plans) {
+        Set<Descriptor> reachable = new HashSet<>();
+        Deque<Descriptor> pending = new ArrayDeque<>();
+        reachable.add(root);
+        pending.add(root);
+        while (!pending.isEmpty()) {
+            for (FieldDescriptor field : pending.poll().getFields()) {
+                if (field.getJavaType() == FieldDescriptor.JavaType.MESSAGE && reachable.add(field.getMessageType())) {
+                    pending.add(field.getMessageType());
+                }
+            }
+        }
+        // a type is walked if it needs to be, or if a type which is walked can be reached from it
+        Set<Descriptor> walked = new HashSet<>();
+        for (Descriptor descriptor : reachable) {
+            if (needsWalking(descriptor, excludedFields)) {
+                walked.add(descriptor);
+            }
+        }
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            for (Descriptor descriptor : reachable) {
+                if (!walked.contains(descriptor) && hasWalkedField(descriptor, walked)) {
+                    walked.add(descriptor);
+                    changed = true;
+                }
+            }
+        }
+
+        Map<Descriptor, DigestPlan> compiled = new HashMap<>();
+        for (Descriptor descriptor : reachable) {
+            if (!plans.containsKey(descriptor)) {
+                int maxFieldNumber = 0;
+                for (FieldDescriptor field : descriptor.getFields()) {
+                    maxFieldNumber = Math.max(maxFieldNumber, field.getNumber());
+                }
+                compiled.put(descriptor, new DigestPlan(walked.contains(descriptor), maxFieldNumber));
+            }
+        }
+        for (Map.Entry<Descriptor, DigestPlan> entry : compiled.entrySet()) {
+            DigestPlan plan = entry.getValue();
+            if (!plan.walked) {
+                continue;
+            }
+            for (FieldDescriptor field : entry.getKey().getFields()) {
+                int number = field.getNumber();
+                plan.actions[number] = action(field, excludedFields, walked);
+                plan.wireTypes[number] = field.getLiteType().getWireType();
+                if (field.getJavaType() == FieldDescriptor.JavaType.MESSAGE) {
+                    DigestPlan child = compiled.get(field.getMessageType());
+                    plan.children[number] = child != null ? child : plans.get(field.getMessageType());
+                }
+            }
+        }
+        plans.putAll(compiled);
+    }
+
+    private static boolean needsWalking(Descriptor descriptor, Set<FieldDescriptor> excludedFields) {
+        // protobuf libraries differ in whether they write the default key and value of a map entry
+        if (descriptor.getOptions().getMapEntry()) {
+            return true;
+        }
+        for (FieldDescriptor field : descriptor.getFields()) {
+            if (excludedFields.contains(field) || field.isMapField() || field.isPackable()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean hasWalkedField(Descriptor descriptor, Set<Descriptor> walked) {
+        for (FieldDescriptor field : descriptor.getFields()) {
+            if (field.getJavaType() == FieldDescriptor.JavaType.MESSAGE && walked.contains(field.getMessageType())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static byte action(FieldDescriptor field, Set<FieldDescriptor> excludedFields, Set<Descriptor> walked) {
+        if (excludedFields.contains(field)) {
+            return EXCLUDED;
+        }
+        if (field.isMapField()) {
+            return MAP;
+        }
+        if (field.getJavaType() == FieldDescriptor.JavaType.MESSAGE) {
+            return walked.contains(field.getMessageType()) ? MESSAGE : COPY;
+        }
+        if (field.isPackable()) {
+            return REPEATED_SCALAR;
+        }
+        return field.isRepeated() || field.hasPresence() ? COPY : SCALAR;
+    }
+}
@@ -0,0 +1,292 @@
+package org.phenopackets.schema.v2.index;
+
+import org.ga4gh.vrsatile.v1.GeneDescriptor;
+import org.phenopackets.schema.v2.Cohort;
+import org.phenopackets.schema.v2.Phenopacket;
+import org.phenopackets.schema.v2.core.AcmgPathogenicityClassification;
+import org.phenopackets.schema.v2.core.GenomicInterpretation;
+import org.phenopackets.schema.v2.core.GenomicInterpretation.InterpretationStatus;
+import org.phenopackets.schema.v2.core.Interpretation;
+import org.phenopackets.schema.v2.core.VariantInterpretation;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * An index of the genes called in the genomic interpretations of the members of a cohort, answering questions such as
+ * "which members have a causative or contributory call in gene X" without going back to the members:
+ * <pre>
+ * MemberSet matches = index.members("FBN1", EnumSet.of(InterpretationStatus.CAUSATIVE, InterpretationStatus.CONTRIBUTORY));
+ * </pre>
+ * A call is the {@link GeneDescriptor} {@code gene} of a {@link GenomicInterpretation}, or the {@code gene_context} of
+ * the variation descriptor of its {@link VariantInterpretation}. Genes are identified by their {@code value_id}, or by
+ * their {@code symbol} if they have no id, and can be looked up by either, as well as by their {@code alternate_ids}
+ * and {@code alternate_symbols}. A name refers to every gene it is the id, symbol or alias of, e.g. a symbol which is
+ * the key of calls without an id and the symbol of calls with one refers to both genes. Members are numbered as in
+ * {@link TermIndex}, from 0 in the order they were added, so the {@link MemberSet}s of the indexes can be combined.
+ * <p>
+ * The calls of each gene are held in a posting list of two primitive arrays, the member numbers in ascending order
+ * and a byte per call packing the {@link InterpretationStatus}, the {@link AcmgPathogenicityClassification} of variant
+ * calls, and whether the call was of a variant. Queries test each call against bit masks of the statuses and
+ * classifications wanted.
+ * <p>
+ * Instances are immutable and thread-safe.
+ */
+public class GeneIndex {
+
+    private static final int STATUS_BITS = 3;
+    private static final int STATUS_MASK = (1 << STATUS_BITS) - 1;
+    private static final int ACMG_MASK = 7;
+    private static final int VARIANT_CALL = 1 << 6;
+    private static final int ALL = -1;
+
+    private final List<String> memberIds;
+    private final Map<String, Postings> postings;
+    private final Map<String, Set<String>> symbols;
+    private final Map<String, Set<String>> aliases;
+
+    private GeneIndex(List<String> memberIds, Map<String, Postings> postings, Map<String, Set<String>> symbols, Map<String, Set<String>> aliases) {
+        this.memberIds = memberIds;
+        this.postings = postings;
+        this.symbols = symbols;
+        this.aliases = aliases;
+    }
+
+    public static GeneIndex of(Cohort cohort) {
+        return of(cohort.getMembersList());
+    }
+
+    /**
+     * @param members the phenopackets to index, e.g. streamed from a {@code CohortReader} or
+     *                {@code PhenopacketStreamReader}
+     */
+    public static GeneIndex of(Iterable<Phenopacket> members) {
+        Builder builder = builder();
+        for (Phenopacket member : members) {
+            builder.add(member);
+        }
+        return builder.build();
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * @return the number of members in the index.
+     */
+    public int size() {
+        return memberIds.size();
+    }
+
+    /**
+     * @return the {@code value_id}s, or {@code symbol}s for genes without an id, of the genes called.
+     */
+    public Set<String> genes() {
+        return Collections.unmodifiableSet(postings.keySet());
+    }
+
+    /**
+     * @return the genes with the given id, symbol or alias, as in {@link #genes()}. The set is empty if there are none.
+     */
+    public Set<String> resolve(String name) {
+        Set<String> genes = new LinkedHashSet<>();
+        if (postings.containsKey(name)) {
+            genes.add(name);
+        }
+        genes.addAll(symbols.getOrDefault(name, Set.of()));
+        genes.addAll(aliases.getOrDefault(name, Set.of()));
+        return Collections.unmodifiableSet(genes);
+    }
+
+    /**
+     * @return the members with a call in the gene with the given id, symbol or alias.
+     */
+    public MemberSet members(String gene) {
+        return members(gene, ALL, ALL, false);
+    }
+
+    /**
+     * @return the members with a call of one of the given statuses in the gene with the given id, symbol or alias.
+     */
+    public MemberSet members(String gene, Set<InterpretationStatus> statuses) {
+        return members(gene, statusMask(statuses), ALL, false);
+    }
+
+    /**
+     * @return the members with a variant in the gene with the given id, symbol or alias, interpreted with one of the
+     * given statuses and classified as one of the given ACMG classes.
+     */
+    public MemberSet members(String gene, Set<InterpretationStatus> statuses, Set<AcmgPathogenicityClassification> classifications) {
+        int acmgMask = 0;
+        for (AcmgPathogenicityClassification classification : classifications) {
+            acmgMask |= 1 << classification.getNumber();
+        }
+        return members(gene, statusMask(statuses), acmgMask, true);
+    }
+
+    /**
+     * @return the number of calls in the gene with the given id, symbol or alias.
+     */
+    public int callCount(String gene) {
+        int count = 0;
+        for (String resolved : resolve(gene)) {
+            count += postings.get(resolved).size;
+        }
+        return count;
+    }
+
+    /**
+     * @return the {@code Phenopacket.id} of the member with the given number.
+     */
+    public String memberId(int member) {
+        return memberIds.get(member);
+    }
+
+    /**
+     * @return the {@code Phenopacket.id}s of the members, in ascending order of their number.
+     */
+    public List<String> memberIds(MemberSet members) {
+        List<String> ids = new ArrayList<>(members.cardinality());
+        members.forEach(member -> ids.add(memberIds.get(member)));
+        return ids;
+    }
+
+    private MemberSet members(String gene, int statusMask, int acmgMask, boolean variantsOnly) {
+        MemberSet members = MemberSet.empty();
+        for (String resolved : resolve(gene)) {
+            members = members.or(postings.get(resolved).members(statusMask, acmgMask, variantsOnly));
+        }
+        return members;
+    }
+
+    private static int statusMask(Set<InterpretationStatus> statuses) {
+        int mask = 0;
+        for (InterpretationStatus status : statuses) {
+            mask |= 1 << status.getNumber();
+        }
+        return mask;
+    }
+
+    private static byte pack(InterpretationStatus status, AcmgPathogenicityClassification classification, boolean variant) {
+        int statusNumber = status == InterpretationStatus.UNRECOGNIZED ? 0 : status.getNumber();
+        int acmgNumber = classification == AcmgPathogenicityClassification.UNRECOGNIZED ? 0 : classification.getNumber();
+        return (byte) (statusNumber | acmgNumber << STATUS_BITS | (variant ? VARIANT_CALL : 0));
+    }
+
+    /**
+     * The calls in a gene, by member number in ascending order as members are added in order.
+     */
+    private static class Postings {
+
+        private int[] members = new int[4];
+        private byte[] calls = new byte[4];
+        private int size;
+
+        private void add(int member, byte call) {
+            if (size == members.length) {
+                members = Arrays.copyOf(members, size * 2);
+                calls = Arrays.copyOf(calls, size * 2);
+            }
+            members[size] = member;
+            calls[size] = call;
+            size++;
+        }
+
+        private MemberSet members(int statusMask, int acmgMask, boolean variantsOnly) {
+            int[] matches = new int[size];
+            int count = 0;
+            for (int i = 0; i < size; i++) {
+                int call = calls[i];
+                if ((statusMask >>> (call & STATUS_MASK) & 1) != 0
+                        && (acmgMask >>> (call >>> STATUS_BITS & ACMG_MASK) & 1) != 0
+                        && (!variantsOnly || (call & VARIANT_CALL) != 0)) {
+                    matches[count++] = members[i];
+                }
+            }
+            return MemberSet.ofSorted(matches, count);
+        }
+
+        private Postings trimmed() {
+            Postings trimmed = new Postings();
+            trimmed.members = Arrays.copyOf(members, size);
+            trimmed.calls = Arrays.copyOf(calls, size);
+            trimmed.size = size;
+            return trimmed;
+        }
+    }
+
+    /**
+     * Collects the calls of each member in turn. Not thread-safe.
+     */
+    public static class Builder {
+
+        private final List<String> memberIds = new ArrayList<>();
+        private final Map<String, Postings> postings = new HashMap<>();
+        private final Map<String, Set<String>> symbols = new HashMap<>();
+        private final Map<String, Set<String>> aliases = new HashMap<>();
+
+        private Builder() {
+        }
+
+        public Builder add(Phenopacket member) {
+            int number = memberIds.size();
+            memberIds.add(member.getId());
+            for (Interpretation interpretation : member.getInterpretationsList()) {
+                for (GenomicInterpretation genomicInterpretation : interpretation.getDiagnosis().getGenomicInterpretationsList()) {
+                    InterpretationStatus status = genomicInterpretation.getInterpretationStatus();
+                    if (genomicInterpretation.hasGene()) {
+                        add(genomicInterpretation.getGene(), number, pack(status, AcmgPathogenicityClassification.NOT_PROVIDED, false));
+                    } else if (genomicInterpretation.getVariantInterpretation().getVariationDescriptor().hasGeneContext()) {
+                        VariantInterpretation variant = genomicInterpretation.getVariantInterpretation();
+                        add(variant.getVariationDescriptor().getGeneContext(), number, pack(status, variant.getAcmgPathogenicityClassification(), true));
+                    }
+                }
+            }
+            return this;
+        }
+
+        private void add(GeneDescriptor gene, int member, byte call) {
+            String key = gene.getValueId().isEmpty() ? gene.getSymbol() : gene.getValueId();
+            if (key.isEmpty()) {
+                return;
+            }
+            postings.computeIfAbsent(key, k -> new Postings()).add(member, call);
+            name(symbols, gene.getSymbol(), key);
+            for (String alternateId : gene.getAlternateIdsList()) {
+                name(aliases, alternateId, key);
+            }
+            for (String alternateSymbol : gene.getAlternateSymbolsList()) {
+                name(aliases, alternateSymbol, key);
+            }
+        }
+
+        private static void name(Map<String, Set<String>> names, String name, String key) {
+            if (!name.isEmpty() && !name.equals(key)) {
+                names.computeIfAbsent(name, n -> new LinkedHashSet<>()).add(key);
+            }
+        }
+
+        public GeneIndex build() {
+            Map<String, Postings> trimmed = new HashMap<>();
+            for (Map.Entry<String, Postings> gene : postings.entrySet()) {
+                trimmed.put(gene.getKey(), gene.getValue().trimmed());
+            }
+            return new GeneIndex(Collections.unmodifiableList(new ArrayList<>(memberIds)), trimmed, copy(symbols), copy(aliases));
+        }
+
+        private static Map<String, Set<String>> copy(Map<String, Set<String>> names) {
+            Map<String, Set<String>> copy = new HashMap<>();
+            for (Map.Entry<String, Set<String>> name : names.entrySet()) {
+                copy.put(name.getKey(), Collections.unmodifiableSet(new LinkedHashSet<>(name.getValue())));
+            }
+            return copy;
+        }
+    }
+}
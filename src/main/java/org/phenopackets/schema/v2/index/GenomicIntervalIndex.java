@@ -0,0 +1,641 @@
+package org.phenopackets.schema.v2.index;
+
+import org.ga4gh.vrs.v1.IndefiniteRange;
+import org.ga4gh.vrs.v1.SequenceInterval;
+import org.ga4gh.vrs.v1.SequenceLocation;
+import org.ga4gh.vrsatile.v1.VariationDescriptor;
+import org.ga4gh.vrsatile.v1.VcfRecord;
+import org.phenopackets.schema.v2.Cohort;
+import org.phenopackets.schema.v2.Phenopacket;
+import org.phenopackets.schema.v2.core.GenomicInterpretation;
+import org.phenopackets.schema.v2.core.GenomicInterpretation.InterpretationStatus;
+import org.phenopackets.schema.v2.core.Interpretation;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * An index of the genomic intervals of the variants interpreted in the members of a cohort, answering region queries
+ * such as "which members have a causative variant in chr6:31,000,000-32,000,000" without scanning the members:
+ * <pre>
+ * MemberSet matches = index.members("GRCh38", "chr6", 30_999_999, 32_000_000, InterpretationStatus.CAUSATIVE);
+ * </pre>
+ * The variants are those of the {@code variant_interpretation} of each {@link GenomicInterpretation} of the
+ * {@code interpretations} of a member. A variant is indexed
+ * <ul>
+ *     <li>by the {@code genome_assembly} and {@code chrom} of its {@link VcfRecord}, over the bases of {@code ref}, or
+ *     up to the {@code END} of the {@code info} field of structural variants. Chromosome names are compared without a
+ *     leading {@code chr}, so {@code chr6} and {@code 6} are the same.</li>
+ *     <li>by the {@code sequence_id} of the {@link SequenceLocation} of its VRS allele, over its interval. The outer
+ *     bounds of a {@link SequenceInterval} of ranges are used, and an indefinite range is taken as unbounded on its open
+ *     side.</li>
+ * </ul>
+ * Coordinates are 0-based and intervals half-open, as in VRS, so the VCF record at {@code pos} 100 with {@code ref}
+ * {@code AC} covers {@code [99, 101)}. An empty interval, i.e. an insertion between two bases, overlaps the base after
+ * it. Members are numbered as in {@link TermIndex}, from 0 in the order they were added, so the {@link MemberSet}s of
+ * the two indexes can be combined.
+ * <p>
+ * The intervals of each chromosome or sequence are held in arrays sorted by start, laid out as an implicit interval
+ * tree in which every element at an odd position is the root of the subtree of the elements around it and carries the
+ * largest end in that subtree. Queries descend only into the subtrees which may overlap the region, so a query over
+ * ten million variants takes logarithmic time plus the number of hits.
+ * <p>
+ * Instances are immutable and thread-safe.
+ */
+public class GenomicIntervalIndex {
+
+    private static final InterpretationStatus[] STATUSES = {
+            InterpretationStatus.UNKNOWN_STATUS,
+            InterpretationStatus.REJECTED,
+            InterpretationStatus.CANDIDATE,
+            InterpretationStatus.CONTRIBUTORY,
+            InterpretationStatus.CAUSATIVE};
+    // leaves of the implicit tree are scanned linearly once a subtree has no more than 2^4 elements
+    private static final int SCAN_LEVEL = 3;
+
+    private final List<String> memberIds;
+    private final Map<String, Map<String, Intervals>> vcfIntervals;
+    private final Map<String, Intervals> sequenceIntervals;
+    private final int size;
+
+    private GenomicIntervalIndex(List<String> memberIds, Map<String, Map<String, Intervals>> vcfIntervals, Map<String, Intervals> sequenceIntervals) {
+        this.memberIds = memberIds;
+        this.vcfIntervals = vcfIntervals;
+        this.sequenceIntervals = sequenceIntervals;
+        int size = 0;
+        for (Map<String, Intervals> chromosomes : vcfIntervals.values()) {
+            for (Intervals intervals : chromosomes.values()) {
+                size += intervals.size;
+            }
+        }
+        for (Intervals intervals : sequenceIntervals.values()) {
+            size += intervals.size;
+        }
+        this.size = size;
+    }
+
+    public static GenomicIntervalIndex of(Cohort cohort) {
+        return of(cohort.getMembersList());
+    }
+
+    /**
+     * @param members the phenopackets to index, e.g. streamed from a {@code CohortReader} or
+     *                {@code PhenopacketStreamReader}
+     */
+    public static GenomicIntervalIndex of(Iterable<Phenopacket> members) {
+        Builder builder = builder();
+        for (Phenopacket member : members) {
+            builder.add(member);
+        }
+        return builder.build();
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * @return the number of members in the index, including those without variants.
+     */
+    public int memberCount() {
+        return memberIds.size();
+    }
+
+    /**
+     * @return the number of intervals in the index.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return the assemblies of the indexed VCF records.
+     */
+    public List<String> assemblies() {
+        List<String> assemblies = new ArrayList<>(vcfIntervals.keySet());
+        Collections.sort(assemblies);
+        return assemblies;
+    }
+
+    /**
+     * @return the VCF records of the given assembly overlapping the region {@code [start, end)}, in order of start.
+     */
+    public List<Hit> hits(String assembly, String chrom, long start, long end) {
+        List<Hit> hits = new ArrayList<>();
+        collect(vcfIntervals(assembly, chrom), start, end, hits);
+        return hits;
+    }
+
+    /**
+     * @return the VRS sequence locations on the given sequence overlapping the region {@code [start, end)}, in order of
+     * start.
+     */
+    public List<Hit> sequenceHits(String sequenceId, long start, long end) {
+        List<Hit> hits = new ArrayList<>();
+        collect(sequenceIntervals.get(sequenceId), start, end, hits);
+        return hits;
+    }
+
+    /**
+     * @return the members with a VCF record of the given assembly overlapping the region {@code [start, end)}.
+     */
+    public MemberSet members(String assembly, String chrom, long start, long end) {
+        return members(vcfIntervals(assembly, chrom), start, end, null);
+    }
+
+    /**
+     * @return the members with a VCF record of the given assembly overlapping the region {@code [start, end)} and
+     * interpreted with the given status.
+     */
+    public MemberSet members(String assembly, String chrom, long start, long end, InterpretationStatus status) {
+        return members(vcfIntervals(assembly, chrom), start, end, status);
+    }
+
+    /**
+     * @return the members with a VRS sequence location on the given sequence overlapping the region
+     * {@code [start, end)}.
+     */
+    public MemberSet sequenceMembers(String sequenceId, long start, long end) {
+        return members(sequenceIntervals.get(sequenceId), start, end, null);
+    }
+
+    /**
+     * @return the members with a VRS sequence location on the given sequence overlapping the region
+     * {@code [start, end)} and interpreted with the given status.
+     */
+    public MemberSet sequenceMembers(String sequenceId, long start, long end, InterpretationStatus status) {
+        return members(sequenceIntervals.get(sequenceId), start, end, status);
+    }
+
+    /**
+     * @return the {@code Phenopacket.id} of the member with the given number.
+     */
+    public String memberId(int member) {
+        return memberIds.get(member);
+    }
+
+    /**
+     * @return the {@code Phenopacket.id}s of the members, in ascending order of their number.
+     */
+    public List<String> memberIds(MemberSet members) {
+        List<String> ids = new ArrayList<>(members.cardinality());
+        members.forEach(member -> ids.add(memberIds.get(member)));
+        return ids;
+    }
+
+    private Intervals vcfIntervals(String assembly, String chrom) {
+        Map<String, Intervals> chromosomes = vcfIntervals.get(assembly);
+        return chromosomes == null ? null : chromosomes.get(chromosome(chrom));
+    }
+
+    private MemberSet members(Intervals intervals, long start, long end, InterpretationStatus status) {
+        if (intervals == null) {
+            return MemberSet.empty();
+        }
+        MemberList members = new MemberList();
+        overlapping(intervals, start, end, i -> {
+            if (status == null || intervals.statuses[i] == status.getNumber()) {
+                members.add(intervals.members[i]);
+            }
+        });
+        return MemberSet.of(Arrays.copyOf(members.members, members.size));
+    }
+
+    private void collect(Intervals intervals, long start, long end, List<Hit> hits) {
+        if (intervals != null) {
+            overlapping(intervals, start, end, i -> hits.add(intervals.hit(i, memberIds)));
+        }
+    }
+
+    private interface HitConsumer {
+
+        void accept(int i);
+    }
+
+    /**
+     * Calls the consumer with the position of each interval overlapping {@code [start, end)}, in order of start.
+     */
+    private static void overlapping(Intervals intervals, long start, long end, HitConsumer consumer) {
+        if (intervals == null || start >= end) {
+            return;
+        }
+        int n = intervals.size;
+        long[] starts = intervals.starts;
+        long[] ends = intervals.ends;
+        long[] maxEnds = intervals.maxEnds;
+        // each frame of the stack is the level of a node, its position, and whether its left subtree was visited
+        long[] stack = new long[64 * 3];
+        int top = 0;
+        stack[top++] = intervals.levels;
+        stack[top++] = (1L << intervals.levels) - 1;
+        stack[top++] = 0;
+        while (top > 0) {
+            boolean leftDone = stack[--top] != 0;
+            long node = stack[--top];
+            int level = (int) stack[--top];
+            if (level <= SCAN_LEVEL) {
+                long from = node >> level << level;
+                long to = Math.min(from + (1L << (level + 1)) - 1, n);
+                for (int i = (int) from; i < to && starts[i] < end; i++) {
+                    if (start < overlapEnd(starts[i], ends[i])) {
+                        consumer.accept(i);
+                    }
+                }
+            } else if (!leftDone) {
+                long left = node - (1L << (level - 1));
+                stack[top++] = level;
+                stack[top++] = node;
+                stack[top++] = 1;
+                if (left >= n || maxEnds[(int) left] > start) {
+                    stack[top++] = level - 1;
+                    stack[top++] = left;
+                    stack[top++] = 0;
+                }
+            } else if (node < n && starts[(int) node] < end) {
+                if (start < overlapEnd(starts[(int) node], ends[(int) node])) {
+                    consumer.accept((int) node);
+                }
+                stack[top++] = level - 1;
+                stack[top++] = node + (1L << (level - 1));
+                stack[top++] = 0;
+            }
+        }
+    }
+
+    /**
+     * @return the end of the interval for overlap tests, one past the start for empty intervals
+     */
+    private static long overlapEnd(long start, long end) {
+        return Math.max(end, start + 1);
+    }
+
+    private static String chromosome(String chrom) {
+        return chrom.regionMatches(true, 0, "chr", 0, 3) ? chrom.substring(3) : chrom;
+    }
+
+    /**
+     * A variant overlapping the region of a query.
+     */
+    public static final class Hit {
+
+        private final int member;
+        private final String memberId;
+        private final InterpretationStatus status;
+        private final long start;
+        private final long end;
+
+        private Hit(int member, String memberId, InterpretationStatus status, long start, long end) {
+            this.member = member;
+            this.memberId = memberId;
+            this.status = status;
+            this.start = start;
+            this.end = end;
+        }
+
+        /**
+         * @return the number of the member with the variant
+         */
+        public int member() {
+            return member;
+        }
+
+        /**
+         * @return the {@code Phenopacket.id} of the member with the variant
+         */
+        public String memberId() {
+            return memberId;
+        }
+
+        /**
+         * @return the {@code interpretation_status} of the genomic interpretation of the variant
+         */
+        public InterpretationStatus status() {
+            return status;
+        }
+
+        /**
+         * @return the 0-based start of the variant
+         */
+        public long start() {
+            return start;
+        }
+
+        /**
+         * @return the 0-based, exclusive end of the variant
+         */
+        public long end() {
+            return end;
+        }
+
+        @Override
+        public String toString() {
+            return "Hit{" +
+                    "memberId='" + memberId + '\'' +
+                    ", status=" + status +
+                    ", start=" + start +
+                    ", end=" + end +
+                    '}';
+        }
+    }
+
+    /**
+     * The intervals of one chromosome or sequence, sorted by start, with the largest end of the subtree of each
+     * element of the implicit tree.
+     */
+    private static class Intervals {
+
+        private long[] starts = new long[16];
+        private long[] ends = new long[16];
+        private int[] members = new int[16];
+        private byte[] statuses = new byte[16];
+        private long[] maxEnds;
+        private int size;
+        private int levels;
+
+        private void add(long start, long end, int member, InterpretationStatus status) {
+            if (size == starts.length) {
+                starts = Arrays.copyOf(starts, size * 2);
+                ends = Arrays.copyOf(ends, size * 2);
+                members = Arrays.copyOf(members, size * 2);
+                statuses = Arrays.copyOf(statuses, size * 2);
+            }
+            starts[size] = start;
+            ends[size] = end;
+            members[size] = member;
+            statuses[size] = (byte) status.getNumber();
+            size++;
+        }
+
+        private Hit hit(int i, List<String> memberIds) {
+            return new Hit(members[i], memberIds.get(members[i]), STATUSES[statuses[i]], starts[i], ends[i]);
+        }
+
+        /**
+         * Sorts the intervals by start, and computes the largest ends of the implicit tree bottom-up.
+         */
+        private void index() {
+            starts = Arrays.copyOf(starts, size);
+            ends = Arrays.copyOf(ends, size);
+            members = Arrays.copyOf(members, size);
+            statuses = Arrays.copyOf(statuses, size);
+            if (!isSorted()) {
+                sort(0, size - 1);
+            }
+            maxEnds = new long[size];
+            if (size == 0) {
+                return;
+            }
+            // the leaves are at the even positions
+            long last = 0;
+            int lastNode = 0;
+            for (int i = 0; i < size; i += 2) {
+                maxEnds[i] = overlapEnd(starts[i], ends[i]);
+                last = maxEnds[i];
+                lastNode = i;
+            }
+            int level = 1;
+            for (; 1L << level <= size; level++) {
+                int half = 1 << (level - 1);
+                for (long i = (1L << level) - 1; i < size; i += 1L << (level + 1)) {
+                    int node = (int) i;
+                    long left = maxEnds[node - half];
+                    // the right subtree may be cut off by the end of the array, in which case its largest end is that
+                    // of the last complete subtree on its left edge
+                    long right = node + half < size ? maxEnds[node + half] : last;
+                    maxEnds[node] = Math.max(overlapEnd(starts[node], ends[node]), Math.max(left, right));
+                }
+                // the root of the last subtree at this level, which covers the end of the array
+                lastNode = (lastNode >> level & 1) != 0 ? lastNode - half : lastNode + half;
+                if (lastNode < size && maxEnds[lastNode] > last) {
+                    last = maxEnds[lastNode];
+                }
+            }
+            levels = level - 1;
+        }
+
+        private boolean isSorted() {
+            for (int i = 1; i < size; i++) {
+                if (starts[i - 1] > starts[i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        /**
+         * Sorts the elements from {@code from} to {@code to}, inclusive, by start, moving the other arrays along.
+         */
+        private void sort(int from, int to) {
+            while (to - from > 16) {
+                int middle = (from + to) >>> 1;
+                // the median of the first, middle and last starts as the pivot
+                if (starts[middle] < starts[from]) {
+                    swap(middle, from);
+                }
+                if (starts[to] < starts[from]) {
+                    swap(to, from);
+                }
+                if (starts[to] < starts[middle]) {
+                    swap(to, middle);
+                }
+                long pivot = starts[middle];
+                int i = from;
+                int j = to;
+                while (i <= j) {
+                    while (starts[i] < pivot) {
+                        i++;
+                    }
+                    while (starts[j] > pivot) {
+                        j--;
+                    }
+                    if (i <= j) {
+                        swap(i++, j--);
+                    }
+                }
+                // recurse into the smaller part, so the stack depth stays logarithmic
+                if (j - from < to - i) {
+                    sort(from, j);
+                    from = i;
+                } else {
+                    sort(i, to);
+                    to = j;
+                }
+            }
+            for (int i = from + 1; i <= to; i++) {
+                for (int j = i; j > from && starts[j - 1] > starts[j]; j--) {
+                    swap(j, j - 1);
+                }
+            }
+        }
+
+        private void swap(int i, int j) {
+            long start = starts[i];
+            starts[i] = starts[j];
+            starts[j] = start;
+            long end = ends[i];
+            ends[i] = ends[j];
+            ends[j] = end;
+            int member = members[i];
+            members[i] = members[j];
+            members[j] = member;
+            byte status = statuses[i];
+            statuses[i] = statuses[j];
+            statuses[j] = status;
+        }
+    }
+
+    private static class MemberList {
+
+        private int[] members = new int[16];
+        private int size;
+
+        private void add(int member) {
+            if (size == members.length) {
+                members = Arrays.copyOf(members, size * 2);
+            }
+            members[size++] = member;
+        }
+    }
+
+    /**
+     * Collects the intervals of each member in turn. Not thread-safe.
+     */
+    public static class Builder {
+
+        private final List<String> memberIds = new ArrayList<>();
+        private final Map<String, Map<String, Intervals>> vcfIntervals = new HashMap<>();
+        private final Map<String, Intervals> sequenceIntervals = new HashMap<>();
+
+        private Builder() {
+        }
+
+        public Builder add(Phenopacket member) {
+            int number = memberIds.size();
+            memberIds.add(member.getId());
+            for (Interpretation interpretation : member.getInterpretationsList()) {
+                for (GenomicInterpretation genomicInterpretation : interpretation.getDiagnosis().getGenomicInterpretationsList()) {
+                    if (genomicInterpretation.hasVariantInterpretation()) {
+                        add(genomicInterpretation.getVariantInterpretation().getVariationDescriptor(), number, status(genomicInterpretation));
+                    }
+                }
+            }
+            return this;
+        }
+
+        private void add(VariationDescriptor variant, int member, InterpretationStatus status) {
+            if (variant.hasVcfRecord()) {
+                VcfRecord vcf = variant.getVcfRecord();
+                if (!vcf.getChrom().isEmpty() && vcf.getPos() > 0) {
+                    long start = vcf.getPos() - 1;
+                    vcfIntervals.computeIfAbsent(vcf.getGenomeAssembly(), assembly -> new HashMap<>())
+                            .computeIfAbsent(chromosome(vcf.getChrom()), chrom -> new Intervals())
+                            .add(start, vcfEnd(vcf, start), member, status);
+                }
+            }
+            if (variant.getVariation().getAllele().hasSequenceLocation()) {
+                SequenceLocation location = variant.getVariation().getAllele().getSequenceLocation();
+                long start;
+                long end;
+                if (location.hasSimpleInterval()) {
+                    start = location.getSimpleInterval().getStart();
+                    end = location.getSimpleInterval().getEnd();
+                } else if (location.hasSequenceInterval()) {
+                    SequenceInterval interval = location.getSequenceInterval();
+                    start = intervalStart(interval);
+                    end = intervalEnd(interval);
+                } else {
+                    return;
+                }
+                // unsigned values past the range of a long are negative here, and such locations are left out
+                if (!location.getSequenceId().isEmpty() && start >= 0 && end >= start) {
+                    sequenceIntervals.computeIfAbsent(location.getSequenceId(), id -> new Intervals())
+                            .add(start, end, member, status);
+                }
+            }
+        }
+
+        private static InterpretationStatus status(GenomicInterpretation genomicInterpretation) {
+            int number = genomicInterpretation.getInterpretationStatusValue();
+            return number >= 0 && number < STATUSES.length ? STATUSES[number] : InterpretationStatus.UNKNOWN_STATUS;
+        }
+
+        /**
+         * @return the end of the bases of the reference allele, or the {@code END} in the info field
+         */
+        private static long vcfEnd(VcfRecord vcf, long start) {
+            long end = start + Math.max(1, vcf.getRef().length());
+            for (String field : vcf.getInfo().split(";")) {
+                if (field.startsWith("END=")) {
+                    try {
+                        end = Math.max(end, Long.parseLong(field.substring(4)));
+                    } catch (NumberFormatException e) {
+                        // a malformed END leaves the reference allele
+                    }
+                }
+            }
+            return end;
+        }
+
+        private static long intervalStart(SequenceInterval interval) {
+            switch (interval.getStartCase()) {
+                case START_NUMBER:
+                    return interval.getStartNumber().getValue();
+                case START_DEFINITE_RANGE:
+                    return interval.getStartDefiniteRange().getMin();
+                case START_INDEFINITE_RANGE:
+                    IndefiniteRange range = interval.getStartIndefiniteRange();
+                    return range.getComparator().equals("<=") ? 0 : range.getValue();
+                default:
+                    return 0;
+            }
+        }
+
+        private static long intervalEnd(SequenceInterval interval) {
+            switch (interval.getEndCase()) {
+                case END_NUMBER:
+                    return interval.getEndNumber().getValue();
+                case END_DEFINITE_RANGE:
+                    return interval.getEndDefiniteRange().getMax();
+                case END_INDEFINITE_RANGE:
+                    IndefiniteRange range = interval.getEndIndefiniteRange();
+                    return range.getComparator().equals(">=") ? Long.MAX_VALUE : range.getValue();
+                default:
+                    return Long.MAX_VALUE;
+            }
+        }
+
+        public GenomicIntervalIndex build() {
+            Map<String, Map<String, Intervals>> vcf = new HashMap<>();
+            for (Map.Entry<String, Map<String, Intervals>> assembly : vcfIntervals.entrySet()) {
+                Map<String, Intervals> chromosomes = new HashMap<>();
+                for (Map.Entry<String, Intervals> chromosome : assembly.getValue().entrySet()) {
+                    chromosomes.put(chromosome.getKey(), indexed(chromosome.getValue()));
+                }
+                vcf.put(assembly.getKey(), chromosomes);
+            }
+            Map<String, Intervals> sequences = new HashMap<>();
+            for (Map.Entry<String, Intervals> sequence : sequenceIntervals.entrySet()) {
+                sequences.put(sequence.getKey(), indexed(sequence.getValue()));
+            }
+            return new GenomicIntervalIndex(Collections.unmodifiableList(new ArrayList<>(memberIds)), vcf, sequences);
+        }
+
+        /**
+         * @return an indexed copy of the intervals, leaving the builder free to add more
+         */
+        private static Intervals indexed(Intervals intervals) {
+            Intervals copy = new Intervals();
+            copy.starts = intervals.starts;
+            copy.ends = intervals.ends;
+            copy.members = intervals.members;
+            copy.statuses = intervals.statuses;
+            copy.size = intervals.size;
+            copy.index();
+            return copy;
+        }
+    }
+}
@@ -0,0 +1,396 @@
+package org.phenopackets.schema.v2.index;
+
+import java.util.Arrays;
+import java.util.function.IntConsumer;
+
+/**
+ * An immutable, compressed set of member numbers, laid out like a roaring bitmap. The numbers are split by their high
+ * 16 bits into chunks of up to 65536 and each chunk is held either as a sorted array of the low 16 bits or, once it
+ * holds more than 4096 numbers, as a 65536 bit bitmap. Sparse sets stay small, whilst dense sets are combined a word
+ * at a time.
+ */
+public final class MemberSet {
+
+    private static final int ARRAY_MAX = 4096;
+    private static final int BITMAP_WORDS = 1 << 16 >>> 6;
+    private static final MemberSet EMPTY = new MemberSet(new char[0], new Container[0]);
+
+    // the high 16 bits of the numbers in each container, in ascending order
+    private final char[] keys;
+    private final Container[] containers;
+
+    private MemberSet(char[] keys, Container[] containers) {
+        this.keys = keys;
+        this.containers = containers;
+    }
+
+    public static MemberSet empty() {
+        return EMPTY;
+    }
+
+    /**
+     * @return the set of the given non-negative numbers, which may be in any order and contain duplicates.
+     */
+    public static MemberSet of(int... members) {
+        int[] sorted = members.clone();
+        Arrays.sort(sorted);
+        return ofSorted(sorted, sorted.length);
+    }
+
+    /**
+     * @return the set of all numbers from {@code from}, inclusive, to {@code to}, exclusive.
+     */
+    public static MemberSet range(int from, int to) {
+        int[] members = new int[Math.max(0, to - from)];
+        for (int i = 0; i < members.length; i++) {
+            members[i] = from + i;
+        }
+        return ofSorted(members, members.length);
+    }
+
+    /**
+     * @param members non-negative numbers in ascending order, possibly with duplicates
+     * @param size    the number of entries of the array to use
+     */
+    static MemberSet ofSorted(int[] members, int size) {
+        if (size > 0 && members[0] < 0) {
+            throw new IllegalArgumentException("Member numbers must not be negative, got " + members[0]);
+        }
+        char[] keys = new char[16];
+        Container[] containers = new Container[16];
+        int count = 0;
+        int start = 0;
+        while (start < size) {
+            char key = (char) (members[start] >>> 16);
+            char[] low = new char[Math.min(size - start, 1 << 16)];
+            int lowSize = 0;
+            int i = start;
+            for (; i < size && members[i] >>> 16 == key; i++) {
+                char value = (char) members[i];
+                if (lowSize == 0 || low[lowSize - 1] != value) {
+                    low[lowSize++] = value;
+                }
+            }
+            if (count == keys.length) {
+                keys = Arrays.copyOf(keys, count * 2);
+                containers = Arrays.copyOf(containers, count * 2);
+            }
+            keys[count] = key;
+            containers[count] = Container.fromArray(low, lowSize);
+            count++;
+            start = i;
+        }
+        return new MemberSet(Arrays.copyOf(keys, count), Arrays.copyOf(containers, count));
+    }
+
+    public boolean contains(int member) {
+        if (member < 0) {
+            return false;
+        }
+        int index = Arrays.binarySearch(keys, (char) (member >>> 16));
+        return index >= 0 && containers[index].contains((char) member);
+    }
+
+    public int cardinality() {
+        int cardinality = 0;
+        for (Container container : containers) {
+            cardinality += container.cardinality;
+        }
+        return cardinality;
+    }
+
+    public boolean isEmpty() {
+        return containers.length == 0;
+    }
+
+    /**
+     * @return the members of both sets.
+     */
+    public MemberSet and(MemberSet other) {
+        char[] resultKeys = new char[Math.min(keys.length, other.keys.length)];
+        Container[] result = new Container[resultKeys.length];
+        int count = 0;
+        int i = 0;
+        int j = 0;
+        while (i < keys.length && j < other.keys.length) {
+            if (keys[i] < other.keys[j]) {
+                i++;
+            } else if (keys[i] > other.keys[j]) {
+                j++;
+            } else {
+                Container container = containers[i].and(other.containers[j]);
+                if (container != null) {
+                    resultKeys[count] = keys[i];
+                    result[count++] = container;
+                }
+                i++;
+                j++;
+            }
+        }
+        return new MemberSet(Arrays.copyOf(resultKeys, count), Arrays.copyOf(result, count));
+    }
+
+    /**
+     * @return the members of either set.
+     */
+    public MemberSet or(MemberSet other) {
+        char[] resultKeys = new char[keys.length + other.keys.length];
+        Container[] result = new Container[resultKeys.length];
+        int count = 0;
+        int i = 0;
+        int j = 0;
+        while (i < keys.length || j < other.keys.length) {
+            if (j == other.keys.length || (i < keys.length && keys[i] < other.keys[j])) {
+                resultKeys[count] = keys[i];
+                result[count++] = containers[i++];
+            } else if (i == keys.length || keys[i] > other.keys[j]) {
+                resultKeys[count] = other.keys[j];
+                result[count++] = other.containers[j++];
+            } else {
+                resultKeys[count] = keys[i];
+                result[count++] = containers[i++].or(other.containers[j++]);
+            }
+        }
+        return new MemberSet(Arrays.copyOf(resultKeys, count), Arrays.copyOf(result, count));
+    }
+
+    /**
+     * @return the members of this set which are not in the other set.
+     */
+    public MemberSet andNot(MemberSet other) {
+        char[] resultKeys = new char[keys.length];
+        Container[] result = new Container[keys.length];
+        int count = 0;
+        int j = 0;
+        for (int i = 0; i < keys.length; i++) {
+            while (j < other.keys.length && other.keys[j] < keys[i]) {
+                j++;
+            }
+            Container container = j < other.keys.length && other.keys[j] == keys[i] ? containers[i].andNot(other.containers[j]) : containers[i];
+            if (container != null) {
+                resultKeys[count] = keys[i];
+                result[count++] = container;
+            }
+        }
+        return new MemberSet(Arrays.copyOf(resultKeys, count), Arrays.copyOf(result, count));
+    }
+
+    /**
+     * Calls the consumer with each member, in ascending order.
+     */
+    public void forEach(IntConsumer consumer) {
+        for (int i = 0; i < keys.length; i++) {
+            containers[i].forEach(keys[i] << 16, consumer);
+        }
+    }
+
+    /**
+     * @return the members in ascending order.
+     */
+    public int[] toArray() {
+        int[] members = new int[cardinality()];
+        int[] index = {0};
+        forEach(member -> members[index[0]++] = member);
+        return members;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof MemberSet)) return false;
+        return Arrays.equals(toArray(), ((MemberSet) o).toArray());
+    }
+
+    @Override
+    public int hashCode() {
+        return Arrays.hashCode(toArray());
+    }
+
+    @Override
+    public String toString() {
+        return "MemberSet" + Arrays.toString(toArray());
+    }
+
+    /**
+     * The low 16 bits of the members sharing the same high 16 bits, as either a sorted array or a bitmap. Operations
+     * return {@code null} rather than an empty container.
+     */
+    private static final class Container {
+
+        private final char[] array;
+        private final long[] bitmap;
+        private final int cardinality;
+
+        private Container(char[] array, long[] bitmap, int cardinality) {
+            this.array = array;
+            this.bitmap = bitmap;
+            this.cardinality = cardinality;
+        }
+
+        private static Container fromArray(char[] values, int size) {
+            if (size == 0) {
+                return null;
+            }
+            if (size <= ARRAY_MAX) {
+                return new Container(Arrays.copyOf(values, size), null, size);
+            }
+            long[] bitmap = new long[BITMAP_WORDS];
+            for (int i = 0; i < size; i++) {
+                bitmap[values[i] >>> 6] |= 1L << values[i];
+            }
+            return new Container(null, bitmap, size);
+        }
+
+        private static Container fromBitmap(long[] bitmap) {
+            int cardinality = 0;
+            for (long word : bitmap) {
+                cardinality += Long.bitCount(word);
+            }
+            if (cardinality == 0) {
+                return null;
+            }
+            if (cardinality > ARRAY_MAX) {
+                return new Container(null, bitmap, cardinality);
+            }
+            char[] array = new char[cardinality];
+            int size = 0;
+            for (int word = 0; word < bitmap.length; word++) {
+                long bits = bitmap[word];
+                while (bits != 0) {
+                    array[size++] = (char) (word << 6 | Long.numberOfTrailingZeros(bits));
+                    bits &= bits - 1;
+                }
+            }
+            return new Container(array, null, cardinality);
+        }
+
+        private boolean contains(char value) {
+            if (bitmap != null) {
+                return (bitmap[value >>> 6] & (1L << value)) != 0;
+            }
+            return Arrays.binarySearch(array, value) >= 0;
+        }
+
+        private long[] toBitmap() {
+            if (bitmap != null) {
+                return bitmap.clone();
+            }
+            long[] bits = new long[BITMAP_WORDS];
+            for (char value : array) {
+                bits[value >>> 6] |= 1L << value;
+            }
+            return bits;
+        }
+
+        private Container and(Container other) {
+            if (bitmap != null && other.bitmap != null) {
+                long[] bits = new long[BITMAP_WORDS];
+                for (int i = 0; i < BITMAP_WORDS; i++) {
+                    bits[i] = bitmap[i] & other.bitmap[i];
+                }
+                return fromBitmap(bits);
+            }
+            if (array != null && other.array != null) {
+                char[] values = new char[Math.min(cardinality, other.cardinality)];
+                int size = 0;
+                int i = 0;
+                int j = 0;
+                while (i < array.length && j < other.array.length) {
+                    if (array[i] < other.array[j]) {
+                        i++;
+                    } else if (array[i] > other.array[j]) {
+                        j++;
+                    } else {
+                        values[size++] = array[i];
+                        i++;
+                        j++;
+                    }
+                }
+                return fromArray(values, size);
+            }
+            Container sparse = array != null ? this : other;
+            Container dense = array != null ? other : this;
+            return sparse.filter(dense, true);
+        }
+
+        private Container or(Container other) {
+            if (array != null && other.array != null && cardinality + other.cardinality <= ARRAY_MAX) {
+                char[] values = new char[cardinality + other.cardinality];
+                int size = 0;
+                int i = 0;
+                int j = 0;
+                while (i < array.length || j < other.array.length) {
+                    char value;
+                    if (j == other.array.length || (i < array.length && array[i] < other.array[j])) {
+                        value = array[i++];
+                    } else if (i == array.length || array[i] > other.array[j]) {
+                        value = other.array[j++];
+                    } else {
+                        value = array[i++];
+                        j++;
+                    }
+                    values[size++] = value;
+                }
+                return fromArray(values, size);
+            }
+            long[] bits = toBitmap();
+            if (other.bitmap != null) {
+                for (int i = 0; i < BITMAP_WORDS; i++) {
+                    bits[i] |= other.bitmap[i];
+                }
+            } else {
+                for (char value : other.array) {
+                    bits[value >>> 6] |= 1L << value;
+                }
+            }
+            return fromBitmap(bits);
+        }
+
+        private Container andNot(Container other) {
+            if (array != null) {
+                return filter(other, false);
+            }
+            long[] bits = bitmap.clone();
+            if (other.bitmap != null) {
+                for (int i = 0; i < BITMAP_WORDS; i++) {
+                    bits[i] &= ~other.bitmap[i];
+                }
+            } else {
+                for (char value : other.array) {
+                    bits[value >>> 6] &= ~(1L << value);
+                }
+            }
+            return fromBitmap(bits);
+        }
+
+        /**
+         * @return the values of this array container which are, or are not, in the other container.
+         */
+        private Container filter(Container other, boolean keepContained) {
+            char[] values = new char[array.length];
+            int size = 0;
+            for (char value : array) {
+                if (other.contains(value) == keepContained) {
+                    values[size++] = value;
+                }
+            }
+            return fromArray(values, size);
+        }
+
+        private void forEach(int high, IntConsumer consumer) {
+            if (array != null) {
+                for (char value : array) {
+                    consumer.accept(high | value);
+                }
+            } else {
+                for (int word = 0; word < BITMAP_WORDS; word++) {
+                    long bits = bitmap[word];
+                    while (bits != 0) {
+                        consumer.accept(high | word << 6 | Long.numberOfTrailingZeros(bits));
+                        bits &= bits - 1;
+                    }
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,212 @@
+package org.phenopackets.schema.v2.index;
+
+import org.phenopackets.schema.v2.Cohort;
+import org.phenopackets.schema.v2.Phenopacket;
+import org.phenopackets.schema.v2.core.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * An inverted index from the {@link OntologyClass} ids used in the members of a cohort to the members that use them,
+ * answering questions such as "which members have phenotypic feature X, not excluded, and disease Y" by combining
+ * {@link MemberSet}s rather than scanning the members:
+ * <pre>
+ * MemberSet matches = index.members(TermField.PHENOTYPIC_FEATURE, "HP:0001250")
+ *         .and(index.members(TermField.DISEASE, "OMIM:607208"));
+ * List&lt;String&gt; ids = index.memberIds(matches);
+ * </pre>
+ * Members are numbered from 0 in the order they were added to the index, and the number of each member is its
+ * position in the cohort or stream it was built from.
+ * <p>
+ * Instances are immutable and thread-safe.
+ */
+public class TermIndex {
+
+    /**
+     * The fields of a phenopacket that are indexed.
+     */
+    public enum TermField {
+        /**
+         * {@code PhenotypicFeature.type} of the features which are not excluded.
+         */
+        PHENOTYPIC_FEATURE,
+        /**
+         * {@code PhenotypicFeature.type} of the excluded features.
+         */
+        EXCLUDED_PHENOTYPIC_FEATURE,
+        /**
+         * {@code Disease.term} of the diseases which are not excluded.
+         */
+        DISEASE,
+        /**
+         * {@code Disease.term} of the excluded diseases.
+         */
+        EXCLUDED_DISEASE,
+        /**
+         * {@code Biosample.histological_diagnosis}
+         */
+        HISTOLOGICAL_DIAGNOSIS,
+        /**
+         * {@code Interpretation.diagnosis.disease}
+         */
+        DIAGNOSIS
+    }
+
+    private final List<String> memberIds;
+    private final Map<TermField, Map<String, MemberSet>> postings;
+    private final MemberSet all;
+
+    private TermIndex(List<String> memberIds, Map<TermField, Map<String, MemberSet>> postings) {
+        this.memberIds = memberIds;
+        this.postings = postings;
+        this.all = MemberSet.range(0, memberIds.size());
+    }
+
+    public static TermIndex of(Cohort cohort) {
+        return of(cohort.getMembersList());
+    }
+
+    /**
+     * @param members the phenopackets to index, e.g. streamed from a {@code CohortReader} or
+     *                {@code PhenopacketStreamReader}
+     */
+    public static TermIndex of(Iterable<Phenopacket> members) {
+        Builder builder = builder();
+        for (Phenopacket member : members) {
+            builder.add(member);
+        }
+        return builder.build();
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * @return the number of members in the index.
+     */
+    public int size() {
+        return memberIds.size();
+    }
+
+    /**
+     * @return the members which use the term in the given field. The set is empty if no member does.
+     */
+    public MemberSet members(TermField field, String termId) {
+        return postings.get(field).getOrDefault(termId, MemberSet.empty());
+    }
+
+    /**
+     * @return every member in the index.
+     */
+    public MemberSet all() {
+        return all;
+    }
+
+    /**
+     * @return the members not in the given set.
+     */
+    public MemberSet not(MemberSet members) {
+        return all.andNot(members);
+    }
+
+    /**
+     * @return the ids of the terms used in the given field.
+     */
+    public Set<String> terms(TermField field) {
+        return Collections.unmodifiableSet(postings.get(field).keySet());
+    }
+
+    /**
+     * @return the {@code Phenopacket.id} of the member with the given number.
+     */
+    public String memberId(int member) {
+        return memberIds.get(member);
+    }
+
+    /**
+     * @return the {@code Phenopacket.id}s of the members, in ascending order of their number.
+     */
+    public List<String> memberIds(MemberSet members) {
+        List<String> ids = new ArrayList<>(members.cardinality());
+        members.forEach(member -> ids.add(memberIds.get(member)));
+        return ids;
+    }
+
+    /**
+     * Collects the postings of each member in turn. Not thread-safe.
+     */
+    public static class Builder {
+
+        private final List<String> memberIds = new ArrayList<>();
+        private final Map<TermField, Map<String, Postings>> postings = new EnumMap<>(TermField.class);
+
+        private Builder() {
+            for (TermField field : TermField.values()) {
+                postings.put(field, new HashMap<>());
+            }
+        }
+
+        public Builder add(Phenopacket member) {
+            int number = memberIds.size();
+            memberIds.add(member.getId());
+            for (PhenotypicFeature feature : member.getPhenotypicFeaturesList()) {
+                add(feature.getExcluded() ? TermField.EXCLUDED_PHENOTYPIC_FEATURE : TermField.PHENOTYPIC_FEATURE, feature.getType(), number);
+            }
+            for (Disease disease : member.getDiseasesList()) {
+                add(disease.getExcluded() ? TermField.EXCLUDED_DISEASE : TermField.DISEASE, disease.getTerm(), number);
+            }
+            for (Biosample biosample : member.getBiosamplesList()) {
+                add(TermField.HISTOLOGICAL_DIAGNOSIS, biosample.getHistologicalDiagnosis(), number);
+            }
+            for (Interpretation interpretation : member.getInterpretationsList()) {
+                add(TermField.DIAGNOSIS, interpretation.getDiagnosis().getDisease(), number);
+            }
+            return this;
+        }
+
+        private void add(TermField field, OntologyClass term, int member) {
+            if (!term.getId().isEmpty()) {
+                postings.get(field).computeIfAbsent(term.getId(), id -> new Postings()).add(member);
+            }
+        }
+
+        public TermIndex build() {
+            Map<TermField, Map<String, MemberSet>> memberSets = new EnumMap<>(TermField.class);
+            for (Map.Entry<TermField, Map<String, Postings>> field : postings.entrySet()) {
+                Map<String, MemberSet> terms = new HashMap<>();
+                for (Map.Entry<String, Postings> term : field.getValue().entrySet()) {
+                    terms.put(term.getKey(), MemberSet.ofSorted(term.getValue().members, term.getValue().size));
+                }
+                memberSets.put(field.getKey(), terms);
+            }
+            return new TermIndex(Collections.unmodifiableList(new ArrayList<>(memberIds)), memberSets);
+        }
+    }
+
+    /**
+     * The numbers of the members using a term, in ascending order as members are added in order.
+     */
+    private static class Postings {
+
+        private int[] members = new int[4];
+        private int size;
+
+        private void add(int member) {
+            if (size > 0 && members[size - 1] == member) {
+                return;
+            }
+            if (size == members.length) {
+                members = Arrays.copyOf(members, size * 2);
+            }
+            members[size++] = member;
+        }
+    }
+}
@@ -0,0 +1,119 @@
+package org.phenopackets.schema.v2.internal;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+
+/**
+ * Runs batches on the threads of a {@link ForkJoinPool} and hands their results to a consumer on the calling thread,
+ * in the order the batches were submitted. Whenever more than two batches per thread are in flight the oldest is
+ * waited for, so memory use depends on the size of the batches rather than their number.
+ * <p>
+ * A pipeline is used from a single thread, which submits the batches, then calls {@link #finish()}, and calls
+ * {@link #cancel()} in a {@code finally} block so that no batch is left running if it fails:
+ * <pre>
+ * BatchPipeline&lt;Result&gt; pipeline = new BatchPipeline&lt;&gt;(forkJoinPool, "validating", results::add);
+ * try {
+ *     ...
+ *     pipeline.submit(batch);
+ *     ...
+ *     pipeline.finish();
+ * } finally {
+ *     pipeline.cancel();
+ * }
+ * </pre>
+ * The streaming parallel readers of the other packages share this class, which is not exported by the module.
+ *
+ * @param <T> the type of the result of a batch
+ */
+public final class BatchPipeline<T> {
+
+    /**
+     * Receives the result of each batch in turn.
+     */
+    @FunctionalInterface
+    public interface ResultConsumer<T> {
+
+        void accept(T result) throws IOException;
+    }
+
+    private final ForkJoinPool forkJoinPool;
+    private final String activity;
+    private final ResultConsumer<? super T> consumer;
+    private final Deque<Future<T>> pending = new ArrayDeque<>();
+    private final int maxPending;
+
+    /**
+     * @param activity what the batches do, for the message of the {@link InterruptedIOException} thrown if the calling
+     *                 thread is interrupted, e.g. {@code "validating"}
+     */
+    public BatchPipeline(ForkJoinPool forkJoinPool, String activity, ResultConsumer<? super T> consumer) {
+        this.forkJoinPool = forkJoinPool;
+        this.activity = activity;
+        this.consumer = consumer;
+        this.maxPending = 2 * forkJoinPool.getParallelism();
+    }
+
+    /**
+     * Submits a batch to the pool, first completing the oldest batch if too many are in flight.
+     *
+     * @throws IOException if a completed batch threw one, or the consumer did
+     */
+    public void submit(Callable<T> batch) throws IOException {
+        // ForkJoinPool.submit would wrap the checked exceptions of the batch in a RuntimeException
+        FutureTask<T> task = new FutureTask<>(batch);
+        forkJoinPool.execute(task);
+        pending.add(task);
+        if (pending.size() > maxPending) {
+            complete(pending.poll());
+        }
+    }
+
+    /**
+     * Waits for the batches in flight and hands their results to the consumer.
+     *
+     * @throws IOException if a batch threw one, or the consumer did
+     */
+    public void finish() throws IOException {
+        while (!pending.isEmpty()) {
+            complete(pending.poll());
+        }
+    }
+
+    /**
+     * Cancels the batches in flight, whose results are dropped. Does nothing once the pipeline is finished.
+     */
+    public void cancel() {
+        for (Future<T> batch : pending) {
+            batch.cancel(false);
+        }
+        pending.clear();
+    }
+
+    private void complete(Future<T> batch) throws IOException {
+        T result;
+        try {
+            result = batch.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while " + activity);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            } else if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            } else if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new IllegalStateException(cause);
+        }
+        consumer.accept(result);
+    }
+}
@@ -0,0 +1,65 @@
+package org.phenopackets.schema.v2.internal;
+
+import com.google.protobuf.CodedInputStream;
+import com.google.protobuf.CodedOutputStream;
+import com.google.protobuf.InvalidProtocolBufferException;
+import com.google.protobuf.WireFormat;
+
+import java.io.IOException;
+
+/**
+ * Copies fields of an encoded message from one stream to another without decoding them, as the deprecated
+ * {@code CodedInputStream.skipField(int, CodedOutputStream)} did.
+ * <p>
+ * This package is not exported by the module, and is shared by the streaming readers of the other packages.
+ */
+public final class WireFields {
+
+    private WireFields() {
+    }
+
+    /**
+     * Reads the value of the field with the tag just read from the input, and writes the tag and value to the output.
+     *
+     * @return {@code false} if the tag ends a group, so there is no field to copy, otherwise {@code true}
+     * @throws InvalidProtocolBufferException if the tag has an invalid wire type or the value is malformed
+     */
+    public static boolean copyField(int tag, CodedInputStream input, CodedOutputStream output) throws IOException {
+        switch (WireFormat.getTagWireType(tag)) {
+            case WireFormat.WIRETYPE_VARINT:
+                output.writeUInt32NoTag(tag);
+                output.writeUInt64NoTag(input.readRawVarint64());
+                return true;
+            case WireFormat.WIRETYPE_FIXED64:
+                output.writeUInt32NoTag(tag);
+                output.writeFixed64NoTag(input.readRawLittleEndian64());
+                return true;
+            case WireFormat.WIRETYPE_LENGTH_DELIMITED:
+                output.writeUInt32NoTag(tag);
+                output.writeBytesNoTag(input.readBytes());
+                return true;
+            case WireFormat.WIRETYPE_START_GROUP:
+                output.writeUInt32NoTag(tag);
+                copyGroup(input, output);
+                int endTag = WireFormat.getTagFieldNumber(tag) << 3 | WireFormat.WIRETYPE_END_GROUP;
+                input.checkLastTagWas(endTag);
+                output.writeUInt32NoTag(endTag);
+                return true;
+            case WireFormat.WIRETYPE_END_GROUP:
+                return false;
+            case WireFormat.WIRETYPE_FIXED32:
+                output.writeUInt32NoTag(tag);
+                output.writeFixed32NoTag(input.readRawLittleEndian32());
+                return true;
+            default:
+                throw new InvalidProtocolBufferException("Invalid wire type in tag " + tag);
+        }
+    }
+
+    private static void copyGroup(CodedInputStream input, CodedOutputStream output) throws IOException {
+        int tag;
+        do {
+            tag = input.readTag();
+        } while (tag != 0 && copyField(tag, input, output));
+    }
+}
@@ -0,0 +1,342 @@
+package org.phenopackets.schema.v2.io;
+
+import com.google.protobuf.CodedInputStream;
+import com.google.protobuf.Descriptors.FieldDescriptor;
+import com.google.protobuf.ExtensionRegistryLite;
+import com.google.protobuf.InvalidProtocolBufferException;
+import com.google.protobuf.WireFormat;
+import org.phenopackets.schema.v2.Cohort;
+import org.phenopackets.schema.v2.Phenopacket;
+import org.phenopackets.schema.v2.core.File;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Streaming reader for a binary or JSON encoded {@link Cohort}. Rather than materialising the whole message, the
+ * {@code members} are decoded and handed out one at a time, so that a cohort of any size can be processed in constant
+ * memory.
+ * <p>
+ * The remaining fields ({@code id}, {@code description}, {@code files} and {@code meta_data}) are collected into a
+ * member-less {@link Cohort} available from {@link #header()}. Protobuf does not guarantee any field order on the wire,
+ * so the header is only guaranteed to be complete once all the members have been read.
+ * <p>
+ * Instances are not thread-safe and the members can only be iterated once.
+ */
+public class CohortReader implements Iterable<Phenopacket>, Closeable {
+
+    private static final int ID_TAG = lengthDelimitedTag(Cohort.ID_FIELD_NUMBER);
+    private static final int DESCRIPTION_TAG = lengthDelimitedTag(Cohort.DESCRIPTION_FIELD_NUMBER);
+    static final int MEMBERS_TAG = lengthDelimitedTag(Cohort.MEMBERS_FIELD_NUMBER);
+    private static final int FILES_TAG = lengthDelimitedTag(Cohort.FILES_FIELD_NUMBER);
+    private static final int META_DATA_TAG = lengthDelimitedTag(Cohort.META_DATA_FIELD_NUMBER);
+
+    private final Closeable input;
+    private final MemberSource memberSource;
+    private final Cohort.Builder header = Cohort.newBuilder();
+
+    private Phenopacket next;
+    private boolean exhausted;
+    private boolean iterated;
+
+    private CohortReader(Closeable input, MemberSource memberSource) {
+        this.input = input;
+        this.memberSource = memberSource;
+    }
+
+    /**
+     * @param inputStream stream positioned at the start of a binary {@link Cohort}. The stream is closed along with
+     *                    the reader.
+     * @return a reader for the cohort members
+     */
+    public static CohortReader of(InputStream inputStream) {
+        return new CohortReader(inputStream, new BinaryMemberSource(CodedInputStream.newInstance(inputStream)));
+    }
+
+    /**
+     * @param reader source of a JSON encoded {@link Cohort}, as read by {@link JsonMessageReader}. The reader is closed
+     *               along with this reader.
+     * @return a reader for the cohort members
+     */
+    public static CohortReader ofJson(Reader reader) {
+        return new CohortReader(reader, new JsonMemberSource(new JsonTokenizer(reader)));
+    }
+
+    static int lengthDelimitedTag(int fieldNumber) {
+        return (fieldNumber << 3) | WireFormat.WIRETYPE_LENGTH_DELIMITED;
+    }
+
+    /**
+     * Takes the ontology classes of each member from the pool as it is decoded, so that a cohort loaded into memory
+     * holds only a single instance of each term. Binary terms that were met before are not decoded again.
+     *
+     * @return this reader
+     */
+    public CohortReader internOntologyClasses(OntologyClassPool ontologyClassPool) {
+        memberSource.internOntologyClasses(ontologyClassPool);
+        return this;
+    }
+
+    /**
+     * @return a {@link Cohort} holding everything but the {@code members} read so far.
+     */
+    public Cohort header() {
+        return header.build();
+    }
+
+    /**
+     * Reads the remaining input, skipping any unread members without decoding them, and returns the completed header.
+     *
+     * @return a {@link Cohort} holding everything but the {@code members}.
+     * @throws IOException if the input could not be read or is not a valid {@link Cohort}
+     */
+    public Cohort readHeader() throws IOException {
+        next = null;
+        while (!exhausted) {
+            exhausted = !memberSource.skipMember(header);
+        }
+        return header();
+    }
+
+    @Override
+    public Iterator<Phenopacket> iterator() {
+        if (iterated) {
+            throw new IllegalStateException("Cohort members can only be iterated once");
+        }
+        iterated = true;
+        return new Iterator<>() {
+            @Override
+            public boolean hasNext() {
+                try {
+                    return advance();
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+
+            @Override
+            public Phenopacket next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                Phenopacket member = next;
+                next = null;
+                return member;
+            }
+        };
+    }
+
+    /**
+     * @return a sequential {@link Stream} of the cohort members which closes this reader when it is closed.
+     */
+    public Stream<Phenopacket> members() {
+        Spliterator<Phenopacket> spliterator = Spliterators.spliteratorUnknownSize(iterator(), Spliterator.ORDERED | Spliterator.NONNULL);
+        return StreamSupport.stream(spliterator, false).onClose(() -> {
+            try {
+                close();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+    }
+
+    private boolean advance() throws IOException {
+        if (next == null && !exhausted) {
+            next = memberSource.nextMember(header);
+            exhausted = next == null;
+        }
+        return next != null;
+    }
+
+    @Override
+    public void close() throws IOException {
+        input.close();
+    }
+
+    private interface MemberSource {
+
+        /**
+         * Reads up to and including the next member, merging any other fields met on the way into the header.
+         *
+         * @return the next member, or {@code null} once the end of the cohort is reached
+         */
+        Phenopacket nextMember(Cohort.Builder header) throws IOException;
+
+        /**
+         * Reads up to the next member and skips it, merging any other fields met on the way into the header.
+         *
+         * @return whether a member was skipped, {@code false} once the end of the cohort is reached
+         */
+        boolean skipMember(Cohort.Builder header) throws IOException;
+
+        void internOntologyClasses(OntologyClassPool ontologyClassPool);
+    }
+
+    private static class BinaryMemberSource implements MemberSource {
+
+        private final CodedInputStream codedInputStream;
+        private final ExtensionRegistryLite extensionRegistry = ExtensionRegistryLite.getEmptyRegistry();
+        private OntologyClassPool ontologyClassPool;
+
+        private BinaryMemberSource(CodedInputStream codedInputStream) {
+            this.codedInputStream = codedInputStream;
+        }
+
+        @Override
+        public Phenopacket nextMember(Cohort.Builder header) throws IOException {
+            if (!findMember(header)) {
+                return null;
+            }
+            Phenopacket member;
+            if (ontologyClassPool == null) {
+                member = codedInputStream.readMessage(Phenopacket.parser(), extensionRegistry);
+            } else {
+                Phenopacket.Builder builder = Phenopacket.newBuilder();
+                ontologyClassPool.readMessage(codedInputStream, builder);
+                member = builder.build();
+            }
+            // the size limit applies to the whole stream, not to a single member
+            codedInputStream.resetSizeCounter();
+            return member;
+        }
+
+        @Override
+        public boolean skipMember(Cohort.Builder header) throws IOException {
+            if (!findMember(header)) {
+                return false;
+            }
+            codedInputStream.skipField(MEMBERS_TAG);
+            codedInputStream.resetSizeCounter();
+            return true;
+        }
+
+        @Override
+        public void internOntologyClasses(OntologyClassPool ontologyClassPool) {
+            this.ontologyClassPool = ontologyClassPool;
+        }
+
+        /**
+         * Reads up to and including the tag of the next member.
+         *
+         * @return whether there is a member, {@code false} once the end of the cohort is reached
+         */
+        private boolean findMember(Cohort.Builder header) throws IOException {
+            while (true) {
+                int tag = codedInputStream.readTag();
+                if (tag == 0) {
+                    return false;
+                } else if (tag == MEMBERS_TAG) {
+                    return true;
+                } else {
+                    mergeHeaderField(codedInputStream, tag, header);
+                }
+            }
+        }
+    }
+
+    /**
+     * Merges a field other than {@code members} into the header, skipping unknown fields.
+     */
+    static void mergeHeaderField(CodedInputStream codedInputStream, int tag, Cohort.Builder header) throws IOException {
+        ExtensionRegistryLite extensionRegistry = ExtensionRegistryLite.getEmptyRegistry();
+        if (tag == ID_TAG) {
+            header.setId(codedInputStream.readStringRequireUtf8());
+        } else if (tag == DESCRIPTION_TAG) {
+            header.setDescription(codedInputStream.readStringRequireUtf8());
+        } else if (tag == FILES_TAG) {
+            header.addFiles(codedInputStream.readMessage(File.parser(), extensionRegistry));
+        } else if (tag == META_DATA_TAG) {
+            codedInputStream.readMessage(header.getMetaDataBuilder(), extensionRegistry);
+        } else if (!codedInputStream.skipField(tag)) {
+            throw new IOException("Unexpected end-group tag " + tag + " in Cohort");
+        }
+    }
+
+    private static class JsonMemberSource implements MemberSource {
+
+        private static final MessagePlan COHORT_PLAN = MessagePlan.of(Cohort.getDescriptor());
+        private static final FieldDescriptor MEMBERS_FIELD = Cohort.getDescriptor().findFieldByNumber(Cohort.MEMBERS_FIELD_NUMBER);
+
+        private final JsonMessageReader jsonReader;
+        private final JsonTokenizer tokenizer;
+        private boolean started;
+        private boolean inMembers;
+
+        private JsonMemberSource(JsonTokenizer tokenizer) {
+            this.tokenizer = tokenizer;
+            this.jsonReader = new JsonMessageReader(tokenizer);
+        }
+
+        @Override
+        public Phenopacket nextMember(Cohort.Builder header) throws IOException {
+            if (!findMember(header)) {
+                return null;
+            }
+            Phenopacket.Builder member = Phenopacket.newBuilder();
+            jsonReader.mergeMessage(member);
+            return member.build();
+        }
+
+        @Override
+        public boolean skipMember(Cohort.Builder header) throws IOException {
+            if (!findMember(header)) {
+                return false;
+            }
+            tokenizer.skipValue();
+            return true;
+        }
+
+        @Override
+        public void internOntologyClasses(OntologyClassPool ontologyClassPool) {
+            jsonReader.internOntologyClasses(ontologyClassPool);
+        }
+
+        /**
+         * Reads up to the value of the next member.
+         *
+         * @return whether there is a member, {@code false} once the end of the cohort is reached
+         */
+        private boolean findMember(Cohort.Builder header) throws IOException {
+            if (!started) {
+                started = true;
+                tokenizer.beginObject();
+            }
+            while (true) {
+                if (inMembers) {
+                    if (tokenizer.hasNext()) {
+                        return true;
+                    }
+                    tokenizer.endArray();
+                    inMembers = false;
+                } else if (tokenizer.hasNext()) {
+                    String name = tokenizer.nextName();
+                    FieldDescriptor field = COHORT_PLAN.field(name);
+                    if (field == null) {
+                        throw new InvalidProtocolBufferException("Cannot find field: " + name + " in message " + Cohort.getDescriptor().getFullName());
+                    }
+                    if (field == MEMBERS_FIELD && tokenizer.peek() == TokenSource.Token.BEGIN_ARRAY) {
+                        tokenizer.beginArray();
+                        inMembers = true;
+                    } else {
+                        jsonReader.mergeField(header, field);
+                    }
+                } else {
+                    tokenizer.endObject();
+                    if (tokenizer.peek() != TokenSource.Token.END_DOCUMENT) {
+                        throw tokenizer.syntaxError("Unexpected content after the end of the Cohort");
+                    }
+                    return false;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,315 @@
+package org.phenopackets.schema.v2.io;
+
+import com.google.protobuf.ByteString;
+import com.google.protobuf.Descriptors.EnumDescriptor;
+import com.google.protobuf.Descriptors.EnumValueDescriptor;
+import com.google.protobuf.Descriptors.FieldDescriptor;
+import com.google.protobuf.InvalidProtocolBufferException;
+import com.google.protobuf.Message;
+import com.google.protobuf.Timestamp;
+import org.phenopackets.schema.v2.core.OntologyClass;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.Base64;
+
+/**
+ * Reads JSON into protobuf message builders from a streaming token source, without building an intermediate tree.
+ * <p>
+ * This accepts the same input as the default {@code JsonFormat.parser()} from protobuf-java-util for the messages of
+ * the phenopacket schema: fields may use either their JSON or original proto names, numbers may be quoted, enums may
+ * be given by name or number and {@code null} values are ignored. Unknown fields are rejected.
+ */
+public final class JsonMessageReader {
+
+    private static final String TIMESTAMP_TYPE = Timestamp.getDescriptor().getFullName();
+    private static final BigInteger MAX_UINT64 = new BigInteger("FFFFFFFFFFFFFFFF", 16);
+
+    private final TokenSource tokenizer;
+    private OntologyClassPool ontologyClassPool;
+
+    JsonMessageReader(TokenSource tokenizer) {
+        this.tokenizer = tokenizer;
+    }
+
+    /**
+     * Replaces each {@link OntologyClass} with its canonical instance as soon as it is read, so that the messages
+     * holding it are built with the shared instance.
+     */
+    void internOntologyClasses(OntologyClassPool ontologyClassPool) {
+        this.ontologyClassPool = ontologyClassPool;
+    }
+
+    /**
+     * Merges the JSON object read from the {@link Reader} into the builder. The reader is not closed.
+     *
+     * @throws InvalidProtocolBufferException if the input is not valid JSON for the message type
+     */
+    public static void merge(Reader reader, Message.Builder builder) throws IOException {
+        JsonTokenizer tokenizer = new JsonTokenizer(reader);
+        new JsonMessageReader(tokenizer).mergeMessage(builder);
+        if (tokenizer.peek() != TokenSource.Token.END_DOCUMENT) {
+            throw tokenizer.syntaxError("Unexpected content after the end of the message");
+        }
+    }
+
+    public static void merge(String json, Message.Builder builder) throws IOException {
+        merge(new StringReader(json), builder);
+    }
+
+    void mergeMessage(Message.Builder builder) throws IOException {
+        if (builder.getDescriptorForType().getFullName().equals(TIMESTAMP_TYPE)) {
+            builder.mergeFrom(parseTimestamp(tokenizer.nextString()));
+            return;
+        }
+        MessagePlan plan = MessagePlan.of(builder.getDescriptorForType());
+        tokenizer.beginObject();
+        while (tokenizer.hasNext()) {
+            String name = tokenizer.nextName();
+            FieldDescriptor field = plan.field(name);
+            if (field == null) {
+                throw new InvalidProtocolBufferException("Cannot find field: " + name + " in message " + builder.getDescriptorForType().getFullName());
+            }
+            mergeField(builder, field);
+        }
+        tokenizer.endObject();
+    }
+
+    /**
+     * Merges the value of the field that the tokenizer is positioned at into the builder.
+     */
+    void mergeField(Message.Builder builder, FieldDescriptor field) throws IOException {
+        if (tokenizer.peek() == TokenSource.Token.NULL) {
+            tokenizer.nextNull();
+            return;
+        }
+        if (field.isMapField()) {
+            FieldDescriptor keyField = field.getMessageType().findFieldByNumber(1);
+            FieldDescriptor valueField = field.getMessageType().findFieldByNumber(2);
+            tokenizer.beginObject();
+            while (tokenizer.hasNext()) {
+                Message.Builder entry = builder.newBuilderForField(field);
+                entry.setField(keyField, parseMapKey(keyField, tokenizer.nextName()));
+                entry.setField(valueField, readValue(entry, valueField));
+                builder.addRepeatedField(field, entry.build());
+            }
+            tokenizer.endObject();
+        } else if (field.isRepeated()) {
+            tokenizer.beginArray();
+            while (tokenizer.hasNext()) {
+                builder.addRepeatedField(field, readValue(builder, field));
+            }
+            tokenizer.endArray();
+        } else if (field.getJavaType() == FieldDescriptor.JavaType.MESSAGE) {
+            Message.Builder fieldBuilder = builder.newBuilderForField(field);
+            if (builder.hasField(field)) {
+                fieldBuilder.mergeFrom((Message) builder.getField(field));
+            }
+            mergeMessage(fieldBuilder);
+            builder.setField(field, build(fieldBuilder));
+        } else {
+            builder.setField(field, readValue(builder, field));
+        }
+    }
+
+    private Object readValue(Message.Builder builder, FieldDescriptor field) throws IOException {
+        switch (field.getType()) {
+            case INT32:
+            case SINT32:
+            case SFIXED32:
+                return parseInt32(nextScalar());
+            case INT64:
+            case SINT64:
+            case SFIXED64:
+                return parseInt64(nextScalar());
+            case UINT32:
+            case FIXED32:
+                return parseUInt32(nextScalar());
+            case UINT64:
+            case FIXED64:
+                return parseUInt64(nextScalar());
+            case BOOL:
+                if (tokenizer.peek() == TokenSource.Token.STRING) {
+                    return parseBool(tokenizer.nextString());
+                }
+                return tokenizer.nextBoolean();
+            case FLOAT:
+                double floatValue = parseDouble(nextScalar());
+                if (Double.isFinite(floatValue) && Math.abs(floatValue) > Float.MAX_VALUE * (1.0 + 1e-6)) {
+                    throw new InvalidProtocolBufferException("Out of range float value: " + floatValue);
+                }
+                return (float) floatValue;
+            case DOUBLE:
+                return parseDouble(nextScalar());
+            case STRING:
+                return tokenizer.nextString();
+            case BYTES:
+                return parseBytes(tokenizer.nextString());
+            case ENUM:
+                return parseEnum(field.getEnumType());
+            case MESSAGE:
+            case GROUP:
+                Message.Builder fieldBuilder = builder.newBuilderForField(field);
+                mergeMessage(fieldBuilder);
+                return build(fieldBuilder);
+            default:
+                throw new InvalidProtocolBufferException("Unsupported field type " + field.getType());
+        }
+    }
+
+    private Message build(Message.Builder builder) {
+        Message message = builder.build();
+        if (ontologyClassPool != null && message instanceof OntologyClass) {
+            return ontologyClassPool.intern((OntologyClass) message);
+        }
+        return message;
+    }
+
+    private String nextScalar() throws IOException {
+        return tokenizer.peek() == TokenSource.Token.STRING ? tokenizer.nextString() : tokenizer.nextNumber();
+    }
+
+    private Object parseMapKey(FieldDescriptor keyField, String key) throws IOException {
+        switch (keyField.getType()) {
+            case STRING:
+                return key;
+            case BOOL:
+                return parseBool(key);
+            case INT32:
+            case SINT32:
+            case SFIXED32:
+                return parseInt32(key);
+            case UINT32:
+            case FIXED32:
+                return parseUInt32(key);
+            case INT64:
+            case SINT64:
+            case SFIXED64:
+                return parseInt64(key);
+            default:
+                return parseUInt64(key);
+        }
+    }
+
+    private EnumValueDescriptor parseEnum(EnumDescriptor enumType) throws IOException {
+        if (tokenizer.peek() == TokenSource.Token.STRING) {
+            String name = tokenizer.nextString();
+            EnumValueDescriptor value = enumType.findValueByName(name);
+            if (value != null) {
+                return value;
+            }
+            try {
+                return enumType.findValueByNumberCreatingIfUnknown(Integer.parseInt(name));
+            } catch (NumberFormatException e) {
+                throw new InvalidProtocolBufferException("Invalid enum value: " + name + " for enum type: " + enumType.getFullName());
+            }
+        }
+        return enumType.findValueByNumberCreatingIfUnknown(parseInt32(tokenizer.nextNumber()));
+    }
+
+    private static int parseInt32(String text) throws InvalidProtocolBufferException {
+        try {
+            return Integer.parseInt(text);
+        } catch (NumberFormatException e) {
+            try {
+                return new BigDecimal(text).intValueExact();
+            } catch (ArithmeticException | NumberFormatException ex) {
+                throw new InvalidProtocolBufferException("Not an int32 value: " + text);
+            }
+        }
+    }
+
+    private static long parseInt64(String text) throws InvalidProtocolBufferException {
+        try {
+            return Long.parseLong(text);
+        } catch (NumberFormatException e) {
+            try {
+                return new BigDecimal(text).longValueExact();
+            } catch (ArithmeticException | NumberFormatException ex) {
+                throw new InvalidProtocolBufferException("Not an int64 value: " + text);
+            }
+        }
+    }
+
+    private static int parseUInt32(String text) throws InvalidProtocolBufferException {
+        long value = parseInt64(text);
+        if (value < 0 || value > 0xFFFFFFFFL) {
+            throw new InvalidProtocolBufferException("Out of range uint32 value: " + text);
+        }
+        return (int) value;
+    }
+
+    private static long parseUInt64(String text) throws InvalidProtocolBufferException {
+        try {
+            BigInteger value = new BigDecimal(text).toBigIntegerExact();
+            if (value.signum() < 0 || value.compareTo(MAX_UINT64) > 0) {
+                throw new InvalidProtocolBufferException("Out of range uint64 value: " + text);
+            }
+            return value.longValue();
+        } catch (ArithmeticException | NumberFormatException e) {
+            throw new InvalidProtocolBufferException("Not an uint64 value: " + text);
+        }
+    }
+
+    private static double parseDouble(String text) throws InvalidProtocolBufferException {
+        switch (text) {
+            case "NaN":
+                return Double.NaN;
+            case "Infinity":
+                return Double.POSITIVE_INFINITY;
+            case "-Infinity":
+                return Double.NEGATIVE_INFINITY;
+            default:
+                try {
+                    double value = Double.parseDouble(text);
+                    if (Double.isInfinite(value)) {
+                        throw new InvalidProtocolBufferException("Out of range double value: " + text);
+                    }
+                    return value;
+                } catch (NumberFormatException e) {
+                    throw new InvalidProtocolBufferException("Not a double value: " + text);
+                }
+        }
+    }
+
+    private static boolean parseBool(String text) throws InvalidProtocolBufferException {
+        if (text.equals("true")) {
+            return true;
+        }
+        if (text.equals("false")) {
+            return false;
+        }
+        throw new InvalidProtocolBufferException("Invalid bool value: " + text);
+    }
+
+    private static ByteString parseBytes(String text) throws InvalidProtocolBufferException {
+        try {
+            return ByteString.copyFrom(Base64.getDecoder().decode(text));
+        } catch (IllegalArgumentException e) {
+            try {
+                return ByteString.copyFrom(Base64.getUrlDecoder().decode(text));
+            } catch (IllegalArgumentException ex) {
+                throw new InvalidProtocolBufferException("Invalid base64 value: " + text);
+            }
+        }
+    }
+
+    static Timestamp parseTimestamp(String text) throws InvalidProtocolBufferException {
+        try {
+            Instant instant = OffsetDateTime.parse(text, DateTimeFormatter.ISO_OFFSET_DATE_TIME).toInstant();
+            if (instant.getEpochSecond() < JsonMessageWriter.TIMESTAMP_SECONDS_MIN || instant.getEpochSecond() > JsonMessageWriter.TIMESTAMP_SECONDS_MAX) {
+                throw new InvalidProtocolBufferException("Timestamp out of range: " + text);
+            }
+            return Timestamp.newBuilder().setSeconds(instant.getEpochSecond()).setNanos(instant.getNano()).build();
+        } catch (DateTimeParseException e) {
+            throw new InvalidProtocolBufferException("Failed to parse timestamp: " + text);
+        }
+    }
+}
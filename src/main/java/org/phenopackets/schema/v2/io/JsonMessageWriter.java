@@ -0,0 +1,326 @@
+package org.phenopackets.schema.v2.io;
+
+import com.google.protobuf.ByteString;
+import com.google.protobuf.Descriptors.EnumValueDescriptor;
+import com.google.protobuf.Descriptors.FieldDescriptor;
+import com.google.protobuf.MessageOrBuilder;
+import com.google.protobuf.Timestamp;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.Base64;
+
+/**
+ * Writes protobuf messages of the phenopacket schema as JSON straight to an {@link Appendable}, {@link Writer} or
+ * {@link OutputStream}, without building an intermediate tree.
+ * <p>
+ * The output is identical to the canonical JSON produced by the default {@code JsonFormat.printer()} from
+ * protobuf-java-util: fields are written in field number order using their JSON names, default values are omitted,
+ * 64-bit integers are quoted and strings are escaped the same way. Of the well-known types only
+ * {@link Timestamp}, the one used by the schema, is supported.
+ */
+public final class JsonMessageWriter {
+
+    private static final String TIMESTAMP_TYPE = Timestamp.getDescriptor().getFullName();
+    private static final String WELL_KNOWN_TYPE_PACKAGE = "google.protobuf";
+    // seconds of 0001-01-01T00:00:00Z and 9999-12-31T23:59:59Z
+    static final long TIMESTAMP_SECONDS_MIN = -62135596800L;
+    static final long TIMESTAMP_SECONDS_MAX = 253402300799L;
+
+    private static final String[] ESCAPES = new String[128];
+
+    static {
+        for (int c = 0; c < 0x20; c++) {
+            ESCAPES[c] = String.format("\\u%04x", c);
+        }
+        ESCAPES['"'] = "\\\"";
+        ESCAPES['\\'] = "\\\\";
+        ESCAPES['\t'] = "\\t";
+        ESCAPES['\b'] = "\\b";
+        ESCAPES['\n'] = "\\n";
+        ESCAPES['\r'] = "\\r";
+        ESCAPES['\f'] = "\\f";
+        // HTML-safe escapes, as applied by JsonFormat
+        ESCAPES['<'] = "\\u003c";
+        ESCAPES['>'] = "\\u003e";
+        ESCAPES['&'] = "\\u0026";
+        ESCAPES['='] = "\\u003d";
+        ESCAPES['\''] = "\\u0027";
+    }
+
+    private final Appendable output;
+    private int indent;
+    private boolean atStartOfLine = true;
+
+    private JsonMessageWriter(Appendable output) {
+        this.output = output;
+    }
+
+    public static String toJson(MessageOrBuilder message) {
+        StringBuilder stringBuilder = new StringBuilder();
+        try {
+            write(message, stringBuilder);
+        } catch (IOException e) {
+            // StringBuilder does not throw IOExceptions
+            throw new IllegalStateException(e);
+        }
+        return stringBuilder.toString();
+    }
+
+    public static void write(MessageOrBuilder message, Appendable output) throws IOException {
+        new JsonMessageWriter(output).writeMessage(message);
+    }
+
+    /**
+     * Writes the message as UTF-8 encoded JSON. The {@link OutputStream} is flushed, but not closed.
+     */
+    public static void write(MessageOrBuilder message, OutputStream outputStream) throws IOException {
+        Writer writer = new BufferedWriter(new OutputStreamWriter(outputStream, StandardCharsets.UTF_8));
+        write(message, writer);
+        writer.flush();
+    }
+
+    private void writeMessage(MessageOrBuilder message) throws IOException {
+        String typeName = message.getDescriptorForType().getFullName();
+        if (typeName.equals(TIMESTAMP_TYPE)) {
+            Timestamp timestamp = (Timestamp) (message instanceof Timestamp.Builder ? ((Timestamp.Builder) message).build() : message);
+            append('"' + formatTimestamp(timestamp) + '"');
+            return;
+        }
+        if (message.getDescriptorForType().getFile().getPackage().equals(WELL_KNOWN_TYPE_PACKAGE)) {
+            throw new IllegalArgumentException("Unsupported well-known type " + typeName);
+        }
+        MessagePlan plan = MessagePlan.of(message.getDescriptorForType());
+        append("{");
+        newLine();
+        indent++;
+        boolean printedField = false;
+        for (int i = 0; i < plan.fields.length; i++) {
+            FieldDescriptor field = plan.fields[i];
+            if (field.isRepeated() ? message.getRepeatedFieldCount(field) == 0 : !message.hasField(field)) {
+                continue;
+            }
+            if (printedField) {
+                append(",");
+                newLine();
+            } else {
+                printedField = true;
+            }
+            append(plan.keys[i]);
+            if (field.isMapField()) {
+                writeMap(message, field);
+            } else if (field.isRepeated()) {
+                writeRepeated(message, field);
+            } else {
+                writeValue(field, message.getField(field), false);
+            }
+        }
+        if (printedField) {
+            newLine();
+        }
+        indent--;
+        append("}");
+    }
+
+    private void writeRepeated(MessageOrBuilder message, FieldDescriptor field) throws IOException {
+        append("[");
+        int count = message.getRepeatedFieldCount(field);
+        for (int i = 0; i < count; i++) {
+            if (i > 0) {
+                append(", ");
+            }
+            writeValue(field, message.getRepeatedField(field, i), false);
+        }
+        append("]");
+    }
+
+    private void writeMap(MessageOrBuilder message, FieldDescriptor field) throws IOException {
+        FieldDescriptor keyField = field.getMessageType().findFieldByNumber(1);
+        FieldDescriptor valueField = field.getMessageType().findFieldByNumber(2);
+        append("{");
+        newLine();
+        indent++;
+        int count = message.getRepeatedFieldCount(field);
+        for (int i = 0; i < count; i++) {
+            MessageOrBuilder entry = (MessageOrBuilder) message.getRepeatedField(field, i);
+            if (i > 0) {
+                append(",");
+                newLine();
+            }
+            // keys are always quoted
+            writeValue(keyField, entry.getField(keyField), true);
+            append(": ");
+            writeValue(valueField, entry.getField(valueField), false);
+        }
+        if (count > 0) {
+            newLine();
+        }
+        indent--;
+        append("}");
+    }
+
+    private void writeValue(FieldDescriptor field, Object value, boolean alwaysQuoted) throws IOException {
+        switch (field.getType()) {
+            case INT32:
+            case SINT32:
+            case SFIXED32:
+                appendMaybeQuoted(Integer.toString((Integer) value), alwaysQuoted);
+                break;
+            case INT64:
+            case SINT64:
+            case SFIXED64:
+                append('"' + Long.toString((Long) value) + '"');
+                break;
+            case UINT32:
+            case FIXED32:
+                appendMaybeQuoted(Integer.toUnsignedString((Integer) value), alwaysQuoted);
+                break;
+            case UINT64:
+            case FIXED64:
+                append('"' + Long.toUnsignedString((Long) value) + '"');
+                break;
+            case BOOL:
+                appendMaybeQuoted(value.toString(), alwaysQuoted);
+                break;
+            case FLOAT:
+                Float floatValue = (Float) value;
+                if (floatValue.isNaN() || floatValue.isInfinite()) {
+                    append('"' + nonFiniteName(floatValue) + '"');
+                } else {
+                    appendMaybeQuoted(floatValue.toString(), alwaysQuoted);
+                }
+                break;
+            case DOUBLE:
+                Double doubleValue = (Double) value;
+                if (doubleValue.isNaN() || doubleValue.isInfinite()) {
+                    append('"' + nonFiniteName(doubleValue) + '"');
+                } else {
+                    appendMaybeQuoted(doubleValue.toString(), alwaysQuoted);
+                }
+                break;
+            case STRING:
+                appendQuoted((String) value);
+                break;
+            case BYTES:
+                append('"' + Base64.getEncoder().encodeToString(((ByteString) value).toByteArray()) + '"');
+                break;
+            case ENUM:
+                EnumValueDescriptor enumValue = (EnumValueDescriptor) value;
+                if (enumValue.getIndex() == -1) {
+                    // an unknown value of an open enum
+                    append(Integer.toString(enumValue.getNumber()));
+                } else {
+                    append('"' + enumValue.getName() + '"');
+                }
+                break;
+            case MESSAGE:
+            case GROUP:
+                writeMessage((MessageOrBuilder) value);
+                break;
+            default:
+                throw new IllegalArgumentException("Unsupported field type " + field.getType());
+        }
+    }
+
+    private static String nonFiniteName(double value) {
+        if (Double.isNaN(value)) {
+            return "NaN";
+        }
+        return value > 0 ? "Infinity" : "-Infinity";
+    }
+
+    /**
+     * Formats a {@link Timestamp} as RFC 3339 in UTC, with 0, 3, 6 or 9 fractional digits as required by the nanos.
+     */
+    static String formatTimestamp(Timestamp timestamp) {
+        long seconds = timestamp.getSeconds();
+        int nanos = timestamp.getNanos();
+        if (seconds < TIMESTAMP_SECONDS_MIN || seconds > TIMESTAMP_SECONDS_MAX || nanos < 0 || nanos >= 1_000_000_000) {
+            throw new IllegalArgumentException("Timestamp is not valid: seconds=" + seconds + " nanos=" + nanos);
+        }
+        LocalDateTime dateTime = LocalDateTime.ofEpochSecond(seconds, 0, ZoneOffset.UTC);
+        StringBuilder result = new StringBuilder(30);
+        appendPadded(result, dateTime.getYear(), 4).append('-');
+        appendPadded(result, dateTime.getMonthValue(), 2).append('-');
+        appendPadded(result, dateTime.getDayOfMonth(), 2).append('T');
+        appendPadded(result, dateTime.getHour(), 2).append(':');
+        appendPadded(result, dateTime.getMinute(), 2).append(':');
+        appendPadded(result, dateTime.getSecond(), 2);
+        if (nanos != 0) {
+            result.append('.');
+            if (nanos % 1_000_000 == 0) {
+                appendPadded(result, nanos / 1_000_000, 3);
+            } else if (nanos % 1_000 == 0) {
+                appendPadded(result, nanos / 1_000, 6);
+            } else {
+                appendPadded(result, nanos, 9);
+            }
+        }
+        return result.append('Z').toString();
+    }
+
+    private static StringBuilder appendPadded(StringBuilder stringBuilder, int value, int width) {
+        String digits = Integer.toString(value);
+        for (int i = digits.length(); i < width; i++) {
+            stringBuilder.append('0');
+        }
+        return stringBuilder.append(digits);
+    }
+
+    private void appendMaybeQuoted(String value, boolean quoted) throws IOException {
+        append(quoted ? '"' + value + '"' : value);
+    }
+
+    private void appendQuoted(String value) throws IOException {
+        beginLine();
+        output.append('"');
+        int last = 0;
+        int length = value.length();
+        for (int i = 0; i < length; i++) {
+            char c = value.charAt(i);
+            String escape;
+            if (c < 128) {
+                escape = ESCAPES[c];
+            } else if (c == '\u2028') {
+                escape = "\\u2028";
+            } else if (c == '\u2029') {
+                escape = "\\u2029";
+            } else {
+                continue;
+            }
+            if (escape == null) {
+                continue;
+            }
+            output.append(value, last, i);
+            output.append(escape);
+            last = i + 1;
+        }
+        output.append(value, last, length);
+        output.append('"');
+    }
+
+    private void append(String text) throws IOException {
+        beginLine();
+        output.append(text);
+    }
+
+    private void beginLine() throws IOException {
+        if (atStartOfLine) {
+            atStartOfLine = false;
+            for (int i = 0; i < indent; i++) {
+                output.append("  ");
+            }
+        }
+    }
+
+    private void newLine() throws IOException {
+        output.append('\n');
+        atStartOfLine = true;
+    }
+}
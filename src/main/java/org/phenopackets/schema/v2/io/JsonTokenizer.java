@@ -0,0 +1,293 @@
+package org.phenopackets.schema.v2.io;
+
+import com.google.protobuf.InvalidProtocolBufferException;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.Arrays;
+
+/**
+ * Minimal strict {@link TokenSource} for JSON text read from a {@link Reader}. Values are consumed one token at a
+ * time so that arbitrarily large documents can be read without building a tree. Numbers are returned as their literal
+ * text for the caller to convert according to the target field type.
+ */
+final class JsonTokenizer implements TokenSource {
+
+    private final Reader reader;
+    private final char[] buffer = new char[8192];
+    private int position;
+    private int limit;
+    private final StringBuilder scratch = new StringBuilder();
+    // whether the next value in each open object or array is the first one, so needs no preceding comma
+    private boolean[] first = new boolean[32];
+    private int depth;
+
+    JsonTokenizer(Reader reader) {
+        this.reader = reader;
+    }
+
+    @Override
+    public Token peek() throws IOException {
+        int c = peekNonWhitespace();
+        switch (c) {
+            case -1:
+                return Token.END_DOCUMENT;
+            case '{':
+                return Token.BEGIN_OBJECT;
+            case '}':
+                return Token.END_OBJECT;
+            case '[':
+                return Token.BEGIN_ARRAY;
+            case ']':
+                return Token.END_ARRAY;
+            case '"':
+                return Token.STRING;
+            case 't':
+            case 'f':
+                return Token.BOOLEAN;
+            case 'n':
+                return Token.NULL;
+            default:
+                if (c == '-' || (c >= '0' && c <= '9')) {
+                    return Token.NUMBER;
+                }
+                throw syntaxError("Unexpected character '" + (char) c + "'");
+        }
+    }
+
+    @Override
+    public void beginObject() throws IOException {
+        expect('{');
+        push();
+    }
+
+    @Override
+    public void endObject() throws IOException {
+        expect('}');
+        depth--;
+    }
+
+    @Override
+    public void beginArray() throws IOException {
+        expect('[');
+        push();
+    }
+
+    @Override
+    public void endArray() throws IOException {
+        expect(']');
+        depth--;
+    }
+
+    /**
+     * @return true if the current object or array has another member, consuming the separating comma if needed.
+     */
+    @Override
+    public boolean hasNext() throws IOException {
+        int c = peekNonWhitespace();
+        if (c == '}' || c == ']') {
+            return false;
+        }
+        if (first[depth]) {
+            first[depth] = false;
+        } else {
+            expect(',');
+        }
+        return true;
+    }
+
+    @Override
+    public String nextName() throws IOException {
+        String name = nextString();
+        expect(':');
+        return name;
+    }
+
+    @Override
+    public String nextString() throws IOException {
+        expect('"');
+        scratch.setLength(0);
+        while (true) {
+            int c = read();
+            if (c == '"') {
+                return scratch.toString();
+            } else if (c == '\\') {
+                readEscape();
+            } else if (c == -1) {
+                throw syntaxError("Unterminated string");
+            } else if (c < 0x20) {
+                throw syntaxError("Unescaped control character in string");
+            } else {
+                scratch.append((char) c);
+            }
+        }
+    }
+
+    @Override
+    public String nextNumber() throws IOException {
+        if (peek() != Token.NUMBER) {
+            throw syntaxError("Expected a number");
+        }
+        scratch.setLength(0);
+        while (true) {
+            int c = peekChar();
+            if ((c >= '0' && c <= '9') || c == '-' || c == '+' || c == '.' || c == 'e' || c == 'E') {
+                scratch.append((char) read());
+            } else {
+                return scratch.toString();
+            }
+        }
+    }
+
+    @Override
+    public boolean nextBoolean() throws IOException {
+        if (peekNonWhitespace() == 't') {
+            expectLiteral("true");
+            return true;
+        }
+        expectLiteral("false");
+        return false;
+    }
+
+    @Override
+    public void nextNull() throws IOException {
+        expectLiteral("null");
+    }
+
+    @Override
+    public void skipValue() throws IOException {
+        switch (peek()) {
+            case BEGIN_OBJECT:
+                beginObject();
+                while (hasNext()) {
+                    nextName();
+                    skipValue();
+                }
+                endObject();
+                break;
+            case BEGIN_ARRAY:
+                beginArray();
+                while (hasNext()) {
+                    skipValue();
+                }
+                endArray();
+                break;
+            case STRING:
+                nextString();
+                break;
+            case NUMBER:
+                nextNumber();
+                break;
+            case BOOLEAN:
+                nextBoolean();
+                break;
+            case NULL:
+                nextNull();
+                break;
+            default:
+                throw syntaxError("Expected a value");
+        }
+    }
+
+    InvalidProtocolBufferException syntaxError(String message) {
+        return new InvalidProtocolBufferException("Invalid JSON: " + message);
+    }
+
+    private void push() {
+        depth++;
+        if (depth == first.length) {
+            first = Arrays.copyOf(first, depth * 2);
+        }
+        first[depth] = true;
+    }
+
+    private void readEscape() throws IOException {
+        int c = read();
+        switch (c) {
+            case '"':
+            case '\\':
+            case '/':
+                scratch.append((char) c);
+                break;
+            case 'b':
+                scratch.append('\b');
+                break;
+            case 'f':
+                scratch.append('\f');
+                break;
+            case 'n':
+                scratch.append('\n');
+                break;
+            case 'r':
+                scratch.append('\r');
+                break;
+            case 't':
+                scratch.append('\t');
+                break;
+            case 'u':
+                int value = 0;
+                for (int i = 0; i < 4; i++) {
+                    int digit = Character.digit(read(), 16);
+                    if (digit == -1) {
+                        throw syntaxError("Invalid unicode escape");
+                    }
+                    value = (value << 4) | digit;
+                }
+                scratch.append((char) value);
+                break;
+            default:
+                throw syntaxError("Invalid escape sequence");
+        }
+    }
+
+    private void expectLiteral(String literal) throws IOException {
+        peekNonWhitespace();
+        for (int i = 0; i < literal.length(); i++) {
+            if (read() != literal.charAt(i)) {
+                throw syntaxError("Expected '" + literal + "'");
+            }
+        }
+    }
+
+    private void expect(char expected) throws IOException {
+        if (peekNonWhitespace() != expected) {
+            throw syntaxError("Expected '" + expected + "'");
+        }
+        position++;
+    }
+
+    private int peekNonWhitespace() throws IOException {
+        while (true) {
+            int c = peekChar();
+            if (c == ' ' || c == '\n' || c == '\r' || c == '\t') {
+                position++;
+            } else {
+                return c;
+            }
+        }
+    }
+
+    private int peekChar() throws IOException {
+        if (position == limit && !fill()) {
+            return -1;
+        }
+        return buffer[position];
+    }
+
+    private int read() throws IOException {
+        if (position == limit && !fill()) {
+            return -1;
+        }
+        return buffer[position++];
+    }
+
+    private boolean fill() throws IOException {
+        int read = reader.read(buffer, 0, buffer.length);
+        if (read <= 0) {
+            return false;
+        }
+        position = 0;
+        limit = read;
+        return true;
+    }
+}
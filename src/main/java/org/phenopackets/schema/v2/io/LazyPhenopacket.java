@@ -0,0 +1,230 @@
+package org.phenopackets.schema.v2.io;
+
+import com.google.protobuf.ByteString;
+import com.google.protobuf.CodedInputStream;
+import com.google.protobuf.ExtensionRegistryLite;
+import com.google.protobuf.InvalidProtocolBufferException;
+import com.google.protobuf.Message;
+import com.google.protobuf.Parser;
+import com.google.protobuf.UnsafeByteOperations;
+import com.google.protobuf.WireFormat;
+import org.phenopackets.schema.v2.Phenopacket;
+import org.phenopackets.schema.v2.core.*;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A read-only view of a binary {@link Phenopacket} which only decodes the top-level fields that are asked for.
+ * <p>
+ * Creating the view makes a single pass over the input to record where each field is, without decoding any of them.
+ * Each field is then decoded the first time it is requested, straight from the input, and kept for subsequent calls.
+ * Reading just the {@code id}, {@code subject} and {@code phenotypic_features} of a phenopacket therefore skips the
+ * cost of decoding its {@code biosamples}, {@code interpretations} and {@code measurements}.
+ * <p>
+ * The accessors return the same values as those of a {@link Phenopacket} parsed from the same input. As with
+ * {@code Phenopacket.parseFrom}, a field of the wrong wire type is ignored, and if a singular field occurs more than
+ * once the occurrences are merged. The input is not copied, so it must not be modified whilst the view is in use.
+ * Instances are not thread-safe.
+ */
+public final class LazyPhenopacket {
+
+    private static final int MAX_FIELD_NUMBER = Phenopacket.META_DATA_FIELD_NUMBER;
+
+    private final ByteString data;
+    // the field number, offset and length of each length-delimited top-level field, in the order they occur
+    private int[] fieldNumbers = new int[16];
+    private int[] offsets = new int[16];
+    private int[] lengths = new int[16];
+    private int fieldCount;
+    // the decoded value of each field, indexed by field number
+    private final Object[] values = new Object[MAX_FIELD_NUMBER + 1];
+
+    private LazyPhenopacket(ByteString data) throws InvalidProtocolBufferException {
+        this.data = data;
+        try {
+            scan();
+        } catch (InvalidProtocolBufferException e) {
+            throw e;
+        } catch (IOException e) {
+            // reading from a ByteString does not throw other IOExceptions
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * @throws InvalidProtocolBufferException if the framing of the top-level fields is invalid. The content of each
+     *                                        field is only checked when it is decoded.
+     */
+    public static LazyPhenopacket of(ByteString data) throws InvalidProtocolBufferException {
+        return new LazyPhenopacket(data);
+    }
+
+    /**
+     * Creates a view of the remaining bytes of the buffer.
+     */
+    public static LazyPhenopacket of(ByteBuffer buffer) throws InvalidProtocolBufferException {
+        return new LazyPhenopacket(UnsafeByteOperations.unsafeWrap(buffer));
+    }
+
+    public static LazyPhenopacket of(byte[] bytes) throws InvalidProtocolBufferException {
+        return new LazyPhenopacket(UnsafeByteOperations.unsafeWrap(bytes));
+    }
+
+    private void scan() throws IOException {
+        CodedInputStream input = data.newCodedInput();
+        while (true) {
+            int tag = input.readTag();
+            if (tag == 0) {
+                return;
+            }
+            int fieldNumber = WireFormat.getTagFieldNumber(tag);
+            if (fieldNumber <= MAX_FIELD_NUMBER && WireFormat.getTagWireType(tag) == WireFormat.WIRETYPE_LENGTH_DELIMITED) {
+                int length = input.readRawVarint32();
+                if (length < 0) {
+                    throw new InvalidProtocolBufferException("Negative length for field " + fieldNumber + " of Phenopacket");
+                }
+                add(fieldNumber, input.getTotalBytesRead(), length);
+                input.skipRawBytes(length);
+            } else if (!input.skipField(tag)) {
+                throw new InvalidProtocolBufferException("Unexpected end-group tag " + tag + " in Phenopacket");
+            }
+        }
+    }
+
+    private void add(int fieldNumber, int offset, int length) {
+        if (fieldCount == fieldNumbers.length) {
+            fieldNumbers = Arrays.copyOf(fieldNumbers, fieldCount * 2);
+            offsets = Arrays.copyOf(offsets, fieldCount * 2);
+            lengths = Arrays.copyOf(lengths, fieldCount * 2);
+        }
+        fieldNumbers[fieldCount] = fieldNumber;
+        offsets[fieldCount] = offset;
+        lengths[fieldCount] = length;
+        fieldCount++;
+    }
+
+    public String getId() throws InvalidProtocolBufferException {
+        String id = (String) values[Phenopacket.ID_FIELD_NUMBER];
+        if (id == null) {
+            id = "";
+            for (int i = 0; i < fieldCount; i++) {
+                if (fieldNumbers[i] == Phenopacket.ID_FIELD_NUMBER) {
+                    ByteString bytes = field(i);
+                    if (!bytes.isValidUtf8()) {
+                        throw new InvalidProtocolBufferException("Phenopacket id is not valid UTF-8");
+                    }
+                    id = bytes.toStringUtf8();
+                }
+            }
+            values[Phenopacket.ID_FIELD_NUMBER] = id;
+        }
+        return id;
+    }
+
+    public boolean hasSubject() {
+        return has(Phenopacket.SUBJECT_FIELD_NUMBER);
+    }
+
+    public Individual getSubject() throws InvalidProtocolBufferException {
+        return singular(Phenopacket.SUBJECT_FIELD_NUMBER, Individual.newBuilder());
+    }
+
+    public List<PhenotypicFeature> getPhenotypicFeaturesList() throws InvalidProtocolBufferException {
+        return repeated(Phenopacket.PHENOTYPIC_FEATURES_FIELD_NUMBER, PhenotypicFeature.parser());
+    }
+
+    public List<Measurement> getMeasurementsList() throws InvalidProtocolBufferException {
+        return repeated(Phenopacket.MEASUREMENTS_FIELD_NUMBER, Measurement.parser());
+    }
+
+    public List<Biosample> getBiosamplesList() throws InvalidProtocolBufferException {
+        return repeated(Phenopacket.BIOSAMPLES_FIELD_NUMBER, Biosample.parser());
+    }
+
+    public List<Interpretation> getInterpretationsList() throws InvalidProtocolBufferException {
+        return repeated(Phenopacket.INTERPRETATIONS_FIELD_NUMBER, Interpretation.parser());
+    }
+
+    public List<Disease> getDiseasesList() throws InvalidProtocolBufferException {
+        return repeated(Phenopacket.DISEASES_FIELD_NUMBER, Disease.parser());
+    }
+
+    public List<MedicalAction> getMedicalActionsList() throws InvalidProtocolBufferException {
+        return repeated(Phenopacket.MEDICAL_ACTIONS_FIELD_NUMBER, MedicalAction.parser());
+    }
+
+    public List<File> getFilesList() throws InvalidProtocolBufferException {
+        return repeated(Phenopacket.FILES_FIELD_NUMBER, File.parser());
+    }
+
+    public boolean hasMetaData() {
+        return has(Phenopacket.META_DATA_FIELD_NUMBER);
+    }
+
+    public MetaData getMetaData() throws InvalidProtocolBufferException {
+        return singular(Phenopacket.META_DATA_FIELD_NUMBER, MetaData.newBuilder());
+    }
+
+    /**
+     * @return the underlying bytes of the phenopacket.
+     */
+    public ByteString toByteString() {
+        return data;
+    }
+
+    /**
+     * @return the whole phenopacket, fully decoded.
+     */
+    public Phenopacket toPhenopacket() throws InvalidProtocolBufferException {
+        return Phenopacket.parseFrom(data);
+    }
+
+    private boolean has(int fieldNumber) {
+        for (int i = 0; i < fieldCount; i++) {
+            if (fieldNumbers[i] == fieldNumber) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private ByteString field(int index) {
+        return data.substring(offsets[index], offsets[index] + lengths[index]);
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T extends Message> T singular(int fieldNumber, Message.Builder builder) throws InvalidProtocolBufferException {
+        T value = (T) values[fieldNumber];
+        if (value == null) {
+            for (int i = 0; i < fieldCount; i++) {
+                if (fieldNumbers[i] == fieldNumber) {
+                    builder.mergeFrom(field(i), ExtensionRegistryLite.getEmptyRegistry());
+                }
+            }
+            value = (T) builder.build();
+            values[fieldNumber] = value;
+        }
+        return value;
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T extends Message> List<T> repeated(int fieldNumber, Parser<T> parser) throws InvalidProtocolBufferException {
+        List<T> value = (List<T>) values[fieldNumber];
+        if (value == null) {
+            List<T> elements = new ArrayList<>();
+            for (int i = 0; i < fieldCount; i++) {
+                if (fieldNumbers[i] == fieldNumber) {
+                    elements.add(parser.parseFrom(field(i)));
+                }
+            }
+            value = Collections.unmodifiableList(elements);
+            values[fieldNumber] = value;
+        }
+        return value;
+    }
+}
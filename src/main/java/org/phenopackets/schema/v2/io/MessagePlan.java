@@ -0,0 +1,54 @@
+package org.phenopackets.schema.v2.io;
+
+import com.google.protobuf.Descriptors.Descriptor;
+import com.google.protobuf.Descriptors.FieldDescriptor;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Per-message-type information used by {@link JsonMessageWriter} and {@link JsonMessageReader}, worked out once from
+ * the {@link Descriptor} and cached so that no descriptor lookups are needed whilst reading or writing.
+ */
+final class MessagePlan {
+
+    private static final Map<Descriptor, MessagePlan> PLANS = new ConcurrentHashMap<>();
+
+    /**
+     * The fields of the message in field number order, which is the order they are written in.
+     */
+    final FieldDescriptor[] fields;
+    /**
+     * The quoted JSON name of each field, followed by the name separator, e.g. {@code "phenotypicFeatures": }
+     */
+    final String[] keys;
+    private final Map<String, FieldDescriptor> fieldsByName;
+
+    private MessagePlan(Descriptor descriptor) {
+        this.fields = descriptor.getFields().toArray(new FieldDescriptor[0]);
+        Arrays.sort(fields, Comparator.comparingInt(FieldDescriptor::getNumber));
+        this.keys = new String[fields.length];
+        this.fieldsByName = new HashMap<>();
+        for (int i = 0; i < fields.length; i++) {
+            FieldDescriptor field = fields[i];
+            keys[i] = '"' + field.getJsonName() + "\": ";
+            fieldsByName.put(field.getJsonName(), field);
+            fieldsByName.put(field.getName(), field);
+        }
+    }
+
+    static MessagePlan of(Descriptor descriptor) {
+        return PLANS.computeIfAbsent(descriptor, MessagePlan::new);
+    }
+
+    /**
+     * @param name the JSON or the original proto name of a field
+     * @return the field, or {@code null} if the message has no field of that name
+     */
+    FieldDescriptor field(String name) {
+        return fieldsByName.get(name);
+    }
+}
@@ -0,0 +1,328 @@
+package org.phenopackets.schema.v2.io;
+
+import com.google.protobuf.ByteString;
+import com.google.protobuf.CodedInputStream;
+import com.google.protobuf.CodedOutputStream;
+import com.google.protobuf.Descriptors.Descriptor;
+import com.google.protobuf.Descriptors.FieldDescriptor;
+import com.google.protobuf.InvalidProtocolBufferException;
+import com.google.protobuf.Message;
+import com.google.protobuf.UnsafeByteOperations;
+import com.google.protobuf.WireFormat;
+import org.phenopackets.schema.v2.core.OntologyClass;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A bounded pool of canonical {@link OntologyClass} instances. The same handful of terms, e.g. {@code NCBITaxon:9606}
+ * or a common HPO phenotype, occur many thousands of times across the members of a large cohort and each parsed
+ * occurrence is a separate message. The readers of this package take the terms from the pool while decoding once
+ * {@code internOntologyClasses} is set: a binary term is looked up by its encoded bytes and only decoded the first time
+ * they are met, so the repeated terms neither allocate a message nor strings. Messages parsed elsewhere can be passed
+ * through {@link #internAll(Message)}, which replaces every equal {@link OntologyClass} with a single shared instance
+ * but only reduces the retained heap, as the terms were already decoded and the messages along the path to them are
+ * rebuilt.
+ * <p>
+ * Once the pool holds {@code maximumSize} terms, the least recently used ones are evicted. Evicted terms that are still
+ * referenced from interned messages stay valid, they are just no longer shared with subsequently interned messages.
+ * <p>
+ * Instances are thread-safe. The pool is split into segments with separate locks so that it can be shared by several
+ * parsing threads.
+ */
+public class OntologyClassPool {
+
+    private static final Descriptor ONTOLOGY_CLASS = OntologyClass.getDescriptor();
+    private static final int SEGMENTS = 16;
+    // the fields of each message type through which an OntologyClass can be reached
+    private static final Map<Descriptor, FieldDescriptor[]> TERM_FIELDS = new ConcurrentHashMap<>();
+
+    private final Segment[] segments = new Segment[SEGMENTS];
+    // the canonical instance of each encoding seen by the binary readers, so that repeated terms are not decoded again
+    private final Segment[] encodings = new Segment[SEGMENTS];
+
+    /**
+     * @param maximumSize the number of distinct terms retained before the least recently used ones are evicted
+     */
+    public OntologyClassPool(int maximumSize) {
+        if (maximumSize < 1) {
+            throw new IllegalArgumentException("maximumSize must be positive, got " + maximumSize);
+        }
+        int segmentSize = Math.max(1, (maximumSize + SEGMENTS - 1) / SEGMENTS);
+        for (int i = 0; i < SEGMENTS; i++) {
+            segments[i] = new Segment(segmentSize);
+            encodings[i] = new Segment(segmentSize);
+        }
+    }
+
+    /**
+     * @return the canonical instance equal to the given {@link OntologyClass}, which becomes the canonical instance if
+     * the pool does not hold an equal one.
+     */
+    public OntologyClass intern(OntologyClass ontologyClass) {
+        return segments[segment(ontologyClass.hashCode())].intern(ontologyClass, ontologyClass);
+    }
+
+    /**
+     * @return the canonical instance of the encoded {@link OntologyClass}, which is only decoded if the pool has not
+     * seen the same encoding before.
+     */
+    OntologyClass intern(ByteString encoded) throws InvalidProtocolBufferException {
+        Segment segment = encodings[segment(encoded.hashCode())];
+        OntologyClass canonical = segment.get(encoded);
+        if (canonical == null) {
+            // copy the key, which may be a view of the whole input
+            ByteString key = UnsafeByteOperations.unsafeWrap(encoded.toByteArray());
+            canonical = segment.intern(key, intern(OntologyClass.parseFrom(encoded)));
+        }
+        return canonical;
+    }
+
+    /**
+     * Reads a length-delimited message into the builder as {@link CodedInputStream#readMessage} does, taking each
+     * {@link OntologyClass} from the pool rather than decoding it.
+     */
+    void readMessage(CodedInputStream input, Message.Builder builder) throws IOException {
+        int limit = input.pushLimit(input.readRawVarint32());
+        mergeFrom(input, builder);
+        input.checkLastTagWas(0);
+        input.popLimit(limit);
+    }
+
+    /**
+     * Reads the fields up to the end of the input, or its current limit, into the builder, taking each
+     * {@link OntologyClass} from the pool rather than decoding it. The fields through which no term can be reached are
+     * copied as they are and left to the generated parser.
+     */
+    void mergeFrom(CodedInputStream input, Message.Builder builder) throws IOException {
+        Descriptor type = builder.getDescriptorForType();
+        ByteString.Output otherFields = null;
+        CodedOutputStream otherOutput = null;
+        while (true) {
+            int tag = input.readTag();
+            if (tag == 0) {
+                break;
+            }
+            FieldDescriptor field = WireFormat.getTagWireType(tag) == WireFormat.WIRETYPE_LENGTH_DELIMITED ? termField(type, WireFormat.getTagFieldNumber(tag)) : null;
+            if (field == null) {
+                if (otherFields == null) {
+                    otherFields = ByteString.newOutput();
+                    otherOutput = CodedOutputStream.newInstance(otherFields);
+                }
+                if (!copyField(input, tag, otherOutput)) {
+                    // an end-group tag, which the caller rejects
+                    break;
+                }
+                continue;
+            }
+            if (field.getContainingOneof() != null && otherFields != null) {
+                // the last field of a oneof read wins, so the fields read before this one must be merged first
+                otherOutput.flush();
+                builder.mergeFrom(otherFields.toByteString());
+                otherFields = null;
+            }
+            Message value;
+            if (field.getMessageType().equals(ONTOLOGY_CLASS)) {
+                value = intern(input.readBytes());
+            } else {
+                Message.Builder fieldBuilder = builder.newBuilderForField(field);
+                readMessage(input, fieldBuilder);
+                value = fieldBuilder.build();
+            }
+            if (field.isRepeated()) {
+                builder.addRepeatedField(field, value);
+            } else if (builder.hasField(field)) {
+                // a repeated occurrence of a singular message is merged into the first
+                Message merged = ((Message) builder.getField(field)).toBuilder().mergeFrom(value).build();
+                builder.setField(field, internAll(merged));
+            } else {
+                builder.setField(field, value);
+            }
+        }
+        if (otherFields != null) {
+            otherOutput.flush();
+            builder.mergeFrom(otherFields.toByteString());
+        }
+    }
+
+    /**
+     * Replaces every {@link OntologyClass} nested anywhere within the message with its canonical instance. Only the
+     * messages along the path to a replaced term are rebuilt, everything else is shared with the original.
+     *
+     * @return a message equal to the original, the original itself if all of its terms were already canonical
+     */
+    @SuppressWarnings("unchecked")
+    public <T extends Message> T internAll(T message) {
+        if (message instanceof OntologyClass) {
+            return (T) intern((OntologyClass) message);
+        }
+        return (T) internFields(message);
+    }
+
+    /**
+     * @return the number of terms currently held in the pool.
+     */
+    public int size() {
+        int size = 0;
+        for (Segment segment : segments) {
+            size += segment.size();
+        }
+        return size;
+    }
+
+    private Message internFields(Message message) {
+        Message.Builder builder = null;
+        for (FieldDescriptor field : termFields(message.getDescriptorForType())) {
+            if (field.isRepeated()) {
+                int count = message.getRepeatedFieldCount(field);
+                for (int i = 0; i < count; i++) {
+                    Message value = (Message) message.getRepeatedField(field, i);
+                    Message interned = internAll(value);
+                    if (interned != value) {
+                        if (builder == null) {
+                            builder = message.toBuilder();
+                        }
+                        builder.setRepeatedField(field, i, interned);
+                    }
+                }
+            } else if (message.hasField(field)) {
+                Message value = (Message) message.getField(field);
+                Message interned = internAll(value);
+                if (interned != value) {
+                    if (builder == null) {
+                        builder = message.toBuilder();
+                    }
+                    builder.setField(field, interned);
+                }
+            }
+        }
+        return builder == null ? message : builder.build();
+    }
+
+    /**
+     * Copies the field with the given tag, which has just been read, to the output.
+     *
+     * @return {@code false} if the tag is an end-group tag, which is not copied
+     */
+    private static boolean copyField(CodedInputStream input, int tag, CodedOutputStream output) throws IOException {
+        switch (WireFormat.getTagWireType(tag)) {
+            case WireFormat.WIRETYPE_VARINT:
+                output.writeUInt32NoTag(tag);
+                output.writeUInt64NoTag(input.readRawVarint64());
+                return true;
+            case WireFormat.WIRETYPE_FIXED64:
+                output.writeUInt32NoTag(tag);
+                output.writeFixed64NoTag(input.readRawLittleEndian64());
+                return true;
+            case WireFormat.WIRETYPE_LENGTH_DELIMITED:
+                output.writeUInt32NoTag(tag);
+                output.writeBytesNoTag(input.readBytes());
+                return true;
+            case WireFormat.WIRETYPE_START_GROUP:
+                output.writeUInt32NoTag(tag);
+                int endTag = (WireFormat.getTagFieldNumber(tag) << 3) | WireFormat.WIRETYPE_END_GROUP;
+                while (true) {
+                    int nested = input.readTag();
+                    if (nested == 0 || !copyField(input, nested, output)) {
+                        break;
+                    }
+                }
+                input.checkLastTagWas(endTag);
+                output.writeUInt32NoTag(endTag);
+                return true;
+            case WireFormat.WIRETYPE_END_GROUP:
+                return false;
+            case WireFormat.WIRETYPE_FIXED32:
+                output.writeUInt32NoTag(tag);
+                output.writeFixed32NoTag(input.readRawLittleEndian32());
+                return true;
+            default:
+                throw new InvalidProtocolBufferException("Invalid wire type in tag " + tag);
+        }
+    }
+
+    private static int segment(int hash) {
+        return (hash ^ (hash >>> 16)) & (SEGMENTS - 1);
+    }
+
+    private static FieldDescriptor termField(Descriptor descriptor, int number) {
+        for (FieldDescriptor field : termFields(descriptor)) {
+            if (field.getNumber() == number) {
+                return field;
+            }
+        }
+        return null;
+    }
+
+    private static FieldDescriptor[] termFields(Descriptor descriptor) {
+        FieldDescriptor[] fields = TERM_FIELDS.get(descriptor);
+        if (fields == null) {
+            List<FieldDescriptor> termFields = new ArrayList<>();
+            for (FieldDescriptor field : descriptor.getFields()) {
+                if (field.getJavaType() == FieldDescriptor.JavaType.MESSAGE && reachesOntologyClass(field.getMessageType())) {
+                    termFields.add(field);
+                }
+            }
+            fields = termFields.toArray(new FieldDescriptor[0]);
+            TERM_FIELDS.putIfAbsent(descriptor, fields);
+        }
+        return fields;
+    }
+
+    private static boolean reachesOntologyClass(Descriptor descriptor) {
+        // message types can be recursive, so walk the type graph rather than recursing on termFields
+        Set<Descriptor> seen = new HashSet<>();
+        Deque<Descriptor> pending = new ArrayDeque<>();
+        pending.add(descriptor);
+        while (!pending.isEmpty()) {
+            Descriptor type = pending.poll();
+            if (type.equals(ONTOLOGY_CLASS)) {
+                return true;
+            }
+            if (seen.add(type)) {
+                for (FieldDescriptor field : type.getFields()) {
+                    if (field.getJavaType() == FieldDescriptor.JavaType.MESSAGE) {
+                        pending.add(field.getMessageType());
+                    }
+                }
+            }
+        }
+        return false;
+    }
+
+    private static class Segment {
+
+        // keyed by the term itself, or by its encoding
+        private final Map<Object, OntologyClass> terms;
+
+        private Segment(int maximumSize) {
+            this.terms = new LinkedHashMap<>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<Object, OntologyClass> eldest) {
+                    return size() > maximumSize;
+                }
+            };
+        }
+
+        private synchronized OntologyClass intern(Object key, OntologyClass ontologyClass) {
+            OntologyClass canonical = terms.putIfAbsent(key, ontologyClass);
+            return canonical == null ? ontologyClass : canonical;
+        }
+
+        private synchronized OntologyClass get(Object key) {
+            return terms.get(key);
+        }
+
+        private synchronized int size() {
+            return terms.size();
+        }
+    }
+}
@@ -0,0 +1,176 @@
+package org.phenopackets.schema.v2.io;
+
+import com.google.protobuf.ByteString;
+import com.google.protobuf.CodedInputStream;
+import com.google.protobuf.InvalidProtocolBufferException;
+import com.google.protobuf.UnsafeByteOperations;
+import org.phenopackets.schema.v2.Cohort;
+import org.phenopackets.schema.v2.Phenopacket;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Parses a binary {@link Cohort} using all the threads of a {@link ForkJoinPool}. A single sequential pass finds the
+ * boundaries of the length-delimited {@code members} and reads the remaining, small, fields. The members are then
+ * decoded in parallel straight from the input without copying it.
+ * <p>
+ * The parsed {@link Cohort} is equal to the one returned by {@code Cohort.parseFrom} for the same input.
+ */
+public class ParallelCohortParser {
+
+    // below this many members a range is decoded on the current thread rather than being split further
+    private static final int MEMBERS_PER_TASK = 16;
+
+    private final ForkJoinPool forkJoinPool;
+    private OntologyClassPool ontologyClassPool;
+
+    /**
+     * Creates a parser which runs on the {@link ForkJoinPool#commonPool()}.
+     */
+    public ParallelCohortParser() {
+        this(ForkJoinPool.commonPool());
+    }
+
+    public ParallelCohortParser(ForkJoinPool forkJoinPool) {
+        this.forkJoinPool = forkJoinPool;
+    }
+
+    /**
+     * Takes the ontology classes of each member from the pool as it is decoded, so that a term which was met before is
+     * neither decoded again nor retained more than once.
+     *
+     * @return this parser
+     */
+    public ParallelCohortParser internOntologyClasses(OntologyClassPool ontologyClassPool) {
+        this.ontologyClassPool = ontologyClassPool;
+        return this;
+    }
+
+    public Cohort parse(byte[] bytes) throws IOException {
+        return parse(UnsafeByteOperations.unsafeWrap(bytes));
+    }
+
+    /**
+     * Parses the remaining bytes of the buffer, which must not be modified until this returns.
+     */
+    public Cohort parse(ByteBuffer buffer) throws IOException {
+        return parse(UnsafeByteOperations.unsafeWrap(buffer));
+    }
+
+    /**
+     * Reads the stream to the end before parsing. The stream is not closed.
+     */
+    public Cohort parse(InputStream inputStream) throws IOException {
+        return parse(ByteString.readFrom(inputStream));
+    }
+
+    public Cohort parse(ByteString data) throws IOException {
+        Cohort.Builder cohort = Cohort.newBuilder();
+        MemberFrames frames = scan(data, cohort);
+        Phenopacket[] members = new Phenopacket[frames.count];
+        try {
+            forkJoinPool.invoke(new DecodeMembers(data, frames, members, 0, frames.count));
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        return cohort.addAllMembers(Arrays.asList(members)).build();
+    }
+
+    /**
+     * Records the offset and length of each member, merging all the other fields into the header.
+     */
+    private static MemberFrames scan(ByteString data, Cohort.Builder header) throws IOException {
+        MemberFrames frames = new MemberFrames();
+        CodedInputStream input = data.newCodedInput();
+        while (true) {
+            int tag = input.readTag();
+            if (tag == 0) {
+                return frames;
+            } else if (tag == CohortReader.MEMBERS_TAG) {
+                int length = input.readRawVarint32();
+                if (length < 0) {
+                    throw new InvalidProtocolBufferException("Negative length for Cohort member " + frames.count);
+                }
+                frames.add(input.getTotalBytesRead(), length);
+                input.skipRawBytes(length);
+            } else {
+                CohortReader.mergeHeaderField(input, tag, header);
+            }
+        }
+    }
+
+    private static class MemberFrames {
+
+        private int[] offsets = new int[1024];
+        private int[] lengths = new int[1024];
+        private int count;
+
+        private void add(int offset, int length) {
+            if (count == offsets.length) {
+                offsets = Arrays.copyOf(offsets, count * 2);
+                lengths = Arrays.copyOf(lengths, count * 2);
+            }
+            offsets[count] = offset;
+            lengths[count] = length;
+            count++;
+        }
+    }
+
+    private class DecodeMembers extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        private final ByteString data;
+        private final MemberFrames frames;
+        private final Phenopacket[] members;
+        private final int from;
+        private final int to;
+
+        private DecodeMembers(ByteString data, MemberFrames frames, Phenopacket[] members, int from, int to) {
+            this.data = data;
+            this.frames = frames;
+            this.members = members;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= MEMBERS_PER_TASK) {
+                for (int i = from; i < to; i++) {
+                    members[i] = decode(i);
+                }
+            } else {
+                int middle = (from + to) >>> 1;
+                invokeAll(new DecodeMembers(data, frames, members, from, middle),
+                        new DecodeMembers(data, frames, members, middle, to));
+            }
+        }
+
+        private Phenopacket decode(int index) {
+            int offset = frames.offsets[index];
+            try {
+                ByteString member = data.substring(offset, offset + frames.lengths[index]);
+                if (ontologyClassPool == null) {
+                    return Phenopacket.parseFrom(member);
+                }
+                CodedInputStream input = member.newCodedInput();
+                // the encoded terms are looked up in the pool without copying them
+                input.enableAliasing(true);
+                Phenopacket.Builder builder = Phenopacket.newBuilder();
+                ontologyClassPool.mergeFrom(input, builder);
+                input.checkLastTagWas(0);
+                return builder.build();
+            } catch (IOException e) {
+                // decoding from memory only fails on invalid input
+                throw new UncheckedIOException(new InvalidProtocolBufferException("Invalid Cohort member " + index + ": " + e.getMessage()));
+            }
+        }
+    }
+}
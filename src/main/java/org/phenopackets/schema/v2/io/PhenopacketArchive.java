@@ -0,0 +1,216 @@
+package org.phenopackets.schema.v2.io;
+
+import com.google.protobuf.ByteString;
+import com.google.protobuf.CodedInputStream;
+import com.google.protobuf.InvalidProtocolBufferException;
+import com.google.protobuf.UnsafeByteOperations;
+import org.phenopackets.schema.v2.Phenopacket;
+import org.phenopackets.schema.v2.SchemaVersion;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Read-only random access by id to an archive of phenopackets written by a {@link PhenopacketArchiveWriter}.
+ * <p>
+ * An archive consists of two files:
+ * <ul>
+ *     <li>the data file, which is a phenopacket stream as read by {@link PhenopacketStreamReader}</li>
+ *     <li>the index file, with the same name plus {@code .idx}. This holds the four magic bytes {@code PPKI}, the
+ *     index format version as an int, the number of phenopackets as an int and the length of the data file as a
+ *     long, followed by a 20 byte entry for each phenopacket: the 64-bit FNV-1a hash of the UTF-8 encoded id, the
+ *     offset of the phenopacket in the data file as a long and its length as an int. Entries are sorted by hash, then
+ *     by offset, and all values are big-endian.</li>
+ * </ul>
+ * Both files are memory-mapped when the archive is opened, which takes the same time whatever the size of the archive.
+ * A lookup is a binary search of the index followed by a check of the id of the matching phenopackets, touching only
+ * the pages involved. The mappings stay in place until the archive is garbage collected.
+ * <p>
+ * Instances are thread-safe.
+ */
+public class PhenopacketArchive {
+
+    static final byte[] INDEX_MAGIC = {'P', 'P', 'K', 'I'};
+    static final int INDEX_FORMAT_VERSION = 1;
+    static final int INDEX_HEADER_SIZE = 20;
+    static final int INDEX_ENTRY_SIZE = 20;
+    static final int MAX_ENTRIES = (Integer.MAX_VALUE - INDEX_HEADER_SIZE) / INDEX_ENTRY_SIZE;
+    /**
+     * The data file is mapped in overlapping segments starting every {@code SEGMENT_STEP} bytes, each up to twice
+     * as long, so that any phenopacket smaller than {@code SEGMENT_STEP} lies entirely within the segment that its
+     * offset falls into.
+     */
+    static final long SEGMENT_STEP = 1L << 30;
+    static final int MAX_PHENOPACKET_SIZE = (int) SEGMENT_STEP;
+
+    private static final long FNV_OFFSET_BASIS = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    private final ByteBuffer[] segments;
+    private final ByteBuffer index;
+    private final int size;
+
+    private PhenopacketArchive(ByteBuffer[] segments, ByteBuffer index, int size) {
+        this.segments = segments;
+        this.index = index;
+        this.size = size;
+    }
+
+    /**
+     * @param dataFile the data file of the archive. The index file is expected alongside, see {@link #indexFile(Path)}.
+     * @throws IOException if either file could not be read, or they are not a valid archive
+     */
+    public static PhenopacketArchive open(Path dataFile) throws IOException {
+        ByteBuffer index;
+        try (FileChannel channel = FileChannel.open(indexFile(dataFile), StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IOException("Phenopacket archive index is too large");
+            }
+            index = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        byte[] magic = new byte[INDEX_MAGIC.length];
+        if (index.capacity() < INDEX_HEADER_SIZE || !Arrays.equals(readMagic(index, magic), INDEX_MAGIC)) {
+            throw new IOException("Not a phenopacket archive index - missing magic bytes");
+        }
+        int formatVersion = index.getInt(4);
+        if (formatVersion != INDEX_FORMAT_VERSION) {
+            throw new IOException("Unsupported phenopacket archive index format version " + formatVersion);
+        }
+        int size = index.getInt(8);
+        long dataLength = index.getLong(12);
+        if (size < 0 || index.capacity() != INDEX_HEADER_SIZE + (long) size * INDEX_ENTRY_SIZE) {
+            throw new IOException("Phenopacket archive index is truncated");
+        }
+
+        ByteBuffer[] segments;
+        try (FileChannel channel = FileChannel.open(dataFile, StandardOpenOption.READ)) {
+            if (channel.size() != dataLength) {
+                throw new IOException("Phenopacket archive data file is " + channel.size() + " bytes long, but the index expects " + dataLength);
+            }
+            segments = new ByteBuffer[(int) Math.max(1, (dataLength + SEGMENT_STEP - 1) / SEGMENT_STEP)];
+            for (int i = 0; i < segments.length; i++) {
+                long start = i * SEGMENT_STEP;
+                segments[i] = channel.map(FileChannel.MapMode.READ_ONLY, start, Math.min(dataLength - start, Integer.MAX_VALUE));
+            }
+        }
+        SchemaVersion schemaVersion = PhenopacketStreamFormat.readHeader(CodedInputStream.newInstance(segments[0].duplicate()));
+        if (schemaVersion != SchemaVersion.v2_0) {
+            throw new IOException("Unable to read schema version " + schemaVersion + " phenopackets");
+        }
+        return new PhenopacketArchive(segments, index, size);
+    }
+
+    private static byte[] readMagic(ByteBuffer index, byte[] magic) {
+        for (int i = 0; i < magic.length; i++) {
+            magic[i] = index.get(i);
+        }
+        return magic;
+    }
+
+    /**
+     * @return the path of the index file belonging to the given data file.
+     */
+    public static Path indexFile(Path dataFile) {
+        return dataFile.resolveSibling(dataFile.getFileName() + ".idx");
+    }
+
+    /**
+     * @return the number of phenopackets in the archive.
+     */
+    public int size() {
+        return size;
+    }
+
+    public boolean contains(String id) throws InvalidProtocolBufferException {
+        return find(id) != null;
+    }
+
+    /**
+     * @return the binary encoded phenopacket with the given id, backed by the mapped data file, or {@code null} if
+     * there is no such phenopacket in the archive.
+     */
+    public ByteString getBytes(String id) throws InvalidProtocolBufferException {
+        LazyPhenopacket phenopacket = find(id);
+        return phenopacket == null ? null : phenopacket.toByteString();
+    }
+
+    /**
+     * @return a {@link LazyPhenopacket} view of the phenopacket with the given id, or {@code null} if there is no such
+     * phenopacket in the archive.
+     */
+    public LazyPhenopacket getLazy(String id) throws InvalidProtocolBufferException {
+        return find(id);
+    }
+
+    /**
+     * @return the fully decoded phenopacket with the given id, or {@code null} if there is no such phenopacket in the
+     * archive.
+     */
+    public Phenopacket get(String id) throws InvalidProtocolBufferException {
+        LazyPhenopacket phenopacket = find(id);
+        return phenopacket == null ? null : phenopacket.toPhenopacket();
+    }
+
+    private LazyPhenopacket find(String id) throws InvalidProtocolBufferException {
+        long hash = hash(id);
+        // the first entry with the hash, if any
+        int low = 0;
+        int high = size;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (entryHash(middle) < hash) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        for (int i = low; i < size && entryHash(i) == hash; i++) {
+            LazyPhenopacket phenopacket = LazyPhenopacket.of(data(entryOffset(i), entryLength(i)));
+            if (phenopacket.getId().equals(id)) {
+                return phenopacket;
+            }
+        }
+        return null;
+    }
+
+    private long entryHash(int entry) {
+        return index.getLong(INDEX_HEADER_SIZE + entry * INDEX_ENTRY_SIZE);
+    }
+
+    private long entryOffset(int entry) {
+        return index.getLong(INDEX_HEADER_SIZE + entry * INDEX_ENTRY_SIZE + 8);
+    }
+
+    private int entryLength(int entry) {
+        return index.getInt(INDEX_HEADER_SIZE + entry * INDEX_ENTRY_SIZE + 16);
+    }
+
+    private ByteString data(long offset, int length) throws InvalidProtocolBufferException {
+        ByteBuffer segment = segments[(int) (offset / SEGMENT_STEP)];
+        int position = (int) (offset % SEGMENT_STEP);
+        if (length < 0 || position + (long) length > segment.capacity()) {
+            throw new InvalidProtocolBufferException("Phenopacket archive index entry lies outside of the data file");
+        }
+        // a duplicate so that concurrent lookups do not share a position and limit
+        ByteBuffer buffer = segment.duplicate();
+        buffer.limit(position + length).position(position);
+        return UnsafeByteOperations.unsafeWrap(buffer);
+    }
+
+    /**
+     * @return the 64-bit FNV-1a hash of the UTF-8 encoding of the id.
+     */
+    static long hash(String id) {
+        long hash = FNV_OFFSET_BASIS;
+        for (byte b : id.getBytes(StandardCharsets.UTF_8)) {
+            hash ^= b & 0xff;
+            hash *= FNV_PRIME;
+        }
+        return hash;
+    }
+}
@@ -0,0 +1,139 @@
+package org.phenopackets.schema.v2.io;
+
+import com.google.protobuf.CodedOutputStream;
+import org.phenopackets.schema.v2.Phenopacket;
+import org.phenopackets.schema.v2.SchemaVersion;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+/**
+ * Writes an archive of phenopackets for random access by id through a {@link PhenopacketArchive}. The phenopackets
+ * are written to the data file as they are added, whilst the index entries are kept in memory and only sorted and
+ * written to the index file when the writer is closed.
+ * <p>
+ * Ids are expected to be unique. Should the same id be written more than once, lookups return the first phenopacket
+ * written with it.
+ * <p>
+ * Instances are not thread-safe.
+ */
+public class PhenopacketArchiveWriter implements Closeable {
+
+    private final Path dataFile;
+    private final PhenopacketStreamWriter writer;
+    // MAX_ENTRIES is below 2^31, so an entry number fits in the low 31 bits of a sort key
+    private static final int ENTRY_BITS = 31;
+
+    private long position;
+    private long[] hashes = new long[1024];
+    private long[] offsets = new long[1024];
+    private int[] lengths = new int[1024];
+    private int count;
+
+    private PhenopacketArchiveWriter(Path dataFile) throws IOException {
+        this.dataFile = dataFile;
+        this.writer = PhenopacketStreamWriter.create(dataFile);
+        this.position = PhenopacketStreamFormat.headerSize(SchemaVersion.v2_0);
+    }
+
+    /**
+     * Creates a new archive, replacing any existing data and index files.
+     *
+     * @param dataFile the data file of the archive. The index is written alongside, see
+     *                 {@link PhenopacketArchive#indexFile(Path)}.
+     */
+    public static PhenopacketArchiveWriter create(Path dataFile) throws IOException {
+        return new PhenopacketArchiveWriter(dataFile);
+    }
+
+    /**
+     * @throws IllegalArgumentException if the phenopacket is 1 GiB or larger, or the archive is full
+     */
+    public void write(Phenopacket phenopacket) throws IOException {
+        int length = phenopacket.getSerializedSize();
+        if (length >= PhenopacketArchive.MAX_PHENOPACKET_SIZE) {
+            throw new IllegalArgumentException("Phenopacket " + phenopacket.getId() + " is too large for an archive: " + length + " bytes");
+        }
+        if (count == PhenopacketArchive.MAX_ENTRIES) {
+            throw new IllegalArgumentException("Phenopacket archive is full");
+        }
+        if (count == hashes.length) {
+            int capacity = (int) Math.min((long) count * 2, PhenopacketArchive.MAX_ENTRIES);
+            hashes = Arrays.copyOf(hashes, capacity);
+            offsets = Arrays.copyOf(offsets, capacity);
+            lengths = Arrays.copyOf(lengths, capacity);
+        }
+        long offset = position + CodedOutputStream.computeUInt32SizeNoTag(length);
+        writer.write(phenopacket);
+        hashes[count] = PhenopacketArchive.hash(phenopacket.getId());
+        offsets[count] = offset;
+        lengths[count] = length;
+        count++;
+        position = offset + length;
+    }
+
+    public void writeAll(Iterable<Phenopacket> phenopackets) throws IOException {
+        for (Phenopacket phenopacket : phenopackets) {
+            write(phenopacket);
+        }
+    }
+
+    /**
+     * @return the number of phenopackets written by this writer.
+     */
+    public int count() {
+        return count;
+    }
+
+    /**
+     * Closes the data file and writes the index.
+     */
+    @Override
+    public void close() throws IOException {
+        writer.close();
+        int[] order = hashOrder(hashes, count);
+        Path indexFile = PhenopacketArchive.indexFile(dataFile);
+        try (DataOutputStream output = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(indexFile), 64 * 1024))) {
+            output.write(PhenopacketArchive.INDEX_MAGIC);
+            output.writeInt(PhenopacketArchive.INDEX_FORMAT_VERSION);
+            output.writeInt(count);
+            output.writeLong(position);
+            for (int i : order) {
+                output.writeLong(hashes[i]);
+                output.writeLong(offsets[i]);
+                output.writeInt(lengths[i]);
+            }
+        }
+    }
+
+    /**
+     * @return the numbers of the first {@code count} entries in ascending order of their hash, with entries with the
+     * same hash in the order they were written
+     */
+    static int[] hashOrder(long[] hashes, int count) {
+        // sort keys of the top 33 bits of the hash and the entry number, ordered as the hashes except where the top
+        // bits are the same, so that sorting them leaves only a few neighbouring keys to be put in order
+        long[] keys = new long[count];
+        for (int i = 0; i < count; i++) {
+            keys[i] = (hashes[i] >> ENTRY_BITS) << ENTRY_BITS | i;
+        }
+        Arrays.sort(keys);
+        int mask = (1 << ENTRY_BITS) - 1;
+        int[] order = new int[count];
+        for (int i = 0; i < count; i++) {
+            int entry = (int) keys[i] & mask;
+            int j = i;
+            while (j > 0 && (hashes[order[j - 1]] > hashes[entry] || hashes[order[j - 1]] == hashes[entry] && order[j - 1] > entry)) {
+                order[j] = order[j - 1];
+                j--;
+            }
+            order[j] = entry;
+        }
+        return order;
+    }
+}
@@ -0,0 +1,58 @@
+package org.phenopackets.schema.v2.io;
+
+import com.google.protobuf.CodedInputStream;
+import com.google.protobuf.CodedOutputStream;
+import org.phenopackets.schema.v2.SchemaVersion;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Constants and header handling shared by {@link PhenopacketStreamWriter} and {@link PhenopacketStreamReader}.
+ * <p>
+ * A phenopacket stream consists of
+ * <ol>
+ *     <li>the four magic bytes {@code PPKS}</li>
+ *     <li>the stream format version, as a varint</li>
+ *     <li>the phenopacket schema version of the contents, e.g. {@code 2.0}, as a length-prefixed UTF-8 string</li>
+ *     <li>any number of phenopackets, each prefixed with its varint encoded length as written by
+ *     {@link com.google.protobuf.MessageLite#writeDelimitedTo(java.io.OutputStream)}</li>
+ * </ol>
+ */
+final class PhenopacketStreamFormat {
+
+    static final byte[] MAGIC = {'P', 'P', 'K', 'S'};
+    static final int FORMAT_VERSION = 1;
+
+    private PhenopacketStreamFormat() {
+    }
+
+    static void writeHeader(CodedOutputStream output, SchemaVersion schemaVersion) throws IOException {
+        output.writeRawBytes(MAGIC);
+        output.writeUInt32NoTag(FORMAT_VERSION);
+        output.writeStringNoTag(schemaVersion.toString());
+    }
+
+    /**
+     * @return the number of bytes written by {@link #writeHeader(CodedOutputStream, SchemaVersion)}.
+     */
+    static int headerSize(SchemaVersion schemaVersion) {
+        return MAGIC.length + CodedOutputStream.computeUInt32SizeNoTag(FORMAT_VERSION) + CodedOutputStream.computeStringSizeNoTag(schemaVersion.toString());
+    }
+
+    static SchemaVersion readHeader(CodedInputStream input) throws IOException {
+        byte[] magic = input.isAtEnd() ? new byte[0] : input.readRawBytes(MAGIC.length);
+        if (!Arrays.equals(magic, MAGIC)) {
+            throw new IOException("Not a phenopacket stream - missing magic bytes");
+        }
+        int formatVersion = input.readUInt32();
+        if (formatVersion != FORMAT_VERSION) {
+            throw new IOException("Unsupported phenopacket stream format version " + formatVersion);
+        }
+        try {
+            return SchemaVersion.parse(input.readStringRequireUtf8());
+        } catch (IllegalArgumentException e) {
+            throw new IOException(e.getMessage());
+        }
+    }
+}
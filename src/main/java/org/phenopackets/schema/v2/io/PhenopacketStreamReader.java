@@ -0,0 +1,159 @@
+package org.phenopackets.schema.v2.io;
+
+import com.google.protobuf.CodedInputStream;
+import com.google.protobuf.ExtensionRegistryLite;
+import org.phenopackets.schema.v2.Phenopacket;
+import org.phenopackets.schema.v2.SchemaVersion;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Sequential reader for the phenopacket streams written by {@link PhenopacketStreamWriter}. Phenopackets are decoded
+ * one at a time as they are iterated.
+ * <p>
+ * Instances are not thread-safe and the phenopackets can only be iterated once.
+ */
+public class PhenopacketStreamReader implements Iterable<Phenopacket>, Closeable {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final InputStream inputStream;
+    private final CodedInputStream input;
+    private final SchemaVersion schemaVersion;
+
+    private OntologyClassPool ontologyClassPool;
+    private Phenopacket next;
+    private boolean iterated;
+
+    private PhenopacketStreamReader(InputStream inputStream) throws IOException {
+        this.inputStream = inputStream;
+        this.input = CodedInputStream.newInstance(inputStream, BUFFER_SIZE);
+        this.schemaVersion = PhenopacketStreamFormat.readHeader(input);
+        if (schemaVersion != SchemaVersion.v2_0) {
+            throw new IOException("Unable to read schema version " + schemaVersion + " phenopackets");
+        }
+    }
+
+    /**
+     * @param inputStream stream positioned at the start of a phenopacket stream. This is closed along with the reader.
+     * @return a reader for the phenopackets in the stream
+     * @throws IOException if the stream header is missing or is for an unsupported schema version
+     */
+    public static PhenopacketStreamReader of(InputStream inputStream) throws IOException {
+        try {
+            return new PhenopacketStreamReader(inputStream);
+        } catch (IOException e) {
+            inputStream.close();
+            throw e;
+        }
+    }
+
+    public static PhenopacketStreamReader open(Path path) throws IOException {
+        return of(Files.newInputStream(path));
+    }
+
+    /**
+     * Takes the ontology classes of each phenopacket from the pool as it is decoded, so that a repeated term is neither
+     * decoded again nor retained more than once.
+     *
+     * @return this reader
+     */
+    public PhenopacketStreamReader internOntologyClasses(OntologyClassPool ontologyClassPool) {
+        this.ontologyClassPool = ontologyClassPool;
+        return this;
+    }
+
+    /**
+     * @return the schema version declared in the stream header.
+     */
+    public SchemaVersion schemaVersion() {
+        return schemaVersion;
+    }
+
+    /**
+     * @return the next phenopacket in the stream, or {@code null} if the end of the stream has been reached.
+     * @throws IOException if the stream could not be read or contains an invalid phenopacket
+     */
+    public Phenopacket read() throws IOException {
+        if (next != null) {
+            Phenopacket phenopacket = next;
+            next = null;
+            return phenopacket;
+        }
+        if (input.isAtEnd()) {
+            return null;
+        }
+        Phenopacket phenopacket;
+        if (ontologyClassPool == null) {
+            phenopacket = input.readMessage(Phenopacket.parser(), ExtensionRegistryLite.getEmptyRegistry());
+        } else {
+            Phenopacket.Builder builder = Phenopacket.newBuilder();
+            ontologyClassPool.readMessage(input, builder);
+            phenopacket = builder.build();
+        }
+        // the size limit applies to the whole stream, not to a single phenopacket
+        input.resetSizeCounter();
+        return phenopacket;
+    }
+
+    @Override
+    public Iterator<Phenopacket> iterator() {
+        if (iterated) {
+            throw new IllegalStateException("Phenopacket stream can only be iterated once");
+        }
+        iterated = true;
+        return new Iterator<>() {
+            @Override
+            public boolean hasNext() {
+                if (next == null) {
+                    try {
+                        next = read();
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                }
+                return next != null;
+            }
+
+            @Override
+            public Phenopacket next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                Phenopacket phenopacket = next;
+                next = null;
+                return phenopacket;
+            }
+        };
+    }
+
+    /**
+     * @return a sequential {@link Stream} of the phenopackets which closes this reader when it is closed.
+     */
+    public Stream<Phenopacket> phenopackets() {
+        Spliterator<Phenopacket> spliterator = Spliterators.spliteratorUnknownSize(iterator(), Spliterator.ORDERED | Spliterator.NONNULL);
+        return StreamSupport.stream(spliterator, false).onClose(() -> {
+            try {
+                close();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+    }
+
+    @Override
+    public void close() throws IOException {
+        inputStream.close();
+    }
+}
@@ -0,0 +1,109 @@
+package org.phenopackets.schema.v2.io;
+
+import com.google.protobuf.CodedInputStream;
+import com.google.protobuf.CodedOutputStream;
+import org.phenopackets.schema.v2.Phenopacket;
+import org.phenopackets.schema.v2.SchemaVersion;
+
+import java.io.Closeable;
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Writes {@link Phenopacket} messages to a phenopacket stream, a binary container of length-delimited phenopackets
+ * behind a short header identifying the format and the schema version. Streams can be appended to and are read back
+ * sequentially by a {@link PhenopacketStreamReader}.
+ * <p>
+ * Instances are not thread-safe.
+ */
+public class PhenopacketStreamWriter implements Closeable, Flushable {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final OutputStream outputStream;
+    private final CodedOutputStream output;
+    private long count;
+
+    private PhenopacketStreamWriter(OutputStream outputStream) {
+        this.outputStream = outputStream;
+        this.output = CodedOutputStream.newInstance(outputStream, BUFFER_SIZE);
+    }
+
+    /**
+     * Starts a new phenopacket stream by writing the header to the given {@link OutputStream}.
+     *
+     * @param outputStream destination of the stream. This is closed along with the writer.
+     * @return a writer for the phenopackets
+     * @throws IOException if the header could not be written
+     */
+    public static PhenopacketStreamWriter of(OutputStream outputStream) throws IOException {
+        PhenopacketStreamWriter writer = new PhenopacketStreamWriter(outputStream);
+        PhenopacketStreamFormat.writeHeader(writer.output, SchemaVersion.v2_0);
+        return writer;
+    }
+
+    /**
+     * Creates a new phenopacket stream file, replacing any existing file at the given path.
+     */
+    public static PhenopacketStreamWriter create(Path path) throws IOException {
+        return of(Files.newOutputStream(path));
+    }
+
+    /**
+     * Opens a phenopacket stream file for appending. A new stream is created if the file does not exist or is empty,
+     * otherwise the header of the existing file is checked before any phenopackets are appended.
+     *
+     * @throws IOException if the existing file is not a phenopacket stream of the current schema version
+     */
+    public static PhenopacketStreamWriter append(Path path) throws IOException {
+        if (Files.notExists(path) || Files.size(path) == 0) {
+            return create(path);
+        }
+        try (InputStream inputStream = Files.newInputStream(path)) {
+            SchemaVersion schemaVersion = PhenopacketStreamFormat.readHeader(CodedInputStream.newInstance(inputStream));
+            if (schemaVersion != SchemaVersion.v2_0) {
+                throw new IOException("Cannot append schema version " + SchemaVersion.v2_0 + " phenopackets to a " + schemaVersion + " stream");
+            }
+        }
+        return new PhenopacketStreamWriter(Files.newOutputStream(path, StandardOpenOption.APPEND));
+    }
+
+    public void write(Phenopacket phenopacket) throws IOException {
+        output.writeUInt32NoTag(phenopacket.getSerializedSize());
+        phenopacket.writeTo(output);
+        count++;
+    }
+
+    public void writeAll(Iterable<Phenopacket> phenopackets) throws IOException {
+        for (Phenopacket phenopacket : phenopackets) {
+            write(phenopacket);
+        }
+    }
+
+    /**
+     * @return the number of phenopackets written by this writer.
+     */
+    public long count() {
+        return count;
+    }
+
+    @Override
+    public void flush() throws IOException {
+        output.flush();
+        outputStream.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            flush();
+        } finally {
+            outputStream.close();
+        }
+    }
+}
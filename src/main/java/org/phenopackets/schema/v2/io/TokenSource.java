@@ -0,0 +1,45 @@
+package org.phenopackets.schema.v2.io;
+
+import java.io.IOException;
+
+/**
+ * Pull-style source of JSON-like tokens consumed by {@link JsonMessageReader}. {@link JsonTokenizer} provides the
+ * tokens of JSON text, other implementations can map the events of a different textual format, such as YAML, onto
+ * the same structure.
+ */
+interface TokenSource {
+
+    enum Token {
+        BEGIN_OBJECT, END_OBJECT, BEGIN_ARRAY, END_ARRAY, STRING, NUMBER, BOOLEAN, NULL, END_DOCUMENT
+    }
+
+    Token peek() throws IOException;
+
+    void beginObject() throws IOException;
+
+    void endObject() throws IOException;
+
+    void beginArray() throws IOException;
+
+    void endArray() throws IOException;
+
+    /**
+     * @return true if the current object or array has another member.
+     */
+    boolean hasNext() throws IOException;
+
+    String nextName() throws IOException;
+
+    String nextString() throws IOException;
+
+    /**
+     * @return the literal text of the next number.
+     */
+    String nextNumber() throws IOException;
+
+    boolean nextBoolean() throws IOException;
+
+    void nextNull() throws IOException;
+
+    void skipValue() throws IOException;
+}
@@ -0,0 +1,183 @@
+package org.phenopackets.schema.v2.io;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.dataformat.yaml.YAMLFactory;
+import com.google.protobuf.InvalidProtocolBufferException;
+import com.google.protobuf.Message;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+
+/**
+ * Reads YAML into protobuf message builders by mapping the YAML parser events straight onto the fields of the
+ * builder, using the same field handling as {@link JsonMessageReader}. No JSON text or Jackson tree is created on the
+ * way.
+ * <p>
+ * This needs {@code jackson-dataformat-yaml}, which is an optional dependency of this artifact.
+ */
+public class YamlMessageReader {
+
+    private static final YAMLFactory YAML_FACTORY = new YAMLFactory();
+
+    private YamlMessageReader() {
+    }
+
+    public static void merge(String yaml, Message.Builder builder) throws IOException {
+        merge(new StringReader(yaml), builder);
+    }
+
+    /**
+     * Merges the YAML document read from the {@link Reader} into the builder. The reader is not closed.
+     */
+    public static void merge(Reader reader, Message.Builder builder) throws IOException {
+        try (JsonParser parser = YAML_FACTORY.createParser(reader)) {
+            parser.disable(JsonParser.Feature.AUTO_CLOSE_SOURCE);
+            YamlTokenSource tokenSource = new YamlTokenSource(parser);
+            new JsonMessageReader(tokenSource).mergeMessage(builder);
+            if (tokenSource.peek() != TokenSource.Token.END_DOCUMENT) {
+                throw new InvalidProtocolBufferException("Invalid YAML: unexpected content after the end of the message");
+            }
+        }
+    }
+
+    /**
+     * Adapts the events of a Jackson YAML parser to a {@link TokenSource}.
+     */
+    private static class YamlTokenSource implements TokenSource {
+
+        private final JsonParser parser;
+        private JsonToken current;
+        private boolean started;
+
+        private YamlTokenSource(JsonParser parser) {
+            this.parser = parser;
+        }
+
+        private JsonToken current() throws IOException {
+            if (!started) {
+                started = true;
+                current = parser.nextToken();
+            }
+            return current;
+        }
+
+        private void advance() throws IOException {
+            current = parser.nextToken();
+        }
+
+        private void expect(JsonToken expected) throws IOException {
+            if (current() != expected) {
+                throw new InvalidProtocolBufferException("Invalid YAML: expected " + expected + " but was " + current());
+            }
+            advance();
+        }
+
+        @Override
+        public Token peek() throws IOException {
+            JsonToken token = current();
+            if (token == null) {
+                return Token.END_DOCUMENT;
+            }
+            switch (token) {
+                case START_OBJECT:
+                    return Token.BEGIN_OBJECT;
+                case END_OBJECT:
+                    return Token.END_OBJECT;
+                case START_ARRAY:
+                    return Token.BEGIN_ARRAY;
+                case END_ARRAY:
+                    return Token.END_ARRAY;
+                case FIELD_NAME:
+                case VALUE_STRING:
+                    return Token.STRING;
+                case VALUE_NUMBER_INT:
+                case VALUE_NUMBER_FLOAT:
+                    return Token.NUMBER;
+                case VALUE_TRUE:
+                case VALUE_FALSE:
+                    return Token.BOOLEAN;
+                case VALUE_NULL:
+                    return Token.NULL;
+                default:
+                    throw new InvalidProtocolBufferException("Invalid YAML: unsupported token " + token);
+            }
+        }
+
+        @Override
+        public void beginObject() throws IOException {
+            expect(JsonToken.START_OBJECT);
+        }
+
+        @Override
+        public void endObject() throws IOException {
+            expect(JsonToken.END_OBJECT);
+        }
+
+        @Override
+        public void beginArray() throws IOException {
+            expect(JsonToken.START_ARRAY);
+        }
+
+        @Override
+        public void endArray() throws IOException {
+            expect(JsonToken.END_ARRAY);
+        }
+
+        @Override
+        public boolean hasNext() throws IOException {
+            JsonToken token = current();
+            return token != JsonToken.END_OBJECT && token != JsonToken.END_ARRAY && token != null;
+        }
+
+        @Override
+        public String nextName() throws IOException {
+            if (current() != JsonToken.FIELD_NAME) {
+                throw new InvalidProtocolBufferException("Invalid YAML: expected a key but was " + current());
+            }
+            String name = parser.getCurrentName();
+            advance();
+            return name;
+        }
+
+        @Override
+        public String nextString() throws IOException {
+            // as in JSON parsed by JsonFormat, any scalar is acceptable as a string
+            JsonToken token = current();
+            if (token == null || !token.isScalarValue() || token == JsonToken.VALUE_NULL) {
+                throw new InvalidProtocolBufferException("Invalid YAML: expected a scalar but was " + token);
+            }
+            String text = parser.getText();
+            advance();
+            return text;
+        }
+
+        @Override
+        public String nextNumber() throws IOException {
+            return nextString();
+        }
+
+        @Override
+        public boolean nextBoolean() throws IOException {
+            JsonToken token = current();
+            if (token != JsonToken.VALUE_TRUE && token != JsonToken.VALUE_FALSE) {
+                throw new InvalidProtocolBufferException("Invalid YAML: expected a boolean but was " + token);
+            }
+            advance();
+            return token == JsonToken.VALUE_TRUE;
+        }
+
+        @Override
+        public void nextNull() throws IOException {
+            expect(JsonToken.VALUE_NULL);
+        }
+
+        @Override
+        public void skipValue() throws IOException {
+            current();
+            parser.skipChildren();
+            advance();
+        }
+    }
+}
@@ -0,0 +1,178 @@
+package org.phenopackets.schema.v2.io;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.dataformat.yaml.YAMLFactory;
+import com.google.protobuf.ByteString;
+import com.google.protobuf.Descriptors.EnumValueDescriptor;
+import com.google.protobuf.Descriptors.FieldDescriptor;
+import com.google.protobuf.MessageOrBuilder;
+import com.google.protobuf.Timestamp;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.util.Base64;
+
+/**
+ * Writes protobuf messages as YAML by emitting generator events straight from the message fields, rather than
+ * printing JSON and re-reading it into a Jackson tree first. The output is the same as reading the canonical JSON
+ * printed by {@code JsonFormat} into a Jackson tree and writing that with a {@code YAMLMapper}.
+ * <p>
+ * This needs {@code jackson-dataformat-yaml}, which is an optional dependency of this artifact.
+ */
+public class YamlMessageWriter {
+
+    private static final YAMLFactory YAML_FACTORY = new YAMLFactory();
+    private static final String TIMESTAMP_TYPE = Timestamp.getDescriptor().getFullName();
+
+    private YamlMessageWriter() {
+    }
+
+    public static String toYaml(MessageOrBuilder message) throws IOException {
+        StringWriter stringWriter = new StringWriter();
+        write(message, stringWriter);
+        return stringWriter.toString();
+    }
+
+    /**
+     * @return the message as YAML, nested under the given label.
+     */
+    public static String toYaml(MessageOrBuilder message, String label) throws IOException {
+        StringWriter stringWriter = new StringWriter();
+        try (JsonGenerator generator = YAML_FACTORY.createGenerator(stringWriter)) {
+            generator.writeStartObject();
+            generator.writeFieldName(label);
+            writeMessage(generator, message);
+            generator.writeEndObject();
+        }
+        return stringWriter.toString();
+    }
+
+    /**
+     * Writes the message as YAML to the {@link Writer}, which is flushed but not closed.
+     */
+    public static void write(MessageOrBuilder message, Writer writer) throws IOException {
+        try (JsonGenerator generator = YAML_FACTORY.createGenerator(writer)) {
+            generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+            writeMessage(generator, message);
+        }
+    }
+
+    private static void writeMessage(JsonGenerator generator, MessageOrBuilder message) throws IOException {
+        if (message.getDescriptorForType().getFullName().equals(TIMESTAMP_TYPE)) {
+            Timestamp timestamp = (Timestamp) (message instanceof Timestamp.Builder ? ((Timestamp.Builder) message).build() : message);
+            generator.writeString(JsonMessageWriter.formatTimestamp(timestamp));
+            return;
+        }
+        MessagePlan plan = MessagePlan.of(message.getDescriptorForType());
+        generator.writeStartObject();
+        for (FieldDescriptor field : plan.fields) {
+            if (field.isRepeated() ? message.getRepeatedFieldCount(field) == 0 : !message.hasField(field)) {
+                continue;
+            }
+            generator.writeFieldName(field.getJsonName());
+            if (field.isMapField()) {
+                writeMap(generator, message, field);
+            } else if (field.isRepeated()) {
+                generator.writeStartArray();
+                int count = message.getRepeatedFieldCount(field);
+                for (int i = 0; i < count; i++) {
+                    writeValue(generator, field, message.getRepeatedField(field, i));
+                }
+                generator.writeEndArray();
+            } else {
+                writeValue(generator, field, message.getField(field));
+            }
+        }
+        generator.writeEndObject();
+    }
+
+    private static void writeMap(JsonGenerator generator, MessageOrBuilder message, FieldDescriptor field) throws IOException {
+        FieldDescriptor keyField = field.getMessageType().findFieldByNumber(1);
+        FieldDescriptor valueField = field.getMessageType().findFieldByNumber(2);
+        generator.writeStartObject();
+        int count = message.getRepeatedFieldCount(field);
+        for (int i = 0; i < count; i++) {
+            MessageOrBuilder entry = (MessageOrBuilder) message.getRepeatedField(field, i);
+            generator.writeFieldName(mapKey(keyField, entry.getField(keyField)));
+            writeValue(generator, valueField, entry.getField(valueField));
+        }
+        generator.writeEndObject();
+    }
+
+    private static String mapKey(FieldDescriptor keyField, Object key) {
+        switch (keyField.getType()) {
+            case UINT32:
+            case FIXED32:
+                return Integer.toUnsignedString((Integer) key);
+            case UINT64:
+            case FIXED64:
+                return Long.toUnsignedString((Long) key);
+            default:
+                return key.toString();
+        }
+    }
+
+    private static void writeValue(JsonGenerator generator, FieldDescriptor field, Object value) throws IOException {
+        switch (field.getType()) {
+            case INT32:
+            case SINT32:
+            case SFIXED32:
+                generator.writeNumber((Integer) value);
+                break;
+            case INT64:
+            case SINT64:
+            case SFIXED64:
+                // 64-bit integers are strings in the canonical JSON
+                generator.writeString(Long.toString((Long) value));
+                break;
+            case UINT32:
+            case FIXED32:
+                generator.writeNumber(Integer.toUnsignedLong((Integer) value));
+                break;
+            case UINT64:
+            case FIXED64:
+                generator.writeString(Long.toUnsignedString((Long) value));
+                break;
+            case BOOL:
+                generator.writeBoolean((Boolean) value);
+                break;
+            case FLOAT:
+                writeDouble(generator, Double.parseDouble(value.toString()));
+                break;
+            case DOUBLE:
+                writeDouble(generator, (Double) value);
+                break;
+            case STRING:
+                generator.writeString((String) value);
+                break;
+            case BYTES:
+                generator.writeString(Base64.getEncoder().encodeToString(((ByteString) value).toByteArray()));
+                break;
+            case ENUM:
+                EnumValueDescriptor enumValue = (EnumValueDescriptor) value;
+                if (enumValue.getIndex() == -1) {
+                    generator.writeNumber(enumValue.getNumber());
+                } else {
+                    generator.writeString(enumValue.getName());
+                }
+                break;
+            case MESSAGE:
+            case GROUP:
+                writeMessage(generator, (MessageOrBuilder) value);
+                break;
+            default:
+                throw new IllegalArgumentException("Unsupported field type " + field.getType());
+        }
+    }
+
+    private static void writeDouble(JsonGenerator generator, double value) throws IOException {
+        if (Double.isNaN(value)) {
+            generator.writeString("NaN");
+        } else if (Double.isInfinite(value)) {
+            generator.writeString(value > 0 ? "Infinity" : "-Infinity");
+        } else {
+            generator.writeNumber(value);
+        }
+    }
+}
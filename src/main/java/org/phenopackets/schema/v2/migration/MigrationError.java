@@ -0,0 +1,44 @@
+package org.phenopackets.schema.v2.migration;
+
+/**
+ * A record which a {@link PhenopacketMigrator} could not migrate, and was left out of the output.
+ */
+public final class MigrationError {
+
+    private final long index;
+    private final String id;
+    private final String message;
+
+    MigrationError(long index, String id, String message) {
+        this.index = index;
+        this.id = id;
+        this.message = message;
+    }
+
+    /**
+     * @return the position of the record in the input, from 0
+     */
+    public long index() {
+        return index;
+    }
+
+    /**
+     * @return the id of the phenopacket, or an empty string if the record could not be parsed
+     */
+    public String id() {
+        return id;
+    }
+
+    public String message() {
+        return message;
+    }
+
+    @Override
+    public String toString() {
+        return "MigrationError{" +
+                "index=" + index +
+                ", id='" + id + '\'' +
+                ", message='" + message + '\'' +
+                '}';
+    }
+}
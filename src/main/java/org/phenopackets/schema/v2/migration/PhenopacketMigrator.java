@@ -0,0 +1,191 @@
+package org.phenopackets.schema.v2.migration;
+
+import com.google.protobuf.ByteString;
+import com.google.protobuf.CodedInputStream;
+import com.google.protobuf.InvalidProtocolBufferException;
+import org.phenopackets.schema.v2.Phenopacket;
+import org.phenopackets.schema.v2.internal.BatchPipeline;
+import org.phenopackets.schema.v2.io.PhenopacketStreamWriter;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Consumer;
+
+/**
+ * Migrates a stream of version 1 phenopackets to version 2 with a {@link V1Converter}, parsing and converting them in
+ * batches on the threads of a {@link ForkJoinPool}.
+ * <p>
+ * The input is a sequence of length-delimited v1 phenopackets, as written by {@link
+ * com.google.protobuf.MessageLite#writeDelimitedTo(java.io.OutputStream)}, and is read in a single pass. Only a few
+ * batches per thread are in flight at any time, so memory use does not depend on the length of the input. The
+ * converted phenopackets are handed to the consumer on the calling thread in the order of the input.
+ * <p>
+ * A record which cannot be parsed as a v1 phenopacket, or cannot be converted, e.g. a variant without an allele, is
+ * reported as a {@link MigrationError} and left out of the output, and the migration carries on with the next record.
+ * Only a stream whose records cannot be told apart, e.g. one cut off in the middle of a record, stops the migration.
+ */
+public class PhenopacketMigrator {
+
+    private static final int DEFAULT_BATCH_SIZE = 256;
+
+    private final ForkJoinPool forkJoinPool;
+    private final V1Converter converter = new V1Converter();
+    private int batchSize = DEFAULT_BATCH_SIZE;
+
+    /**
+     * Creates a migrator which runs on the {@link ForkJoinPool#commonPool()}.
+     */
+    public PhenopacketMigrator() {
+        this(ForkJoinPool.commonPool());
+    }
+
+    public PhenopacketMigrator(ForkJoinPool forkJoinPool) {
+        this.forkJoinPool = forkJoinPool;
+    }
+
+    /**
+     * Sets the number of phenopackets migrated by each task, 256 by default.
+     *
+     * @return this migrator
+     */
+    public PhenopacketMigrator batchSize(int batchSize) {
+        if (batchSize < 1) {
+            throw new IllegalArgumentException("Batch size must be positive but was " + batchSize);
+        }
+        this.batchSize = batchSize;
+        return this;
+    }
+
+    /**
+     * Migrates the length-delimited v1 phenopackets read from the stream, which is not closed.
+     *
+     * @param converted receives the v2 phenopackets in the order of the input
+     * @param errors    receives the records which could not be migrated
+     * @return the number of records which could not be migrated
+     * @throws IOException if the stream could not be read or a record is cut off
+     */
+    public long migrate(InputStream inputStream, Consumer<Phenopacket> converted, Consumer<MigrationError> errors) throws IOException {
+        return migrateTo(inputStream, converted::accept, errors);
+    }
+
+    /**
+     * Migrates the length-delimited v1 phenopackets read from the stream, which is not closed, to a phenopacket
+     * stream.
+     *
+     * @param errors receives the records which could not be migrated
+     * @return the number of records which could not be migrated
+     * @throws IOException if the stream could not be read or written, or a record is cut off
+     */
+    public long migrate(InputStream inputStream, PhenopacketStreamWriter writer, Consumer<MigrationError> errors) throws IOException {
+        return migrateTo(inputStream, writer::write, errors);
+    }
+
+    private long migrateTo(InputStream inputStream, PhenopacketSink converted, Consumer<MigrationError> errors) throws IOException {
+        CodedInputStream input = CodedInputStream.newInstance(inputStream);
+        Results results = new Results(converted, errors);
+        BatchPipeline<BatchResult> pipeline = new BatchPipeline<>(forkJoinPool, "migrating", results::add);
+        try {
+            List<ByteString> batch = new ArrayList<>(batchSize);
+            long index = 0;
+            while (!input.isAtEnd()) {
+                batch.add(input.readBytes());
+                // the size limit applies to the whole stream, not to a single record
+                input.resetSizeCounter();
+                if (batch.size() == batchSize) {
+                    pipeline.submit(new Batch(index, batch));
+                    index += batch.size();
+                    batch = new ArrayList<>(batchSize);
+                }
+            }
+            if (!batch.isEmpty()) {
+                pipeline.submit(new Batch(index, batch));
+            }
+            pipeline.finish();
+        } finally {
+            pipeline.cancel();
+        }
+        return results.errors;
+    }
+
+    private interface PhenopacketSink {
+
+        void accept(Phenopacket phenopacket) throws IOException;
+    }
+
+    /**
+     * The phenopackets converted from the records of a batch, in order, with null for each record which could not be
+     * migrated, and the errors of those records, in order.
+     */
+    private static class BatchResult {
+
+        private final Phenopacket[] converted;
+        private final List<MigrationError> errors = new ArrayList<>();
+
+        private BatchResult(int records) {
+            converted = new Phenopacket[records];
+        }
+    }
+
+    private class Batch implements Callable<BatchResult> {
+
+        private final long from;
+        private final List<ByteString> records;
+
+        private Batch(long from, List<ByteString> records) {
+            this.from = from;
+            this.records = records;
+        }
+
+        @Override
+        public BatchResult call() {
+            BatchResult result = new BatchResult(records.size());
+            for (int i = 0; i < records.size(); i++) {
+                long index = from + i;
+                org.phenopackets.schema.v1.Phenopacket phenopacket;
+                try {
+                    phenopacket = org.phenopackets.schema.v1.Phenopacket.parseFrom(records.get(i));
+                } catch (InvalidProtocolBufferException e) {
+                    result.errors.add(new MigrationError(index, "", "Invalid v1 phenopacket: " + e.getMessage()));
+                    continue;
+                }
+                try {
+                    result.converted[i] = converter.convert(phenopacket);
+                } catch (IllegalArgumentException e) {
+                    result.errors.add(new MigrationError(index, phenopacket.getId(), e.getMessage()));
+                }
+            }
+            return result;
+        }
+    }
+
+    /**
+     * Hands the outcome of each record to the consumers in the order of the input, counting the errors.
+     */
+    private static class Results {
+
+        private final PhenopacketSink converted;
+        private final Consumer<MigrationError> errorConsumer;
+        private long errors;
+
+        private Results(PhenopacketSink converted, Consumer<MigrationError> errorConsumer) {
+            this.converted = converted;
+            this.errorConsumer = errorConsumer;
+        }
+
+        private void add(BatchResult result) throws IOException {
+            int nextError = 0;
+            for (Phenopacket phenopacket : result.converted) {
+                if (phenopacket != null) {
+                    converted.accept(phenopacket);
+                } else {
+                    errors++;
+                    errorConsumer.accept(result.errors.get(nextError++));
+                }
+            }
+        }
+    }
+}
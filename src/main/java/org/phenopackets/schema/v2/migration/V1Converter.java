@@ -0,0 +1,492 @@
+package org.phenopackets.schema.v2.migration;
+
+import org.ga4gh.vrsatile.v1.Expression;
+import org.ga4gh.vrsatile.v1.GeneDescriptor;
+import org.ga4gh.vrsatile.v1.MoleculeContext;
+import org.ga4gh.vrsatile.v1.VariationDescriptor;
+import org.ga4gh.vrsatile.v1.VcfRecord;
+import org.phenopackets.schema.v2.Cohort;
+import org.phenopackets.schema.v2.Family;
+import org.phenopackets.schema.v2.Phenopacket;
+import org.phenopackets.schema.v2.SchemaVersion;
+import org.phenopackets.schema.v2.core.Age;
+import org.phenopackets.schema.v2.core.AgeRange;
+import org.phenopackets.schema.v2.core.Biosample;
+import org.phenopackets.schema.v2.core.Diagnosis;
+import org.phenopackets.schema.v2.core.Disease;
+import org.phenopackets.schema.v2.core.Evidence;
+import org.phenopackets.schema.v2.core.ExternalReference;
+import org.phenopackets.schema.v2.core.File;
+import org.phenopackets.schema.v2.core.GenomicInterpretation;
+import org.phenopackets.schema.v2.core.Individual;
+import org.phenopackets.schema.v2.core.Interpretation;
+import org.phenopackets.schema.v2.core.MetaData;
+import org.phenopackets.schema.v2.core.OntologyClass;
+import org.phenopackets.schema.v2.core.Pedigree;
+import org.phenopackets.schema.v2.core.PhenotypicFeature;
+import org.phenopackets.schema.v2.core.Procedure;
+import org.phenopackets.schema.v2.core.Resource;
+import org.phenopackets.schema.v2.core.TimeElement;
+import org.phenopackets.schema.v2.core.Update;
+import org.phenopackets.schema.v2.core.VariantInterpretation;
+
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Converts version 1 phenopackets, families and cohorts to version 2.
+ * <p>
+ * Most elements have a direct counterpart, with renamed fields such as {@code negated} becoming {@code excluded}, and
+ * the ages and age ranges of v1 becoming {@link TimeElement}s. The others are converted as follows:
+ * <ul>
+ *     <li>an {@code HtsFile} becomes a {@link File} whose {@code file_attributes} hold the {@code fileFormat}, e.g.
+ *     {@code vcf}, the {@code genomeAssembly} and the {@code description}</li>
+ *     <li>a {@code Gene} becomes a {@link GeneDescriptor}</li>
+ *     <li>a {@code Variant} becomes a {@link VariationDescriptor} whose {@code allelic_state} is the zygosity. A
+ *     {@code VcfAllele} becomes its {@link VcfRecord}, and the HGVS, SPDI and ISCN alleles become an
+ *     {@link Expression} of that syntax, with the SPDI written as {@code seq_id:position:deleted:inserted}. The
+ *     {@code id} of the allele is that of the descriptor.</li>
+ *     <li>v2 phenopackets hold genes and variants only within interpretations, so the genes and variants of a v1
+ *     phenopacket and of its biosamples become the genomic interpretations of a single {@link Interpretation} with the
+ *     id {@code <phenopacket id>-interpretation}. The diagnosis is the disease of the phenopacket if it has exactly
+ *     one, and as v1 does not say whether the genes and variants are causative, their status is
+ *     {@code UNKNOWN_STATUS}. Those of a biosample refer to the biosample by id, the others to the subject.</li>
+ *     <li>a biosample which {@code is_control_sample} gets the {@code material_sample} EFO:0009654 (reference
+ *     sample)</li>
+ *     <li>the {@code phenopacket_schema_version} of the metadata becomes {@code 2.0}</li>
+ * </ul>
+ * The {@code vcf_version} of VCF alleles has no counterpart in v2 and is dropped.
+ * <p>
+ * Instances are thread-safe.
+ */
+public class V1Converter {
+
+    private static final OntologyClass REFERENCE_SAMPLE = OntologyClass.newBuilder().setId("EFO:0009654").setLabel("reference sample").build();
+
+    public Phenopacket convert(org.phenopackets.schema.v1.Phenopacket phenopacket) {
+        Phenopacket.Builder converted = Phenopacket.newBuilder()
+                .setId(phenopacket.getId());
+        if (phenopacket.hasSubject()) {
+            converted.setSubject(individual(phenopacket.getSubject()));
+        }
+        for (org.phenopackets.schema.v1.core.PhenotypicFeature feature : phenopacket.getPhenotypicFeaturesList()) {
+            converted.addPhenotypicFeatures(phenotypicFeature(feature));
+        }
+        for (org.phenopackets.schema.v1.core.Biosample biosample : phenopacket.getBiosamplesList()) {
+            converted.addBiosamples(biosample(biosample));
+        }
+        Interpretation interpretation = interpretation(phenopacket);
+        if (interpretation != null) {
+            converted.addInterpretations(interpretation);
+        }
+        for (org.phenopackets.schema.v1.core.Disease disease : phenopacket.getDiseasesList()) {
+            converted.addDiseases(disease(disease));
+        }
+        for (org.phenopackets.schema.v1.core.HtsFile htsFile : phenopacket.getHtsFilesList()) {
+            converted.addFiles(file(htsFile));
+        }
+        if (phenopacket.hasMetaData()) {
+            converted.setMetaData(metaData(phenopacket.getMetaData()));
+        }
+        return converted.build();
+    }
+
+    public Family convert(org.phenopackets.schema.v1.Family family) {
+        Family.Builder converted = Family.newBuilder()
+                .setId(family.getId());
+        if (family.hasProband()) {
+            converted.setProband(convert(family.getProband()));
+        }
+        for (org.phenopackets.schema.v1.Phenopacket relative : family.getRelativesList()) {
+            converted.addRelatives(convert(relative));
+        }
+        if (family.hasPedigree()) {
+            converted.setPedigree(pedigree(family.getPedigree()));
+        }
+        for (org.phenopackets.schema.v1.core.HtsFile htsFile : family.getHtsFilesList()) {
+            converted.addFiles(file(htsFile));
+        }
+        if (family.hasMetaData()) {
+            converted.setMetaData(metaData(family.getMetaData()));
+        }
+        return converted.build();
+    }
+
+    public Cohort convert(org.phenopackets.schema.v1.Cohort cohort) {
+        Cohort.Builder converted = Cohort.newBuilder()
+                .setId(cohort.getId())
+                .setDescription(cohort.getDescription());
+        for (org.phenopackets.schema.v1.Phenopacket member : cohort.getMembersList()) {
+            converted.addMembers(convert(member));
+        }
+        for (org.phenopackets.schema.v1.core.HtsFile htsFile : cohort.getHtsFilesList()) {
+            converted.addFiles(file(htsFile));
+        }
+        if (cohort.hasMetaData()) {
+            converted.setMetaData(metaData(cohort.getMetaData()));
+        }
+        return converted.build();
+    }
+
+    private static Individual individual(org.phenopackets.schema.v1.core.Individual individual) {
+        Individual.Builder converted = Individual.newBuilder()
+                .setId(individual.getId())
+                .addAllAlternateIds(individual.getAlternateIdsList())
+                .setSexValue(individual.getSexValue())
+                .setKaryotypicSexValue(individual.getKaryotypicSexValue());
+        if (individual.hasDateOfBirth()) {
+            converted.setDateOfBirth(individual.getDateOfBirth());
+        }
+        if (individual.hasAgeAtCollection()) {
+            converted.setTimeAtLastEncounter(TimeElement.newBuilder().setAge(age(individual.getAgeAtCollection())));
+        } else if (individual.hasAgeRangeAtCollection()) {
+            converted.setTimeAtLastEncounter(TimeElement.newBuilder().setAgeRange(ageRange(individual.getAgeRangeAtCollection())));
+        }
+        if (individual.hasTaxonomy()) {
+            converted.setTaxonomy(ontologyClass(individual.getTaxonomy()));
+        }
+        return converted.build();
+    }
+
+    private static PhenotypicFeature phenotypicFeature(org.phenopackets.schema.v1.core.PhenotypicFeature feature) {
+        PhenotypicFeature.Builder converted = PhenotypicFeature.newBuilder()
+                .setDescription(feature.getDescription())
+                .setExcluded(feature.getNegated());
+        if (feature.hasType()) {
+            converted.setType(ontologyClass(feature.getType()));
+        }
+        if (feature.hasSeverity()) {
+            converted.setSeverity(ontologyClass(feature.getSeverity()));
+        }
+        for (org.phenopackets.schema.v1.core.OntologyClass modifier : feature.getModifiersList()) {
+            converted.addModifiers(ontologyClass(modifier));
+        }
+        switch (feature.getOnsetCase()) {
+            case AGE_OF_ONSET:
+                converted.setOnset(TimeElement.newBuilder().setAge(age(feature.getAgeOfOnset())));
+                break;
+            case AGE_RANGE_OF_ONSET:
+                converted.setOnset(TimeElement.newBuilder().setAgeRange(ageRange(feature.getAgeRangeOfOnset())));
+                break;
+            case CLASS_OF_ONSET:
+                converted.setOnset(TimeElement.newBuilder().setOntologyClass(ontologyClass(feature.getClassOfOnset())));
+                break;
+            default:
+                break;
+        }
+        for (org.phenopackets.schema.v1.core.Evidence evidence : feature.getEvidenceList()) {
+            converted.addEvidence(evidence(evidence));
+        }
+        return converted.build();
+    }
+
+    private static Evidence evidence(org.phenopackets.schema.v1.core.Evidence evidence) {
+        Evidence.Builder converted = Evidence.newBuilder();
+        if (evidence.hasEvidenceCode()) {
+            converted.setEvidenceCode(ontologyClass(evidence.getEvidenceCode()));
+        }
+        if (evidence.hasReference()) {
+            converted.setReference(externalReference(evidence.getReference()));
+        }
+        return converted.build();
+    }
+
+    private static Biosample biosample(org.phenopackets.schema.v1.core.Biosample biosample) {
+        Biosample.Builder converted = Biosample.newBuilder()
+                .setId(biosample.getId())
+                .setIndividualId(biosample.getIndividualId())
+                .setDescription(biosample.getDescription());
+        if (biosample.hasSampledTissue()) {
+            converted.setSampledTissue(ontologyClass(biosample.getSampledTissue()));
+        }
+        for (org.phenopackets.schema.v1.core.PhenotypicFeature feature : biosample.getPhenotypicFeaturesList()) {
+            converted.addPhenotypicFeatures(phenotypicFeature(feature));
+        }
+        if (biosample.hasTaxonomy()) {
+            converted.setTaxonomy(ontologyClass(biosample.getTaxonomy()));
+        }
+        if (biosample.hasAgeOfIndividualAtCollection()) {
+            converted.setTimeOfCollection(TimeElement.newBuilder().setAge(age(biosample.getAgeOfIndividualAtCollection())));
+        } else if (biosample.hasAgeRangeOfIndividualAtCollection()) {
+            converted.setTimeOfCollection(TimeElement.newBuilder().setAgeRange(ageRange(biosample.getAgeRangeOfIndividualAtCollection())));
+        }
+        if (biosample.hasHistologicalDiagnosis()) {
+            converted.setHistologicalDiagnosis(ontologyClass(biosample.getHistologicalDiagnosis()));
+        }
+        if (biosample.hasTumorProgression()) {
+            converted.setTumorProgression(ontologyClass(biosample.getTumorProgression()));
+        }
+        if (biosample.hasTumorGrade()) {
+            converted.setTumorGrade(ontologyClass(biosample.getTumorGrade()));
+        }
+        for (org.phenopackets.schema.v1.core.OntologyClass marker : biosample.getDiagnosticMarkersList()) {
+            converted.addDiagnosticMarkers(ontologyClass(marker));
+        }
+        if (biosample.hasProcedure()) {
+            converted.setProcedure(procedure(biosample.getProcedure()));
+        }
+        for (org.phenopackets.schema.v1.core.HtsFile htsFile : biosample.getHtsFilesList()) {
+            converted.addFiles(file(htsFile));
+        }
+        if (biosample.getIsControlSample()) {
+            converted.setMaterialSample(REFERENCE_SAMPLE);
+        }
+        return converted.build();
+    }
+
+    private static Procedure procedure(org.phenopackets.schema.v1.core.Procedure procedure) {
+        Procedure.Builder converted = Procedure.newBuilder();
+        if (procedure.hasCode()) {
+            converted.setCode(ontologyClass(procedure.getCode()));
+        }
+        if (procedure.hasBodySite()) {
+            converted.setBodySite(ontologyClass(procedure.getBodySite()));
+        }
+        return converted.build();
+    }
+
+    private static Disease disease(org.phenopackets.schema.v1.core.Disease disease) {
+        Disease.Builder converted = Disease.newBuilder();
+        if (disease.hasTerm()) {
+            converted.setTerm(ontologyClass(disease.getTerm()));
+        }
+        switch (disease.getOnsetCase()) {
+            case AGE_OF_ONSET:
+                converted.setOnset(TimeElement.newBuilder().setAge(age(disease.getAgeOfOnset())));
+                break;
+            case AGE_RANGE_OF_ONSET:
+                converted.setOnset(TimeElement.newBuilder().setAgeRange(ageRange(disease.getAgeRangeOfOnset())));
+                break;
+            case CLASS_OF_ONSET:
+                converted.setOnset(TimeElement.newBuilder().setOntologyClass(ontologyClass(disease.getClassOfOnset())));
+                break;
+            default:
+                break;
+        }
+        for (org.phenopackets.schema.v1.core.OntologyClass stage : disease.getDiseaseStageList()) {
+            converted.addDiseaseStage(ontologyClass(stage));
+        }
+        for (org.phenopackets.schema.v1.core.OntologyClass finding : disease.getTnmFindingList()) {
+            converted.addClinicalTnmFinding(ontologyClass(finding));
+        }
+        return converted.build();
+    }
+
+    /**
+     * @return the interpretation holding the genes and variants of the phenopacket and its biosamples, or {@code null}
+     * if it has none
+     */
+    private static Interpretation interpretation(org.phenopackets.schema.v1.Phenopacket phenopacket) {
+        Diagnosis.Builder diagnosis = Diagnosis.newBuilder();
+        String subjectId = phenopacket.getSubject().getId();
+        for (org.phenopackets.schema.v1.core.Gene gene : phenopacket.getGenesList()) {
+            diagnosis.addGenomicInterpretations(GenomicInterpretation.newBuilder()
+                    .setSubjectOrBiosampleId(subjectId)
+                    .setGene(geneDescriptor(gene)));
+        }
+        for (org.phenopackets.schema.v1.core.Variant variant : phenopacket.getVariantsList()) {
+            diagnosis.addGenomicInterpretations(genomicInterpretation(subjectId, variant));
+        }
+        for (org.phenopackets.schema.v1.core.Biosample biosample : phenopacket.getBiosamplesList()) {
+            for (org.phenopackets.schema.v1.core.Variant variant : biosample.getVariantsList()) {
+                diagnosis.addGenomicInterpretations(genomicInterpretation(biosample.getId(), variant));
+            }
+        }
+        if (diagnosis.getGenomicInterpretationsCount() == 0) {
+            return null;
+        }
+        if (phenopacket.getDiseasesCount() == 1 && phenopacket.getDiseases(0).hasTerm()) {
+            diagnosis.setDisease(ontologyClass(phenopacket.getDiseases(0).getTerm()));
+        }
+        return Interpretation.newBuilder()
+                .setId(phenopacket.getId() + "-interpretation")
+                .setDiagnosis(diagnosis)
+                .build();
+    }
+
+    private static GenomicInterpretation genomicInterpretation(String subjectOrBiosampleId, org.phenopackets.schema.v1.core.Variant variant) {
+        return GenomicInterpretation.newBuilder()
+                .setSubjectOrBiosampleId(subjectOrBiosampleId)
+                .setVariantInterpretation(VariantInterpretation.newBuilder().setVariationDescriptor(variationDescriptor(variant)))
+                .build();
+    }
+
+    private static GeneDescriptor geneDescriptor(org.phenopackets.schema.v1.core.Gene gene) {
+        return GeneDescriptor.newBuilder()
+                .setValueId(gene.getId())
+                .setSymbol(gene.getSymbol())
+                .addAllAlternateIds(gene.getAlternateIdsList())
+                .build();
+    }
+
+    /**
+     * v1 variants have no molecule context, so it is taken from the type of the reference sequence of HGVS alleles,
+     * and is genomic for VCF alleles, which are always on a genome. It is left unspecified for other alleles.
+     *
+     * @throws IllegalArgumentException if the variant has no allele, or a VCF allele with a negative position
+     */
+    private static VariationDescriptor variationDescriptor(org.phenopackets.schema.v1.core.Variant variant) {
+        VariationDescriptor.Builder converted = VariationDescriptor.newBuilder();
+        switch (variant.getAlleleCase()) {
+            case HGVS_ALLELE:
+                org.phenopackets.schema.v1.core.HgvsAllele hgvs = variant.getHgvsAllele();
+                converted.setId(hgvs.getId())
+                        .setMoleculeContext(moleculeContext(hgvs.getHgvs()))
+                        .addExpressions(expression("hgvs", hgvs.getHgvs()));
+                break;
+            case VCF_ALLELE:
+                org.phenopackets.schema.v1.core.VcfAllele vcf = variant.getVcfAllele();
+                if (vcf.getPos() < 0) {
+                    throw new IllegalArgumentException("VCF allele '" + vcf.getId() + "' has a negative position " + vcf.getPos());
+                }
+                converted.setId(vcf.getId())
+                        .setMoleculeContext(MoleculeContext.genomic)
+                        .setVcfRecord(VcfRecord.newBuilder()
+                                .setGenomeAssembly(vcf.getGenomeAssembly())
+                                .setChrom(vcf.getChr())
+                                .setPos(vcf.getPos())
+                                .setId(vcf.getId())
+                                .setRef(vcf.getRef())
+                                .setAlt(vcf.getAlt())
+                                .setInfo(vcf.getInfo()));
+                break;
+            case SPDI_ALLELE:
+                org.phenopackets.schema.v1.core.SpdiAllele spdi = variant.getSpdiAllele();
+                converted.setId(spdi.getId())
+                        .addExpressions(expression("spdi", spdi.getSeqId() + ':' + spdi.getPosition() + ':' + spdi.getDeletedSequence() + ':' + spdi.getInsertedSequence()));
+                break;
+            case ISCN_ALLELE:
+                org.phenopackets.schema.v1.core.IscnAllele iscn = variant.getIscnAllele();
+                converted.setId(iscn.getId())
+                        .addExpressions(expression("iscn", iscn.getIscn()));
+                break;
+            default:
+                throw new IllegalArgumentException("Variant has no allele");
+        }
+        if (variant.hasZygosity()) {
+            converted.setAllelicState(ontologyClass(variant.getZygosity()));
+        }
+        return converted.build();
+    }
+
+    /**
+     * @return the molecule of the reference sequence type of an HGVS expression, e.g. the {@code c.} of
+     * {@code NM_000332.3:c.1A>G}, or unspecified if the expression has none
+     */
+    private static MoleculeContext moleculeContext(String hgvs) {
+        int colon = hgvs.indexOf(':');
+        if (colon < 0 || colon + 2 >= hgvs.length() || hgvs.charAt(colon + 2) != '.') {
+            return MoleculeContext.unspecified_molecule_context;
+        }
+        switch (hgvs.charAt(colon + 1)) {
+            case 'g':
+            case 'm':
+            case 'o':
+                return MoleculeContext.genomic;
+            case 'c':
+            case 'n':
+            case 'r':
+                return MoleculeContext.transcript;
+            case 'p':
+                return MoleculeContext.protein;
+            default:
+                return MoleculeContext.unspecified_molecule_context;
+        }
+    }
+
+    private static Expression expression(String syntax, String value) {
+        return Expression.newBuilder().setSyntax(syntax).setValue(value).build();
+    }
+
+    private static File file(org.phenopackets.schema.v1.core.HtsFile htsFile) {
+        File.Builder converted = File.newBuilder()
+                .setUri(htsFile.getUri())
+                .putAllIndividualToFileIdentifiers(htsFile.getIndividualToSampleIdentifiersMap());
+        if (htsFile.getHtsFormat() != org.phenopackets.schema.v1.core.HtsFile.HtsFormat.UNKNOWN
+                && htsFile.getHtsFormat() != org.phenopackets.schema.v1.core.HtsFile.HtsFormat.UNRECOGNIZED) {
+            converted.putFileAttributes("fileFormat", htsFile.getHtsFormat().name().toLowerCase(Locale.ROOT));
+        }
+        if (!htsFile.getGenomeAssembly().isEmpty()) {
+            converted.putFileAttributes("genomeAssembly", htsFile.getGenomeAssembly());
+        }
+        if (!htsFile.getDescription().isEmpty()) {
+            converted.putFileAttributes("description", htsFile.getDescription());
+        }
+        return converted.build();
+    }
+
+    private static Pedigree pedigree(org.phenopackets.schema.v1.core.Pedigree pedigree) {
+        Pedigree.Builder converted = Pedigree.newBuilder();
+        for (org.phenopackets.schema.v1.core.Pedigree.Person person : pedigree.getPersonsList()) {
+            converted.addPersons(Pedigree.Person.newBuilder()
+                    .setFamilyId(person.getFamilyId())
+                    .setIndividualId(person.getIndividualId())
+                    .setPaternalId(person.getPaternalId())
+                    .setMaternalId(person.getMaternalId())
+                    .setSexValue(person.getSexValue())
+                    .setAffectedStatusValue(person.getAffectedStatusValue()));
+        }
+        return converted.build();
+    }
+
+    private static MetaData metaData(org.phenopackets.schema.v1.core.MetaData metaData) {
+        MetaData.Builder converted = MetaData.newBuilder()
+                .setCreatedBy(metaData.getCreatedBy())
+                .setSubmittedBy(metaData.getSubmittedBy())
+                .setPhenopacketSchemaVersion(SchemaVersion.v2_0.toString());
+        if (metaData.hasCreated()) {
+            converted.setCreated(metaData.getCreated());
+        }
+        for (org.phenopackets.schema.v1.core.Resource resource : metaData.getResourcesList()) {
+            converted.addResources(Resource.newBuilder()
+                    .setId(resource.getId())
+                    .setName(resource.getName())
+                    .setUrl(resource.getUrl())
+                    .setVersion(resource.getVersion())
+                    .setNamespacePrefix(resource.getNamespacePrefix())
+                    .setIriPrefix(resource.getIriPrefix()));
+        }
+        for (org.phenopackets.schema.v1.core.Update update : metaData.getUpdatesList()) {
+            Update.Builder convertedUpdate = Update.newBuilder()
+                    .setUpdatedBy(update.getUpdatedBy())
+                    .setComment(update.getComment());
+            if (update.hasTimestamp()) {
+                convertedUpdate.setTimestamp(update.getTimestamp());
+            }
+            converted.addUpdates(convertedUpdate);
+        }
+        for (org.phenopackets.schema.v1.core.ExternalReference reference : metaData.getExternalReferencesList()) {
+            converted.addExternalReferences(externalReference(reference));
+        }
+        return converted.build();
+    }
+
+    private static ExternalReference externalReference(org.phenopackets.schema.v1.core.ExternalReference reference) {
+        return ExternalReference.newBuilder()
+                .setId(reference.getId())
+                .setDescription(reference.getDescription())
+                .build();
+    }
+
+    private static Age age(org.phenopackets.schema.v1.core.Age age) {
+        return Age.newBuilder().setIso8601Duration(age.getAge()).build();
+    }
+
+    private static AgeRange ageRange(org.phenopackets.schema.v1.core.AgeRange ageRange) {
+        AgeRange.Builder converted = AgeRange.newBuilder();
+        if (ageRange.hasStart()) {
+            converted.setStart(age(ageRange.getStart()));
+        }
+        if (ageRange.hasEnd()) {
+            converted.setEnd(age(ageRange.getEnd()));
+        }
+        return converted.build();
+    }
+
+    private static OntologyClass ontologyClass(org.phenopackets.schema.v1.core.OntologyClass ontologyClass) {
+        return OntologyClass.newBuilder()
+                .setId(ontologyClass.getId())
+                .setLabel(ontologyClass.getLabel())
+                .build();
+    }
+}
@@ -0,0 +1,315 @@
+package org.phenopackets.schema.v2.ontology;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The {@code is_a} hierarchy of an ontology such as the HPO, loaded from a local OBO file, with the ancestors of every
+ * term precomputed so that subsumption checks are a single bit lookup.
+ * <p>
+ * Terms are numbered from 0 in topological order, so that every term is numbered after all of its ancestors. The
+ * ancestors of each term, including the term itself, are held in a {@link BitSet} indexed by term number, which
+ * therefore needs no more bits than the number of the term.
+ * <p>
+ * Ids are resolved to terms including their {@code alt_id}s, and obsolete terms to their {@code replaced_by} term.
+ * Instances are immutable and thread-safe.
+ */
+public class Ontology {
+
+    private final String[] ids;
+    private final String[] labels;
+    private final int[][] parents;
+    private final int[][] children;
+    private final BitSet[] ancestors;
+    private final Map<String, Integer> numbers;
+
+    private Ontology(String[] ids, String[] labels, int[][] parents, Map<String, Integer> numbers) {
+        this.ids = ids;
+        this.labels = labels;
+        this.parents = parents;
+        this.numbers = numbers;
+        int[] childCounts = new int[ids.length];
+        for (int[] termParents : parents) {
+            for (int parent : termParents) {
+                childCounts[parent]++;
+            }
+        }
+        this.children = new int[ids.length][];
+        for (int term = 0; term < ids.length; term++) {
+            children[term] = new int[childCounts[term]];
+            childCounts[term] = 0;
+        }
+        this.ancestors = new BitSet[ids.length];
+        for (int term = 0; term < ids.length; term++) {
+            BitSet termAncestors = new BitSet(term + 1);
+            termAncestors.set(term);
+            for (int parent : parents[term]) {
+                // parents are numbered before their children, so their ancestors are already complete
+                termAncestors.or(ancestors[parent]);
+                children[parent][childCounts[parent]++] = term;
+            }
+            ancestors[term] = termAncestors;
+        }
+    }
+
+    /**
+     * Loads the {@code [Term]} stanzas of an OBO file.
+     *
+     * @throws IOException if the file could not be read or its {@code is_a} relations contain a cycle
+     */
+    public static Ontology loadObo(Path path) throws IOException {
+        try (Reader reader = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
+            return readObo(reader);
+        }
+    }
+
+    /**
+     * Reads the {@code [Term]} stanzas of an OBO document. The reader is not closed.
+     *
+     * @throws IOException if the document could not be read or its {@code is_a} relations contain a cycle
+     */
+    public static Ontology readObo(Reader reader) throws IOException {
+        BufferedReader lines = reader instanceof BufferedReader ? (BufferedReader) reader : new BufferedReader(reader);
+        Map<String, OboTerm> terms = new LinkedHashMap<>();
+        OboTerm term = null;
+        String line;
+        while ((line = lines.readLine()) != null) {
+            line = line.trim();
+            if (line.startsWith("[")) {
+                term = line.equals("[Term]") ? new OboTerm() : null;
+                continue;
+            }
+            if (term == null) {
+                continue;
+            }
+            int colon = line.indexOf(':');
+            if (colon < 0) {
+                continue;
+            }
+            String tag = line.substring(0, colon);
+            String value = stripComment(line.substring(colon + 1));
+            switch (tag) {
+                case "id":
+                    term.id = value;
+                    terms.put(value, term);
+                    break;
+                case "name":
+                    term.name = value;
+                    break;
+                case "is_a":
+                    term.parents.add(value);
+                    break;
+                case "alt_id":
+                    term.altIds.add(value);
+                    break;
+                case "is_obsolete":
+                    term.obsolete = value.equals("true");
+                    break;
+                case "replaced_by":
+                    term.replacedBy = value;
+                    break;
+                default:
+                    break;
+            }
+        }
+        return build(terms);
+    }
+
+    /**
+     * @return the value of an OBO tag, without any trailing modifiers or comment.
+     */
+    private static String stripComment(String value) {
+        int end = value.length();
+        int comment = value.indexOf(" !");
+        if (comment >= 0) {
+            end = comment;
+        }
+        int modifiers = value.indexOf(" {");
+        if (modifiers >= 0 && modifiers < end) {
+            end = modifiers;
+        }
+        return value.substring(0, end).trim();
+    }
+
+    private static Ontology build(Map<String, OboTerm> oboTerms) throws IOException {
+        // obsolete terms are left out of the hierarchy, but their ids resolve to any replacement
+        List<OboTerm> current = new ArrayList<>();
+        Map<String, Integer> order = new HashMap<>();
+        for (OboTerm term : oboTerms.values()) {
+            if (!term.obsolete) {
+                order.put(term.id, current.size());
+                current.add(term);
+            }
+        }
+        int size = current.size();
+        int[][] parentOrder = new int[size][];
+        int[] unnumberedParents = new int[size];
+        List<List<Integer>> childOrder = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            childOrder.add(new ArrayList<>());
+        }
+        for (int i = 0; i < size; i++) {
+            parentOrder[i] = current.get(i).parents.stream()
+                    .filter(order::containsKey)
+                    .mapToInt(order::get)
+                    .distinct()
+                    .toArray();
+            unnumberedParents[i] = parentOrder[i].length;
+            for (int parent : parentOrder[i]) {
+                childOrder.get(parent).add(i);
+            }
+        }
+
+        // number the terms in topological order
+        int[] numberOf = new int[size];
+        Deque<Integer> ready = new ArrayDeque<>();
+        for (int i = 0; i < size; i++) {
+            if (unnumberedParents[i] == 0) {
+                ready.add(i);
+            }
+        }
+        int next = 0;
+        String[] ids = new String[size];
+        String[] labels = new String[size];
+        while (!ready.isEmpty()) {
+            int i = ready.poll();
+            numberOf[i] = next;
+            ids[next] = current.get(i).id;
+            labels[next] = current.get(i).name;
+            next++;
+            for (int child : childOrder.get(i)) {
+                if (--unnumberedParents[child] == 0) {
+                    ready.add(child);
+                }
+            }
+        }
+        if (next != size) {
+            throw new IOException("The is_a relations of the ontology contain a cycle");
+        }
+
+        int[][] parents = new int[size][];
+        Map<String, Integer> numbers = new HashMap<>();
+        for (int i = 0; i < size; i++) {
+            int number = numberOf[i];
+            parents[number] = Arrays.stream(parentOrder[i]).map(parent -> numberOf[parent]).toArray();
+            numbers.put(ids[number], number);
+        }
+        for (OboTerm term : oboTerms.values()) {
+            Integer number = term.obsolete ? (term.replacedBy == null ? null : numbers.get(term.replacedBy)) : numbers.get(term.id);
+            if (number != null) {
+                numbers.putIfAbsent(term.id, number);
+                for (String altId : term.altIds) {
+                    numbers.putIfAbsent(altId, number);
+                }
+            }
+        }
+        return new Ontology(ids, labels, parents, numbers);
+    }
+
+    /**
+     * @return the number of (non-obsolete) terms.
+     */
+    public int size() {
+        return ids.length;
+    }
+
+    /**
+     * @return the number of the term with the given id or alternative id, or -1 if the ontology has no such term.
+     */
+    public int number(String id) {
+        Integer number = numbers.get(id);
+        return number == null ? -1 : number;
+    }
+
+    /**
+     * @return the primary id of the term.
+     */
+    public String id(int term) {
+        return ids[term];
+    }
+
+    /**
+     * @return the name of the term, or {@code null} if it has none.
+     */
+    public String label(int term) {
+        return labels[term];
+    }
+
+    /**
+     * @return true if the term is the ancestor or one of its descendants.
+     */
+    public boolean isA(int term, int ancestor) {
+        return ancestors[term].get(ancestor);
+    }
+
+    /**
+     * @return true if both ids are known and the term is the ancestor or one of its descendants.
+     */
+    public boolean isA(String termId, String ancestorId) {
+        int term = number(termId);
+        int ancestor = number(ancestorId);
+        return term >= 0 && ancestor >= 0 && ancestors[term].get(ancestor);
+    }
+
+    /**
+     * @return the direct parents of the term.
+     */
+    public int[] parents(int term) {
+        return parents[term].clone();
+    }
+
+    /**
+     * @return the term and all of its ancestors, in ascending order.
+     */
+    public int[] ancestors(int term) {
+        return ancestors[term].stream().toArray();
+    }
+
+    /**
+     * @return the number of ancestors of the term, including the term itself.
+     */
+    public int ancestorCount(int term) {
+        return ancestors[term].cardinality();
+    }
+
+    /**
+     * @return the term and all of its descendants, in ascending order.
+     */
+    public int[] descendants(int term) {
+        BitSet descendants = new BitSet(ids.length);
+        Deque<Integer> pending = new ArrayDeque<>();
+        descendants.set(term);
+        pending.add(term);
+        while (!pending.isEmpty()) {
+            for (int child : children[pending.poll()]) {
+                if (!descendants.get(child)) {
+                    descendants.set(child);
+                    pending.add(child);
+                }
+            }
+        }
+        return descendants.stream().toArray();
+    }
+
+    private static class OboTerm {
+        private String id;
+        private String name;
+        private final List<String> parents = new ArrayList<>();
+        private final List<String> altIds = new ArrayList<>();
+        private boolean obsolete;
+        private String replacedBy;
+    }
+}
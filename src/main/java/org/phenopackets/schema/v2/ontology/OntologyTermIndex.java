@@ -0,0 +1,81 @@
+package org.phenopackets.schema.v2.ontology;
+
+import org.phenopackets.schema.v2.index.MemberSet;
+import org.phenopackets.schema.v2.index.TermIndex;
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Answers queries against a {@link TermIndex} by subsumption, so that a query for a high-level term such as
+ * {@code HP:0000707 Abnormality of the nervous system} finds the members annotated with any of its descendants.
+ * <p>
+ * The distinct terms used in each indexed field are resolved in the {@link Ontology} once, up front. A query then
+ * checks each of those terms against the query term with a single {@link Ontology#isA(int, int)} bit lookup and
+ * combines the postings of the matching terms, without looking at the members themselves.
+ * <p>
+ * Instances are immutable and thread-safe.
+ */
+public class OntologyTermIndex {
+
+    private final TermIndex index;
+    private final Ontology ontology;
+    private final Map<TermIndex.TermField, ResolvedTerms> resolvedTerms = new EnumMap<>(TermIndex.TermField.class);
+
+    public OntologyTermIndex(TermIndex index, Ontology ontology) {
+        this.index = index;
+        this.ontology = ontology;
+        for (TermIndex.TermField field : TermIndex.TermField.values()) {
+            List<Integer> numbers = new ArrayList<>();
+            List<MemberSet> postings = new ArrayList<>();
+            for (String termId : index.terms(field)) {
+                int number = ontology.number(termId);
+                if (number >= 0) {
+                    numbers.add(number);
+                    postings.add(index.members(field, termId));
+                }
+            }
+            resolvedTerms.put(field, new ResolvedTerms(numbers.stream().mapToInt(Integer::intValue).toArray(), postings.toArray(new MemberSet[0])));
+        }
+    }
+
+    public TermIndex termIndex() {
+        return index;
+    }
+
+    public Ontology ontology() {
+        return ontology;
+    }
+
+    /**
+     * @return the members using the term, or any term it subsumes, in the given field. If the term is not in the
+     * ontology, just the members using exactly that term.
+     */
+    public MemberSet members(TermIndex.TermField field, String termId) {
+        int query = ontology.number(termId);
+        if (query < 0) {
+            return index.members(field, termId);
+        }
+        ResolvedTerms terms = resolvedTerms.get(field);
+        MemberSet members = MemberSet.empty();
+        for (int i = 0; i < terms.numbers.length; i++) {
+            if (ontology.isA(terms.numbers[i], query)) {
+                members = members.or(terms.postings[i]);
+            }
+        }
+        return members;
+    }
+
+    private static class ResolvedTerms {
+
+        private final int[] numbers;
+        private final MemberSet[] postings;
+
+        private ResolvedTerms(int[] numbers, MemberSet[] postings) {
+            this.numbers = numbers;
+            this.postings = postings;
+        }
+    }
+}
@@ -0,0 +1,235 @@
+package org.phenopackets.schema.v2.similarity;
+
+import org.phenopackets.schema.v2.Cohort;
+import org.phenopackets.schema.v2.Phenopacket;
+import org.phenopackets.schema.v2.ontology.Ontology;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+import java.util.PriorityQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.IntToDoubleFunction;
+
+/**
+ * Finds the members of a cohort whose phenotypes are most similar to that of a query phenopacket:
+ * <pre>
+ * CohortSimilarityIndex index = CohortSimilarityIndex.of(Ontology.loadObo(Path.of("hp.obo")), cohort);
+ * List&lt;CohortSimilarityIndex.Match&gt; matches = index.topK(query, 10, PhenotypeSimilarity.Method.RESNIK);
+ * </pre>
+ * The phenotypic features of every member are resolved to a {@link PhenotypeProfile} once, when the index is built, so
+ * a query only resolves its own features and then scores the members in parallel, keeping the best {@code k} matches
+ * of each batch of members and merging them.
+ * <p>
+ * Instances are immutable and thread-safe.
+ */
+public class CohortSimilarityIndex {
+
+    // members scored by each task
+    private static final int BATCH_SIZE = 4096;
+    static final long NO_DEADLINE = Long.MAX_VALUE;
+
+    private final PhenotypeSimilarity similarity;
+    private final String[] memberIds;
+    private final PhenotypeProfile[] profiles;
+    private final ForkJoinPool pool;
+
+    private CohortSimilarityIndex(PhenotypeSimilarity similarity, List<String> memberIds, List<PhenotypeProfile> profiles, ForkJoinPool pool) {
+        this.similarity = similarity;
+        this.memberIds = memberIds.toArray(new String[0]);
+        this.profiles = profiles.toArray(new PhenotypeProfile[0]);
+        this.pool = pool;
+    }
+
+    /**
+     * Indexes the members of the cohort, using the cohort itself as the corpus for the information content of the
+     * terms.
+     */
+    public static CohortSimilarityIndex of(Ontology ontology, Cohort cohort) {
+        return of(PhenotypeSimilarity.of(ontology, cohort.getMembersList()), cohort.getMembersList());
+    }
+
+    public static CohortSimilarityIndex of(PhenotypeSimilarity similarity, Iterable<Phenopacket> members) {
+        return of(similarity, members, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * @param pool the pool in which queries score the members
+     */
+    public static CohortSimilarityIndex of(PhenotypeSimilarity similarity, Iterable<Phenopacket> members, ForkJoinPool pool) {
+        List<String> memberIds = new ArrayList<>();
+        List<PhenotypeProfile> profiles = new ArrayList<>();
+        for (Phenopacket member : members) {
+            memberIds.add(member.getId());
+            profiles.add(similarity.profile(member));
+        }
+        return new CohortSimilarityIndex(similarity, memberIds, profiles, pool);
+    }
+
+    public PhenotypeSimilarity similarity() {
+        return similarity;
+    }
+
+    /**
+     * @return the number of members in the index.
+     */
+    public int size() {
+        return memberIds.length;
+    }
+
+    /**
+     * @return the {@code Phenopacket.id} of the member with the given number, its position in the cohort.
+     */
+    public String memberId(int member) {
+        return memberIds[member];
+    }
+
+    public PhenotypeProfile profile(int member) {
+        return profiles[member];
+    }
+
+    /**
+     * @return the {@code k} members most similar to the query, best first. Members with equal scores are in the order
+     * of the cohort, and members which share no phenotype with the query are never returned.
+     */
+    public List<Match> topK(Phenopacket query, int k, PhenotypeSimilarity.Method method) {
+        return topK(similarity.profile(query), k, method);
+    }
+
+    public List<Match> topK(PhenotypeProfile query, int k, PhenotypeSimilarity.Method method) {
+        if (k < 1) {
+            throw new IllegalArgumentException("k must be at least 1 but was " + k);
+        }
+        Objects.requireNonNull(method, "method");
+        if (query.isEmpty() || profiles.length == 0) {
+            return Collections.emptyList();
+        }
+        PhenotypeSimilarity.Query prepared = similarity.new Query(query);
+        return topK(member -> prepared.score(profiles[member], method), k, NO_DEADLINE, new AtomicBoolean());
+    }
+
+    /**
+     * Scores every member, in parallel, and returns the best {@code k} with a score above 0.
+     *
+     * @param deadline  the {@link System#nanoTime()} after which no more batches of members are scored, or
+     *                  {@link #NO_DEADLINE}
+     * @param truncated set if any members were left unscored because the deadline passed
+     */
+    List<Match> topK(IntToDoubleFunction scores, int k, long deadline, AtomicBoolean truncated) {
+        PriorityQueue<Match> best = pool.invoke(new ScoreTask(scores, k, deadline, truncated, 0, profiles.length));
+        List<Match> matches = new ArrayList<>(best);
+        matches.sort(Collections.reverseOrder());
+        return matches;
+    }
+
+    /**
+     * Scores a range of members, splitting it in halves down to {@link #BATCH_SIZE} members, and returns the best
+     * {@code k} matches of the range in a min-heap.
+     */
+    private class ScoreTask extends RecursiveTask<PriorityQueue<Match>> {
+
+        private static final long serialVersionUID = 1L;
+
+        private final IntToDoubleFunction scores;
+        private final int k;
+        private final long deadline;
+        private final AtomicBoolean truncated;
+        private final int from;
+        private final int to;
+
+        private ScoreTask(IntToDoubleFunction scores, int k, long deadline, AtomicBoolean truncated, int from, int to) {
+            this.scores = scores;
+            this.k = k;
+            this.deadline = deadline;
+            this.truncated = truncated;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected PriorityQueue<Match> compute() {
+            if (to - from > BATCH_SIZE) {
+                int middle = (from + to) >>> 1;
+                ScoreTask high = new ScoreTask(scores, k, deadline, truncated, middle, to);
+                high.fork();
+                PriorityQueue<Match> best = new ScoreTask(scores, k, deadline, truncated, from, middle).compute();
+                for (Match match : high.join()) {
+                    offer(best, match);
+                }
+                return best;
+            }
+            PriorityQueue<Match> best = new PriorityQueue<>(k + 1);
+            if (deadline != NO_DEADLINE && System.nanoTime() - deadline > 0) {
+                truncated.set(true);
+                return best;
+            }
+            double threshold = 0;
+            for (int member = from; member < to; member++) {
+                double score = scores.applyAsDouble(member);
+                // ties are kept by the first member seen, so later members need a strictly better score
+                if (score > threshold || (best.size() < k && score > 0)) {
+                    offer(best, new Match(member, memberIds[member], score));
+                    if (best.size() == k) {
+                        threshold = best.peek().score;
+                    }
+                }
+            }
+            return best;
+        }
+
+        private void offer(PriorityQueue<Match> best, Match match) {
+            if (best.size() < k) {
+                best.add(match);
+            } else if (match.compareTo(best.peek()) > 0) {
+                best.poll();
+                best.add(match);
+            }
+        }
+    }
+
+    /**
+     * A member of the cohort and the similarity of its phenotype to that of the query. Matches are ordered by score,
+     * and for equal scores the member earlier in the cohort is the better match.
+     */
+    public static final class Match implements Comparable<Match> {
+
+        private final int member;
+        private final String memberId;
+        private final double score;
+
+        private Match(int member, String memberId, double score) {
+            this.member = member;
+            this.memberId = memberId;
+            this.score = score;
+        }
+
+        /**
+         * @return the number of the member, its position in the cohort.
+         */
+        public int member() {
+            return member;
+        }
+
+        public String memberId() {
+            return memberId;
+        }
+
+        public double score() {
+            return score;
+        }
+
+        @Override
+        public int compareTo(Match other) {
+            int byScore = Double.compare(score, other.score);
+            return byScore != 0 ? byScore : Integer.compare(other.member, member);
+        }
+
+        @Override
+        public String toString() {
+            return "Match{member=" + member + ", memberId='" + memberId + "', score=" + score + '}';
+        }
+    }
+}
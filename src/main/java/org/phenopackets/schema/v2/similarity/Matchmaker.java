@@ -0,0 +1,291 @@
+package org.phenopackets.schema.v2.similarity;
+
+import org.ga4gh.vrsatile.v1.GeneDescriptor;
+import org.phenopackets.schema.v2.Phenopacket;
+import org.phenopackets.schema.v2.core.GenomicInterpretation;
+import org.phenopackets.schema.v2.core.Interpretation;
+import org.phenopackets.schema.v2.index.MemberSet;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * An in-process matchmaker over a set of phenopackets, in the manner of a Matchmaker Exchange node: a query of
+ * observed phenotypes and candidate genes is answered with the best matching phenopackets.
+ * <p>
+ * Phenotypes are compared with a {@link PhenotypeSimilarity}, normalised by the similarity of the query to itself so
+ * that they score between 0 and 1. A phenopacket sharing any of the query genes scores 1 for genotype. The score of
+ * a match is the mean of the two, or just one of them if the query has no phenotypes or no genes. The genes of a
+ * phenopacket are the {@code value_id} and {@code symbol} of the {@link GeneDescriptor}s of its interpretations, other
+ * than rejected ones, whether called as a gene or as the gene context of a variant.
+ * <p>
+ * Latency is bounded: a query that is not answered within the timeout returns the best matches among the members
+ * scored so far, and no more than a fixed number of queries are scored at once. Queries beyond that wait for the rest
+ * of their timeout and are then rejected.
+ * <p>
+ * Instances are immutable and thread-safe.
+ */
+public class Matchmaker {
+
+    private final CohortSimilarityIndex index;
+    private final List<Phenopacket> members;
+    private final Map<String, MemberSet> genes;
+    private final PhenotypeSimilarity.Method method;
+    private final long timeoutNanos;
+    private final Semaphore queries;
+
+    private Matchmaker(Builder builder) {
+        this.members = Collections.unmodifiableList(new ArrayList<>(builder.members));
+        this.index = CohortSimilarityIndex.of(builder.similarity, members, builder.pool);
+        Map<String, MemberSet> genes = new HashMap<>();
+        for (Map.Entry<String, Postings> gene : builder.genes.entrySet()) {
+            Postings postings = gene.getValue();
+            genes.put(gene.getKey(), MemberSet.of(Arrays.copyOf(postings.members, postings.size)));
+        }
+        this.genes = genes;
+        this.method = builder.method;
+        this.timeoutNanos = builder.timeout.toNanos();
+        this.queries = new Semaphore(builder.maxConcurrentQueries, true);
+    }
+
+    public static Builder builder(PhenotypeSimilarity similarity) {
+        return new Builder(similarity);
+    }
+
+    /**
+     * @return the genes of the interpretations of the phenopacket which are not rejected, in the order they are first
+     * seen.
+     */
+    public static List<GeneDescriptor> geneDescriptors(Phenopacket phenopacket) {
+        List<GeneDescriptor> genes = new ArrayList<>();
+        for (Interpretation interpretation : phenopacket.getInterpretationsList()) {
+            for (GenomicInterpretation genomicInterpretation : interpretation.getDiagnosis().getGenomicInterpretationsList()) {
+                if (genomicInterpretation.getInterpretationStatus() == GenomicInterpretation.InterpretationStatus.REJECTED) {
+                    continue;
+                }
+                GeneDescriptor gene = genomicInterpretation.hasGene()
+                        ? genomicInterpretation.getGene()
+                        : genomicInterpretation.getVariantInterpretation().getVariationDescriptor().getGeneContext();
+                if (!gene.getValueId().isEmpty() || !gene.getSymbol().isEmpty()) {
+                    genes.add(gene);
+                }
+            }
+        }
+        return genes;
+    }
+
+    /**
+     * @return the ids and symbols of the {@link #geneDescriptors(Phenopacket)} of the phenopacket.
+     */
+    public static Set<String> genes(Phenopacket phenopacket) {
+        Set<String> genes = new LinkedHashSet<>();
+        for (GeneDescriptor gene : geneDescriptors(phenopacket)) {
+            if (!gene.getValueId().isEmpty()) {
+                genes.add(gene.getValueId());
+            }
+            if (!gene.getSymbol().isEmpty()) {
+                genes.add(gene.getSymbol());
+            }
+        }
+        return genes;
+    }
+
+    public PhenotypeSimilarity similarity() {
+        return index.similarity();
+    }
+
+    public int size() {
+        return members.size();
+    }
+
+    /**
+     * @return the phenopacket with the given number, its position in the order they were added.
+     */
+    public Phenopacket member(int member) {
+        return members.get(member);
+    }
+
+    /**
+     * @return the members with the gene id or symbol.
+     */
+    public MemberSet membersWithGene(String gene) {
+        return genes.getOrDefault(gene, MemberSet.empty());
+    }
+
+    /**
+     * @param phenotype the observed phenotypes of the query, e.g. from {@link PhenotypeSimilarity#profile(Iterable)}
+     * @param genes     the candidate gene ids and symbols of the query
+     * @param limit     the maximum number of matches
+     * @throws RejectedExecutionException if the query could not be started within the timeout, because too many other
+     *                                    queries were being scored
+     */
+    public Result match(PhenotypeProfile phenotype, Collection<String> genes, int limit) {
+        if (limit < 1) {
+            throw new IllegalArgumentException("limit must be at least 1 but was " + limit);
+        }
+        long deadline = System.nanoTime() + timeoutNanos;
+        try {
+            if (!queries.tryAcquire(timeoutNanos, TimeUnit.NANOSECONDS)) {
+                throw new RejectedExecutionException("Too many concurrent queries");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RejectedExecutionException("Interrupted waiting to run the query", e);
+        }
+        try {
+            MemberSet geneMatches = MemberSet.empty();
+            for (String gene : genes) {
+                geneMatches = geneMatches.or(membersWithGene(gene));
+            }
+            PhenotypeSimilarity.Query query = similarity().new Query(phenotype);
+            double selfScore = query.score(phenotype, method);
+            // a query of only the most general terms, which every member shares, does not discriminate
+            boolean byPhenotype = selfScore > 0;
+            boolean byGenes = !genes.isEmpty();
+            if (!byGenes && !byPhenotype) {
+                return new Result(Collections.emptyList(), true);
+            }
+            MemberSet geneMembers = geneMatches;
+            AtomicBoolean truncated = new AtomicBoolean();
+            List<CohortSimilarityIndex.Match> matches = index.topK(member -> {
+                double phenotypeScore = byPhenotype ? Math.min(1, query.score(index.profile(member), method) / selfScore) : 0;
+                if (!byGenes) {
+                    return phenotypeScore;
+                }
+                double geneScore = geneMembers.contains(member) ? 1 : 0;
+                return byPhenotype ? (phenotypeScore + geneScore) / 2 : geneScore;
+            }, limit, deadline, truncated);
+            return new Result(matches, !truncated.get());
+        } finally {
+            queries.release();
+        }
+    }
+
+    /**
+     * The best matches of a query, best first.
+     */
+    public static final class Result {
+
+        private final List<CohortSimilarityIndex.Match> matches;
+        private final boolean complete;
+
+        private Result(List<CohortSimilarityIndex.Match> matches, boolean complete) {
+            this.matches = Collections.unmodifiableList(matches);
+            this.complete = complete;
+        }
+
+        public List<CohortSimilarityIndex.Match> matches() {
+            return matches;
+        }
+
+        /**
+         * @return false if the timeout passed before every member was scored, so that better matches may have been
+         * missed.
+         */
+        public boolean isComplete() {
+            return complete;
+        }
+    }
+
+    /**
+     * Collects the phenopackets to match against. Not thread-safe.
+     */
+    public static class Builder {
+
+        private final PhenotypeSimilarity similarity;
+        private final List<Phenopacket> members = new ArrayList<>();
+        private final Map<String, Postings> genes = new HashMap<>();
+        private PhenotypeSimilarity.Method method = PhenotypeSimilarity.Method.RESNIK;
+        private Duration timeout = Duration.ofSeconds(1);
+        private int maxConcurrentQueries = Runtime.getRuntime().availableProcessors();
+        private ForkJoinPool pool = ForkJoinPool.commonPool();
+
+        private Builder(PhenotypeSimilarity similarity) {
+            this.similarity = similarity;
+        }
+
+        public Builder add(Phenopacket member) {
+            int number = members.size();
+            members.add(member);
+            for (String gene : genes(member)) {
+                genes.computeIfAbsent(gene, g -> new Postings()).add(number);
+            }
+            return this;
+        }
+
+        public Builder addAll(Iterable<Phenopacket> members) {
+            for (Phenopacket member : members) {
+                add(member);
+            }
+            return this;
+        }
+
+        public Builder method(PhenotypeSimilarity.Method method) {
+            this.method = method;
+            return this;
+        }
+
+        /**
+         * @param timeout the longest a query waits to start and is then scored for. Defaults to one second.
+         */
+        public Builder timeout(Duration timeout) {
+            if (timeout.isNegative() || timeout.isZero()) {
+                throw new IllegalArgumentException("timeout must be positive but was " + timeout);
+            }
+            this.timeout = timeout;
+            return this;
+        }
+
+        /**
+         * @param maxConcurrentQueries the number of queries scored at once. Defaults to the number of processors.
+         */
+        public Builder maxConcurrentQueries(int maxConcurrentQueries) {
+            if (maxConcurrentQueries < 1) {
+                throw new IllegalArgumentException("maxConcurrentQueries must be at least 1 but was " + maxConcurrentQueries);
+            }
+            this.maxConcurrentQueries = maxConcurrentQueries;
+            return this;
+        }
+
+        /**
+         * @param pool the pool in which queries score the members
+         */
+        public Builder pool(ForkJoinPool pool) {
+            this.pool = pool;
+            return this;
+        }
+
+        public Matchmaker build() {
+            return new Matchmaker(this);
+        }
+    }
+
+    /**
+     * The numbers of the members with a gene, in ascending order as members are added in order.
+     */
+    private static class Postings {
+
+        private int[] members = new int[4];
+        private int size;
+
+        private void add(int member) {
+            if (size == members.length) {
+                members = Arrays.copyOf(members, size * 2);
+            }
+            members[size++] = member;
+        }
+    }
+}
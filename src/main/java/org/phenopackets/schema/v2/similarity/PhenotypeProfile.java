@@ -0,0 +1,49 @@
+package org.phenopackets.schema.v2.similarity;
+
+import java.util.Arrays;
+
+/**
+ * The observed phenotype of a phenopacket resolved against an ontology: the numbers of the terms of its non-excluded
+ * phenotypic features, and of all the ancestors of those terms. Features whose terms are not in the ontology are left
+ * out.
+ */
+public final class PhenotypeProfile {
+
+    private final int[] terms;
+    private final int[] closure;
+
+    PhenotypeProfile(int[] terms, int[] closure) {
+        this.terms = terms;
+        this.closure = closure;
+    }
+
+    /**
+     * @return the distinct terms of the phenotypic features, in ascending order.
+     */
+    public int[] terms() {
+        return terms.clone();
+    }
+
+    /**
+     * @return the terms and all of their ancestors, in ascending order.
+     */
+    public int[] closure() {
+        return closure.clone();
+    }
+
+    public boolean isEmpty() {
+        return terms.length == 0;
+    }
+
+    int[] termArray() {
+        return terms;
+    }
+
+    int[] closureArray() {
+        return closure;
+    }
+
+    boolean closureContains(int term) {
+        return Arrays.binarySearch(closure, term) >= 0;
+    }
+}
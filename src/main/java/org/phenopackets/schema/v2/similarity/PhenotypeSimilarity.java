@@ -0,0 +1,289 @@
+package org.phenopackets.schema.v2.similarity;
+
+import org.phenopackets.schema.v2.Phenopacket;
+import org.phenopackets.schema.v2.core.PhenotypicFeature;
+import org.phenopackets.schema.v2.ontology.Ontology;
+
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.stream.IntStream;
+
+/**
+ * Semantic similarity between the phenotypes of phenopackets, based on an {@link Ontology} and the information
+ * content of its terms in a corpus of phenopackets.
+ * <p>
+ * The information content of a term is {@code -ln(p)}, where {@code p} is the fraction of phenopackets of the corpus
+ * annotated with the term or any of its descendants. Terms without any annotations get the highest information
+ * content, that of a term annotated to a single phenopacket.
+ * <p>
+ * The ancestors of every term are precomputed in descending order of information content, so the most informative
+ * common ancestor of two terms is the first ancestor of one of them which is also an ancestor of the other. The
+ * resulting Resnik similarity of pairs of terms is kept in a bounded, lock-free cache.
+ * <p>
+ * Instances are immutable, apart from the cache, and thread-safe.
+ */
+public class PhenotypeSimilarity {
+
+    public enum Method {
+        /**
+         * The symmetric best-match average of the Resnik similarity, i.e. the information content of the most
+         * informative common ancestor, of the terms of each profile with the terms of the other.
+         */
+        RESNIK,
+        /**
+         * The Jaccard index of the terms of the two profiles and all of their ancestors.
+         */
+        JACCARD
+    }
+
+    private static final int CACHE_SIZE = 1 << 16;
+
+    private final Ontology ontology;
+    private final double[] informationContent;
+    // the ancestors of each term, including the term, in descending order of information content and, for equal
+    // information content, from the most specific, which is numbered last
+    private final int[][] ancestorsByInformationContent;
+    private final MicaEntry[] micaCache = new MicaEntry[CACHE_SIZE];
+
+    private PhenotypeSimilarity(Ontology ontology, double[] informationContent) {
+        this.ontology = ontology;
+        this.informationContent = informationContent;
+        this.ancestorsByInformationContent = new int[ontology.size()][];
+        for (int term = 0; term < ontology.size(); term++) {
+            ancestorsByInformationContent[term] = IntStream.of(ontology.ancestors(term))
+                    .boxed()
+                    .sorted(Comparator.comparingDouble((Integer ancestor) -> informationContent[ancestor])
+                            .thenComparingInt(ancestor -> ancestor)
+                            .reversed())
+                    .mapToInt(Integer::intValue)
+                    .toArray();
+        }
+    }
+
+    /**
+     * @param corpus the phenopackets used to work out the information content of each term, usually the cohort that
+     *               is to be searched
+     */
+    public static PhenotypeSimilarity of(Ontology ontology, Iterable<Phenopacket> corpus) {
+        int[] annotations = new int[ontology.size()];
+        int size = 0;
+        BitSet closure = new BitSet(ontology.size());
+        for (Phenopacket phenopacket : corpus) {
+            size++;
+            closure.clear();
+            for (PhenotypicFeature feature : phenopacket.getPhenotypicFeaturesList()) {
+                int term = feature.getExcluded() ? -1 : ontology.number(feature.getType().getId());
+                if (term >= 0) {
+                    for (int ancestor : ontology.ancestors(term)) {
+                        closure.set(ancestor);
+                    }
+                }
+            }
+            closure.stream().forEach(term -> annotations[term]++);
+        }
+        double[] informationContent = new double[ontology.size()];
+        for (int term = 0; term < informationContent.length; term++) {
+            informationContent[term] = size == 0 ? 0 : -Math.log((double) Math.max(1, annotations[term]) / size);
+        }
+        return new PhenotypeSimilarity(ontology, informationContent);
+    }
+
+    public Ontology ontology() {
+        return ontology;
+    }
+
+    public double informationContent(int term) {
+        return informationContent[term];
+    }
+
+    /**
+     * @return the most informative common ancestor of the two terms.
+     */
+    public int mica(int a, int b) {
+        for (int ancestor : ancestorsByInformationContent[a]) {
+            if (ontology.isA(b, ancestor)) {
+                return ancestor;
+            }
+        }
+        // only reached for terms in different hierarchies, which share no root
+        return -1;
+    }
+
+    /**
+     * @return the information content of the most informative common ancestor of the two terms, or 0 if they have no
+     * common ancestor.
+     */
+    public double resnik(int a, int b) {
+        int low = Math.min(a, b);
+        int high = Math.max(a, b);
+        long key = (long) low << 32 | high;
+        int slot = Long.hashCode(key * 0x9E3779B97F4A7C15L) & (CACHE_SIZE - 1);
+        MicaEntry entry = micaCache[slot];
+        if (entry != null && entry.key == key) {
+            return entry.similarity;
+        }
+        int mica = mica(low, high);
+        double similarity = mica < 0 ? 0 : informationContent[mica];
+        // entries are immutable, so a racing reader sees either the old or the new entry in full
+        micaCache[slot] = new MicaEntry(key, similarity);
+        return similarity;
+    }
+
+    public PhenotypeProfile profile(Phenopacket phenopacket) {
+        ProfileBuilder profile = new ProfileBuilder();
+        for (PhenotypicFeature feature : phenopacket.getPhenotypicFeaturesList()) {
+            if (!feature.getExcluded()) {
+                profile.add(feature.getType().getId());
+            }
+        }
+        return profile.build();
+    }
+
+    /**
+     * @param termIds ids of observed phenotypes. Ids which are not in the ontology are left out.
+     */
+    public PhenotypeProfile profile(Iterable<String> termIds) {
+        ProfileBuilder profile = new ProfileBuilder();
+        for (String termId : termIds) {
+            profile.add(termId);
+        }
+        return profile.build();
+    }
+
+    public double score(Phenopacket a, Phenopacket b, Method method) {
+        return score(profile(a), profile(b), method);
+    }
+
+    public double score(PhenotypeProfile a, PhenotypeProfile b, Method method) {
+        return new Query(a).score(b, method);
+    }
+
+    /**
+     * A profile prepared for scoring against many others, with its closure as a bitset so that membership checks are
+     * a single bit lookup.
+     * <p>
+     * For up to 64 terms, each term of the closure also has a mask of the query terms it is an ancestor of. The best
+     * match of every query term in another profile then comes from a single pass over the closure of that profile,
+     * rather than from searching it for the ancestors of each query term in turn.
+     */
+    final class Query {
+
+        private final PhenotypeProfile profile;
+        private final BitSet closure;
+        private final long[] descendantTerms;
+
+        Query(PhenotypeProfile profile) {
+            this.profile = profile;
+            this.closure = new BitSet(ontology.size());
+            for (int term : profile.closureArray()) {
+                closure.set(term);
+            }
+            int[] terms = profile.termArray();
+            if (terms.length <= Long.SIZE) {
+                descendantTerms = new long[ontology.size()];
+                for (int i = 0; i < terms.length; i++) {
+                    for (int ancestor : ancestorsByInformationContent[terms[i]]) {
+                        descendantTerms[ancestor] |= 1L << i;
+                    }
+                }
+            } else {
+                descendantTerms = null;
+            }
+        }
+
+        double score(PhenotypeProfile other, Method method) {
+            if (profile.isEmpty() || other.isEmpty()) {
+                return 0;
+            }
+            return method == Method.RESNIK ? resnik(other) : jaccard(other);
+        }
+
+        private double resnik(PhenotypeProfile other) {
+            // the best match of a term among the terms of a profile is its most informative ancestor in the closure
+            // of the profile, which is found without pairing the terms up
+            double queryToOther = descendantTerms == null ? bestMatches(other) : maskedBestMatches(other);
+            double otherToQuery = 0;
+            for (int term : other.termArray()) {
+                for (int ancestor : ancestorsByInformationContent[term]) {
+                    if (closure.get(ancestor)) {
+                        otherToQuery += informationContent[ancestor];
+                        break;
+                    }
+                }
+            }
+            return (queryToOther / profile.termArray().length + otherToQuery / other.termArray().length) / 2;
+        }
+
+        private double maskedBestMatches(PhenotypeProfile other) {
+            double[] best = new double[profile.termArray().length];
+            for (int term : other.closureArray()) {
+                long queryTerms = descendantTerms[term];
+                while (queryTerms != 0) {
+                    int i = Long.numberOfTrailingZeros(queryTerms);
+                    best[i] = Math.max(best[i], informationContent[term]);
+                    queryTerms &= queryTerms - 1;
+                }
+            }
+            double sum = 0;
+            for (double match : best) {
+                sum += match;
+            }
+            return sum;
+        }
+
+        private double bestMatches(PhenotypeProfile other) {
+            double sum = 0;
+            for (int term : profile.termArray()) {
+                for (int ancestor : ancestorsByInformationContent[term]) {
+                    if (other.closureContains(ancestor)) {
+                        sum += informationContent[ancestor];
+                        break;
+                    }
+                }
+            }
+            return sum;
+        }
+
+        private double jaccard(PhenotypeProfile other) {
+            int[] otherClosure = other.closureArray();
+            int intersection = 0;
+            for (int term : otherClosure) {
+                if (closure.get(term)) {
+                    intersection++;
+                }
+            }
+            return (double) intersection / (profile.closureArray().length + otherClosure.length - intersection);
+        }
+    }
+
+    private class ProfileBuilder {
+
+        private final BitSet terms = new BitSet(ontology.size());
+        private final BitSet closure = new BitSet(ontology.size());
+
+        private void add(String termId) {
+            int term = ontology.number(termId);
+            if (term >= 0 && !terms.get(term)) {
+                terms.set(term);
+                for (int ancestor : ancestorsByInformationContent[term]) {
+                    closure.set(ancestor);
+                }
+            }
+        }
+
+        private PhenotypeProfile build() {
+            return new PhenotypeProfile(terms.stream().toArray(), closure.stream().toArray());
+        }
+    }
+
+    private static class MicaEntry {
+
+        private final long key;
+        private final double similarity;
+
+        private MicaEntry(long key, double similarity) {
+            this.key = key;
+            this.similarity = similarity;
+        }
+    }
+}
@@ -0,0 +1,273 @@
+package org.phenopackets.schema.v2.validation;
+
+import com.google.protobuf.Descriptors.FieldDescriptor;
+import com.google.protobuf.InvalidProtocolBufferException;
+import com.google.protobuf.Message;
+import org.phenopackets.schema.v2.Phenopacket;
+import org.phenopackets.schema.v2.core.Resource;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Re-validates edited phenopackets, re-running only the checks of {@link PhenopacketValidator} that the edit affects.
+ * <p>
+ * The validator keeps the state of the last validated version of each phenopacket, by {@code id}. The checks on a
+ * message within a phenopacket depend only on that message, apart from the prefixes of its ontology classes which are
+ * checked against the {@code meta_data} of the phenopacket. So the state is kept for each element of the top-level
+ * fields, e.g. each phenotypic feature and the subject: the errors within it and the prefixes it uses. When a new
+ * version is validated, each of its top-level elements is compared with the element of the previous version at the
+ * same position or, if elements were added or removed, looked up by content hash among all of them. Only the changed
+ * and added elements are validated again. The checks on the phenopacket itself, including those of the prefixes, are
+ * then re-run from the state of its elements.
+ * <p>
+ * Messages built from a previous version with {@code toBuilder()} share the instances of unchanged elements, which
+ * compare by identity, so re-validating a large phenopacket after an edit such as appending to
+ * {@code meta_data.updates} or changing a phenotypic feature costs a few microseconds. The errors are always those of
+ * {@link PhenopacketValidator#validate(Phenopacket)}, in the same order.
+ * <p>
+ * Instances are thread-safe, although concurrent validation of versions of the same phenopacket may not find each
+ * other's state.
+ */
+public class IncrementalValidator {
+
+    private static final int DEFAULT_MAXIMUM_SIZE = 10_000;
+    private static final Message[] NO_MESSAGES = new Message[0];
+
+    private final PhenopacketValidator validator = new PhenopacketValidator();
+    // the top-level fields which are checked, in the order of their encoding
+    private final List<FieldDescriptor> fields = new ArrayList<>();
+    private final Map<String, PacketState> states;
+
+    /**
+     * Creates a validator which keeps the state of up to 10,000 phenopackets.
+     */
+    public IncrementalValidator() {
+        this(DEFAULT_MAXIMUM_SIZE);
+    }
+
+    /**
+     * @param maximumSize the number of phenopackets whose state is kept before that of the least recently validated
+     *                    ones is evicted
+     */
+    public IncrementalValidator(int maximumSize) {
+        if (maximumSize < 1) {
+            throw new IllegalArgumentException("maximumSize must be positive, got " + maximumSize);
+        }
+        ValidationPlan plan = validator.phenopacketPlan;
+        for (FieldDescriptor field : Phenopacket.getDescriptor().getFields()) {
+            if (plan.action(field.getNumber()) == ValidationPlan.MESSAGE) {
+                fields.add(field);
+            }
+        }
+        fields.sort(Comparator.comparingInt(FieldDescriptor::getNumber));
+        this.states = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, PacketState> eldest) {
+                return size() > maximumSize;
+            }
+        };
+    }
+
+    /**
+     * Validates the phenopacket, re-using the state of the last version validated with the same {@code id}.
+     */
+    public Result validate(Phenopacket phenopacket) {
+        PacketState previous = state(phenopacket.getId());
+        if (previous != null && previous.phenopacket.equals(phenopacket)) {
+            return new Result(previous.errors, List.of());
+        }
+        Message[][] messages = new Message[fields.size()][];
+        Element[][] elements = new Element[fields.size()][];
+        List<String> revalidated = new ArrayList<>();
+        List<ValidationError> errors = new ArrayList<>();
+        Map<String, String> usedPrefixes = new LinkedHashMap<>();
+        Map<Message, Element> previousByContent = null;
+        for (int f = 0; f < fields.size(); f++) {
+            FieldDescriptor field = fields.get(f);
+            List<?> values = values(phenopacket, field);
+            Message[] previousMessages = previous == null ? NO_MESSAGES : previous.messages[f];
+            messages[f] = new Message[values.size()];
+            elements[f] = new Element[values.size()];
+            for (int i = 0; i < values.size(); i++) {
+                Message message = (Message) values.get(i);
+                Element element = null;
+                if (i < previousMessages.length && previousMessages[i].equals(message)) {
+                    // equals is an identity check for elements shared with the previous version
+                    element = previous.elements[f][i];
+                } else if (previousMessages.length != values.size() && previous != null) {
+                    // elements were added or removed, so the others may have moved
+                    if (previousByContent == null) {
+                        previousByContent = previous.byContent();
+                    }
+                    element = previousByContent.get(message);
+                }
+                if (element == null) {
+                    element = validate(field, message);
+                    revalidated.add(path(field, i));
+                }
+                messages[f][i] = message;
+                elements[f][i] = element;
+                element.appendTo(field, i, errors, usedPrefixes);
+            }
+        }
+        checkPhenopacket(phenopacket, usedPrefixes, errors);
+
+        List<ValidationError> unmodifiableErrors = Collections.unmodifiableList(errors);
+        putState(phenopacket.getId(), new PacketState(phenopacket, messages, elements, unmodifiableErrors));
+        return new Result(unmodifiableErrors, Collections.unmodifiableList(revalidated));
+    }
+
+    /**
+     * Discards the state of all phenopackets.
+     */
+    public synchronized void clear() {
+        states.clear();
+    }
+
+    private synchronized PacketState state(String id) {
+        return states.get(id);
+    }
+
+    private synchronized void putState(String id, PacketState state) {
+        states.put(id, state);
+    }
+
+    private static List<?> values(Phenopacket phenopacket, FieldDescriptor field) {
+        if (field.isRepeated()) {
+            return (List<?>) phenopacket.getField(field);
+        }
+        return phenopacket.hasField(field) ? List.of(phenopacket.getField(field)) : List.of();
+    }
+
+    private static String path(FieldDescriptor field, int index) {
+        return field.isRepeated() ? field.getJsonName() + '[' + index + ']' : field.getJsonName();
+    }
+
+    private Element validate(FieldDescriptor field, Message message) {
+        Map<String, String> usedPrefixes = new LinkedHashMap<>();
+        try {
+            List<ValidationError> errors = validator.validateNested(validator.phenopacketPlan.child(field.getNumber()), message.toByteString(), usedPrefixes);
+            return new Element(errors, usedPrefixes);
+        } catch (InvalidProtocolBufferException e) {
+            // a message serialised by protobuf itself is always well-formed
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * The checks of {@link PhenopacketValidator} on the phenopacket itself.
+     */
+    private static void checkPhenopacket(Phenopacket phenopacket, Map<String, String> usedPrefixes, List<ValidationError> errors) {
+        if (phenopacket.getId().isEmpty()) {
+            errors.add(new ValidationError("id", "id is required"));
+        }
+        if (!phenopacket.hasMetaData()) {
+            errors.add(new ValidationError("metaData", "metaData is required"));
+        }
+        Set<String> declaredPrefixes = new HashSet<>();
+        for (Resource resource : phenopacket.getMetaData().getResourcesList()) {
+            declaredPrefixes.add(resource.getNamespacePrefix());
+        }
+        for (Map.Entry<String, String> used : usedPrefixes.entrySet()) {
+            if (!declaredPrefixes.contains(used.getKey())) {
+                errors.add(new ValidationError(used.getValue(), "prefix '" + used.getKey() + "' is not the namespacePrefix of any metaData.resources"));
+            }
+        }
+    }
+
+    /**
+     * The errors found by an {@link IncrementalValidator}, and what was validated again to find them.
+     */
+    public static final class Result {
+
+        private final List<ValidationError> errors;
+        private final List<String> revalidatedPaths;
+
+        private Result(List<ValidationError> errors, List<String> revalidatedPaths) {
+            this.errors = errors;
+            this.revalidatedPaths = revalidatedPaths;
+        }
+
+        public List<ValidationError> errors() {
+            return errors;
+        }
+
+        /**
+         * @return the paths of the elements of the top-level fields which were validated because they were changed or
+         * added since the previous version, e.g. {@code phenotypicFeatures[2]}, or every element for the first version.
+         */
+        public List<String> revalidatedPaths() {
+            return revalidatedPaths;
+        }
+    }
+
+    /**
+     * The validated phenopacket and the state of each element of its top-level fields, indexed like {@link #fields}.
+     */
+    private static class PacketState {
+
+        private final Phenopacket phenopacket;
+        private final Message[][] messages;
+        private final Element[][] elements;
+        private final List<ValidationError> errors;
+
+        private PacketState(Phenopacket phenopacket, Message[][] messages, Element[][] elements, List<ValidationError> errors) {
+            this.phenopacket = phenopacket;
+            this.messages = messages;
+            this.elements = elements;
+            this.errors = errors;
+        }
+
+        private Map<Message, Element> byContent() {
+            Map<Message, Element> byContent = new HashMap<>();
+            for (int f = 0; f < messages.length; f++) {
+                for (int i = 0; i < messages[f].length; i++) {
+                    byContent.put(messages[f][i], elements[f][i]);
+                }
+            }
+            return byContent;
+        }
+    }
+
+    /**
+     * The errors within an element of a top-level field and the prefixes it uses, with paths relative to the element.
+     */
+    private static class Element {
+
+        private final List<ValidationError> errors;
+        private final String[] prefixes;
+        private final String[] prefixPaths;
+
+        private Element(List<ValidationError> errors, Map<String, String> usedPrefixes) {
+            this.errors = errors;
+            this.prefixes = usedPrefixes.keySet().toArray(new String[0]);
+            this.prefixPaths = usedPrefixes.values().toArray(new String[0]);
+        }
+
+        private void appendTo(FieldDescriptor field, int index, List<ValidationError> errors, Map<String, String> usedPrefixes) {
+            String path = null;
+            for (ValidationError error : this.errors) {
+                path = path == null ? path(field, index) : path;
+                errors.add(new ValidationError(absolute(path, error.path()), error.message()));
+            }
+            for (int i = 0; i < prefixes.length; i++) {
+                if (!usedPrefixes.containsKey(prefixes[i])) {
+                    path = path == null ? path(field, index) : path;
+                    usedPrefixes.put(prefixes[i], absolute(path, prefixPaths[i]));
+                }
+            }
+        }
+
+        private static String absolute(String path, String relativePath) {
+            return relativePath.isEmpty() ? path : path + '.' + relativePath;
+        }
+    }
+}
@@ -0,0 +1,277 @@
+package org.phenopackets.schema.v2.validation;
+
+import com.google.protobuf.ByteString;
+import com.google.protobuf.CodedInputStream;
+import com.google.protobuf.CodedOutputStream;
+import com.google.protobuf.InvalidProtocolBufferException;
+import com.google.protobuf.Message;
+import com.google.protobuf.WireFormat;
+import org.phenopackets.schema.v2.Cohort;
+import org.phenopackets.schema.v2.Family;
+import org.phenopackets.schema.v2.Phenopacket;
+import org.phenopackets.schema.v2.internal.BatchPipeline;
+import org.phenopackets.schema.v2.internal.WireFields;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Consumer;
+
+/**
+ * Validates the members of a {@link Cohort}, or a sequence of phenopackets or families, in batches on the threads of a
+ * {@link ForkJoinPool}, with the checks of {@link PhenopacketValidator}.
+ * <p>
+ * Reports are streamed to a consumer as the batches complete rather than collected. Only a few batches per thread are
+ * in flight at any time, so memory use does not depend on the number of messages, and a cohort can be validated
+ * straight from an {@link InputStream} without ever being held in memory. The consumer is called on the calling thread
+ * in the order of the messages, and only for messages with errors.
+ * <p>
+ * The errors reported for a cohort are those of {@link PhenopacketValidator#validate(Cohort)}, with the same paths.
+ * The prefixes used but not declared by the members can only be checked against the {@code meta_data} of the cohort,
+ * which is encoded after them, so they are reported with the errors of the cohort itself in a final report with an
+ * {@link ValidationReport#index() index} of -1.
+ */
+public class ParallelValidator {
+
+    private static final int MEMBERS_TAG = Cohort.MEMBERS_FIELD_NUMBER << 3 | WireFormat.WIRETYPE_LENGTH_DELIMITED;
+    private static final int DEFAULT_BATCH_SIZE = 256;
+
+    private final ForkJoinPool forkJoinPool;
+    private final PhenopacketValidator validator = new PhenopacketValidator();
+    private int batchSize = DEFAULT_BATCH_SIZE;
+
+    /**
+     * Creates a validator which runs on the {@link ForkJoinPool#commonPool()}.
+     */
+    public ParallelValidator() {
+        this(ForkJoinPool.commonPool());
+    }
+
+    public ParallelValidator(ForkJoinPool forkJoinPool) {
+        this.forkJoinPool = forkJoinPool;
+    }
+
+    /**
+     * Sets the number of messages validated by each task, 256 by default.
+     *
+     * @return this validator
+     */
+    public ParallelValidator batchSize(int batchSize) {
+        if (batchSize < 1) {
+            throw new IllegalArgumentException("Batch size must be positive but was " + batchSize);
+        }
+        this.batchSize = batchSize;
+        return this;
+    }
+
+    /**
+     * @return the number of errors found
+     */
+    public long validateCohort(Cohort cohort, Consumer<ValidationReport> reports) {
+        try {
+            return validateCohort(cohort.toByteString(), reports);
+        } catch (IOException e) {
+            // a message serialised by protobuf itself is always well-formed
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Validates an encoded cohort without copying its members.
+     *
+     * @return the number of errors found
+     * @throws InvalidProtocolBufferException if the bytes are not a valid protobuf encoding
+     */
+    public long validateCohort(ByteString bytes, Consumer<ValidationReport> reports) throws IOException {
+        CodedInputStream input = bytes.newCodedInput();
+        input.enableAliasing(true);
+        return validateCohort(input, reports);
+    }
+
+    /**
+     * Validates an encoded cohort as it is read from the stream, which is not closed.
+     *
+     * @return the number of errors found
+     * @throws IOException if the stream could not be read or is not a valid protobuf encoding
+     */
+    public long validateCohort(InputStream inputStream, Consumer<ValidationReport> reports) throws IOException {
+        return validateCohort(CodedInputStream.newInstance(inputStream), reports);
+    }
+
+    /**
+     * Validates each phenopacket as an outermost message, e.g. those of a {@code PhenopacketStreamReader}.
+     *
+     * @return the number of errors found
+     */
+    public long validatePhenopackets(Iterable<Phenopacket> phenopackets, Consumer<ValidationReport> reports) {
+        return validateAll(validator.phenopacketPlan, phenopackets, reports);
+    }
+
+    /**
+     * @return the number of errors found
+     */
+    public long validateFamilies(Iterable<Family> families, Consumer<ValidationReport> reports) {
+        return validateAll(validator.familyPlan, families, reports);
+    }
+
+    private long validateCohort(CodedInputStream input, Consumer<ValidationReport> reports) throws IOException {
+        // the members are validated in batches, and the other fields copied to be validated once the members are done
+        ByteString.Output header = ByteString.newOutput();
+        CodedOutputStream headerOutput = CodedOutputStream.newInstance(header);
+        Reports delivered = new Reports(reports);
+        BatchPipeline<BatchResult> pipeline = new BatchPipeline<>(forkJoinPool, "validating", delivered::add);
+        try {
+            List<ByteString> batch = new ArrayList<>(batchSize);
+            int index = 0;
+            int tag;
+            while ((tag = input.readTag()) != 0) {
+                if (tag == MEMBERS_TAG) {
+                    batch.add(input.readBytes());
+                    // the size limit applies to the whole stream, not to a single member
+                    input.resetSizeCounter();
+                    if (batch.size() == batchSize) {
+                        pipeline.submit(new MemberBatch(index, batch));
+                        index += batch.size();
+                        batch = new ArrayList<>(batchSize);
+                    }
+                } else if (!WireFields.copyField(tag, input, headerOutput)) {
+                    throw new InvalidProtocolBufferException("Unexpected end-group tag " + tag + " in Cohort");
+                }
+            }
+            if (!batch.isEmpty()) {
+                pipeline.submit(new MemberBatch(index, batch));
+            }
+            pipeline.finish();
+        } finally {
+            pipeline.cancel();
+        }
+        headerOutput.flush();
+        List<ValidationError> errors = validator.validateCohortHeader(header.toByteString(), delivered.unresolvedPrefixes);
+        if (!errors.isEmpty()) {
+            String id = Cohort.parseFrom(header.toByteString()).getId();
+            delivered.deliver(new ValidationReport(-1, id, errors));
+        }
+        return delivered.errors;
+    }
+
+    private long validateAll(ValidationPlan plan, Iterable<? extends Message> messages, Consumer<ValidationReport> reports) {
+        Reports delivered = new Reports(reports);
+        BatchPipeline<BatchResult> pipeline = new BatchPipeline<>(forkJoinPool, "validating", delivered::add);
+        try {
+            List<Message> batch = new ArrayList<>(batchSize);
+            int index = 0;
+            for (Message message : messages) {
+                batch.add(message);
+                if (batch.size() == batchSize) {
+                    pipeline.submit(new MessageBatch(plan, index, batch));
+                    index += batch.size();
+                    batch = new ArrayList<>(batchSize);
+                }
+            }
+            if (!batch.isEmpty()) {
+                pipeline.submit(new MessageBatch(plan, index, batch));
+            }
+            pipeline.finish();
+        } catch (IOException e) {
+            // a message serialised by protobuf itself is always well-formed
+            throw new IllegalStateException(e);
+        } finally {
+            pipeline.cancel();
+        }
+        return delivered.errors;
+    }
+
+    /**
+     * The reports of the messages of a batch with errors, and the prefixes left undeclared by cohort members.
+     */
+    private static class BatchResult {
+
+        private final List<ValidationReport> reports = new ArrayList<>();
+        private final Map<String, String> unresolvedPrefixes = new LinkedHashMap<>();
+
+        private void add(ValidationReport report) {
+            if (!report.isValid()) {
+                reports.add(report);
+            }
+        }
+    }
+
+    private class MemberBatch implements Callable<BatchResult> {
+
+        private final int from;
+        private final List<ByteString> members;
+
+        private MemberBatch(int from, List<ByteString> members) {
+            this.from = from;
+            this.members = members;
+        }
+
+        @Override
+        public BatchResult call() throws InvalidProtocolBufferException {
+            BatchResult result = new BatchResult();
+            for (int i = 0; i < members.size(); i++) {
+                int index = from + i;
+                try {
+                    result.add(validator.validate(validator.phenopacketPlan, members.get(i), index, "members[" + index + ']', result.unresolvedPrefixes));
+                } catch (InvalidProtocolBufferException e) {
+                    throw new InvalidProtocolBufferException("Invalid Cohort member " + index + ": " + e.getMessage());
+                }
+            }
+            return result;
+        }
+    }
+
+    private class MessageBatch implements Callable<BatchResult> {
+
+        private final ValidationPlan plan;
+        private final int from;
+        private final List<Message> messages;
+
+        private MessageBatch(ValidationPlan plan, int from, List<Message> messages) {
+            this.plan = plan;
+            this.from = from;
+            this.messages = messages;
+        }
+
+        @Override
+        public BatchResult call() throws InvalidProtocolBufferException {
+            BatchResult result = new BatchResult();
+            for (int i = 0; i < messages.size(); i++) {
+                result.add(validator.validate(plan, messages.get(i).toByteString(), from + i, "", null));
+            }
+            return result;
+        }
+    }
+
+    /**
+     * Hands the reports of each batch to the consumer, counting their errors, and collects the prefixes left undeclared
+     * by cohort members.
+     */
+    private static class Reports {
+
+        private final Consumer<ValidationReport> consumer;
+        private final Map<String, String> unresolvedPrefixes = new LinkedHashMap<>();
+        private long errors;
+
+        private Reports(Consumer<ValidationReport> consumer) {
+            this.consumer = consumer;
+        }
+
+        private void add(BatchResult result) {
+            result.unresolvedPrefixes.forEach(unresolvedPrefixes::putIfAbsent);
+            for (ValidationReport report : result.reports) {
+                deliver(report);
+            }
+        }
+
+        private void deliver(ValidationReport report) {
+            errors += report.errors().size();
+            consumer.accept(report);
+        }
+    }
+}
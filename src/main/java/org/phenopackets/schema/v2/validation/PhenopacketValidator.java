@@ -0,0 +1,637 @@
+package org.phenopackets.schema.v2.validation;
+
+import com.google.protobuf.ByteString;
+import com.google.protobuf.CodedInputStream;
+import com.google.protobuf.Descriptors.Descriptor;
+import com.google.protobuf.Descriptors.FieldDescriptor;
+import com.google.protobuf.InvalidProtocolBufferException;
+import com.google.protobuf.Message;
+import com.google.protobuf.Timestamp;
+import com.google.protobuf.WireFormat;
+import org.phenopackets.schema.v2.Cohort;
+import org.phenopackets.schema.v2.Family;
+import org.phenopackets.schema.v2.Phenopacket;
+import org.phenopackets.schema.v2.core.GestationalAge;
+import org.phenopackets.schema.v2.core.Pedigree;
+import org.phenopackets.schema.v2.core.TimeInterval;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Validates phenopackets, families and cohorts in a single pass over their binary encoding, collecting every error
+ * rather than stopping at the first one. The checks are:
+ * <ul>
+ *     <li>phenopackets, families and cohorts have an {@code id}, and the outermost one has {@code meta_data}</li>
+ *     <li>every {@code OntologyClass} has an {@code id} which is a CURIE, and its prefix is the
+ *     {@code namespace_prefix} of a {@code Resource} in the {@code meta_data} of the enclosing phenopacket, family or
+ *     cohort</li>
+ *     <li>{@code Age.iso8601duration} is an ISO 8601 duration such as {@code P3Y6M} or {@code PT36H}</li>
+ *     <li>{@code GestationalAge.weeks} is not negative and {@code days} is from 0 to 6</li>
+ *     <li>the {@code start} of a {@code TimeInterval} is not after its {@code end}</li>
+ *     <li>the parents of each person of a family's pedigree, and the subjects of its proband and relatives, are persons of
+ *     the pedigree, and no person or subject occurs twice</li>
+ * </ul>
+ * Each message type is compiled into a {@link ValidationPlan} once, so validation is a loop over the tags of the
+ * encoded message with a table lookup for each field, and no reflection. Fields that cannot contain anything checked
+ * are skipped without being decoded. Parsed messages are serialised to be validated, which is cheap compared with
+ * reflective access to their fields.
+ * <p>
+ * Instances are stateless and thread-safe.
+ */
+public class PhenopacketValidator {
+
+    private static final int MAX_DEPTH = 100;
+    private static final int TIMESTAMP_SECONDS_TAG = Timestamp.SECONDS_FIELD_NUMBER << 3 | WireFormat.WIRETYPE_VARINT;
+    private static final int TIMESTAMP_NANOS_TAG = Timestamp.NANOS_FIELD_NUMBER << 3 | WireFormat.WIRETYPE_VARINT;
+
+    final ValidationPlan phenopacketPlan = ValidationPlan.of(Phenopacket.getDescriptor());
+    final ValidationPlan familyPlan = ValidationPlan.of(Family.getDescriptor());
+    private final ValidationPlan cohortPlan = ValidationPlan.of(Cohort.getDescriptor());
+
+    /**
+     * @return the errors in the phenopacket, or an empty list if it is valid.
+     */
+    public List<ValidationError> validate(Phenopacket phenopacket) {
+        return validateParsed(phenopacketPlan, phenopacket);
+    }
+
+    public List<ValidationError> validate(Family family) {
+        return validateParsed(familyPlan, family);
+    }
+
+    public List<ValidationError> validate(Cohort cohort) {
+        return validateParsed(cohortPlan, cohort);
+    }
+
+    /**
+     * Validates an encoded phenopacket without parsing it.
+     *
+     * @throws InvalidProtocolBufferException if the bytes are not a valid protobuf encoding
+     */
+    public List<ValidationError> validatePhenopacket(ByteString bytes) throws InvalidProtocolBufferException {
+        return validate(phenopacketPlan, bytes.newCodedInput());
+    }
+
+    public List<ValidationError> validateFamily(ByteString bytes) throws InvalidProtocolBufferException {
+        return validate(familyPlan, bytes.newCodedInput());
+    }
+
+    public List<ValidationError> validateCohort(ByteString bytes) throws InvalidProtocolBufferException {
+        return validate(cohortPlan, bytes.newCodedInput());
+    }
+
+    /**
+     * Validates a message of the given type, which must be a {@link Phenopacket}, {@link Family} or {@link Cohort}.
+     */
+    public List<ValidationError> validate(Descriptor type, CodedInputStream input) throws InvalidProtocolBufferException {
+        if (type != Phenopacket.getDescriptor() && type != Family.getDescriptor() && type != Cohort.getDescriptor()) {
+            throw new IllegalArgumentException("Cannot validate " + type.getFullName());
+        }
+        return validate(ValidationPlan.of(type), input);
+    }
+
+    private List<ValidationError> validateParsed(ValidationPlan plan, Message message) {
+        try {
+            return validate(plan, CodedInputStream.newInstance(message.toByteArray()));
+        } catch (InvalidProtocolBufferException e) {
+            // a message serialised by protobuf itself is always well-formed
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private List<ValidationError> validate(ValidationPlan plan, CodedInputStream input) throws InvalidProtocolBufferException {
+        return run(new Context("", null), plan, input, Map.of()).errors;
+    }
+
+    /**
+     * Validates one of a batch of separately encoded messages, see {@link ParallelValidator}.
+     *
+     * @param path               the path of the message from the outermost message it is part of, prepended to the
+     *                           paths of its errors
+     * @param unresolvedPrefixes if the message is a member of a cohort, where the prefixes it uses but does not declare
+     *                           are added, in the order of their first use, to be checked against the meta data of the
+     *                           cohort, or {@code null} if the message is an outermost one
+     */
+    ValidationReport validate(ValidationPlan plan, ByteString bytes, int index, String path, Map<String, String> unresolvedPrefixes) throws InvalidProtocolBufferException {
+        Context context = run(new Context(path, unresolvedPrefixes), plan, bytes.newCodedInput(), Map.of());
+        return new ValidationReport(index, context.frames[0].text == null ? "" : context.frames[0].text, context.errors);
+    }
+
+    /**
+     * Validates a message nested in a phenopacket, see {@link IncrementalValidator}. The paths of the errors are relative
+     * to the message.
+     *
+     * @param usedPrefixes where the prefixes used within the message are added, in the order of their first use, with
+     *                     the relative path of the first use
+     */
+    List<ValidationError> validateNested(ValidationPlan plan, ByteString bytes, Map<String, String> usedPrefixes) throws InvalidProtocolBufferException {
+        return run(new Context("", usedPrefixes), plan, bytes.newCodedInput(), Map.of()).errors;
+    }
+
+    /**
+     * Validates a {@link Cohort} without its members, whose undeclared prefixes are given instead.
+     */
+    List<ValidationError> validateCohortHeader(ByteString header, Map<String, String> memberPrefixes) throws InvalidProtocolBufferException {
+        return run(new Context("", null), cohortPlan, header.newCodedInput(), memberPrefixes).errors;
+    }
+
+    private Context run(Context context, ValidationPlan plan, CodedInputStream input, Map<String, String> usedPrefixes) throws InvalidProtocolBufferException {
+        Frame root = context.enter(0, plan, null, -1);
+        if (!usedPrefixes.isEmpty()) {
+            root.scope.usedPrefixes.putAll(usedPrefixes);
+        }
+        try {
+            readMessage(context, input, 0);
+        } catch (InvalidProtocolBufferException e) {
+            throw e;
+        } catch (IOException e) {
+            throw new InvalidProtocolBufferException(e);
+        }
+        endMessage(context, 0);
+        return context;
+    }
+
+    private void readMessage(Context context, CodedInputStream input, int depth) throws IOException {
+        Frame frame = context.frames[depth];
+        ValidationPlan plan = frame.plan;
+        int tag;
+        while ((tag = input.readTag()) != 0) {
+            int fieldNumber = WireFormat.getTagFieldNumber(tag);
+            byte action = plan.action(fieldNumber);
+            if (action == ValidationPlan.SKIP) {
+                input.skipField(tag);
+            } else if (action == ValidationPlan.READ) {
+                if (WireFormat.getTagWireType(tag) != plan.field(fieldNumber).getLiteType().getWireType()) {
+                    input.skipField(tag);
+                    continue;
+                }
+                frame.seen(fieldNumber);
+                readField(frame, fieldNumber, input);
+            } else if (WireFormat.getTagWireType(tag) != WireFormat.WIRETYPE_LENGTH_DELIMITED) {
+                throw new InvalidProtocolBufferException("Message field " + fieldNumber + " is not length-delimited");
+            } else {
+                frame.seen(fieldNumber);
+                if (depth + 1 == MAX_DEPTH) {
+                    throw new InvalidProtocolBufferException("Message is nested more than " + MAX_DEPTH + " deep");
+                }
+                int length = input.readRawVarint32();
+                int limit = input.pushLimit(length);
+                FieldDescriptor field = plan.field(fieldNumber);
+                context.enter(depth + 1, plan.child(fieldNumber), field, frame.nextIndex(field));
+                readMessage(context, input, depth + 1);
+                input.checkLastTagWas(0);
+                input.popLimit(limit);
+                endMessage(context, depth + 1);
+            }
+        }
+    }
+
+    private static void readField(Frame frame, int fieldNumber, CodedInputStream input) throws IOException {
+        switch (frame.plan.rule) {
+            case PERSON:
+                if (fieldNumber == Pedigree.Person.INDIVIDUAL_ID_FIELD_NUMBER) {
+                    frame.text = input.readStringRequireUtf8();
+                } else if (fieldNumber == Pedigree.Person.PATERNAL_ID_FIELD_NUMBER) {
+                    frame.paternalId = input.readStringRequireUtf8();
+                } else {
+                    frame.maternalId = input.readStringRequireUtf8();
+                }
+                break;
+            case GESTATIONAL_AGE:
+                if (fieldNumber == GestationalAge.WEEKS_FIELD_NUMBER) {
+                    frame.weeks = input.readInt32();
+                } else {
+                    frame.days = input.readInt32();
+                }
+                break;
+            case TIME_INTERVAL:
+                readTimestamp(frame, fieldNumber == TimeInterval.START_FIELD_NUMBER, input);
+                break;
+            default:
+                // the single string field read by the rule: an id, a namespace prefix or a duration
+                frame.text = input.readStringRequireUtf8();
+                break;
+        }
+    }
+
+    private static void readTimestamp(Frame frame, boolean start, CodedInputStream input) throws IOException {
+        long seconds = 0;
+        int nanos = 0;
+        int limit = input.pushLimit(input.readRawVarint32());
+        int tag;
+        while ((tag = input.readTag()) != 0) {
+            if (tag == TIMESTAMP_SECONDS_TAG) {
+                seconds = input.readInt64();
+            } else if (tag == TIMESTAMP_NANOS_TAG) {
+                nanos = input.readInt32();
+            } else {
+                input.skipField(tag);
+            }
+        }
+        input.popLimit(limit);
+        if (start) {
+            frame.startSeconds = seconds;
+            frame.startNanos = nanos;
+        } else {
+            frame.endSeconds = seconds;
+            frame.endNanos = nanos;
+        }
+    }
+
+    private static void endMessage(Context context, int depth) {
+        Frame frame = context.frames[depth];
+        switch (frame.plan.rule) {
+            case PHENOPACKET:
+                requireId(context, depth);
+                if (depth > 0 && context.frames[depth - 1].plan.rule == ValidationPlan.Rule.FAMILY && frame.subjectId != null) {
+                    context.frames[depth - 1].family.subjects.put(context.path(depth, "subject.id"), frame.subjectId);
+                }
+                closeScope(context, depth, Phenopacket.META_DATA_FIELD_NUMBER);
+                break;
+            case FAMILY:
+                requireId(context, depth);
+                checkPedigree(context, depth);
+                closeScope(context, depth, Family.META_DATA_FIELD_NUMBER);
+                break;
+            case COHORT:
+                requireId(context, depth);
+                closeScope(context, depth, Cohort.META_DATA_FIELD_NUMBER);
+                break;
+            case INDIVIDUAL:
+                Frame parent = depth == 0 ? null : context.frames[depth - 1];
+                if (parent != null && parent.plan.rule == ValidationPlan.Rule.PHENOPACKET && frame.field.getNumber() == Phenopacket.SUBJECT_FIELD_NUMBER) {
+                    parent.subjectId = frame.text;
+                }
+                break;
+            case PERSON:
+                Frame family = context.nearest(depth, ValidationPlan.Rule.FAMILY);
+                if (family != null) {
+                    family.family.persons.add(new Person(context.path(depth, null), frame.text, frame.paternalId, frame.maternalId));
+                }
+                break;
+            case ONTOLOGY_CLASS:
+                checkOntologyClass(context, depth);
+                break;
+            case RESOURCE:
+                if (frame.text != null && !frame.text.isEmpty()) {
+                    Frame scope = context.nearestScope(depth);
+                    if (scope != null) {
+                        scope.scope.declaredPrefixes.add(frame.text);
+                    }
+                }
+                break;
+            case AGE:
+                if (frame.text == null || !isIso8601Duration(frame.text)) {
+                    context.error(context.path(depth, "iso8601duration"), "'" + (frame.text == null ? "" : frame.text) + "' is not an ISO 8601 duration");
+                }
+                break;
+            case GESTATIONAL_AGE:
+                if (frame.weeks < 0) {
+                    context.error(context.path(depth, "weeks"), "weeks must not be negative but was " + frame.weeks);
+                }
+                if (frame.days < 0 || frame.days > 6) {
+                    context.error(context.path(depth, "days"), "days must be from 0 to 6 but was " + frame.days);
+                }
+                break;
+            case TIME_INTERVAL:
+                if (frame.hasSeen(TimeInterval.START_FIELD_NUMBER) && frame.hasSeen(TimeInterval.END_FIELD_NUMBER)
+                        && (frame.startSeconds > frame.endSeconds || (frame.startSeconds == frame.endSeconds && frame.startNanos > frame.endNanos))) {
+                    context.error(context.path(depth, null), "start is after end");
+                }
+                break;
+            default:
+                break;
+        }
+    }
+
+    private static void requireId(Context context, int depth) {
+        Frame frame = context.frames[depth];
+        if (frame.text == null || frame.text.isEmpty()) {
+            context.error(context.path(depth, "id"), "id is required");
+        }
+    }
+
+    private static void checkOntologyClass(Context context, int depth) {
+        Frame frame = context.frames[depth];
+        String id = frame.text;
+        if (id == null || id.isEmpty()) {
+            context.error(context.path(depth, "id"), "id is required");
+            return;
+        }
+        int colon = id.indexOf(':');
+        if (colon <= 0 || colon == id.length() - 1) {
+            context.error(context.path(depth, "id"), "'" + id + "' is not a CURIE");
+            return;
+        }
+        Frame scope = context.nearestScope(depth);
+        Map<String, String> usedPrefixes = scope != null ? scope.scope.usedPrefixes : context.enclosingPrefixes;
+        if (usedPrefixes != null) {
+            String prefix = id.substring(0, colon);
+            if (!usedPrefixes.containsKey(prefix)) {
+                usedPrefixes.put(prefix, context.path(depth, "id"));
+            }
+        }
+    }
+
+    /**
+     * Checks that the prefixes used within a phenopacket, family or cohort are declared in its meta data, or else in the
+     * meta data of the family or cohort it belongs to.
+     */
+    private static void closeScope(Context context, int depth, int metaDataFieldNumber) {
+        Frame frame = context.frames[depth];
+        Frame parent = depth == 0 ? null : context.nearestScope(depth - 1);
+        if (parent == null && context.enclosingPrefixes == null && !frame.hasSeen(metaDataFieldNumber)) {
+            context.error(context.path(depth, "metaData"), "metaData is required");
+        }
+        for (Map.Entry<String, String> used : frame.scope.usedPrefixes.entrySet()) {
+            String prefix = used.getKey();
+            if (frame.scope.declaredPrefixes.contains(prefix)) {
+                continue;
+            }
+            if (parent != null) {
+                parent.scope.usedPrefixes.putIfAbsent(prefix, used.getValue());
+            } else if (context.enclosingPrefixes != null) {
+                context.enclosingPrefixes.putIfAbsent(prefix, used.getValue());
+            } else {
+                context.error(used.getValue(), "prefix '" + prefix + "' is not the namespacePrefix of any metaData.resources");
+            }
+        }
+    }
+
+    private static void checkPedigree(Context context, int depth) {
+        Frame frame = context.frames[depth];
+        if (!frame.hasSeen(Family.PEDIGREE_FIELD_NUMBER)) {
+            return;
+        }
+        Set<String> individuals = new HashSet<>();
+        for (Person person : frame.family.persons) {
+            if (person.individualId != null && !person.individualId.isEmpty() && !individuals.add(person.individualId)) {
+                context.error(person.path + ".individualId", "'" + person.individualId + "' is already a person of the pedigree");
+            }
+        }
+        for (Person person : frame.family.persons) {
+            checkParent(context, person.path, "paternalId", person.paternalId, individuals);
+            checkParent(context, person.path, "maternalId", person.maternalId, individuals);
+        }
+        Set<String> subjects = new HashSet<>();
+        for (Map.Entry<String, String> subject : frame.family.subjects.entrySet()) {
+            String subjectId = subject.getValue();
+            if (!individuals.contains(subjectId)) {
+                context.error(subject.getKey(), "'" + subjectId + "' is not a person of the pedigree");
+            } else if (!subjects.add(subjectId)) {
+                context.error(subject.getKey(), "'" + subjectId + "' is already the subject of the proband or another relative");
+            }
+        }
+    }
+
+    private static void checkParent(Context context, String personPath, String field, String parentId, Set<String> individuals) {
+        // 0 is the conventional PED file value for a parent not in the pedigree
+        if (parentId != null && !parentId.isEmpty() && !parentId.equals("0") && !individuals.contains(parentId)) {
+            context.error(personPath + '.' + field, "'" + parentId + "' is not a person of the pedigree");
+        }
+    }
+
+    /**
+     * @return true if the value is an ISO 8601 duration made of designated components, e.g. {@code P1Y2M10DT2H30M},
+     * {@code P4W} or {@code PT0.5S}. Only the smallest component may have a fraction.
+     */
+    static boolean isIso8601Duration(String value) {
+        int length = value.length();
+        if (length < 3 || value.charAt(0) != 'P') {
+            return false;
+        }
+        String units = "YMWD";
+        int nextUnit = 0;
+        boolean time = false;
+        boolean components = false;
+        boolean fraction = false;
+        int i = 1;
+        while (i < length) {
+            if (value.charAt(i) == 'T') {
+                if (time || fraction) {
+                    return false;
+                }
+                time = true;
+                units = "HMS";
+                nextUnit = 0;
+                components = false;
+                i++;
+                continue;
+            }
+            if (fraction) {
+                return false;
+            }
+            int start = i;
+            while (i < length && isDigit(value.charAt(i))) {
+                i++;
+            }
+            if (i == start) {
+                return false;
+            }
+            if (i < length && (value.charAt(i) == '.' || value.charAt(i) == ',')) {
+                int fractionStart = ++i;
+                while (i < length && isDigit(value.charAt(i))) {
+                    i++;
+                }
+                if (i == fractionStart) {
+                    return false;
+                }
+                fraction = true;
+            }
+            if (i == length) {
+                return false;
+            }
+            int unit = units.indexOf(value.charAt(i), nextUnit);
+            if (unit < 0) {
+                return false;
+            }
+            nextUnit = unit + 1;
+            components = true;
+            i++;
+        }
+        return components;
+    }
+
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+
+    /**
+     * The state of one validation: a frame for each level of nesting, reused between sibling messages, and the errors
+     * found so far.
+     */
+    private static class Context {
+
+        private final Frame[] frames = new Frame[MAX_DEPTH];
+        private final List<ValidationError> errors = new ArrayList<>();
+        private final String rootPath;
+        // where the prefixes left undeclared by the outermost message go, if it is part of a larger one
+        private final Map<String, String> enclosingPrefixes;
+
+        private Context(String rootPath, Map<String, String> enclosingPrefixes) {
+            this.rootPath = rootPath;
+            this.enclosingPrefixes = enclosingPrefixes;
+        }
+
+        private Frame enter(int depth, ValidationPlan plan, FieldDescriptor field, int index) {
+            if (frames[depth] == null) {
+                frames[depth] = new Frame();
+            }
+            frames[depth].enter(plan, field, index);
+            return frames[depth];
+        }
+
+        private void error(String path, String message) {
+            errors.add(new ValidationError(path, message));
+        }
+
+        private Frame nearest(int depth, ValidationPlan.Rule rule) {
+            for (int i = depth; i >= 0; i--) {
+                if (frames[i].plan.rule == rule) {
+                    return frames[i];
+                }
+            }
+            return null;
+        }
+
+        private Frame nearestScope(int depth) {
+            for (int i = depth; i >= 0; i--) {
+                if (frames[i].scope != null) {
+                    return frames[i];
+                }
+            }
+            return null;
+        }
+
+        /**
+         * @param field the JSON name of a field of the message at the given depth, or {@code null} for the message
+         */
+        private String path(int depth, String field) {
+            StringBuilder path = new StringBuilder(rootPath);
+            for (int i = 1; i <= depth; i++) {
+                if (path.length() > 0) {
+                    path.append('.');
+                }
+                path.append(frames[i].field.getJsonName());
+                if (frames[i].index >= 0) {
+                    path.append('[').append(frames[i].index).append(']');
+                }
+            }
+            if (field != null) {
+                if (path.length() > 0) {
+                    path.append('.');
+                }
+                path.append(field);
+            }
+            return path.toString();
+        }
+    }
+
+    /**
+     * A message being validated. Which of the fields are used depends on the rule of the message.
+     */
+    private static class Frame {
+
+        private ValidationPlan plan;
+        private FieldDescriptor field;
+        private int index;
+        // the fields seen so far, for field numbers below 64
+        private long seen;
+        // the number of elements of each repeated field seen so far
+        private int[] counts = new int[16];
+
+        private String text;
+        private String subjectId;
+        private String paternalId;
+        private String maternalId;
+        private int weeks;
+        private int days;
+        private long startSeconds;
+        private int startNanos;
+        private long endSeconds;
+        private int endNanos;
+        private Scope scope;
+        private FamilyState family;
+
+        private void enter(ValidationPlan plan, FieldDescriptor field, int index) {
+            this.plan = plan;
+            this.field = field;
+            this.index = index;
+            this.seen = 0;
+            int maxFieldNumber = plan.maxFieldNumber();
+            if (counts.length <= maxFieldNumber) {
+                counts = new int[maxFieldNumber + 1];
+            } else {
+                Arrays.fill(counts, 0, maxFieldNumber + 1, 0);
+            }
+            text = null;
+            subjectId = null;
+            paternalId = null;
+            maternalId = null;
+            weeks = 0;
+            days = 0;
+            startSeconds = 0;
+            startNanos = 0;
+            endSeconds = 0;
+            endNanos = 0;
+            ValidationPlan.Rule rule = plan.rule;
+            boolean isScope = rule == ValidationPlan.Rule.PHENOPACKET || rule == ValidationPlan.Rule.FAMILY || rule == ValidationPlan.Rule.COHORT;
+            scope = isScope ? new Scope() : null;
+            family = rule == ValidationPlan.Rule.FAMILY ? new FamilyState() : null;
+        }
+
+        private void seen(int fieldNumber) {
+            if (fieldNumber < Long.SIZE) {
+                seen |= 1L << fieldNumber;
+            }
+        }
+
+        private boolean hasSeen(int fieldNumber) {
+            return fieldNumber < Long.SIZE && (seen & 1L << fieldNumber) != 0;
+        }
+
+        /**
+         * @return the index of the next element of a repeated field, or -1 for a singular field.
+         */
+        private int nextIndex(FieldDescriptor field) {
+            return field.isRepeated() ? counts[field.getNumber()]++ : -1;
+        }
+    }
+
+    /**
+     * The CURIE prefixes declared in the meta data of a phenopacket, family or cohort, and those used within it with the
+     * path of their first use.
+     */
+    private static class Scope {
+        private final Set<String> declaredPrefixes = new HashSet<>();
+        private final Map<String, String> usedPrefixes = new LinkedHashMap<>();
+    }
+
+    private static class FamilyState {
+        private final List<Person> persons = new ArrayList<>();
+        // the path of the subject id of the proband and each relative, and the id
+        private final Map<String, String> subjects = new LinkedHashMap<>();
+    }
+
+    private static class Person {
+
+        private final String path;
+        private final String individualId;
+        private final String paternalId;
+        private final String maternalId;
+
+        private Person(String path, String individualId, String paternalId, String maternalId) {
+            this.path = path;
+            this.individualId = individualId;
+            this.paternalId = paternalId;
+            this.maternalId = maternalId;
+        }
+    }
+}
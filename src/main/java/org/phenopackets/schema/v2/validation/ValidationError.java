@@ -0,0 +1,47 @@
+package org.phenopackets.schema.v2.validation;
+
+import java.util.Objects;
+
+/**
+ * A problem with one field of a validated message.
+ */
+public final class ValidationError {
+
+    private final String path;
+    private final String message;
+
+    ValidationError(String path, String message) {
+        this.path = path;
+        this.message = message;
+    }
+
+    /**
+     * @return the path of the field from the validated message, made of the JSON names of the fields and the index of
+     * each element of a repeated field, e.g. {@code phenotypicFeatures[2].onset.age.iso8601duration}
+     */
+    public String path() {
+        return path;
+    }
+
+    public String message() {
+        return message;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        ValidationError that = (ValidationError) o;
+        return path.equals(that.path) && message.equals(that.message);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(path, message);
+    }
+
+    @Override
+    public String toString() {
+        return path + ": " + message;
+    }
+}
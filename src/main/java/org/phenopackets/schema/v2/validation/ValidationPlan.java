@@ -0,0 +1,199 @@
+package org.phenopackets.schema.v2.validation;
+
+import com.google.protobuf.Descriptors.Descriptor;
+import com.google.protobuf.Descriptors.FieldDescriptor;
+import org.phenopackets.schema.v2.Cohort;
+import org.phenopackets.schema.v2.Family;
+import org.phenopackets.schema.v2.Phenopacket;
+import org.phenopackets.schema.v2.core.*;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * What {@link PhenopacketValidator} does with each field of a message type, worked out once from the
+ * {@link Descriptor} so that validation is a lookup by field number rather than reflection.
+ * <p>
+ * A field is either skipped, descended into, or read by the {@link Rule} of its message. Message fields are only
+ * descended into if a rule applies somewhere beneath them, so large parts of a phenopacket, e.g. the VRS variation of a
+ * variant interpretation, are skipped over without being decoded.
+ */
+final class ValidationPlan {
+
+    /**
+     * The checks made on a message type, and the fields of the message they read.
+     */
+    enum Rule {
+        NONE,
+        PHENOPACKET(Phenopacket.ID_FIELD_NUMBER),
+        FAMILY(Family.ID_FIELD_NUMBER),
+        COHORT(Cohort.ID_FIELD_NUMBER),
+        INDIVIDUAL(Individual.ID_FIELD_NUMBER),
+        PERSON(Pedigree.Person.INDIVIDUAL_ID_FIELD_NUMBER, Pedigree.Person.PATERNAL_ID_FIELD_NUMBER, Pedigree.Person.MATERNAL_ID_FIELD_NUMBER),
+        ONTOLOGY_CLASS(OntologyClass.ID_FIELD_NUMBER),
+        RESOURCE(Resource.NAMESPACE_PREFIX_FIELD_NUMBER),
+        AGE(Age.ISO8601DURATION_FIELD_NUMBER),
+        GESTATIONAL_AGE(GestationalAge.WEEKS_FIELD_NUMBER, GestationalAge.DAYS_FIELD_NUMBER),
+        TIME_INTERVAL(TimeInterval.START_FIELD_NUMBER, TimeInterval.END_FIELD_NUMBER);
+
+        private final int[] readFields;
+
+        Rule(int... readFields) {
+            this.readFields = readFields;
+        }
+
+        private boolean reads(int fieldNumber) {
+            for (int readField : readFields) {
+                if (readField == fieldNumber) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
+    static final byte SKIP = 0;
+    static final byte MESSAGE = 1;
+    static final byte READ = 2;
+
+    private static final Map<Descriptor, Rule> RULES = Map.of(
+            Phenopacket.getDescriptor(), Rule.PHENOPACKET,
+            Family.getDescriptor(), Rule.FAMILY,
+            Cohort.getDescriptor(), Rule.COHORT,
+            Individual.getDescriptor(), Rule.INDIVIDUAL,
+            Pedigree.Person.getDescriptor(), Rule.PERSON,
+            OntologyClass.getDescriptor(), Rule.ONTOLOGY_CLASS,
+            Resource.getDescriptor(), Rule.RESOURCE,
+            Age.getDescriptor(), Rule.AGE,
+            GestationalAge.getDescriptor(), Rule.GESTATIONAL_AGE,
+            TimeInterval.getDescriptor(), Rule.TIME_INTERVAL);
+
+    private static final Map<Descriptor, ValidationPlan> PLANS = new ConcurrentHashMap<>();
+
+    final Rule rule;
+    // indexed by field number, up to the highest field that is not skipped
+    private final byte[] actions;
+    private final ValidationPlan[] children;
+    private final FieldDescriptor[] fields;
+
+    private ValidationPlan(Rule rule, int maxFieldNumber) {
+        this.rule = rule;
+        this.actions = new byte[maxFieldNumber + 1];
+        this.children = new ValidationPlan[maxFieldNumber + 1];
+        this.fields = new FieldDescriptor[maxFieldNumber + 1];
+    }
+
+    static ValidationPlan of(Descriptor descriptor) {
+        ValidationPlan plan = PLANS.get(descriptor);
+        return plan != null ? plan : compile(descriptor);
+    }
+
+    byte action(int fieldNumber) {
+        return fieldNumber < actions.length ? actions[fieldNumber] : SKIP;
+    }
+
+    ValidationPlan child(int fieldNumber) {
+        return children[fieldNumber];
+    }
+
+    FieldDescriptor field(int fieldNumber) {
+        return fields[fieldNumber];
+    }
+
+    int maxFieldNumber() {
+        return actions.length - 1;
+    }
+
+    private static synchronized ValidationPlan compile(Descriptor root) {
+        if (PLANS.containsKey(root)) {
+            return PLANS.get(root);
+        }
+        // find every message type reachable from the root
+        Set<Descriptor> reachable = new HashSet<>();
+        Deque<Descriptor> pending = new ArrayDeque<>();
+        reachable.add(root);
+        pending.add(root);
+        while (!pending.isEmpty()) {
+            for (FieldDescriptor field : pending.poll().getFields()) {
+                if (field.getJavaType() == FieldDescriptor.JavaType.MESSAGE && reachable.add(field.getMessageType())) {
+                    pending.add(field.getMessageType());
+                }
+            }
+        }
+        // keep the types with a rule and those from which one can be reached
+        Set<Descriptor> relevant = new HashSet<>();
+        for (Descriptor descriptor : reachable) {
+            if (RULES.containsKey(descriptor)) {
+                relevant.add(descriptor);
+            }
+        }
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            for (Descriptor descriptor : reachable) {
+                if (!relevant.contains(descriptor) && hasRelevantField(descriptor, relevant)) {
+                    relevant.add(descriptor);
+                    changed = true;
+                }
+            }
+        }
+
+        // types already compiled from another root are reused as they are
+        Map<Descriptor, ValidationPlan> plans = new HashMap<>();
+        Set<Descriptor> compiled = new HashSet<>();
+        for (Descriptor descriptor : relevant) {
+            if (PLANS.containsKey(descriptor)) {
+                plans.put(descriptor, PLANS.get(descriptor));
+                continue;
+            }
+            compiled.add(descriptor);
+            Rule rule = RULES.getOrDefault(descriptor, Rule.NONE);
+            int maxFieldNumber = 0;
+            for (FieldDescriptor field : descriptor.getFields()) {
+                if (action(rule, field, relevant) != SKIP) {
+                    maxFieldNumber = Math.max(maxFieldNumber, field.getNumber());
+                }
+            }
+            plans.put(descriptor, new ValidationPlan(rule, maxFieldNumber));
+        }
+        for (Descriptor descriptor : compiled) {
+            ValidationPlan plan = plans.get(descriptor);
+            for (FieldDescriptor field : descriptor.getFields()) {
+                byte action = action(plan.rule, field, relevant);
+                if (action != SKIP) {
+                    plan.actions[field.getNumber()] = action;
+                    plan.fields[field.getNumber()] = field;
+                    if (action == MESSAGE) {
+                        plan.children[field.getNumber()] = plans.get(field.getMessageType());
+                    }
+                }
+            }
+        }
+        PLANS.putAll(plans);
+        return plans.get(root);
+    }
+
+    private static boolean hasRelevantField(Descriptor descriptor, Set<Descriptor> relevant) {
+        for (FieldDescriptor field : descriptor.getFields()) {
+            if (field.getJavaType() == FieldDescriptor.JavaType.MESSAGE && relevant.contains(field.getMessageType())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static byte action(Rule rule, FieldDescriptor field, Set<Descriptor> relevant) {
+        if (rule.reads(field.getNumber())) {
+            return READ;
+        }
+        if (field.getJavaType() == FieldDescriptor.JavaType.MESSAGE && relevant.contains(field.getMessageType())) {
+            return MESSAGE;
+        }
+        return SKIP;
+    }
+}
@@ -0,0 +1,51 @@
+package org.phenopackets.schema.v2.validation;
+
+import java.util.List;
+
+/**
+ * The errors found in one of the messages validated by a {@link ParallelValidator}.
+ */
+public final class ValidationReport {
+
+    private final int index;
+    private final String id;
+    private final List<ValidationError> errors;
+
+    ValidationReport(int index, String id, List<ValidationError> errors) {
+        this.index = index;
+        this.id = id;
+        this.errors = errors;
+    }
+
+    /**
+     * @return the position of the message among the cohort members, phenopackets or families validated, or -1 for the
+     * cohort itself
+     */
+    public int index() {
+        return index;
+    }
+
+    /**
+     * @return the id of the message, or an empty string if it has none
+     */
+    public String id() {
+        return id;
+    }
+
+    public List<ValidationError> errors() {
+        return errors;
+    }
+
+    public boolean isValid() {
+        return errors.isEmpty();
+    }
+
+    @Override
+    public String toString() {
+        return "ValidationReport{" +
+                "index=" + index +
+                ", id='" + id + '\'' +
+                ", errors=" + errors +
+                '}';
+    }
+}
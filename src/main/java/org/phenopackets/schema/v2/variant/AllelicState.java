@@ -0,0 +1,51 @@
+package org.phenopackets.schema.v2.variant;
+
+import org.phenopackets.schema.v2.core.OntologyClass;
+
+/**
+ * The zygosity of a variant in an individual, from the GENO term of {@code VariationDescriptor.allelic_state}.
+ */
+public enum AllelicState {
+    /**
+     * GENO:0000135
+     */
+    HETEROZYGOUS("GENO:0000135"),
+    /**
+     * GENO:0000136
+     */
+    HOMOZYGOUS("GENO:0000136"),
+    /**
+     * GENO:0000134
+     */
+    HEMIZYGOUS("GENO:0000134"),
+    /**
+     * Any other term, or none.
+     */
+    OTHER("");
+
+    private final String termId;
+
+    AllelicState(String termId) {
+        this.termId = termId;
+    }
+
+    /**
+     * @return the id of the GENO term, or an empty string for {@link #OTHER}
+     */
+    public String termId() {
+        return termId;
+    }
+
+    public static AllelicState of(OntologyClass allelicState) {
+        switch (allelicState.getId()) {
+            case "GENO:0000135":
+                return HETEROZYGOUS;
+            case "GENO:0000136":
+                return HOMOZYGOUS;
+            case "GENO:0000134":
+                return HEMIZYGOUS;
+            default:
+                return OTHER;
+        }
+    }
+}
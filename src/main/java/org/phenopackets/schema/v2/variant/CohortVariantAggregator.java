@@ -0,0 +1,276 @@
+package org.phenopackets.schema.v2.variant;
+
+import com.google.protobuf.ByteString;
+import com.google.protobuf.CodedInputStream;
+import com.google.protobuf.InvalidProtocolBufferException;
+import com.google.protobuf.WireFormat;
+import org.ga4gh.vrsatile.v1.VariationDescriptor;
+import org.phenopackets.schema.v2.Cohort;
+import org.phenopackets.schema.v2.Phenopacket;
+import org.phenopackets.schema.v2.core.GenomicInterpretation;
+import org.phenopackets.schema.v2.core.Individual;
+import org.phenopackets.schema.v2.core.Interpretation;
+import org.phenopackets.schema.v2.internal.BatchPipeline;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Counts the carriers of each variant in the genomic interpretations of the members of a {@link Cohort}, by
+ * {@link AllelicState}, {@link org.phenopackets.schema.v2.core.Sex} and
+ * {@link org.phenopackets.schema.v2.core.KaryotypicSex}, in batches on the threads of a {@link ForkJoinPool}.
+ * <p>
+ * Variants are normalized with a {@link VariantNormalizer}, so that the same variant described by a VCF record, a VRS
+ * allele or an HGVS expression, or at different positions of a repeat, is counted as one. Each normalized variant is
+ * given a number, and each thread adds to counts of its own, in a {@link LongIntHashMap} keyed by the variant number
+ * and the allelic state, sex and karyotypic sex of the carrier, which are only merged once all members are counted.
+ * Counting a member therefore neither boxes nor takes a lock, other than to number variants not seen before.
+ * <p>
+ * As with the {@code ParallelValidator}, only a few batches per thread are in flight at any time, so a cohort can be
+ * aggregated straight from an {@link InputStream} in a single pass, and memory use depends on the number of distinct
+ * variants rather than the number of members.
+ * <p>
+ * Instances are thread-safe once configured.
+ */
+public class CohortVariantAggregator {
+
+    private static final int MEMBERS_TAG = Cohort.MEMBERS_FIELD_NUMBER << 3 | WireFormat.WIRETYPE_LENGTH_DELIMITED;
+    private static final int DEFAULT_BATCH_SIZE = 256;
+
+    private final VariantNormalizer normalizer;
+    private final ForkJoinPool forkJoinPool;
+    private int batchSize = DEFAULT_BATCH_SIZE;
+
+    /**
+     * Creates an aggregator which runs on the {@link ForkJoinPool#commonPool()}.
+     */
+    public CohortVariantAggregator(VariantNormalizer normalizer) {
+        this(normalizer, ForkJoinPool.commonPool());
+    }
+
+    public CohortVariantAggregator(VariantNormalizer normalizer, ForkJoinPool forkJoinPool) {
+        this.normalizer = normalizer;
+        this.forkJoinPool = forkJoinPool;
+    }
+
+    /**
+     * Sets the number of members counted by each task, 256 by default.
+     *
+     * @return this aggregator
+     */
+    public CohortVariantAggregator batchSize(int batchSize) {
+        if (batchSize < 1) {
+            throw new IllegalArgumentException("Batch size must be positive but was " + batchSize);
+        }
+        this.batchSize = batchSize;
+        return this;
+    }
+
+    public VariantAggregation aggregate(Cohort cohort) {
+        return aggregatePhenopackets(cohort.getMembersList());
+    }
+
+    /**
+     * Aggregates an encoded cohort as it is read from the stream, which is not closed. Only the members are read, and
+     * each is parsed on the thread counting it.
+     *
+     * @throws IOException if the stream could not be read or is not a valid protobuf encoding
+     */
+    public VariantAggregation aggregate(InputStream inputStream) throws IOException {
+        CodedInputStream input = CodedInputStream.newInstance(inputStream);
+        Aggregation aggregation = new Aggregation();
+        BatchPipeline<Void> pipeline = pipeline();
+        try {
+            List<ByteString> batch = new ArrayList<>(batchSize);
+            int index = 0;
+            int tag;
+            while ((tag = input.readTag()) != 0) {
+                if (tag == MEMBERS_TAG) {
+                    batch.add(input.readBytes());
+                    // the size limit applies to the whole stream, not to a single member
+                    input.resetSizeCounter();
+                    if (batch.size() == batchSize) {
+                        pipeline.submit(new MemberBatch(aggregation, index, batch));
+                        index += batch.size();
+                        batch = new ArrayList<>(batchSize);
+                    }
+                } else if (!input.skipField(tag)) {
+                    throw new InvalidProtocolBufferException("Unexpected end-group tag " + tag + " in Cohort");
+                }
+            }
+            if (!batch.isEmpty()) {
+                pipeline.submit(new MemberBatch(aggregation, index, batch));
+            }
+            pipeline.finish();
+        } finally {
+            pipeline.cancel();
+        }
+        return aggregation.result();
+    }
+
+    /**
+     * Aggregates phenopackets as if they were the members of a cohort, e.g. those of a {@code PhenopacketStreamReader}.
+     */
+    public VariantAggregation aggregatePhenopackets(Iterable<Phenopacket> phenopackets) {
+        Aggregation aggregation = new Aggregation();
+        BatchPipeline<Void> pipeline = pipeline();
+        try {
+            List<Phenopacket> batch = new ArrayList<>(batchSize);
+            for (Phenopacket phenopacket : phenopackets) {
+                batch.add(phenopacket);
+                if (batch.size() == batchSize) {
+                    pipeline.submit(new PhenopacketBatch(aggregation, batch));
+                    batch = new ArrayList<>(batchSize);
+                }
+            }
+            if (!batch.isEmpty()) {
+                pipeline.submit(new PhenopacketBatch(aggregation, batch));
+            }
+            pipeline.finish();
+        } catch (IOException e) {
+            // phenopackets already parsed are never read again
+            throw new IllegalStateException(e);
+        } finally {
+            pipeline.cancel();
+        }
+        return aggregation.result();
+    }
+
+    private BatchPipeline<Void> pipeline() {
+        // the batches add to the partial counts of their thread, so have no result of their own
+        return new BatchPipeline<>(forkJoinPool, "aggregating", counted -> {
+        });
+    }
+
+    /**
+     * The counts of the members seen by one thread.
+     */
+    private static class Partial {
+
+        private final LongIntHashMap counts = new LongIntHashMap();
+        private final long[] members = new long[VariantAggregation.GROUPS];
+        private long skippedVariants;
+        // the keys of the member being counted, reused from member to member
+        private long[] keys = new long[16];
+    }
+
+    /**
+     * The state of a single aggregation: the variant numbers shared by all threads and the partial counts of each
+     * thread.
+     */
+    private class Aggregation {
+
+        private final Map<NormalizedVariant, Integer> variantIds = new ConcurrentHashMap<>();
+        private final AtomicInteger nextVariantId = new AtomicInteger();
+        private final Map<Thread, Partial> partials = new ConcurrentHashMap<>();
+
+        private void count(Phenopacket member) {
+            Partial partial = partials.computeIfAbsent(Thread.currentThread(), thread -> new Partial());
+            Individual subject = member.getSubject();
+            int group = VariantAggregation.group(subject.getSex(), subject.getKaryotypicSex());
+            partial.members[group]++;
+            int size = 0;
+            for (Interpretation interpretation : member.getInterpretationsList()) {
+                for (GenomicInterpretation genomicInterpretation : interpretation.getDiagnosis().getGenomicInterpretationsList()) {
+                    if (!genomicInterpretation.hasVariantInterpretation()) {
+                        continue;
+                    }
+                    VariationDescriptor descriptor = genomicInterpretation.getVariantInterpretation().getVariationDescriptor();
+                    NormalizedVariant variant;
+                    try {
+                        variant = normalizer.normalize(descriptor);
+                    } catch (IllegalArgumentException e) {
+                        partial.skippedVariants++;
+                        continue;
+                    }
+                    int id = variantIds.computeIfAbsent(variant, v -> nextVariantId.getAndIncrement());
+                    if (size + 2 > partial.keys.length) {
+                        partial.keys = Arrays.copyOf(partial.keys, partial.keys.length * 2);
+                    }
+                    int state = AllelicState.of(descriptor.getAllelicState()).ordinal();
+                    partial.keys[size++] = VariantAggregation.key(id, state, group);
+                    partial.keys[size++] = VariantAggregation.key(id, VariantAggregation.ANY_STATE, group);
+                }
+            }
+            // a variant listed in several interpretations of the member is counted once
+            Arrays.sort(partial.keys, 0, size);
+            for (int i = 0; i < size; i++) {
+                if (i == 0 || partial.keys[i] != partial.keys[i - 1]) {
+                    partial.counts.add(partial.keys[i], 1);
+                }
+            }
+        }
+
+        /**
+         * Merges the partial counts, once all batches are complete.
+         */
+        private VariantAggregation result() {
+            LongIntHashMap counts = new LongIntHashMap();
+            long[] members = new long[VariantAggregation.GROUPS];
+            long skippedVariants = 0;
+            for (Partial partial : partials.values()) {
+                counts.addAll(partial.counts);
+                for (int i = 0; i < members.length; i++) {
+                    members[i] += partial.members[i];
+                }
+                skippedVariants += partial.skippedVariants;
+            }
+            return new VariantAggregation(new HashMap<>(variantIds), counts, members, skippedVariants);
+        }
+    }
+
+    private static class MemberBatch implements Callable<Void> {
+
+        private final Aggregation aggregation;
+        private final int from;
+        private final List<ByteString> members;
+
+        private MemberBatch(Aggregation aggregation, int from, List<ByteString> members) {
+            this.aggregation = aggregation;
+            this.from = from;
+            this.members = members;
+        }
+
+        @Override
+        public Void call() throws InvalidProtocolBufferException {
+            for (int i = 0; i < members.size(); i++) {
+                Phenopacket member;
+                try {
+                    member = Phenopacket.parseFrom(members.get(i));
+                } catch (InvalidProtocolBufferException e) {
+                    throw new InvalidProtocolBufferException("Invalid Cohort member " + (from + i) + ": " + e.getMessage());
+                }
+                aggregation.count(member);
+            }
+            return null;
+        }
+    }
+
+    private static class PhenopacketBatch implements Callable<Void> {
+
+        private final Aggregation aggregation;
+        private final List<Phenopacket> phenopackets;
+
+        private PhenopacketBatch(Aggregation aggregation, List<Phenopacket> phenopackets) {
+            this.aggregation = aggregation;
+            this.phenopackets = phenopackets;
+        }
+
+        @Override
+        public Void call() {
+            for (Phenopacket phenopacket : phenopackets) {
+                aggregation.count(phenopacket);
+            }
+            return null;
+        }
+    }
+}
@@ -0,0 +1,85 @@
+package org.phenopackets.schema.v2.variant;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * A bounded map which evicts the least recently used entries, split into segments by the hash of the key so that
+ * threads using different keys rarely wait for each other. Each segment is a {@link LinkedHashMap} in access order
+ * holding an equal share of the capacity, so eviction is least recently used within a segment.
+ * <p>
+ * Instances are thread-safe.
+ */
+final class ConcurrentLruCache<K, V> {
+
+    private static final int SEGMENTS = 16;
+
+    private final Segment<K, V>[] segments;
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    ConcurrentLruCache(int capacity) {
+        if (capacity < SEGMENTS) {
+            throw new IllegalArgumentException("Cache capacity must be at least " + SEGMENTS + ", got " + capacity);
+        }
+        this.segments = new Segment[SEGMENTS];
+        for (int i = 0; i < SEGMENTS; i++) {
+            segments[i] = new Segment<>(capacity / SEGMENTS);
+        }
+    }
+
+    /**
+     * @return the value of the key, computed and added if the key is not in the cache. The value is computed outside
+     * of any lock, so two threads missing the same key at once may both compute it.
+     */
+    V get(K key, Function<K, V> compute) {
+        Segment<K, V> segment = segment(key);
+        V value;
+        synchronized (segment) {
+            value = segment.get(key);
+        }
+        if (value == null) {
+            value = compute.apply(key);
+            synchronized (segment) {
+                V existing = segment.putIfAbsent(key, value);
+                if (existing != null) {
+                    value = existing;
+                }
+            }
+        }
+        return value;
+    }
+
+    int size() {
+        int size = 0;
+        for (Segment<K, V> segment : segments) {
+            synchronized (segment) {
+                size += segment.size();
+            }
+        }
+        return size;
+    }
+
+    private Segment<K, V> segment(K key) {
+        int hash = key.hashCode();
+        hash ^= hash >>> 16;
+        return segments[hash & (SEGMENTS - 1)];
+    }
+
+    private static class Segment<K, V> extends LinkedHashMap<K, V> {
+
+        private static final long serialVersionUID = 1L;
+
+        private final int capacity;
+
+        private Segment(int capacity) {
+            super(16, 0.75f, true);
+            this.capacity = capacity;
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<K, V> eldest) {
+            return size() > capacity;
+        }
+    }
+}
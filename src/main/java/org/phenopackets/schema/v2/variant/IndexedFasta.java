@@ -0,0 +1,282 @@
+package org.phenopackets.schema.v2.variant;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Read-only random access to the sequences of a FASTA file indexed by {@code samtools faidx}.
+ * <p>
+ * The index is the file with the same name plus {@code .fai}, with a line per sequence giving its name, its length, the
+ * offset of its first base in the FASTA file, and the number of bases and bytes per line. The FASTA file is
+ * memory-mapped when it is opened, so only the pages holding the bases read are touched. The mappings stay in place
+ * until the instance is garbage collected.
+ * <p>
+ * Sequences are looked up by name, or by the name with a leading {@code chr} added or removed, so {@code chr6} and
+ * {@code 6} find the same sequence, or by an alias of the name. The aliases of a reference, e.g. the RefSeq accession
+ * {@code NC_000006.12} of {@code chr6}, are added with {@link #withAliases(Map)} or read from the assembly report of
+ * the genome with {@link #withAssemblyReport(Path)}. Bases are returned in upper case.
+ * <p>
+ * Instances are thread-safe.
+ */
+public class IndexedFasta {
+
+    private static final int SEGMENT_BITS = 30;
+    private static final long SEGMENT_MASK = (1L << SEGMENT_BITS) - 1;
+
+    private static final String NOT_AVAILABLE = "na";
+    // the columns of an NCBI assembly report naming the sequence: Sequence-Name, GenBank-Accn, RefSeq-Accn and
+    // UCSC-style-name
+    private static final int[] REPORT_NAME_COLUMNS = {0, 4, 6, 9};
+
+    private final Map<String, Entry> entries;
+    private final ByteBuffer[] segments;
+    private final Map<String, String> aliases;
+
+    private IndexedFasta(Map<String, Entry> entries, ByteBuffer[] segments, Map<String, String> aliases) {
+        this.entries = entries;
+        this.segments = segments;
+        this.aliases = aliases;
+    }
+
+    /**
+     * @throws IOException if either file could not be read, or the index is malformed or does not match the FASTA file
+     */
+    public static IndexedFasta open(Path fasta) throws IOException {
+        Map<String, Entry> entries = readIndex(indexFile(fasta));
+        try (FileChannel channel = FileChannel.open(fasta, StandardOpenOption.READ)) {
+            long length = channel.size();
+            for (Map.Entry<String, Entry> entry : entries.entrySet()) {
+                if (entry.getValue().endOffset() > length) {
+                    throw new IOException("Sequence " + entry.getKey() + " extends past the end of " + fasta);
+                }
+            }
+            ByteBuffer[] segments = new ByteBuffer[(int) ((length + SEGMENT_MASK) >>> SEGMENT_BITS)];
+            for (int i = 0; i < segments.length; i++) {
+                long start = (long) i << SEGMENT_BITS;
+                segments[i] = channel.map(FileChannel.MapMode.READ_ONLY, start, Math.min(length - start, 1L << SEGMENT_BITS));
+            }
+            return new IndexedFasta(entries, segments, Map.of());
+        }
+    }
+
+    public static Path indexFile(Path fasta) {
+        return fasta.resolveSibling(fasta.getFileName() + ".fai");
+    }
+
+    /**
+     * @param aliases the name of a sequence of the reference for each alias, e.g. {@code chr6} for
+     *                {@code NC_000006.12}, added to those already known
+     * @return a reference reading the same sequences, which can also be looked up by the aliases
+     * @throws IllegalArgumentException if an alias is of a sequence not in the reference
+     */
+    public IndexedFasta withAliases(Map<String, String> aliases) {
+        Map<String, String> merged = new HashMap<>(this.aliases);
+        for (Map.Entry<String, String> alias : aliases.entrySet()) {
+            String name = indexName(alias.getValue());
+            if (name == null) {
+                throw new IllegalArgumentException("Alias " + alias.getKey() + " is of " + alias.getValue() + ", which is not in the reference");
+            }
+            merged.put(alias.getKey(), name);
+        }
+        return new IndexedFasta(entries, segments, Collections.unmodifiableMap(merged));
+    }
+
+    /**
+     * Reads the names of the sequences from an NCBI assembly report, e.g.
+     * {@code GCF_000001405.40_GRCh38.p14_assembly_report.txt}: the sequence name, GenBank and RefSeq accessions and
+     * UCSC-style name of each sequence in the reference become aliases of it. The sequences of the report not in the
+     * reference are ignored.
+     *
+     * @return a reference reading the same sequences, which can also be looked up by the names of the report
+     * @throws IOException if the report could not be read or is malformed
+     */
+    public IndexedFasta withAssemblyReport(Path assemblyReport) throws IOException {
+        Map<String, String> aliases = new HashMap<>();
+        try (BufferedReader reader = Files.newBufferedReader(assemblyReport, StandardCharsets.UTF_8)) {
+            String line;
+            int number = 0;
+            while ((line = reader.readLine()) != null) {
+                number++;
+                if (line.isEmpty() || line.startsWith("#")) {
+                    continue;
+                }
+                String[] fields = line.split("\t");
+                if (fields.length < 10) {
+                    throw new IOException("Expected 10 fields on line " + number + " of " + assemblyReport + ", got " + fields.length);
+                }
+                List<String> names = new ArrayList<>(REPORT_NAME_COLUMNS.length);
+                String name = null;
+                for (int column : REPORT_NAME_COLUMNS) {
+                    String reported = fields[column].trim();
+                    if (!reported.isEmpty() && !reported.equals(NOT_AVAILABLE)) {
+                        names.add(reported);
+                        if (name == null) {
+                            name = indexName(reported);
+                        }
+                    }
+                }
+                if (name != null) {
+                    for (String alias : names) {
+                        aliases.put(alias, name);
+                    }
+                }
+            }
+        }
+        return withAliases(aliases);
+    }
+
+    /**
+     * @return the names of the sequences, in the order of the index
+     */
+    public Set<String> sequenceNames() {
+        return Collections.unmodifiableSet(entries.keySet());
+    }
+
+    /**
+     * @return whether there is a sequence with the name, with or without a leading {@code chr}, or the alias
+     */
+    public boolean contains(String name) {
+        return indexName(name) != null;
+    }
+
+    /**
+     * @return the name in the index of the sequence with the name, with or without a leading {@code chr}, or the alias,
+     * e.g. {@code chr6} for {@code 6} or {@code NC_000006.12}
+     * @throws IllegalArgumentException if there is no such sequence
+     */
+    public String canonicalName(String name) {
+        String indexName = indexName(name);
+        if (indexName == null) {
+            throw new IllegalArgumentException("No sequence " + name + " in the reference");
+        }
+        return indexName;
+    }
+
+    /**
+     * @return the length of the sequence with the name, with or without a leading {@code chr}
+     * @throws IllegalArgumentException if there is no such sequence
+     */
+    public long length(String name) {
+        return requireEntry(name).length;
+    }
+
+    /**
+     * @return the base at the 0-based position of the sequence, in upper case
+     * @throws IllegalArgumentException if there is no such sequence or the position is outside of it
+     */
+    public char base(String name, long position) {
+        Entry entry = requireEntry(name);
+        if (position < 0 || position >= entry.length) {
+            throw new IllegalArgumentException("Position " + position + " is outside of " + name + " of length " + entry.length);
+        }
+        return base(entry, position);
+    }
+
+    /**
+     * @return the bases from {@code start}, inclusive, to {@code end}, exclusive, of the sequence, in upper case
+     * @throws IllegalArgumentException if there is no such sequence or the interval is not within it
+     */
+    public String sequence(String name, long start, long end) {
+        Entry entry = requireEntry(name);
+        if (start < 0 || end > entry.length || start > end || end - start > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Interval [" + start + ", " + end + ") is outside of " + name + " of length " + entry.length);
+        }
+        char[] bases = new char[(int) (end - start)];
+        for (int i = 0; i < bases.length; i++) {
+            bases[i] = base(entry, start + i);
+        }
+        return new String(bases);
+    }
+
+    private char base(Entry entry, long position) {
+        long offset = entry.offset + position / entry.lineBases * entry.lineWidth + position % entry.lineBases;
+        byte base = segments[(int) (offset >>> SEGMENT_BITS)].get((int) (offset & SEGMENT_MASK));
+        return Character.toUpperCase((char) (base & 0xff));
+    }
+
+    private Entry requireEntry(String name) {
+        return entries.get(canonicalName(name));
+    }
+
+    /**
+     * @return the name in the index of the sequence with the name, with or without a leading {@code chr}, or the alias,
+     * or null if there is none
+     */
+    private String indexName(String name) {
+        if (entries.containsKey(name)) {
+            return name;
+        }
+        String alias = aliases.get(name);
+        if (alias != null) {
+            return alias;
+        }
+        String toggled = name.regionMatches(true, 0, "chr", 0, 3) ? name.substring(3) : "chr" + name;
+        return entries.containsKey(toggled) ? toggled : aliases.get(toggled);
+    }
+
+    private static Map<String, Entry> readIndex(Path indexFile) throws IOException {
+        Map<String, Entry> entries = new LinkedHashMap<>();
+        try (BufferedReader reader = Files.newBufferedReader(indexFile, StandardCharsets.UTF_8)) {
+            String line;
+            int number = 0;
+            while ((line = reader.readLine()) != null) {
+                number++;
+                if (line.isEmpty()) {
+                    continue;
+                }
+                String[] fields = line.split("\t");
+                if (fields.length < 5) {
+                    throw new IOException("Expected 5 fields on line " + number + " of " + indexFile + ", got " + fields.length);
+                }
+                try {
+                    Entry entry = new Entry(Long.parseLong(fields[1]), Long.parseLong(fields[2]), Integer.parseInt(fields[3]), Integer.parseInt(fields[4]));
+                    if (entry.length < 0 || entry.offset < 0 || entry.lineBases < 1 || entry.lineWidth < entry.lineBases) {
+                        throw new IOException("Invalid entry on line " + number + " of " + indexFile);
+                    }
+                    entries.put(fields[0], entry);
+                } catch (NumberFormatException e) {
+                    throw new IOException("Invalid number on line " + number + " of " + indexFile + ": " + e.getMessage());
+                }
+            }
+        }
+        return entries;
+    }
+
+    /**
+     * A line of the index.
+     */
+    private static class Entry {
+
+        private final long length;
+        private final long offset;
+        private final int lineBases;
+        private final int lineWidth;
+
+        private Entry(long length, long offset, int lineBases, int lineWidth) {
+            this.length = length;
+            this.offset = offset;
+            this.lineBases = lineBases;
+            this.lineWidth = lineWidth;
+        }
+
+        /**
+         * @return the offset just past the last base of the sequence
+         */
+        private long endOffset() {
+            return length == 0 ? offset : offset + (length - 1) / lineBases * lineWidth + (length - 1) % lineBases + 1;
+        }
+    }
+}
@@ -0,0 +1,91 @@
+package org.phenopackets.schema.v2.variant;
+
+import org.ga4gh.vrsatile.v1.VcfRecord;
+
+import java.util.Objects;
+
+/**
+ * A variant as normalized by a {@link VariantNormalizer}: a VCF-style allele which is left-aligned and as short as it
+ * can be, so that the same variant always has the same position and alleles however it was first described.
+ * <p>
+ * Instances are immutable and thread-safe.
+ */
+public final class NormalizedVariant {
+
+    private final String assembly;
+    private final String chrom;
+    private final long pos;
+    private final String ref;
+    private final String alt;
+
+    NormalizedVariant(String assembly, String chrom, long pos, String ref, String alt) {
+        this.assembly = assembly;
+        this.chrom = chrom;
+        this.pos = pos;
+        this.ref = ref;
+        this.alt = alt;
+    }
+
+    public String assembly() {
+        return assembly;
+    }
+
+    /**
+     * @return the name of the sequence in the reference, without a leading {@code chr}, whichever alias the variant
+     * was described with
+     */
+    public String chrom() {
+        return chrom;
+    }
+
+    /**
+     * @return the 1-based position of the first base of {@link #ref()}
+     */
+    public long pos() {
+        return pos;
+    }
+
+    public String ref() {
+        return ref;
+    }
+
+    public String alt() {
+        return alt;
+    }
+
+    /**
+     * @return the canonical key of the variant, {@code assembly-chrom-pos-ref-alt}, e.g.
+     * {@code GRCh38-6-16327633-C-T}
+     */
+    public String key() {
+        return assembly + '-' + chrom + '-' + pos + '-' + ref + '-' + alt;
+    }
+
+    public VcfRecord toVcfRecord() {
+        return VcfRecord.newBuilder()
+                .setGenomeAssembly(assembly)
+                .setChrom(chrom)
+                .setPos(pos)
+                .setRef(ref)
+                .setAlt(alt)
+                .build();
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        NormalizedVariant that = (NormalizedVariant) o;
+        return pos == that.pos && assembly.equals(that.assembly) && chrom.equals(that.chrom) && ref.equals(that.ref) && alt.equals(that.alt);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(assembly, chrom, pos, ref, alt);
+    }
+
+    @Override
+    public String toString() {
+        return key();
+    }
+}
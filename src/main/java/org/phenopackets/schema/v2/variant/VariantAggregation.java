@@ -0,0 +1,207 @@
+package org.phenopackets.schema.v2.variant;
+
+import org.phenopackets.schema.v2.core.KaryotypicSex;
+import org.phenopackets.schema.v2.core.Sex;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The carriers of each variant in a cohort, as counted by a {@link CohortVariantAggregator}, by {@link AllelicState},
+ * {@link Sex} and {@link KaryotypicSex}.
+ * <p>
+ * A member carries a variant if one of its genomic interpretations has a variant which normalizes to it. It is counted
+ * once per allelic state the variant is listed with, however many interpretations list it, and once in
+ * {@link #carriers(NormalizedVariant)}.
+ * <p>
+ * Instances are immutable and thread-safe.
+ */
+public final class VariantAggregation {
+
+    static final int SEXES = 4;
+    static final int KARYOTYPES = 11;
+    static final int GROUPS = SEXES * KARYOTYPES;
+    private static final AllelicState[] STATES = AllelicState.values();
+    // a row of cells per allelic state, and a last row counting each carrier once whatever its allelic states
+    static final int ANY_STATE = STATES.length;
+    static final int CELLS = (ANY_STATE + 1) * GROUPS;
+
+    private static final Comparator<NormalizedVariant> POSITION_ORDER = Comparator.comparing(NormalizedVariant::chrom)
+            .thenComparingLong(NormalizedVariant::pos)
+            .thenComparing(NormalizedVariant::ref)
+            .thenComparing(NormalizedVariant::alt);
+
+    /**
+     * Receives the counts of {@link #forEachCount(CountConsumer)}.
+     */
+    public interface CountConsumer {
+
+        void accept(NormalizedVariant variant, AllelicState allelicState, Sex sex, KaryotypicSex karyotypicSex, int carriers);
+    }
+
+    private final Map<NormalizedVariant, Integer> variantIds;
+    private final List<NormalizedVariant> variants;
+    // the keys, variant id * CELLS + cell, in ascending order, and the number of carriers of each
+    private final long[] keys;
+    private final int[] carriers;
+    private final long[] members;
+    private final long skippedVariants;
+
+    VariantAggregation(Map<NormalizedVariant, Integer> variantIds, LongIntHashMap counts, long[] members, long skippedVariants) {
+        this.variantIds = variantIds;
+        NormalizedVariant[] variants = new NormalizedVariant[variantIds.size()];
+        for (Map.Entry<NormalizedVariant, Integer> variant : variantIds.entrySet()) {
+            variants[variant.getValue()] = variant.getKey();
+        }
+        Arrays.sort(variants, POSITION_ORDER);
+        this.variants = Collections.unmodifiableList(Arrays.asList(variants));
+        long[] keys = new long[counts.size()];
+        int[] size = new int[1];
+        counts.forEach((key, value) -> keys[size[0]++] = key);
+        Arrays.sort(keys);
+        this.keys = keys;
+        this.carriers = new int[keys.length];
+        for (int i = 0; i < keys.length; i++) {
+            carriers[i] = counts.get(keys[i]);
+        }
+        this.members = members;
+        this.skippedVariants = skippedVariants;
+    }
+
+    /**
+     * @return the number of members counted
+     */
+    public long memberCount() {
+        long count = 0;
+        for (long groupCount : members) {
+            count += groupCount;
+        }
+        return count;
+    }
+
+    /**
+     * @return the number of members of the given sex and karyotypic sex
+     */
+    public long memberCount(Sex sex, KaryotypicSex karyotypicSex) {
+        return members[group(sex, karyotypicSex)];
+    }
+
+    /**
+     * @return the number of variants in genomic interpretations which could not be normalized, e.g. because they have
+     * no VCF record, VRS allele or genomic HGVS expression, or do not match the reference. They are not counted.
+     */
+    public long skippedVariants() {
+        return skippedVariants;
+    }
+
+    /**
+     * @return the variants carried by at least one member, ordered by chromosome name, position and alleles
+     */
+    public List<NormalizedVariant> variants() {
+        return variants;
+    }
+
+    /**
+     * @return the number of members carrying the variant
+     */
+    public int carriers(NormalizedVariant variant) {
+        Integer id = variantIds.get(variant);
+        if (id == null) {
+            return 0;
+        }
+        int total = 0;
+        for (int i = first(id, ANY_STATE); i < keys.length && keys[i] < (long) (id + 1) * CELLS; i++) {
+            total += carriers[i];
+        }
+        return total;
+    }
+
+    /**
+     * @return the number of members carrying the variant in the allelic state
+     */
+    public int carriers(NormalizedVariant variant, AllelicState allelicState) {
+        int total = 0;
+        for (Sex sex : Sex.values()) {
+            if (sex != Sex.UNRECOGNIZED) {
+                for (KaryotypicSex karyotypicSex : KaryotypicSex.values()) {
+                    if (karyotypicSex != KaryotypicSex.UNRECOGNIZED) {
+                        total += carriers(variant, allelicState, sex, karyotypicSex);
+                    }
+                }
+            }
+        }
+        return total;
+    }
+
+    /**
+     * @return the number of members of the sex and karyotypic sex carrying the variant in the allelic state
+     */
+    public int carriers(NormalizedVariant variant, AllelicState allelicState, Sex sex, KaryotypicSex karyotypicSex) {
+        Integer id = variantIds.get(variant);
+        if (id == null) {
+            return 0;
+        }
+        int index = Arrays.binarySearch(keys, key(id, allelicState.ordinal(), group(sex, karyotypicSex)));
+        return index < 0 ? 0 : carriers[index];
+    }
+
+    /**
+     * @return the number of copies of the alternate allele carried by the members: two for each homozygous carrier and
+     * one for each other carrier. The allele frequency of an autosomal variant is this divided by twice the
+     * {@link #memberCount() number of members}.
+     */
+    public long alleleCount(NormalizedVariant variant) {
+        Integer id = variantIds.get(variant);
+        if (id == null) {
+            return 0;
+        }
+        long count = 0;
+        long end = key(id, ANY_STATE, 0);
+        for (int i = first(id, 0); i < keys.length && keys[i] < end; i++) {
+            int state = (int) (keys[i] % CELLS) / GROUPS;
+            count += STATES[state] == AllelicState.HOMOZYGOUS ? 2L * carriers[i] : carriers[i];
+        }
+        return count;
+    }
+
+    /**
+     * Calls the consumer with each non-zero count, by variant in the order of {@link #variants()}, then by allelic
+     * state, sex and karyotypic sex.
+     */
+    public void forEachCount(CountConsumer consumer) {
+        for (NormalizedVariant variant : variants) {
+            int id = variantIds.get(variant);
+            long end = key(id, ANY_STATE, 0);
+            for (int i = first(id, 0); i < keys.length && keys[i] < end; i++) {
+                int cell = (int) (keys[i] % CELLS);
+                int group = cell % GROUPS;
+                consumer.accept(variant, STATES[cell / GROUPS], Sex.forNumber(group / KARYOTYPES), KaryotypicSex.forNumber(group % KARYOTYPES), carriers[i]);
+            }
+        }
+    }
+
+    /**
+     * @return the index of the first key of the variant in the row of the state or a later one
+     */
+    private int first(int id, int state) {
+        int index = Arrays.binarySearch(keys, key(id, state, 0));
+        return index < 0 ? -index - 1 : index;
+    }
+
+    static long key(int variantId, int state, int group) {
+        return (long) variantId * CELLS + state * GROUPS + group;
+    }
+
+    /**
+     * @return the group of the sex and karyotypic sex, with values unknown to this version of the schema taken as
+     * unknown
+     */
+    static int group(Sex sex, KaryotypicSex karyotypicSex) {
+        int sexNumber = sex == Sex.UNRECOGNIZED ? 0 : sex.getNumber();
+        int karyotypeNumber = karyotypicSex == KaryotypicSex.UNRECOGNIZED ? 0 : karyotypicSex.getNumber();
+        return sexNumber * KARYOTYPES + karyotypeNumber;
+    }
+}
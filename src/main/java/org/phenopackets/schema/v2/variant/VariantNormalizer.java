@@ -0,0 +1,275 @@
+package org.phenopackets.schema.v2.variant;
+
+import org.ga4gh.vrs.v1.Allele;
+import org.ga4gh.vrs.v1.SequenceInterval;
+import org.ga4gh.vrs.v1.SequenceLocation;
+import org.ga4gh.vrsatile.v1.Expression;
+import org.ga4gh.vrsatile.v1.VariationDescriptor;
+import org.ga4gh.vrsatile.v1.VcfRecord;
+
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Normalizes variants against a reference genome, so that the same variant gets the same {@link NormalizedVariant} and
+ * {@link NormalizedVariant#key() key} whether it was described by a {@link VcfRecord}, a VRS {@link Allele} or an HGVS
+ * {@link Expression}, and wherever it was placed within a repeat.
+ * <p>
+ * A variant is turned into a VCF-style allele, whose reference allele is checked against the reference genome, and is
+ * then normalized as in Tan et al., <i>Unified representation of genetic variants</i>, Bioinformatics 2015: bases
+ * shared at the right end of both alleles are trimmed, extending both alleles with the reference base on their left
+ * whenever one becomes empty, until the last bases differ, then bases shared at the left end are trimmed as long as
+ * both alleles keep at least one base. The variants described are
+ * <ul>
+ *     <li>{@link VcfRecord}s of the assembly of the normalizer, with a single alternate allele of bases</li>
+ *     <li>VRS {@link Allele}s with a {@link SequenceLocation} of exact bounds and a literal sequence state</li>
+ *     <li>genomic HGVS expressions, {@code g.} substitutions, deletions, duplications, insertions and deletion-insertions,
+ *     e.g. {@code NC_000006.12:g.16327633C>T}</li>
+ * </ul>
+ * The chromosome of a VCF record, the {@code sequence_id} of a VRS location and the sequence of an HGVS expression must
+ * name a sequence of the reference, or an alias of one, e.g. the RefSeq accession {@code NC_000006.12} or the VRS
+ * digest {@code ga4gh:SQ.0iKlIQk2oZLoeOG9P1riRU6hvL5Ux8TV} of {@code chr6}. A VRS {@code sequence_id} which is not an
+ * alias itself is looked up without its namespace, e.g. {@code refseq:}. Aliases are given to the reference with
+ * {@link IndexedFasta#withAliases(java.util.Map)} or {@link IndexedFasta#withAssemblyReport(java.nio.file.Path)}.
+ * Normalized variants are on the name of the sequence in the reference, without a leading {@code chr}, however the
+ * variant named it, so {@code 6}, {@code chr6} and {@code NC_000006.12} give the same key.
+ * <p>
+ * Normalized variants are kept in a least recently used cache keyed by the description of the variant, so normalizing a
+ * variant seen before, e.g. in another member of a cohort, takes a single lookup.
+ * <p>
+ * Instances are thread-safe.
+ */
+public class VariantNormalizer {
+
+    private static final int DEFAULT_CACHE_SIZE = 100_000;
+    private static final Pattern BASES = Pattern.compile("[ACGTN]*");
+    private static final Pattern HGVS = Pattern.compile("([^:]+):g\\.(\\d+)(?:_(\\d+))?(.*)");
+    private static final Pattern SUBSTITUTION = Pattern.compile("([ACGTN])>([ACGTN])");
+    private static final Pattern EDIT = Pattern.compile("(delins|del|dup|ins)([ACGTN]*)");
+
+    private final IndexedFasta reference;
+    private final String assembly;
+    private final ConcurrentLruCache<String, NormalizedVariant> cache;
+
+    /**
+     * Creates a normalizer caching the last 100,000 variants.
+     *
+     * @param assembly the genome assembly of the reference, e.g. {@code GRCh38}, which VCF records must match
+     */
+    public VariantNormalizer(IndexedFasta reference, String assembly) {
+        this(reference, assembly, DEFAULT_CACHE_SIZE);
+    }
+
+    /**
+     * @param cacheSize the number of normalized variants to keep, at least 16
+     */
+    public VariantNormalizer(IndexedFasta reference, String assembly, int cacheSize) {
+        this.reference = reference;
+        this.assembly = assembly;
+        this.cache = new ConcurrentLruCache<>(cacheSize);
+    }
+
+    public String assembly() {
+        return assembly;
+    }
+
+    /**
+     * Normalizes the {@link VcfRecord} of the descriptor, or else its VRS allele, or else its first genomic HGVS
+     * expression.
+     *
+     * @throws IllegalArgumentException if the descriptor describes none of those, or the variant does not match the
+     *                                  reference
+     */
+    public NormalizedVariant normalize(VariationDescriptor descriptor) {
+        if (descriptor.hasVcfRecord()) {
+            return normalize(descriptor.getVcfRecord());
+        }
+        Allele allele = descriptor.getVariation().getAllele();
+        if (allele.hasSequenceLocation() && allele.hasLiteralSequenceExpression()) {
+            return normalize(allele);
+        }
+        for (Expression expression : descriptor.getExpressionsList()) {
+            if (expression.getSyntax().startsWith("hgvs") && expression.getValue().contains(":g.")) {
+                return normalizeHgvs(expression.getValue());
+            }
+        }
+        throw new IllegalArgumentException("Variation descriptor '" + descriptor.getId() + "' has no VCF record, VRS allele or genomic HGVS expression");
+    }
+
+    /**
+     * @throws IllegalArgumentException if the record is of another assembly, has more than one or a symbolic alternate
+     *                                  allele, or does not match the reference
+     */
+    public NormalizedVariant normalize(VcfRecord vcf) {
+        if (!vcf.getGenomeAssembly().equals(assembly)) {
+            throw new IllegalArgumentException("VCF record of assembly " + vcf.getGenomeAssembly() + " cannot be normalized against " + assembly);
+        }
+        String key = "vcf\t" + vcf.getChrom() + '\t' + vcf.getPos() + '\t' + vcf.getRef() + '\t' + vcf.getAlt();
+        return cache.get(key, k -> {
+            if (vcf.getRef().isEmpty() || vcf.getAlt().isEmpty() || vcf.getPos() < 1) {
+                throw new IllegalArgumentException("VCF record at " + vcf.getChrom() + ':' + vcf.getPos() + " has no position or alleles");
+            }
+            return normalize(vcf.getChrom(), vcf.getPos(), vcf.getRef(), vcf.getAlt());
+        });
+    }
+
+    /**
+     * @throws IllegalArgumentException if the allele has no exact location and literal sequence, or does not match the
+     *                                  reference
+     */
+    public NormalizedVariant normalize(Allele allele) {
+        SequenceLocation location = allele.getSequenceLocation();
+        long start;
+        long end;
+        if (location.hasSimpleInterval()) {
+            start = location.getSimpleInterval().getStart();
+            end = location.getSimpleInterval().getEnd();
+        } else if (location.getSequenceInterval().getStartCase() == SequenceInterval.StartCase.START_NUMBER
+                && location.getSequenceInterval().getEndCase() == SequenceInterval.EndCase.END_NUMBER) {
+            start = location.getSequenceInterval().getStartNumber().getValue();
+            end = location.getSequenceInterval().getEndNumber().getValue();
+        } else {
+            throw new IllegalArgumentException("VRS allele '" + allele.getId() + "' has no exact location");
+        }
+        if (!allele.hasLiteralSequenceExpression()) {
+            throw new IllegalArgumentException("VRS allele '" + allele.getId() + "' has no literal sequence");
+        }
+        String sequence = sequenceName(location.getSequenceId());
+        String alt = allele.getLiteralSequenceExpression().getSequence();
+        String key = "vrs\t" + sequence + '\t' + start + '\t' + end + '\t' + alt;
+        return cache.get(key, k -> {
+            if (start < 0 || end < start) {
+                throw new IllegalArgumentException("VRS allele '" + allele.getId() + "' has an invalid interval [" + start + ", " + end + ")");
+            }
+            return normalize(sequence, start + 1, reference.sequence(sequence, start, end), alt);
+        });
+    }
+
+    /**
+     * @param hgvs a genomic HGVS expression, e.g. {@code NC_000006.12:g.16327633C>T}
+     * @throws IllegalArgumentException if the expression is not a supported genomic HGVS expression, or does not match
+     *                                  the reference
+     */
+    public NormalizedVariant normalizeHgvs(String hgvs) {
+        return cache.get("hgvs\t" + hgvs, this::parseHgvs);
+    }
+
+    /**
+     * @return the number of normalized variants in the cache
+     */
+    int cacheSize() {
+        return cache.size();
+    }
+
+    private NormalizedVariant parseHgvs(String key) {
+        String hgvs = key.substring(key.indexOf('\t') + 1);
+        Matcher matcher = HGVS.matcher(hgvs);
+        if (!matcher.matches()) {
+            throw new IllegalArgumentException("Not a genomic HGVS expression: " + hgvs);
+        }
+        String sequence = sequenceName(matcher.group(1));
+        long start = Long.parseLong(matcher.group(2));
+        long end = matcher.group(3) == null ? start : Long.parseLong(matcher.group(3));
+        if (start < 1 || end < start) {
+            throw new IllegalArgumentException("Invalid interval in HGVS expression " + hgvs);
+        }
+        String edit = matcher.group(4);
+        Matcher substitution = SUBSTITUTION.matcher(edit);
+        if (substitution.matches() && start == end) {
+            return normalize(sequence, start, substitution.group(1), substitution.group(2));
+        }
+        Matcher matched = EDIT.matcher(edit);
+        if (!matched.matches()) {
+            throw new IllegalArgumentException("Unsupported edit in HGVS expression " + hgvs);
+        }
+        String deleted = reference.sequence(sequence, start - 1, end);
+        String bases = matched.group(2);
+        switch (matched.group(1)) {
+            case "del":
+                requireMatch(hgvs, bases, deleted);
+                return normalize(sequence, start, deleted, "");
+            case "dup":
+                requireMatch(hgvs, bases, deleted);
+                // the copy is inserted after the duplicated bases
+                return normalize(sequence, end + 1, "", deleted);
+            case "ins":
+                if (end != start + 1 || bases.isEmpty()) {
+                    throw new IllegalArgumentException("An insertion must be between two adjacent bases and give the bases inserted: " + hgvs);
+                }
+                return normalize(sequence, end, "", bases);
+            default:
+                if (bases.isEmpty()) {
+                    throw new IllegalArgumentException("A deletion-insertion must give the bases inserted: " + hgvs);
+                }
+                return normalize(sequence, start, deleted, bases);
+        }
+    }
+
+    private static void requireMatch(String hgvs, String bases, String reference) {
+        if (!bases.isEmpty() && !bases.equals(reference)) {
+            throw new IllegalArgumentException("HGVS expression " + hgvs + " does not match the reference " + reference);
+        }
+    }
+
+    /**
+     * @param pos the 1-based position of the first base of {@code ref}, or of the base after an insertion if
+     *            {@code ref} is empty
+     */
+    private NormalizedVariant normalize(String sequence, long pos, String ref, String alt) {
+        ref = ref.toUpperCase();
+        alt = alt.toUpperCase();
+        if (!BASES.matcher(ref).matches() || !BASES.matcher(alt).matches()) {
+            throw new IllegalArgumentException("Only alleles of bases can be normalized, got " + ref + '>' + alt + " at " + sequence + ':' + pos);
+        }
+        if (!reference.contains(sequence)) {
+            throw new IllegalArgumentException("No sequence " + sequence + " in the " + assembly + " reference");
+        }
+        // the name in the reference, so that every alias of the sequence gives the same key
+        String chrom = reference.canonicalName(sequence);
+        if (pos < 1 || pos - 1 + ref.length() > reference.length(chrom)) {
+            throw new IllegalArgumentException("Position " + pos + " is outside of " + chrom);
+        }
+        String expected = reference.sequence(chrom, pos - 1, pos - 1 + ref.length());
+        if (!ref.equals(expected)) {
+            throw new IllegalArgumentException("Reference allele " + ref + " at " + chrom + ':' + pos + " does not match the reference " + expected);
+        }
+        if (ref.equals(alt)) {
+            throw new IllegalArgumentException("Reference and alternate alleles are the same at " + chrom + ':' + pos);
+        }
+        StringBuilder refBuilder = new StringBuilder(ref);
+        StringBuilder altBuilder = new StringBuilder(alt);
+        while (true) {
+            int refLength = refBuilder.length();
+            int altLength = altBuilder.length();
+            if (refLength > 0 && altLength > 0 && refBuilder.charAt(refLength - 1) == altBuilder.charAt(altLength - 1)) {
+                refBuilder.setLength(refLength - 1);
+                altBuilder.setLength(altLength - 1);
+            } else if (refLength == 0 || altLength == 0) {
+                if (pos == 1) {
+                    // nothing to the left of the first base, so the event is anchored on the base after it
+                    char next = reference.base(chrom, refLength);
+                    refBuilder.append(next);
+                    altBuilder.append(next);
+                    break;
+                }
+                pos--;
+                char previous = reference.base(chrom, pos - 1);
+                refBuilder.insert(0, previous);
+                altBuilder.insert(0, previous);
+            } else {
+                break;
+            }
+        }
+        int shared = 0;
+        while (refBuilder.length() - shared >= 2 && altBuilder.length() - shared >= 2 && refBuilder.charAt(shared) == altBuilder.charAt(shared)) {
+            shared++;
+        }
+        String chromosome = chrom.regionMatches(true, 0, "chr", 0, 3) ? chrom.substring(3) : chrom;
+        return new NormalizedVariant(assembly, chromosome, pos + shared, refBuilder.substring(shared), altBuilder.substring(shared));
+    }
+
+    private String sequenceName(String sequenceId) {
+        int namespace = sequenceId.indexOf(':');
+        return namespace < 0 || reference.contains(sequenceId) ? sequenceId : sequenceId.substring(namespace + 1);
+    }
+}
@@ -0,0 +1,104 @@
+package org.matchmakerexchange.api.v1;
+
+import org.ga4gh.vrsatile.v1.GeneDescriptor;
+import org.phenopackets.schema.v1.core.Disease;
+import org.phenopackets.schema.v1.core.Gene;
+import org.phenopackets.schema.v1.core.Individual;
+import org.phenopackets.schema.v1.core.OntologyClass;
+import org.phenopackets.schema.v1.core.PhenotypicFeature;
+import org.phenopackets.schema.v1.core.Sex;
+import org.phenopackets.schema.v2.Phenopacket;
+import org.phenopackets.schema.v2.similarity.CohortSimilarityIndex;
+import org.phenopackets.schema.v2.similarity.Matchmaker;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Answers {@link MmeMatchRequest}s from an in-process {@link Matchmaker}, standing in for a Matchmaker Exchange node.
+ * <p>
+ * The query is made of the features of the patient which are not negated, and the ids and symbols of the genes of
+ * its genomic features. Matching v2 phenopackets are returned as v1 {@link MmePatient}s, with their subject, phenotypic
+ * features, diseases and the genes of their interpretations.
+ * <p>
+ * Instances are thread-safe.
+ */
+public class LocalMatchmaker {
+
+    // the MME API limits results to the top 5 by default
+    private static final int DEFAULT_LIMIT = 5;
+
+    private final Matchmaker matchmaker;
+    private final String disclaimer;
+    private final int limit;
+
+    public LocalMatchmaker(Matchmaker matchmaker, String disclaimer) {
+        this(matchmaker, disclaimer, DEFAULT_LIMIT);
+    }
+
+    public LocalMatchmaker(Matchmaker matchmaker, String disclaimer, int limit) {
+        this.matchmaker = matchmaker;
+        this.disclaimer = disclaimer;
+        this.limit = limit;
+    }
+
+    /**
+     * @throws java.util.concurrent.RejectedExecutionException if the matchmaker is too busy to answer the request
+     */
+    public MmeMatchResponse match(MmeMatchRequest request) {
+        MmePatient patient = request.getPatient();
+        List<String> termIds = new ArrayList<>();
+        for (PhenotypicFeature feature : patient.getFeaturesList()) {
+            if (!feature.getNegated()) {
+                termIds.add(feature.getType().getId());
+            }
+        }
+        Set<String> genes = new LinkedHashSet<>();
+        for (MmeGenomicFeature genomicFeature : patient.getGenomicFeaturesList()) {
+            Gene gene = genomicFeature.getGene();
+            if (!gene.getId().isEmpty()) {
+                genes.add(gene.getId());
+            }
+            if (!gene.getSymbol().isEmpty()) {
+                genes.add(gene.getSymbol());
+            }
+        }
+
+        Matchmaker.Result result = matchmaker.match(matchmaker.similarity().profile(termIds), genes, limit);
+        MmeMatchResponse.Builder response = MmeMatchResponse.newBuilder()
+                .setDisclaimer(disclaimer)
+                .setTerms(request.getTerms());
+        for (CohortSimilarityIndex.Match match : result.matches()) {
+            response.addResults(MmeMatch.newBuilder()
+                    .setScore((float) match.score())
+                    .setPatient(toPatient(matchmaker.member(match.member()))));
+        }
+        return response.build();
+    }
+
+    static MmePatient toPatient(Phenopacket phenopacket) {
+        MmePatient.Builder patient = MmePatient.newBuilder()
+                .setIndividual(Individual.newBuilder()
+                        .setId(phenopacket.getSubject().getId())
+                        .setSex(Sex.valueOf(phenopacket.getSubject().getSex().name())));
+        for (org.phenopackets.schema.v2.core.PhenotypicFeature feature : phenopacket.getPhenotypicFeaturesList()) {
+            patient.addFeatures(PhenotypicFeature.newBuilder()
+                    .setType(toOntologyClass(feature.getType()))
+                    .setNegated(feature.getExcluded()));
+        }
+        for (org.phenopackets.schema.v2.core.Disease disease : phenopacket.getDiseasesList()) {
+            patient.addDisorders(Disease.newBuilder().setTerm(toOntologyClass(disease.getTerm())));
+        }
+        for (GeneDescriptor gene : Matchmaker.geneDescriptors(phenopacket)) {
+            patient.addGenomicFeatures(MmeGenomicFeature.newBuilder()
+                    .setGene(Gene.newBuilder().setId(gene.getValueId()).setSymbol(gene.getSymbol())));
+        }
+        return patient.build();
+    }
+
+    private static OntologyClass toOntologyClass(org.phenopackets.schema.v2.core.OntologyClass ontologyClass) {
+        return OntologyClass.newBuilder().setId(ontologyClass.getId()).setLabel(ontologyClass.getLabel()).build();
+    }
+}
@@ -0,0 +1,85 @@
+package org.matchmakerexchange.api.v1;
+
+import org.ga4gh.vrsatile.v1.GeneDescriptor;
+import org.ga4gh.vrsatile.v1.VariationDescriptor;
+import org.junit.jupiter.api.Test;
+import org.phenopackets.schema.v1.core.Gene;
+import org.phenopackets.schema.v1.core.OntologyClass;
+import org.phenopackets.schema.v1.core.PhenotypicFeature;
+import org.phenopackets.schema.v2.Phenopacket;
+import org.phenopackets.schema.v2.core.*;
+import org.phenopackets.schema.v2.ontology.OntologyTest;
+import org.phenopackets.schema.v2.similarity.Matchmaker;
+import org.phenopackets.schema.v2.similarity.PhenotypeSimilarity;
+
+import java.io.IOException;
+import java.util.List;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+public class LocalMatchmakerTest {
+
+    private static final String SEIZURE = "HP:0001250";
+    private static final String MICROCEPHALY = "HP:0000252";
+
+    private static Phenopacket member(String id, Sex sex, GeneDescriptor gene, String featureId) {
+        return Phenopacket.newBuilder()
+                .setId(id)
+                .setSubject(Individual.newBuilder().setId("patient " + id).setSex(sex))
+                .addPhenotypicFeatures(org.phenopackets.schema.v2.core.PhenotypicFeature.newBuilder()
+                        .setType(org.phenopackets.schema.v2.core.OntologyClass.newBuilder().setId(featureId).setLabel(featureId)))
+                .addInterpretations(Interpretation.newBuilder()
+                        .setDiagnosis(Diagnosis.newBuilder()
+                                .addGenomicInterpretations(GenomicInterpretation.newBuilder()
+                                        .setVariantInterpretation(VariantInterpretation.newBuilder()
+                                                .setVariationDescriptor(VariationDescriptor.newBuilder().setGeneContext(gene))))))
+                .build();
+    }
+
+    private static LocalMatchmaker localMatchmaker() throws IOException {
+        List<Phenopacket> members = List.of(
+                member("a", Sex.FEMALE, GeneDescriptor.newBuilder().setValueId("HGNC:10585").setSymbol("SCN1A").build(), SEIZURE),
+                member("b", Sex.MALE, GeneDescriptor.newBuilder().setValueId("HGNC:19048").setSymbol("ASPM").build(), MICROCEPHALY));
+        Matchmaker matchmaker = Matchmaker.builder(PhenotypeSimilarity.of(OntologyTest.hpoFragment(), members))
+                .addAll(members)
+                .build();
+        return new LocalMatchmaker(matchmaker, "For research use only");
+    }
+
+    private static MmeMatchRequest request(String featureId, boolean negated, String geneSymbol) {
+        return MmeMatchRequest.newBuilder()
+                .setTerms("terms")
+                .setContact(MmeContact.newBuilder().setName("Contact").addRoles(MmeContact.Role.clinician))
+                .setPatient(MmePatient.newBuilder()
+                        .addFeatures(PhenotypicFeature.newBuilder()
+                                .setType(OntologyClass.newBuilder().setId(featureId))
+                                .setNegated(negated))
+                        .addGenomicFeatures(MmeGenomicFeature.newBuilder().setGene(Gene.newBuilder().setSymbol(geneSymbol))))
+                .build();
+    }
+
+    @Test
+    public void matchRequestByPhenotypeAndGene() throws IOException {
+        MmeMatchResponse response = localMatchmaker().match(request(SEIZURE, false, "SCN1A"));
+
+        assertThat(response.getDisclaimer(), equalTo("For research use only"));
+        assertThat(response.getTerms(), equalTo("terms"));
+        MmeMatch best = response.getResults(0);
+        assertThat(best.getScore(), equalTo(1.0f));
+        assertThat(best.getPatient().getIndividual().getId(), equalTo("patient a"));
+        assertThat(best.getPatient().getIndividual().getSex(), equalTo(org.phenopackets.schema.v1.core.Sex.FEMALE));
+        assertThat(best.getPatient().getFeatures(0).getType().getId(), equalTo(SEIZURE));
+        assertThat(best.getPatient().getGenomicFeatures(0).getGene(),
+                equalTo(Gene.newBuilder().setId("HGNC:10585").setSymbol("SCN1A").build()));
+    }
+
+    @Test
+    public void ignoreNegatedFeatures() throws IOException {
+        MmeMatchResponse response = localMatchmaker().match(request(SEIZURE, true, "ASPM"));
+
+        assertThat(response.getResultsCount(), equalTo(1));
+        assertThat(response.getResults(0).getPatient().getIndividual().getId(), equalTo("patient b"));
+        assertThat(response.getResults(0).getScore(), equalTo(1.0f));
+    }
+}
@@ -0,0 +1,24 @@
+package org.phenopackets.schema.v2;
+
+import org.junit.jupiter.api.Test;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class SchemaVersionTest {
+
+    @Test
+    public void parsesVersionsAndPatchReleases() {
+        assertThat(SchemaVersion.parse("1.0"), equalTo(SchemaVersion.v1_0));
+        assertThat(SchemaVersion.parse("2.0"), equalTo(SchemaVersion.v2_0));
+        assertThat(SchemaVersion.parse("2.0.2"), equalTo(SchemaVersion.v2_0));
+    }
+
+    @Test
+    public void rejectsUnknownVersions() {
+        assertThrows(IllegalArgumentException.class, () -> SchemaVersion.parse("3.0"));
+        assertThrows(IllegalArgumentException.class, () -> SchemaVersion.parse("2.01"));
+        assertThrows(IllegalArgumentException.class, () -> SchemaVersion.parse(""));
+    }
+}
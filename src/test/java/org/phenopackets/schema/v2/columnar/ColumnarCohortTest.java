@@ -0,0 +1,123 @@
+package org.phenopackets.schema.v2.columnar;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.phenopackets.schema.v2.Phenopacket;
+import org.phenopackets.schema.v2.core.*;
+import org.phenopackets.schema.v2.examples.TestExamples;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class ColumnarCohortTest {
+
+    private static List<Phenopacket> members() {
+        List<Phenopacket> examples = List.of(
+                TestExamples.rareDiseasePhenopacket(),
+                TestExamples.cancerPhenopacket(),
+                TestExamples.biosamplesPhenopacket(),
+                TestExamples.severeCovidCaseWithCardiacComplications(),
+                TestExamples.urothelialCarcinomaPhenopacket());
+        List<Phenopacket> members = new ArrayList<>();
+        for (int i = 0; i < 500; i++) {
+            Phenopacket example = examples.get(i % examples.size());
+            members.add(example.toBuilder().setId(example.getId() + '-' + i).build());
+        }
+        return members;
+    }
+
+    private static ColumnarCohort write(Path directory, List<Phenopacket> members) throws IOException {
+        Path path = directory.resolve("cohort.ppc");
+        ColumnarCohortWriter.write(members, path);
+        return ColumnarCohort.open(path);
+    }
+
+    @Test
+    public void columnsMatchMembers(@TempDir Path tempDir) throws IOException {
+        List<Phenopacket> members = members();
+        try (ColumnarCohort cohort = write(tempDir, members)) {
+            assertThat(cohort.size(), equalTo(members.size()));
+            String[] ids = cohort.stringColumn(Column.MEMBER_ID).toArray();
+            int[] sex = cohort.intColumn(Column.SEX).toArray();
+            String[] taxonomy = cohort.stringColumn(Column.TAXONOMY).toArray();
+            for (int i = 0; i < members.size(); i++) {
+                assertThat(ids[i], equalTo(members.get(i).getId()));
+                assertThat(sex[i], equalTo(members.get(i).getSubject().getSexValue()));
+                assertThat(taxonomy[i], equalTo(members.get(i).getSubject().getTaxonomy().getId()));
+            }
+
+            int[] featureMember = cohort.intColumn(Column.FEATURE_MEMBER).toArray();
+            String[] featureType = cohort.stringColumn(Column.FEATURE_TYPE).toArray();
+            int row = 0;
+            for (int i = 0; i < members.size(); i++) {
+                for (PhenotypicFeature feature : members.get(i).getPhenotypicFeaturesList()) {
+                    assertThat(featureMember[row], equalTo(i));
+                    assertThat(featureType[row], equalTo(feature.getType().getId()));
+                    row++;
+                }
+            }
+            assertThat(row, equalTo(cohort.rows(Column.Table.PHENOTYPIC_FEATURES)));
+
+            int genomicInterpretations = members.stream()
+                    .flatMap(member -> member.getInterpretationsList().stream())
+                    .mapToInt(interpretation -> interpretation.getDiagnosis().getGenomicInterpretationsCount())
+                    .sum();
+            assertThat(cohort.rows(Column.Table.GENOMIC_INTERPRETATIONS), equalTo(genomicInterpretations));
+            IntColumn status = cohort.intColumn(Column.GENOMIC_INTERPRETATION_STATUS);
+            long causative = members.stream()
+                    .flatMap(member -> member.getInterpretationsList().stream())
+                    .flatMap(interpretation -> interpretation.getDiagnosis().getGenomicInterpretationsList().stream())
+                    .filter(genomicInterpretation -> genomicInterpretation.getInterpretationStatus() == GenomicInterpretation.InterpretationStatus.CAUSATIVE)
+                    .count();
+            assertThat((long) status.count(GenomicInterpretation.InterpretationStatus.CAUSATIVE_VALUE), equalTo(causative));
+        }
+    }
+
+    @Test
+    public void countMembersWithFeatureBySex(@TempDir Path tempDir) throws IOException {
+        List<Phenopacket> members = members();
+        String hpoId = TestExamples.rareDiseasePhenopacket().getPhenotypicFeatures(0).getType().getId();
+        int[] expected = new int[Sex.values().length];
+        for (Phenopacket member : members) {
+            if (member.getPhenotypicFeaturesList().stream().anyMatch(f -> f.getType().getId().equals(hpoId) && !f.getExcluded())) {
+                expected[member.getSubject().getSexValue()]++;
+            }
+        }
+
+        try (ColumnarCohort cohort = write(tempDir, members)) {
+            StringColumn types = cohort.stringColumn(Column.FEATURE_TYPE);
+            int code = types.code(hpoId);
+            int[] type = types.codes().toArray();
+            int[] excluded = cohort.intColumn(Column.FEATURE_EXCLUDED).toArray();
+            int[] member = cohort.intColumn(Column.FEATURE_MEMBER).toArray();
+            int[] sex = cohort.intColumn(Column.SEX).toArray();
+
+            BitSet counted = new BitSet(cohort.size());
+            int[] counts = new int[Sex.values().length];
+            for (int row = 0; row < type.length; row++) {
+                if (type[row] == code && excluded[row] == 0 && !counted.get(member[row])) {
+                    counted.set(member[row]);
+                    counts[sex[member[row]]]++;
+                }
+            }
+            assertThat(counts, equalTo(expected));
+        }
+    }
+
+    @Test
+    public void repetitiveColumnsAreRunLengthEncoded(@TempDir Path tempDir) throws IOException {
+        try (ColumnarCohort cohort = write(tempDir, members())) {
+            assertTrue(cohort.intColumn(Column.FEATURE_MEMBER).isRunLengthEncoded());
+            assertTrue(cohort.intColumn(Column.FEATURE_EXCLUDED).isRunLengthEncoded());
+            assertThrows(IllegalArgumentException.class, () -> cohort.intColumn(Column.FEATURE_TYPE));
+        }
+    }
+}
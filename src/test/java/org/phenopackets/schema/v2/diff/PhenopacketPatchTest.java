@@ -0,0 +1,275 @@
+package org.phenopackets.schema.v2.diff;
+
+import com.google.protobuf.Timestamp;
+import org.junit.jupiter.api.Test;
+import org.phenopackets.schema.v2.Phenopacket;
+import org.phenopackets.schema.v2.core.*;
+import org.phenopackets.schema.v2.examples.TestExamples;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.List;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class PhenopacketPatchTest {
+
+    private static OntologyClass ontologyClass(String id) {
+        return OntologyClass.newBuilder().setId(id).setLabel(id).build();
+    }
+
+    private static PhenotypicFeature feature(String id) {
+        return PhenotypicFeature.newBuilder()
+                .setType(ontologyClass(id))
+                .setOnset(TimeElement.newBuilder().setAge(Age.newBuilder().setIso8601Duration("P3Y")))
+                .build();
+    }
+
+    private static Measurement measurement(String assay, String age, double value) {
+        return Measurement.newBuilder()
+                .setAssay(ontologyClass(assay))
+                .setValue(Value.newBuilder().setQuantity(Quantity.newBuilder().setUnit(ontologyClass("UCUM:mg/dL")).setValue(value)))
+                .setTimeObserved(TimeElement.newBuilder().setAge(Age.newBuilder().setIso8601Duration(age)))
+                .build();
+    }
+
+    private static Phenopacket phenopacket(int features) {
+        Phenopacket.Builder phenopacket = Phenopacket.newBuilder()
+                .setId("PPKT:1")
+                .setSubject(Individual.newBuilder().setId("patient").setSex(Sex.FEMALE))
+                .setMetaData(MetaData.newBuilder()
+                        .setCreatedBy("curator")
+                        .addResources(Resource.newBuilder().setId("hp").setNamespacePrefix("HP")));
+        for (int i = 0; i < features; i++) {
+            phenopacket.addPhenotypicFeatures(feature(String.format("HP:%07d", i)));
+        }
+        return phenopacket.build();
+    }
+
+    private static PhenopacketPatch roundTrip(Phenopacket from, Phenopacket to) throws IOException {
+        PhenopacketPatch patch = PhenopacketPatch.diff(from, to);
+        assertThat(patch.apply(from), equalTo(to));
+        PhenopacketPatch parsed = PhenopacketPatch.parseFrom(patch.toByteArray());
+        assertThat(parsed.apply(from), equalTo(to));
+        assertThat(parsed.toString(), equalTo(patch.toString()));
+        return patch;
+    }
+
+    @Test
+    public void diffOfEqualPhenopacketsIsEmpty() throws IOException {
+        PhenopacketPatch patch = roundTrip(phenopacket(10), phenopacket(10));
+
+        assertTrue(patch.isEmpty());
+        assertThat(patch.toString(), equalTo(""));
+    }
+
+    @Test
+    public void editOfAFeatureIsAddressedByItsKey() throws IOException {
+        Phenopacket from = phenopacket(100);
+        Phenopacket.Builder to = from.toBuilder();
+        to.getPhenotypicFeaturesBuilder(42).getOnsetBuilder().getAgeBuilder().setIso8601Duration("P4Y");
+        to.getPhenotypicFeaturesBuilder(7).setExcluded(true);
+
+        PhenopacketPatch patch = roundTrip(from, to.build());
+
+        assertThat(patch.toString(), equalTo(
+                "SET phenotypicFeatures[HP:0000007].excluded\n" +
+                        "SET phenotypicFeatures[HP:0000042].onset.age.iso8601duration\n"));
+    }
+
+    @Test
+    public void patchOfASingleEditIsMuchSmallerThanThePhenopacket() throws IOException {
+        Phenopacket from = phenopacket(1000);
+        Phenopacket.Builder to = from.toBuilder();
+        to.getPhenotypicFeaturesBuilder(500).getOnsetBuilder().getAgeBuilder().setIso8601Duration("P4Y");
+
+        byte[] patch = roundTrip(from, to.build()).toByteArray();
+
+        assertTrue(patch.length * 1000 < from.getSerializedSize(), patch.length + " bytes");
+    }
+
+    @Test
+    public void insertionAndRemovalOfFeatures() throws IOException {
+        Phenopacket from = phenopacket(10);
+        Phenopacket.Builder to = from.toBuilder()
+                .removePhenotypicFeatures(3)
+                .addPhenotypicFeatures(0, feature("HP:0100000"))
+                .addPhenotypicFeatures(feature("HP:0200000"));
+
+        PhenopacketPatch patch = roundTrip(from, to.build());
+
+        assertThat(patch.toString(), equalTo("LIST phenotypicFeatures -[HP:0000003] +[0] +[10]\n"));
+    }
+
+    @Test
+    public void keyedPatchAppliesToAnotherVersionWithTheSameElements() {
+        Phenopacket from = phenopacket(10);
+        Phenopacket.Builder to = from.toBuilder().removePhenotypicFeatures(5);
+        to.getPhenotypicFeaturesBuilder(1).setExcluded(true);
+        PhenopacketPatch patch = PhenopacketPatch.diff(from, to.build());
+
+        Phenopacket other = from.toBuilder().addPhenotypicFeatures(0, feature("HP:0300000")).build();
+        Phenopacket patched = patch.apply(other);
+
+        assertThat(patched.getPhenotypicFeaturesCount(), equalTo(10));
+        assertThat(patched.getPhenotypicFeatures(0).getType().getId(), equalTo("HP:0300000"));
+        assertTrue(patched.getPhenotypicFeatures(2).getExcluded());
+        assertThat(patched.getPhenotypicFeatures(6).getType().getId(), equalTo("HP:0000006"));
+    }
+
+    @Test
+    public void measurementsAreKeyedByAssayAndTime() throws IOException {
+        Phenopacket from = phenopacket(1).toBuilder()
+                .addMeasurements(measurement("LOINC:2345-7", "P3Y", 90))
+                .addMeasurements(measurement("LOINC:2345-7", "P4Y", 95))
+                .build();
+        Phenopacket.Builder to = from.toBuilder();
+        to.getMeasurementsBuilder(1).getValueBuilder().getQuantityBuilder().setValue(120);
+
+        PhenopacketPatch patch = roundTrip(from, to.build());
+
+        assertThat(patch.toString(), equalTo("SET measurements[LOINC:2345-7 age P4Y].value.quantity.value\n"));
+    }
+
+    @Test
+    public void measurementTimesAreKeyedByTheirFields() throws IOException {
+        Measurement measurement = measurement("LOINC:2345-7", "P3Y", 90);
+        Phenopacket from = phenopacket(1).toBuilder()
+                .addMeasurements(measurement.toBuilder().setTimeObserved(TimeElement.newBuilder()
+                        .setTimestamp(Timestamp.newBuilder().setSeconds(1620984900L).setNanos(5))))
+                .addMeasurements(measurement.toBuilder().setTimeObserved(TimeElement.newBuilder()
+                        .setGestationalAge(GestationalAge.newBuilder().setWeeks(30).setDays(2))))
+                .addMeasurements(measurement.toBuilder().setTimeObserved(TimeElement.newBuilder()
+                        .setAgeRange(AgeRange.newBuilder()
+                                .setStart(Age.newBuilder().setIso8601Duration("P1Y"))
+                                .setEnd(Age.newBuilder().setIso8601Duration("P2Y")))))
+                .build();
+        Phenopacket.Builder to = from.toBuilder();
+        for (int i = 0; i < 3; i++) {
+            to.getMeasurementsBuilder(i).getValueBuilder().getQuantityBuilder().setValue(100 + i);
+        }
+
+        PhenopacketPatch patch = roundTrip(from, to.build());
+
+        assertThat(patch.toString(), equalTo(
+                "SET measurements[LOINC:2345-7 timestamp 1620984900.000000005].value.quantity.value\n" +
+                "SET measurements[LOINC:2345-7 gestational_age 30w2d].value.quantity.value\n" +
+                "SET measurements[LOINC:2345-7 age_range P1Y/P2Y].value.quantity.value\n"));
+    }
+
+    @Test
+    public void reorderingReplacesTheField() throws IOException {
+        Phenopacket from = phenopacket(3);
+        Phenopacket to = from.toBuilder()
+                .clearPhenotypicFeatures()
+                .addAllPhenotypicFeatures(List.of(from.getPhenotypicFeatures(2), from.getPhenotypicFeatures(0), from.getPhenotypicFeatures(1)))
+                .build();
+
+        PhenopacketPatch patch = roundTrip(from, to);
+
+        assertThat(patch.toString(), equalTo("CLEAR phenotypicFeatures\nLIST phenotypicFeatures +[0] +[1] +[2]\n"));
+    }
+
+    @Test
+    public void duplicateKeysAreMatchedByPosition() throws IOException {
+        Phenopacket from = phenopacket(3).toBuilder().addPhenotypicFeatures(feature("HP:0000001")).build();
+        Phenopacket.Builder to = from.toBuilder();
+        to.getPhenotypicFeaturesBuilder(3).setExcluded(true);
+
+        PhenopacketPatch patch = roundTrip(from, to.build());
+
+        assertThat(patch.toString(), equalTo("SET phenotypicFeatures[3].excluded\n"));
+    }
+
+    @Test
+    public void mapEntriesAreKeyedByTheirKey() throws IOException {
+        File file = File.newBuilder()
+                .setUri("file://data/genome.vcf.gz")
+                .putIndividualToFileIdentifiers("patient", "NA12345")
+                .putFileAttributes("genomeAssembly", "GRCh37")
+                .putFileAttributes("fileFormat", "vcf")
+                .build();
+        Phenopacket from = phenopacket(1).toBuilder().addFiles(file).build();
+        Phenopacket.Builder to = from.toBuilder();
+        to.getFilesBuilder(0).putFileAttributes("genomeAssembly", "GRCh38").removeIndividualToFileIdentifiers("patient");
+
+        PhenopacketPatch patch = roundTrip(from, to.build());
+
+        assertThat(patch.size(), equalTo(2));
+    }
+
+    @Test
+    public void switchOfOneofCase() throws IOException {
+        Phenopacket from = phenopacket(2);
+        Phenopacket.Builder to = from.toBuilder();
+        to.getPhenotypicFeaturesBuilder(1).setOnset(TimeElement.newBuilder().setOntologyClass(ontologyClass("HP:0003577")));
+
+        roundTrip(from, to.build());
+    }
+
+    @Test
+    public void editsOfTheExamples() throws IOException {
+        Phenopacket covid = TestExamples.severeCovidCaseWithCardiacComplications();
+        Phenopacket.Builder editedCovid = covid.toBuilder().setId("covid-2").removeMeasurements(0);
+        editedCovid.getSubjectBuilder().clearVitalStatus();
+        editedCovid.getMetaDataBuilder().addUpdates(Update.newBuilder().setUpdatedBy("curator"));
+        roundTrip(covid, editedCovid.build());
+
+        Phenopacket urothelial = TestExamples.urothelialCarcinomaPhenopacket();
+        Phenopacket.Builder editedUrothelial = urothelial.toBuilder().removeBiosamples(1);
+        editedUrothelial.getBiosamplesBuilder(0).clearHistologicalDiagnosis().setSampledTissue(ontologyClass("UBERON:0001256"));
+        roundTrip(urothelial, editedUrothelial.build());
+
+        roundTrip(covid, urothelial);
+        roundTrip(urothelial, Phenopacket.getDefaultInstance());
+    }
+
+    @Test
+    public void patchOfAMissingElementDoesNotApply() {
+        Phenopacket from = phenopacket(3);
+        Phenopacket.Builder to = from.toBuilder();
+        to.getPhenotypicFeaturesBuilder(2).setExcluded(true);
+        PhenopacketPatch patch = PhenopacketPatch.diff(from, to.build());
+
+        IllegalArgumentException e = assertThrows(IllegalArgumentException.class, () -> patch.apply(phenopacket(2)));
+        assertThat(e.getMessage(), equalTo("No element of org.phenopackets.schema.v2.Phenopacket.phenotypic_features with key 'HP:0000002'"));
+    }
+
+    @Test
+    public void elementsAreLookedUpByKeyAfterTheFieldIsListed() throws IOException {
+        Phenopacket from = phenopacket(5);
+        Phenopacket listed = from.toBuilder().removePhenotypicFeatures(0).addPhenotypicFeatures(feature("HP:0100000")).build();
+        Phenopacket.Builder to = listed.toBuilder();
+        to.getPhenotypicFeaturesBuilder(2).setExcluded(true);
+        byte[] list = PhenopacketPatch.diff(from, listed).toByteArray();
+        byte[] set = PhenopacketPatch.diff(listed, to.build()).toByteArray();
+
+        // the operations of both patches after their magic bytes, format version and count, as one patch
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        bytes.write(new byte[]{'P', 'P', 'K', 'D', 1, 2});
+        bytes.write(list, 6, list.length - 6);
+        bytes.write(set, 6, set.length - 6);
+        PhenopacketPatch patch = PhenopacketPatch.parseFrom(bytes.toByteArray());
+
+        assertThat(patch.toString(), equalTo("LIST phenotypicFeatures -[HP:0000000] +[4]\nSET phenotypicFeatures[HP:0000003].excluded\n"));
+        assertThat(patch.apply(from), equalTo(to.build()));
+    }
+
+    @Test
+    public void streamRoundTripAndMalformedInput() throws IOException {
+        Phenopacket from = phenopacket(5);
+        Phenopacket to = from.toBuilder().removePhenotypicFeatures(0).build();
+        PhenopacketPatch patch = PhenopacketPatch.diff(from, to);
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        patch.writeTo(bytes);
+
+        assertThat(PhenopacketPatch.parseFrom(new ByteArrayInputStream(bytes.toByteArray())).apply(from), equalTo(to));
+        assertThrows(IOException.class, () -> PhenopacketPatch.parseFrom(new byte[]{'P', 'P', 'K', 'S', 1, 0}));
+        assertThrows(IOException.class, () -> PhenopacketPatch.parseFrom(new byte[]{'P', 'P', 'K', 'D', 2, 0}));
+        assertThrows(IOException.class, () -> PhenopacketPatch.parseFrom(new byte[]{'P', 'P', 'K', 'D', 1, 1, 7}));
+    }
+}
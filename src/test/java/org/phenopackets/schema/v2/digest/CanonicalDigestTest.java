@@ -0,0 +1,146 @@
+package org.phenopackets.schema.v2.digest;
+
+import com.google.protobuf.ByteString;
+import com.google.protobuf.CodedOutputStream;
+import com.google.protobuf.Descriptors.FieldDescriptor;
+import com.google.protobuf.InvalidProtocolBufferException;
+import com.google.protobuf.Timestamp;
+import org.junit.jupiter.api.Test;
+import org.phenopackets.schema.v2.Cohort;
+import org.phenopackets.schema.v2.Phenopacket;
+import org.phenopackets.schema.v2.core.*;
+import org.phenopackets.schema.v2.examples.TestExamples;
+
+import java.io.IOException;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.not;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class CanonicalDigestTest {
+
+    private final CanonicalDigest digest = new CanonicalDigest();
+
+    private static Phenopacket phenopacket(File file) {
+        return Phenopacket.newBuilder()
+                .setId("PPKT:1")
+                .setSubject(Individual.newBuilder().setId("patient").setSex(Sex.FEMALE))
+                .addPhenotypicFeatures(PhenotypicFeature.newBuilder().setType(OntologyClass.newBuilder().setId("HP:0001250").setLabel("Seizure")))
+                .addFiles(file)
+                .setMetaData(MetaData.newBuilder()
+                        .setCreated(Timestamp.newBuilder().setSeconds(1_600_000_000L))
+                        .setCreatedBy("curator")
+                        .addResources(Resource.newBuilder().setId("hp").setNamespacePrefix("HP")))
+                .build();
+    }
+
+    private static File file(String... attributes) {
+        File.Builder file = File.newBuilder().setUri("file://data/genome.vcf.gz");
+        for (int i = 0; i < attributes.length; i += 2) {
+            file.putFileAttributes(attributes[i], attributes[i + 1]);
+        }
+        return file.build();
+    }
+
+    @Test
+    public void digestIsStable() {
+        Phenopacket phenopacket = phenopacket(file("genomeAssembly", "GRCh38", "fileFormat", "vcf"));
+
+        assertThat(digest.digest(phenopacket).toString(), equalTo("e631cf51e5efacbd82d80537ff39b587ee34a853c05e61729fe1ed9bc4a1b881"));
+    }
+
+    @Test
+    public void digestDoesNotDependOnTheOrderOfMapEntries() {
+        Phenopacket phenopacket = phenopacket(file("genomeAssembly", "GRCh38", "fileFormat", "vcf"));
+        Phenopacket reordered = phenopacket(file("fileFormat", "vcf", "genomeAssembly", "GRCh38"));
+
+        assertThat(phenopacket.toByteString(), not(equalTo(reordered.toByteString())));
+        assertThat(digest.digest(reordered), equalTo(digest.digest(phenopacket)));
+        assertThat(digest.digest(phenopacket(file("fileFormat", "bcf", "genomeAssembly", "GRCh38"))), not(equalTo(digest.digest(phenopacket))));
+    }
+
+    @Test
+    public void excludedFieldsAreLeftOut() {
+        Phenopacket phenopacket = phenopacket(file());
+        Phenopacket.Builder rewritten = phenopacket.toBuilder();
+        rewritten.getMetaDataBuilder().getCreatedBuilder().setSeconds(1_700_000_000L);
+        CanonicalDigest excludingVolatileFields = new CanonicalDigest(CanonicalDigest.VOLATILE_FIELDS);
+
+        assertThat(digest.digest(rewritten.build()), not(equalTo(digest.digest(phenopacket))));
+        assertThat(excludingVolatileFields.digest(rewritten.build()), equalTo(excludingVolatileFields.digest(phenopacket)));
+        assertThat(excludingVolatileFields.digest(phenopacket.toBuilder().setId("PPKT:2").build()), not(equalTo(excludingVolatileFields.digest(phenopacket))));
+    }
+
+    @Test
+    public void digestOfEquivalentEncodings() throws IOException {
+        Phenopacket phenopacket = phenopacket(file("genomeAssembly", "GRCh38"));
+        ByteString encoded = phenopacket.toByteString();
+
+        // the fields in reverse order, and an empty id written explicitly before the real one
+        ByteString reversed = ByteString.EMPTY;
+        for (Map.Entry<FieldDescriptor, Object> field : phenopacket.getAllFields().entrySet()) {
+            reversed = Phenopacket.newBuilder().setField(field.getKey(), field.getValue()).build().toByteString().concat(reversed);
+        }
+        ByteString.Output emptyId = ByteString.newOutput();
+        CodedOutputStream output = CodedOutputStream.newInstance(emptyId);
+        output.writeString(Phenopacket.ID_FIELD_NUMBER, "");
+        output.flush();
+        ByteString equivalent = emptyId.toByteString().concat(reversed);
+
+        assertThat(Phenopacket.parseFrom(equivalent), equalTo(phenopacket));
+        assertThat(digest.digest(Phenopacket.getDescriptor(), equivalent), equalTo(digest.digest(Phenopacket.getDescriptor(), encoded)));
+        assertThat(digest.digest(phenopacket), equalTo(digest.digest(Phenopacket.getDescriptor(), encoded)));
+    }
+
+    @Test
+    public void digestsOfTheExamplesAreDistinct() {
+        List<Phenopacket> examples = List.of(
+                TestExamples.rareDiseasePhenopacket(),
+                TestExamples.cancerPhenopacket(),
+                TestExamples.biosamplesPhenopacket(),
+                TestExamples.severeCovidCaseWithCardiacComplications(),
+                TestExamples.urothelialCarcinomaPhenopacket());
+        Set<Digest> digests = new HashSet<>();
+        for (Phenopacket example : examples) {
+            digests.add(digest.digest(example));
+            assertThat(digest.digest(example), equalTo(digest.digest(example.toBuilder().build())));
+        }
+        assertThat(digests.size(), equalTo(examples.size()));
+
+        Cohort cohort = Cohort.newBuilder().setId("cohort").addAllMembers(examples).build();
+        assertThat(digest.digest(cohort), not(equalTo(digest.digest(cohort.toBuilder().removeMembers(2).build()))));
+    }
+
+    @Test
+    public void digestCoversTheType() {
+        OntologyClass ontologyClass = OntologyClass.newBuilder().setId("HP:0001250").setLabel("Seizure").build();
+        Resource resource = Resource.newBuilder().setId("HP:0001250").setName("Seizure").build();
+
+        assertThat(ontologyClass.toByteString(), equalTo(resource.toByteString()));
+        assertThat(digest.digest(ontologyClass), not(equalTo(digest.digest(resource))));
+    }
+
+    @Test
+    public void hexAndBytesRoundTrip() {
+        Digest phenopacketDigest = digest.digest(phenopacket(file()));
+
+        assertThat(Digest.fromHex(phenopacketDigest.toString()), equalTo(phenopacketDigest));
+        assertThat(Digest.fromBytes(phenopacketDigest.toByteArray()), equalTo(phenopacketDigest));
+        assertThat(phenopacketDigest.compareTo(Digest.fromHex(phenopacketDigest.toString())), equalTo(0));
+        assertTrue(Digest.fromHex("00".repeat(32)).compareTo(Digest.fromHex("ff".repeat(32))) < 0);
+        assertThrows(IllegalArgumentException.class, () -> Digest.fromHex("00"));
+        assertThrows(IllegalArgumentException.class, () -> Digest.fromHex("zz".repeat(32)));
+    }
+
+    @Test
+    public void malformedBytesAreRejected() {
+        assertThrows(InvalidProtocolBufferException.class,
+                () -> digest.digest(Phenopacket.getDescriptor(), ByteString.copyFrom(new byte[]{0x0a, 0x10, 'x'})));
+    }
+}
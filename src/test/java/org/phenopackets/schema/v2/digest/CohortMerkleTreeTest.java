@@ -0,0 +1,139 @@
+package org.phenopackets.schema.v2.digest;
+
+import com.google.protobuf.Timestamp;
+import org.junit.jupiter.api.Test;
+import org.phenopackets.schema.v2.Cohort;
+import org.phenopackets.schema.v2.Phenopacket;
+import org.phenopackets.schema.v2.core.*;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.not;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class CohortMerkleTreeTest {
+
+    private static Phenopacket member(int index, String term) {
+        return Phenopacket.newBuilder()
+                .setId("member-" + index)
+                .setSubject(Individual.newBuilder().setId("patient-" + index))
+                .addPhenotypicFeatures(PhenotypicFeature.newBuilder().setType(OntologyClass.newBuilder().setId(term)))
+                .setMetaData(MetaData.newBuilder().setCreated(Timestamp.newBuilder().setSeconds(1_600_000_000L + index)))
+                .build();
+    }
+
+    private static List<Phenopacket> members(int count) {
+        List<Phenopacket> members = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            members.add(member(i, "HP:0001250"));
+        }
+        return members;
+    }
+
+    private static CohortMerkleTree tree(List<Phenopacket> members) {
+        return CohortMerkleTree.of(Cohort.newBuilder().setId("cohort").addAllMembers(members).build());
+    }
+
+    @Test
+    public void rootDoesNotDependOnTheOrderOfMembers() {
+        List<Phenopacket> members = members(1000);
+        List<Phenopacket> shuffled = new ArrayList<>(members);
+        Collections.shuffle(shuffled, new Random(0));
+
+        CohortMerkleTree tree = tree(members);
+
+        assertThat(tree.size(), equalTo(1000));
+        assertThat(tree(shuffled).root(), equalTo(tree.root()));
+        assertThat(tree.diff(tree(shuffled)), equalTo(List.of()));
+    }
+
+    @Test
+    public void diffListsTheChangedAddedAndRemovedMembers() {
+        List<Phenopacket> members = members(1000);
+        CohortMerkleTree tree = tree(members);
+        List<Phenopacket> edited = new ArrayList<>(members);
+        edited.set(17, member(17, "HP:0001251"));
+        edited.remove(500);
+        edited.add(member(2000, "HP:0001250"));
+        CohortMerkleTree editedTree = tree(edited);
+
+        assertThat(tree.root(), not(equalTo(editedTree.root())));
+        assertThat(tree.diff(editedTree), equalTo(List.of("member-17", "member-2000", "member-500")));
+        assertThat(editedTree.diff(tree), equalTo(List.of("member-17", "member-2000", "member-500")));
+    }
+
+    @Test
+    public void incrementalUpdatesGiveTheTreeOfTheUpdatedMembers() {
+        List<Phenopacket> members = members(300);
+        CohortMerkleTree tree = tree(members);
+        Digest original = tree.root();
+
+        tree.put(member(7, "HP:0000001"));
+        tree.remove("member-8");
+        tree.put(member(300, "HP:0000002"));
+        List<Phenopacket> updated = new ArrayList<>(members);
+        updated.set(7, member(7, "HP:0000001"));
+        updated.remove(8);
+        updated.add(member(300, "HP:0000002"));
+        CohortMerkleTree rebuilt = tree(updated);
+
+        assertThat(tree.root(), equalTo(rebuilt.root()));
+        for (int level = 0; level <= tree.depth(); level++) {
+            int index = tree.bucketOf("member-7") >>> (tree.depth() - level);
+            assertThat(tree.node(level, index), equalTo(rebuilt.node(level, index)));
+        }
+
+        tree.put(member(7, "HP:0001250"));
+        tree.put(members.get(8));
+        tree.remove("member-300");
+        assertThat(tree.root(), equalTo(original));
+        assertThat(tree.size(), equalTo(300));
+    }
+
+    @Test
+    public void volatileFieldsAreIgnored() {
+        CohortMerkleTree tree = tree(members(10));
+        Phenopacket.Builder rewritten = members(10).get(3).toBuilder();
+        rewritten.getMetaDataBuilder().getCreatedBuilder().setSeconds(1_700_000_000L);
+        Digest root = tree.root();
+
+        tree.put(rewritten.build());
+
+        assertThat(tree.root(), equalTo(root));
+    }
+
+    @Test
+    public void bucketsHoldTheMembersSortedById() {
+        CohortMerkleTree tree = new CohortMerkleTree(new CanonicalDigest(), 2);
+        tree.putAll(members(40));
+
+        int count = 0;
+        for (int index = 0; index < 4; index++) {
+            List<String> ids = new ArrayList<>(tree.bucket(index).keySet());
+            List<String> sorted = new ArrayList<>(ids);
+            Collections.sort(sorted);
+            assertThat(ids, equalTo(sorted));
+            for (String id : ids) {
+                assertThat(tree.bucketOf(id), equalTo(index));
+            }
+            count += ids.size();
+        }
+        assertThat(count, equalTo(40));
+    }
+
+    @Test
+    public void emptyTreeAndInvalidArguments() {
+        CohortMerkleTree tree = new CohortMerkleTree();
+
+        assertThat(tree.root(), equalTo(Digest.fromHex("00".repeat(32))));
+        assertThrows(IllegalArgumentException.class, () -> tree(List.of(member(1, "HP:0001250"), member(1, "HP:0001251"))));
+        assertThrows(IllegalArgumentException.class, () -> tree.diff(new CohortMerkleTree(new CanonicalDigest(), 8)));
+        assertThrows(IllegalArgumentException.class, () -> new CohortMerkleTree(new CanonicalDigest(), 0));
+        assertThrows(IllegalArgumentException.class, () -> tree.node(1, 2));
+    }
+}
@@ -62,4 +62,8 @@ public class TestExamples {
     public static Phenopacket severeCovidCaseWithCardiacComplications() {
         return CovidExample.severeCovidCaseWithCardiacComplications();
     }
+
+    public static Phenopacket urothelialCarcinomaPhenopacket() {
+        return new UrothelialCarcinomaExample().getPhenopacket();
+    }
 }
@@ -57,6 +57,10 @@ public class UrothelialCarcinomaExample {
                 .build();
     }
 
+    public Phenopacket getPhenopacket() {
+        return phenopacket;
+    }
+
     public File createNormalGermlineHtsFile() {
         // first create a File
         // We are imagining there is a reference to a VCF file for a normal germline genome seqeunce
@@ -0,0 +1,151 @@
+package org.phenopackets.schema.v2.index;
+
+import org.ga4gh.vrsatile.v1.GeneDescriptor;
+import org.ga4gh.vrsatile.v1.VariationDescriptor;
+import org.junit.jupiter.api.Test;
+import org.phenopackets.schema.v2.Phenopacket;
+import org.phenopackets.schema.v2.core.AcmgPathogenicityClassification;
+import org.phenopackets.schema.v2.core.Diagnosis;
+import org.phenopackets.schema.v2.core.GenomicInterpretation;
+import org.phenopackets.schema.v2.core.GenomicInterpretation.InterpretationStatus;
+import org.phenopackets.schema.v2.core.Interpretation;
+import org.phenopackets.schema.v2.core.VariantInterpretation;
+
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+public class GeneIndexTest {
+
+    private static final GeneDescriptor FBN1 = GeneDescriptor.newBuilder()
+            .setValueId("HGNC:3603")
+            .setSymbol("FBN1")
+            .addAlternateIds("ensembl:ENSG00000166147")
+            .addAlternateSymbols("MASS")
+            .build();
+    private static final GeneDescriptor SOX9 = GeneDescriptor.newBuilder()
+            .setValueId("HGNC:11204")
+            .setSymbol("SOX9")
+            .addAlternateSymbols("CMD1")
+            .build();
+    private static final GeneDescriptor CMD1 = GeneDescriptor.newBuilder()
+            .setSymbol("CMD1")
+            .build();
+
+    private static GenomicInterpretation geneCall(GeneDescriptor gene, InterpretationStatus status) {
+        return GenomicInterpretation.newBuilder().setInterpretationStatus(status).setGene(gene).build();
+    }
+
+    private static GenomicInterpretation variantCall(GeneDescriptor gene, InterpretationStatus status, AcmgPathogenicityClassification classification) {
+        return GenomicInterpretation.newBuilder()
+                .setInterpretationStatus(status)
+                .setVariantInterpretation(VariantInterpretation.newBuilder()
+                        .setAcmgPathogenicityClassification(classification)
+                        .setVariationDescriptor(VariationDescriptor.newBuilder().setGeneContext(gene)))
+                .build();
+    }
+
+    private static Phenopacket member(int index, GenomicInterpretation... calls) {
+        return Phenopacket.newBuilder()
+                .setId("member-" + index)
+                .addInterpretations(Interpretation.newBuilder()
+                        .setId("interpretation-" + index)
+                        .setDiagnosis(Diagnosis.newBuilder().addAllGenomicInterpretations(List.of(calls))))
+                .build();
+    }
+
+    @Test
+    public void statusAndClassificationQueriesMatchScan() {
+        Random random = new Random(7);
+        InterpretationStatus[] statuses = {InterpretationStatus.UNKNOWN_STATUS, InterpretationStatus.REJECTED,
+                InterpretationStatus.CANDIDATE, InterpretationStatus.CONTRIBUTORY, InterpretationStatus.CAUSATIVE};
+        AcmgPathogenicityClassification[] classifications = {AcmgPathogenicityClassification.NOT_PROVIDED,
+                AcmgPathogenicityClassification.BENIGN, AcmgPathogenicityClassification.LIKELY_BENIGN,
+                AcmgPathogenicityClassification.UNCERTAIN_SIGNIFICANCE, AcmgPathogenicityClassification.LIKELY_PATHOGENIC,
+                AcmgPathogenicityClassification.PATHOGENIC};
+        List<Phenopacket> members = new ArrayList<>();
+        for (int i = 0; i < 10_000; i++) {
+            List<GenomicInterpretation> calls = new ArrayList<>();
+            for (int j = random.nextInt(3); j > 0; j--) {
+                GeneDescriptor gene = random.nextBoolean() ? FBN1 : SOX9;
+                InterpretationStatus status = statuses[random.nextInt(statuses.length)];
+                calls.add(random.nextBoolean()
+                        ? geneCall(gene, status)
+                        : variantCall(gene, status, classifications[random.nextInt(classifications.length)]));
+            }
+            members.add(member(i, calls.toArray(new GenomicInterpretation[0])));
+        }
+        GeneIndex index = GeneIndex.of(members);
+        Set<InterpretationStatus> causal = EnumSet.of(InterpretationStatus.CAUSATIVE, InterpretationStatus.CONTRIBUTORY);
+        Set<AcmgPathogenicityClassification> pathogenic = EnumSet.of(AcmgPathogenicityClassification.PATHOGENIC, AcmgPathogenicityClassification.LIKELY_PATHOGENIC);
+
+        List<String> expected = new ArrayList<>();
+        List<String> expectedPathogenic = new ArrayList<>();
+        for (Phenopacket member : members) {
+            boolean found = false;
+            boolean foundPathogenic = false;
+            for (GenomicInterpretation call : member.getInterpretations(0).getDiagnosis().getGenomicInterpretationsList()) {
+                GeneDescriptor gene = call.hasGene() ? call.getGene() : call.getVariantInterpretation().getVariationDescriptor().getGeneContext();
+                if (gene.equals(FBN1) && causal.contains(call.getInterpretationStatus())) {
+                    found = true;
+                    foundPathogenic |= call.hasVariantInterpretation() && pathogenic.contains(call.getVariantInterpretation().getAcmgPathogenicityClassification());
+                }
+            }
+            if (found) {
+                expected.add(member.getId());
+            }
+            if (foundPathogenic) {
+                expectedPathogenic.add(member.getId());
+            }
+        }
+
+        assertThat(index.memberIds(index.members("HGNC:3603", causal)), equalTo(expected));
+        assertThat(index.memberIds(index.members("FBN1", causal)), equalTo(expected));
+        assertThat(index.memberIds(index.members("MASS", causal)), equalTo(expected));
+        assertThat(index.memberIds(index.members("ensembl:ENSG00000166147", causal, pathogenic)), equalTo(expectedPathogenic));
+        assertThat(expectedPathogenic.isEmpty(), equalTo(false));
+    }
+
+    @Test
+    public void namesReferToEveryGeneTheyName() {
+        GeneIndex index = GeneIndex.of(List.of(
+                member(0, geneCall(FBN1, InterpretationStatus.CAUSATIVE)),
+                member(1, geneCall(SOX9, InterpretationStatus.CANDIDATE)),
+                member(2, geneCall(CMD1, InterpretationStatus.CANDIDATE)),
+                member(3)));
+
+        assertThat(index.size(), equalTo(4));
+        assertThat(index.genes(), equalTo(Set.of("HGNC:3603", "HGNC:11204", "CMD1")));
+        // CMD1 is the symbol of a gene without an id, and an alternate symbol of SOX9
+        assertThat(index.resolve("CMD1"), equalTo(Set.of("CMD1", "HGNC:11204")));
+        assertThat(index.memberIds(index.members("CMD1")), equalTo(List.of("member-1", "member-2")));
+        assertThat(index.memberIds(index.members("SOX9")), equalTo(List.of("member-1")));
+        assertThat(index.members("BRCA1").isEmpty(), equalTo(true));
+        assertThat(index.callCount("FBN1"), equalTo(1));
+        // a gene call has no ACMG classification, so it never matches a query for classified variants
+        assertThat(index.members("FBN1", EnumSet.of(InterpretationStatus.CAUSATIVE), EnumSet.of(AcmgPathogenicityClassification.NOT_PROVIDED)).isEmpty(), equalTo(true));
+    }
+
+    @Test
+    public void symbolResolvesToCallsWithAndWithoutAnId() {
+        GeneDescriptor fbn1Symbol = GeneDescriptor.newBuilder().setSymbol("FBN1").build();
+        GeneIndex index = GeneIndex.of(List.of(
+                member(0, geneCall(FBN1, InterpretationStatus.CAUSATIVE)),
+                member(1, variantCall(fbn1Symbol, InterpretationStatus.CANDIDATE, AcmgPathogenicityClassification.PATHOGENIC)),
+                member(2, geneCall(SOX9, InterpretationStatus.CAUSATIVE))));
+
+        assertThat(index.genes(), equalTo(Set.of("HGNC:3603", "FBN1", "HGNC:11204")));
+        assertThat(index.resolve("FBN1"), equalTo(Set.of("FBN1", "HGNC:3603")));
+        assertThat(index.resolve("HGNC:3603"), equalTo(Set.of("HGNC:3603")));
+        assertThat(index.memberIds(index.members("FBN1")), equalTo(List.of("member-0", "member-1")));
+        assertThat(index.memberIds(index.members("HGNC:3603")), equalTo(List.of("member-0")));
+        assertThat(index.callCount("FBN1"), equalTo(2));
+        assertThat(index.memberIds(index.members("FBN1", EnumSet.of(InterpretationStatus.CAUSATIVE))), equalTo(List.of("member-0")));
+    }
+
+}
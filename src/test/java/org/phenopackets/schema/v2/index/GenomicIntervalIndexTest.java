@@ -0,0 +1,153 @@
+package org.phenopackets.schema.v2.index;
+
+import org.ga4gh.vrs.v1.Allele;
+import org.ga4gh.vrs.v1.DefiniteRange;
+import org.ga4gh.vrs.v1.IndefiniteRange;
+import org.ga4gh.vrs.v1.Number;
+import org.ga4gh.vrs.v1.SequenceInterval;
+import org.ga4gh.vrs.v1.SequenceLocation;
+import org.ga4gh.vrs.v1.SimpleInterval;
+import org.ga4gh.vrs.v1.Variation;
+import org.ga4gh.vrsatile.v1.VariationDescriptor;
+import org.ga4gh.vrsatile.v1.VcfRecord;
+import org.junit.jupiter.api.Test;
+import org.phenopackets.schema.v2.Phenopacket;
+import org.phenopackets.schema.v2.core.Diagnosis;
+import org.phenopackets.schema.v2.core.GenomicInterpretation;
+import org.phenopackets.schema.v2.core.GenomicInterpretation.InterpretationStatus;
+import org.phenopackets.schema.v2.core.Interpretation;
+import org.phenopackets.schema.v2.core.VariantInterpretation;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+public class GenomicIntervalIndexTest {
+
+    private static Phenopacket member(String id, VariationDescriptor... variants) {
+        Diagnosis.Builder diagnosis = Diagnosis.newBuilder();
+        for (int i = 0; i < variants.length; i++) {
+            diagnosis.addGenomicInterpretations(GenomicInterpretation.newBuilder()
+                    .setSubjectOrBiosampleId(id)
+                    .setInterpretationStatusValue(i % 5)
+                    .setVariantInterpretation(VariantInterpretation.newBuilder().setVariationDescriptor(variants[i])));
+        }
+        return Phenopacket.newBuilder()
+                .setId(id)
+                .addInterpretations(Interpretation.newBuilder().setId(id + "-interpretation").setDiagnosis(diagnosis))
+                .build();
+    }
+
+    private static VariationDescriptor vcf(String chrom, long pos, String ref, String info) {
+        return VariationDescriptor.newBuilder()
+                .setVcfRecord(VcfRecord.newBuilder().setGenomeAssembly("GRCh38").setChrom(chrom).setPos(pos).setRef(ref).setAlt("T").setInfo(info))
+                .build();
+    }
+
+    private static VariationDescriptor vrs(String sequenceId, SequenceLocation.Builder location) {
+        return VariationDescriptor.newBuilder()
+                .setVariation(Variation.newBuilder().setAllele(Allele.newBuilder().setSequenceLocation(location.setSequenceId(sequenceId))))
+                .build();
+    }
+
+    @Test
+    public void queriesMatchScan() {
+        Random random = new Random(42);
+        List<Phenopacket> members = new ArrayList<>();
+        // [member, status, start, end] of each variant on chromosome 6
+        List<long[]> variants = new ArrayList<>();
+        for (int i = 0; i < 5_000; i++) {
+            int count = random.nextInt(4);
+            VariationDescriptor[] descriptors = new VariationDescriptor[count];
+            for (int j = 0; j < count; j++) {
+                long pos = 1 + random.nextInt(10_000_000);
+                // mostly SNVs, with a few deletions and large structural variants
+                int length = random.nextInt(10) == 0 ? 1 + random.nextInt(50) : 1;
+                String info = random.nextInt(100) == 0 ? "SVTYPE=DEL;END=" + (pos + random.nextInt(2_000_000)) : "";
+                descriptors[j] = vcf(random.nextBoolean() ? "chr6" : "6", pos, "A".repeat(length), info);
+                long end = info.isEmpty() ? pos - 1 + length : Math.max(pos - 1 + length, Long.parseLong(info.substring(info.indexOf("END=") + 4)));
+                variants.add(new long[]{i, j % 5, pos - 1, end});
+            }
+            members.add(member("member-" + i, descriptors));
+        }
+        GenomicIntervalIndex index = GenomicIntervalIndex.of(members);
+
+        assertThat(index.memberCount(), equalTo(5_000));
+        assertThat(index.size(), equalTo(variants.size()));
+        for (int query = 0; query < 200; query++) {
+            long start = random.nextInt(10_000_000);
+            long end = start + random.nextInt(query % 2 == 0 ? 1_000 : 500_000);
+            List<Integer> expected = new ArrayList<>();
+            List<Integer> expectedCausative = new ArrayList<>();
+            int expectedHits = 0;
+            for (long[] variant : variants) {
+                if (variant[2] < end && start < variant[3]) {
+                    expectedHits++;
+                    if (!expected.contains((int) variant[0])) {
+                        expected.add((int) variant[0]);
+                    }
+                    if (variant[1] == InterpretationStatus.CAUSATIVE_VALUE && !expectedCausative.contains((int) variant[0])) {
+                        expectedCausative.add((int) variant[0]);
+                    }
+                }
+            }
+            List<Integer> found = new ArrayList<>();
+            index.members("GRCh38", "chr6", start, end).forEach(found::add);
+            List<Integer> foundCausative = new ArrayList<>();
+            index.members("GRCh38", "6", start, end, InterpretationStatus.CAUSATIVE).forEach(foundCausative::add);
+            expected.sort(null);
+            expectedCausative.sort(null);
+
+            assertThat(found, equalTo(expected));
+            assertThat(foundCausative, equalTo(expectedCausative));
+            assertThat(index.hits("GRCh38", "6", start, end).size(), equalTo(expectedHits));
+        }
+    }
+
+    @Test
+    public void hitsCarryTheMemberStatusAndInterval() {
+        GenomicIntervalIndex index = GenomicIntervalIndex.of(List.of(
+                member("a", vcf("1", 100, "AC", ""), vcf("1", 200, "A", "")),
+                member("b", vcf("X", 100, "A", "SVTYPE=DEL;END=5000"))));
+
+        List<GenomicIntervalIndex.Hit> hits = index.hits("GRCh38", "chr1", 0, 1_000);
+        assertThat(hits.size(), equalTo(2));
+        assertThat(hits.get(0).memberId(), equalTo("a"));
+        assertThat(hits.get(0).start(), equalTo(99L));
+        assertThat(hits.get(0).end(), equalTo(101L));
+        assertThat(hits.get(0).status(), equalTo(InterpretationStatus.UNKNOWN_STATUS));
+        assertThat(hits.get(1).status(), equalTo(InterpretationStatus.REJECTED));
+
+        assertThat(index.hits("GRCh38", "1", 101, 199).size(), equalTo(0));
+        assertThat(index.memberIds(index.members("GRCh38", "X", 4_000, 4_001)), equalTo(List.of("b")));
+        assertThat(index.hits("GRCh37", "X", 0, 10_000).size(), equalTo(0));
+        assertThat(index.hits("GRCh38", "Y", 0, 10_000).size(), equalTo(0));
+        assertThat(index.assemblies(), equalTo(List.of("GRCh38")));
+    }
+
+    @Test
+    public void sequenceLocationsAreIndexed() {
+        String sequence = "refseq:NC_000006.12";
+        GenomicIntervalIndex index = GenomicIntervalIndex.of(List.of(
+                member("simple", vrs(sequence, SequenceLocation.newBuilder().setSimpleInterval(SimpleInterval.newBuilder().setStart(1_000).setEnd(1_001)))),
+                member("insertion", vrs(sequence, SequenceLocation.newBuilder().setSimpleInterval(SimpleInterval.newBuilder().setStart(2_000).setEnd(2_000)))),
+                member("ranges", vrs(sequence, SequenceLocation.newBuilder().setSequenceInterval(SequenceInterval.newBuilder()
+                        .setStartDefiniteRange(DefiniteRange.newBuilder().setMin(5_000).setMax(5_100))
+                        .setEndNumber(Number.newBuilder().setValue(6_000))))),
+                member("open", vrs(sequence, SequenceLocation.newBuilder().setSequenceInterval(SequenceInterval.newBuilder()
+                        .setStartNumber(Number.newBuilder().setValue(9_000))
+                        .setEndIndefiniteRange(IndefiniteRange.newBuilder().setValue(9_500).setComparator(">=")))))));
+
+        assertThat(index.memberIds(index.sequenceMembers(sequence, 1_000, 1_001)), equalTo(List.of("simple")));
+        assertThat(index.memberIds(index.sequenceMembers(sequence, 2_000, 2_001)), equalTo(List.of("insertion")));
+        assertThat(index.memberIds(index.sequenceMembers(sequence, 1_999, 2_000)), equalTo(List.of()));
+        assertThat(index.memberIds(index.sequenceMembers(sequence, 5_050, 5_060)), equalTo(List.of("ranges")));
+        assertThat(index.memberIds(index.sequenceMembers(sequence, 1_000_000, 1_000_001)), equalTo(List.of("open")));
+        assertThat(index.memberIds(index.sequenceMembers(sequence, 0, 10_000, InterpretationStatus.UNKNOWN_STATUS)),
+                equalTo(List.of("simple", "insertion", "ranges", "open")));
+        assertThat(index.sequenceHits("refseq:NC_000007.14", 0, 10_000).size(), equalTo(0));
+    }
+}
@@ -0,0 +1,71 @@
+package org.phenopackets.schema.v2.index;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.BitSet;
+import java.util.Random;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class MemberSetTest {
+
+    private static BitSet randomBits(Random random, int bound, double density) {
+        BitSet bits = new BitSet(bound);
+        for (int i = 0; i < bound; i++) {
+            if (random.nextDouble() < density) {
+                bits.set(i);
+            }
+        }
+        return bits;
+    }
+
+    private static MemberSet toMemberSet(BitSet bits) {
+        return MemberSet.of(bits.stream().toArray());
+    }
+
+    @Test
+    public void operationsMatchBitSet() {
+        Random random = new Random(42);
+        int bound = 300_000;
+        // a mix of sparse array and dense bitmap chunks
+        double[] densities = {0.001, 0.01, 0.1, 0.5};
+        for (double first : densities) {
+            for (double second : densities) {
+                BitSet a = randomBits(random, bound, first);
+                BitSet b = randomBits(random, bound, second);
+                MemberSet x = toMemberSet(a);
+                MemberSet y = toMemberSet(b);
+
+                BitSet and = (BitSet) a.clone();
+                and.and(b);
+                BitSet or = (BitSet) a.clone();
+                or.or(b);
+                BitSet andNot = (BitSet) a.clone();
+                andNot.andNot(b);
+
+                assertThat(x.cardinality(), equalTo(a.cardinality()));
+                assertThat(x.toArray(), equalTo(a.stream().toArray()));
+                assertThat(x.and(y).toArray(), equalTo(and.stream().toArray()));
+                assertThat(x.or(y).toArray(), equalTo(or.stream().toArray()));
+                assertThat(x.andNot(y).toArray(), equalTo(andNot.stream().toArray()));
+                assertThat(x.and(y).cardinality(), equalTo(and.cardinality()));
+            }
+        }
+    }
+
+    @Test
+    public void containsAndDuplicates() {
+        MemberSet members = MemberSet.of(5, 70_000, 5, 3);
+
+        assertThat(members.toArray(), equalTo(new int[]{3, 5, 70_000}));
+        assertTrue(members.contains(70_000));
+        assertFalse(members.contains(4));
+        assertFalse(members.contains(-1));
+        assertTrue(MemberSet.empty().isEmpty());
+        assertThat(MemberSet.range(10, 20).cardinality(), equalTo(10));
+        assertTrue(members.andNot(members).isEmpty());
+    }
+}
@@ -0,0 +1,88 @@
+package org.phenopackets.schema.v2.index;
+
+import org.junit.jupiter.api.Test;
+import org.phenopackets.schema.v2.Phenopacket;
+import org.phenopackets.schema.v2.core.OntologyClass;
+import org.phenopackets.schema.v2.core.PhenotypicFeature;
+import org.phenopackets.schema.v2.examples.TestExamples;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+public class TermIndexTest {
+
+    private static List<Phenopacket> members() {
+        List<Phenopacket> examples = List.of(
+                TestExamples.rareDiseasePhenopacket(),
+                TestExamples.cancerPhenopacket(),
+                TestExamples.biosamplesPhenopacket(),
+                TestExamples.severeCovidCaseWithCardiacComplications(),
+                TestExamples.urothelialCarcinomaPhenopacket());
+        List<Phenopacket> members = new ArrayList<>();
+        for (int i = 0; i < 10_000; i++) {
+            Phenopacket example = examples.get(i % examples.size());
+            Phenopacket.Builder member = example.toBuilder().setId(example.getId() + '-' + i);
+            if (i % 7 == 0) {
+                // exclude some of the features so that excluded and observed features differ
+                member.getPhenotypicFeaturesBuilderList().forEach(feature -> feature.setExcluded(!feature.getExcluded()));
+            }
+            members.add(member.build());
+        }
+        return members;
+    }
+
+    private static boolean hasFeature(Phenopacket member, String termId, boolean excluded) {
+        for (PhenotypicFeature feature : member.getPhenotypicFeaturesList()) {
+            if (feature.getType().getId().equals(termId) && feature.getExcluded() == excluded) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Test
+    public void featureAndDiseaseQueryMatchesScan() {
+        List<Phenopacket> members = members();
+        TermIndex index = TermIndex.of(members);
+        Phenopacket example = TestExamples.severeCovidCaseWithCardiacComplications();
+        String featureId = example.getPhenotypicFeatures(0).getType().getId();
+        String diseaseId = example.getDiseasesList().stream().filter(disease -> !disease.getExcluded()).findFirst().orElseThrow().getTerm().getId();
+
+        MemberSet matches = index.members(TermIndex.TermField.PHENOTYPIC_FEATURE, featureId)
+                .and(index.members(TermIndex.TermField.DISEASE, diseaseId));
+
+        List<String> expected = members.stream()
+                .filter(member -> hasFeature(member, featureId, false))
+                .filter(member -> member.getDiseasesList().stream().anyMatch(disease -> !disease.getExcluded() && disease.getTerm().getId().equals(diseaseId)))
+                .map(Phenopacket::getId)
+                .collect(Collectors.toList());
+        assertThat(index.memberIds(matches), equalTo(expected));
+        assertThat(expected.isEmpty(), equalTo(false));
+    }
+
+    @Test
+    public void orAndNotQueriesMatchScan() {
+        List<Phenopacket> members = members();
+        TermIndex index = TermIndex.of(members);
+        String featureId = TestExamples.rareDiseasePhenopacket().getPhenotypicFeatures(0).getType().getId();
+        OntologyClass histology = TestExamples.cancerPhenopacket().getBiosamples(0).getHistologicalDiagnosis();
+
+        MemberSet matches = index.not(index.members(TermIndex.TermField.PHENOTYPIC_FEATURE, featureId))
+                .and(index.members(TermIndex.TermField.EXCLUDED_PHENOTYPIC_FEATURE, featureId)
+                        .or(index.members(TermIndex.TermField.HISTOLOGICAL_DIAGNOSIS, histology.getId())));
+
+        List<String> expected = members.stream()
+                .filter(member -> !hasFeature(member, featureId, false))
+                .filter(member -> hasFeature(member, featureId, true)
+                        || member.getBiosamplesList().stream().anyMatch(biosample -> biosample.getHistologicalDiagnosis().getId().equals(histology.getId())))
+                .map(Phenopacket::getId)
+                .collect(Collectors.toList());
+        assertThat(index.memberIds(matches), equalTo(expected));
+        assertThat(expected.isEmpty(), equalTo(false));
+        assertThat(index.members(TermIndex.TermField.DIAGNOSIS, "no such term").isEmpty(), equalTo(true));
+    }
+}
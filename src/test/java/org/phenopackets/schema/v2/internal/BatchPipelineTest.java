@@ -0,0 +1,80 @@
+package org.phenopackets.schema.v2.internal;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class BatchPipelineTest {
+
+    @Test
+    public void resultsAreHandedOnInOrderWithFewBatchesInFlight() throws IOException {
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            List<Integer> results = new ArrayList<>();
+            int maxInFlight = 0;
+            BatchPipeline<Integer> pipeline = new BatchPipeline<>(pool, "testing", results::add);
+            try {
+                for (int i = 0; i < 200; i++) {
+                    int batch = i;
+                    pipeline.submit(() -> {
+                        // the batches take different times, so they complete out of order
+                        Thread.sleep((200 - batch) % 3);
+                        return batch;
+                    });
+                    maxInFlight = Math.max(maxInFlight, batch + 1 - results.size());
+                }
+                pipeline.finish();
+            } finally {
+                pipeline.cancel();
+            }
+
+            List<Integer> expected = new ArrayList<>();
+            for (int i = 0; i < 200; i++) {
+                expected.add(i);
+            }
+            assertThat(results, equalTo(expected));
+            assertThat(maxInFlight, equalTo(2 * pool.getParallelism()));
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    public void checkedExceptionOfABatchIsRethrown() throws InterruptedException {
+        ForkJoinPool pool = new ForkJoinPool(2);
+        CountDownLatch release = new CountDownLatch(1);
+        try {
+            BatchPipeline<Integer> pipeline = new BatchPipeline<>(pool, "testing", result -> {
+            });
+            IOException e = assertThrows(IOException.class, () -> {
+                try {
+                    pipeline.submit(() -> {
+                        throw new IOException("broken batch");
+                    });
+                    pipeline.submit(() -> {
+                        release.await();
+                        return 1;
+                    });
+                    pipeline.finish();
+                } finally {
+                    pipeline.cancel();
+                }
+            });
+            assertThat(e.getMessage(), equalTo("broken batch"));
+        } finally {
+            release.countDown();
+            pool.shutdown();
+            assertTrue(pool.awaitTermination(10, TimeUnit.SECONDS));
+        }
+    }
+}
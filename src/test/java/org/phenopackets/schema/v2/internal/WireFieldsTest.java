@@ -0,0 +1,53 @@
+package org.phenopackets.schema.v2.internal;
+
+import com.google.protobuf.ByteString;
+import com.google.protobuf.CodedInputStream;
+import com.google.protobuf.CodedOutputStream;
+import com.google.protobuf.UnknownFieldSet;
+import org.junit.jupiter.api.Test;
+import org.phenopackets.schema.v2.examples.TestExamples;
+
+import java.io.IOException;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+public class WireFieldsTest {
+
+    private static ByteString copyAll(ByteString bytes) throws IOException {
+        CodedInputStream input = bytes.newCodedInput();
+        ByteString.Output copy = ByteString.newOutput();
+        CodedOutputStream output = CodedOutputStream.newInstance(copy);
+        int tag;
+        while ((tag = input.readTag()) != 0) {
+            WireFields.copyField(tag, input, output);
+        }
+        output.flush();
+        return copy.toByteString();
+    }
+
+    @Test
+    public void copiesEveryWireType() throws IOException {
+        UnknownFieldSet group = UnknownFieldSet.newBuilder()
+                .addField(1, UnknownFieldSet.Field.newBuilder().addVarint(-1).build())
+                .addField(2, UnknownFieldSet.Field.newBuilder().addLengthDelimited(ByteString.copyFromUtf8("nested")).build())
+                .build();
+        ByteString bytes = UnknownFieldSet.newBuilder()
+                .addField(1, UnknownFieldSet.Field.newBuilder().addVarint(150).addVarint(Long.MIN_VALUE).build())
+                .addField(2, UnknownFieldSet.Field.newBuilder().addFixed32(0xdeadbeef).build())
+                .addField(3, UnknownFieldSet.Field.newBuilder().addFixed64(-2L).build())
+                .addField(4, UnknownFieldSet.Field.newBuilder().addLengthDelimited(ByteString.copyFromUtf8("text")).build())
+                .addField(5, UnknownFieldSet.Field.newBuilder().addGroup(group).build())
+                .build()
+                .toByteString();
+
+        assertThat(copyAll(bytes), equalTo(bytes));
+    }
+
+    @Test
+    public void copiesPhenopacket() throws IOException {
+        ByteString bytes = TestExamples.rareDiseasePhenopacket().toByteString();
+
+        assertThat(copyAll(bytes), equalTo(bytes));
+    }
+}
@@ -0,0 +1,118 @@
+package org.phenopackets.schema.v2.io;
+
+import com.google.protobuf.ByteString;
+import com.google.protobuf.CodedOutputStream;
+import org.junit.jupiter.api.Test;
+import org.phenopackets.schema.v2.Cohort;
+import org.phenopackets.schema.v2.Family;
+import org.phenopackets.schema.v2.Phenopacket;
+import org.phenopackets.schema.v2.examples.TestExamples;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+public class CohortReaderTest {
+
+    static Cohort exampleCohort() {
+        Family family = TestExamples.rareDiseaseKindred1aFamily();
+        return Cohort.newBuilder()
+                .setId("example cohort")
+                .setDescription("All the example phenopackets")
+                .addMembers(TestExamples.rareDiseasePhenopacket())
+                .addMembers(TestExamples.cancerPhenopacket())
+                .addMembers(TestExamples.biosamplesPhenopacket())
+                .addMembers(TestExamples.severeCovidCaseWithCardiacComplications())
+                .addAllMembers(family.getRelativesList())
+                .addAllFiles(family.getFilesList())
+                .setMetaData(family.getMetaData())
+                .build();
+    }
+
+    @Test
+    public void readMembers() throws IOException {
+        Cohort original = exampleCohort();
+
+        List<Phenopacket> members = new ArrayList<>();
+        try (CohortReader reader = CohortReader.of(new ByteArrayInputStream(original.toByteArray()))) {
+            reader.forEach(members::add);
+            assertThat(reader.header(), equalTo(original.toBuilder().clearMembers().build()));
+        }
+        assertThat(members, equalTo(original.getMembersList()));
+    }
+
+    @Test
+    public void readMembersAsStream() {
+        Cohort original = exampleCohort();
+
+        List<String> ids;
+        try (Stream<Phenopacket> members = CohortReader.of(new ByteArrayInputStream(original.toByteArray())).members()) {
+            ids = members.map(Phenopacket::getId).collect(Collectors.toList());
+        }
+        List<String> expected = original.getMembersList().stream().map(Phenopacket::getId).collect(Collectors.toList());
+        assertThat(ids, equalTo(expected));
+    }
+
+    @Test
+    public void readHeaderSkipsMembers() throws IOException {
+        Cohort original = exampleCohort();
+        // put the header fields after the members
+        byte[] bytes = Cohort.newBuilder().addAllMembers(original.getMembersList()).build().toByteString()
+                .concat(original.toBuilder().clearMembers().build().toByteString())
+                .toByteArray();
+
+        try (CohortReader reader = CohortReader.of(new ByteArrayInputStream(bytes))) {
+            assertThat(reader.readHeader(), equalTo(original.toBuilder().clearMembers().build()));
+        }
+    }
+
+    @Test
+    public void readHeaderDoesNotDecodeMembers() throws IOException {
+        Cohort header = exampleCohort().toBuilder().clearMembers().build();
+        // a member which is not a valid phenopacket, as its only tag has field number 0
+        ByteString member = ByteString.copyFrom(new byte[]{0x02, 0x00});
+        byte[] bytes = header.toByteString()
+                .concat(memberField(member))
+                .toByteArray();
+
+        try (CohortReader reader = CohortReader.of(new ByteArrayInputStream(bytes))) {
+            assertThat(reader.readHeader(), equalTo(header));
+        }
+    }
+
+    private static ByteString memberField(ByteString member) throws IOException {
+        ByteString.Output output = ByteString.newOutput();
+        CodedOutputStream codedOutput = CodedOutputStream.newInstance(output);
+        codedOutput.writeBytes(Cohort.MEMBERS_FIELD_NUMBER, member);
+        codedOutput.flush();
+        return output.toByteString();
+    }
+
+    @Test
+    public void readHeaderFromJson() throws IOException {
+        Cohort original = exampleCohort();
+
+        try (CohortReader reader = CohortReader.ofJson(new StringReader(JsonMessageWriter.toJson(original)))) {
+            assertThat(reader.readHeader(), equalTo(original.toBuilder().clearMembers().build()));
+        }
+    }
+
+    @Test
+    public void readMembersFromJson() throws IOException {
+        Cohort original = exampleCohort();
+
+        List<Phenopacket> members = new ArrayList<>();
+        try (CohortReader reader = CohortReader.ofJson(new StringReader(JsonMessageWriter.toJson(original)))) {
+            reader.forEach(members::add);
+            assertThat(reader.header(), equalTo(original.toBuilder().clearMembers().build()));
+        }
+        assertThat(members, equalTo(original.getMembersList()));
+    }
+}
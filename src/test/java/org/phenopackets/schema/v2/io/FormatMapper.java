@@ -2,11 +2,9 @@ package org.phenopackets.schema.v2.io;
 
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
-import com.fasterxml.jackson.databind.node.JsonNodeFactory;
 import com.fasterxml.jackson.dataformat.yaml.YAMLMapper;
 import com.google.protobuf.Message;
 import com.google.protobuf.MessageOrBuilder;
-import com.google.protobuf.util.JsonFormat;
 
 import java.io.IOException;
 
@@ -19,15 +17,11 @@ public class FormatMapper {
     }
 
     public static String messageToYaml(Message message, String label) throws IOException {
-        String jsonString = JsonFormat.printer().print(message);
-        JsonNode jsonNodeTree = new ObjectMapper().readTree(jsonString);
-        JsonNode node = JsonNodeFactory.instance.objectNode().set(label, jsonNodeTree);
-        return new YAMLMapper().writeValueAsString(node);
+        return YamlMessageWriter.toYaml(message, label);
     }
 
     public static String messageToYaml(MessageOrBuilder messageOrBuilder) throws IOException {
-        String jsonString = JsonFormat.printer().print(messageOrBuilder);
-        return FormatMapper.jsonToYaml(jsonString);
+        return YamlMessageWriter.toYaml(messageOrBuilder);
     }
 
     // parse JSON to YAML
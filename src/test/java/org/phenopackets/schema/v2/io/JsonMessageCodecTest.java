@@ -0,0 +1,138 @@
+package org.phenopackets.schema.v2.io;
+
+import com.google.protobuf.InvalidProtocolBufferException;
+import com.google.protobuf.Message;
+import com.google.protobuf.Timestamp;
+import com.google.protobuf.util.JsonFormat;
+import org.junit.jupiter.api.Test;
+import org.phenopackets.schema.v2.Cohort;
+import org.phenopackets.schema.v2.Family;
+import org.phenopackets.schema.v2.Phenopacket;
+import org.phenopackets.schema.v2.core.*;
+import org.phenopackets.schema.v2.examples.TestExamples;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class JsonMessageCodecTest {
+
+    private static List<Message> examples() {
+        return List.of(
+                TestExamples.rareDiseasePhenopacket(),
+                TestExamples.cancerPhenopacket(),
+                TestExamples.biosamplesPhenopacket(),
+                TestExamples.severeCovidCaseWithCardiacComplications(),
+                TestExamples.rareDiseaseKindred1aFamily(),
+                TestExamples.rareDiseaseBethlemMyopathyFamily(),
+                CohortReaderTest.exampleCohort(),
+                edgeCases());
+    }
+
+    private static Phenopacket edgeCases() {
+        return Phenopacket.newBuilder()
+                .setId("quotes \" and \\ and <html> & 'x'='y' \t\n\u0001   café 🧬")
+                .setSubject(Individual.newBuilder()
+                        .setSex(Sex.FEMALE)
+                        .setVitalStatus(VitalStatus.newBuilder().setSurvivalTimeInDays(-1))
+                        .setDateOfBirth(Timestamp.newBuilder().setSeconds(-62135596800L).setNanos(1000)))
+                .addMeasurements(Measurement.newBuilder()
+                        .setValue(Value.newBuilder().setQuantity(Quantity.newBuilder().setValue(-0.0)
+                                .setReferenceRange(ReferenceRange.newBuilder().setLow(1.0E-10).setHigh(Double.NaN)))))
+                .addMeasurements(Measurement.newBuilder()
+                        .setTimeObserved(TimeElement.newBuilder().setTimestamp(Timestamp.newBuilder().setSeconds(1).setNanos(120_000_000))))
+                .addMedicalActions(MedicalAction.newBuilder()
+                        .setRadiationTherapy(RadiationTherapy.newBuilder().setDosage(Integer.MIN_VALUE).setFractions(3)))
+                .addMedicalActions(MedicalAction.newBuilder()
+                        .setTreatment(Treatment.newBuilder().setDrugTypeValue(42)))
+                .addFiles(File.newBuilder().setUri("file://data.vcf")
+                        .putIndividualToFileIdentifiers("b", "2")
+                        .putIndividualToFileIdentifiers("a", "1"))
+                .addFiles(File.newBuilder())
+                .build();
+    }
+
+    @Test
+    public void writerOutputIsIdenticalToJsonFormat() throws IOException {
+        for (Message message : examples()) {
+            assertThat(JsonMessageWriter.toJson(message), equalTo(JsonFormat.printer().print(message)));
+        }
+    }
+
+    @Test
+    public void writeToOutputStream() throws IOException {
+        Phenopacket phenopacket = edgeCases();
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        JsonMessageWriter.write(phenopacket, outputStream);
+        assertThat(outputStream.toString(StandardCharsets.UTF_8), equalTo(JsonFormat.printer().print(phenopacket)));
+    }
+
+    @Test
+    public void readerMatchesJsonFormatParser() throws IOException {
+        List<Message> messages = new ArrayList<>(examples());
+        // JsonFormat.parser() reads -0.0 through a BigDecimal and so as 0.0, whereas the reader keeps the sign
+        Phenopacket edgeCases = edgeCases();
+        messages.set(messages.size() - 1, edgeCases.toBuilder()
+                .setMeasurements(0, edgeCases.getMeasurements(0).toBuilder().setValue(Value.newBuilder().setQuantity(
+                        edgeCases.getMeasurements(0).getValue().getQuantity().toBuilder().setValue(0.0))))
+                .build());
+        for (Message message : messages) {
+            String json = JsonFormat.printer().print(message);
+            Message.Builder expected = message.newBuilderForType();
+            JsonFormat.parser().merge(json, expected);
+
+            Message.Builder builder = message.newBuilderForType();
+            JsonMessageReader.merge(json, builder);
+            assertThat(builder.build(), equalTo(expected.build()));
+        }
+    }
+
+    @Test
+    public void roundTrip() throws IOException {
+        for (Message message : examples()) {
+            Message.Builder builder = message.newBuilderForType();
+            JsonMessageReader.merge(JsonMessageWriter.toJson(message), builder);
+            assertThat(builder.build(), equalTo(message));
+        }
+    }
+
+    @Test
+    public void readJsonWithProtoFieldNames() throws IOException {
+        Family family = TestExamples.rareDiseaseKindred1aFamily();
+        String json = JsonFormat.printer().preservingProtoFieldNames().print(family);
+
+        Family.Builder builder = Family.newBuilder();
+        JsonMessageReader.merge(json, builder);
+        assertThat(builder.build(), equalTo(family));
+    }
+
+    @Test
+    public void readLenientValues() throws IOException {
+        String json = "{\"id\": \"x\", \"subject\": {\"sex\": 2, \"vitalStatus\": {\"survivalTimeInDays\": \"7\", \"status\": null}},"
+                + " \"metaData\": {\"created\": \"2021-05-14T10:35:00+01:00\"}}";
+
+        Phenopacket.Builder builder = Phenopacket.newBuilder();
+        JsonMessageReader.merge(json, builder);
+
+        Phenopacket expected = Phenopacket.newBuilder()
+                .setId("x")
+                .setSubject(Individual.newBuilder().setSex(Sex.MALE).setVitalStatus(VitalStatus.newBuilder().setSurvivalTimeInDays(7)))
+                .setMetaData(MetaData.newBuilder().setCreated(Timestamp.newBuilder().setSeconds(1620984900L)))
+                .build();
+        assertThat(builder.build(), equalTo(expected));
+    }
+
+    @Test
+    public void rejectsUnknownFieldsAndMalformedInput() {
+        assertThrows(InvalidProtocolBufferException.class, () -> JsonMessageReader.merge("{\"identifier\": \"x\"}", Phenopacket.newBuilder()));
+        assertThrows(InvalidProtocolBufferException.class, () -> JsonMessageReader.merge("{\"id\": \"x\",}", Phenopacket.newBuilder()));
+        assertThrows(InvalidProtocolBufferException.class, () -> JsonMessageReader.merge("{\"id\": \"x\"} {}", Phenopacket.newBuilder()));
+        assertThrows(InvalidProtocolBufferException.class, () -> JsonMessageReader.merge("{\"members\": [{\"id\": 1}]}", Cohort.newBuilder()));
+    }
+}
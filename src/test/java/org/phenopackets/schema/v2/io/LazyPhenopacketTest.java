@@ -0,0 +1,78 @@
+package org.phenopackets.schema.v2.io;
+
+import com.google.protobuf.ByteString;
+import com.google.protobuf.InvalidProtocolBufferException;
+import org.junit.jupiter.api.Test;
+import org.phenopackets.schema.v2.Phenopacket;
+import org.phenopackets.schema.v2.core.Individual;
+import org.phenopackets.schema.v2.examples.TestExamples;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class LazyPhenopacketTest {
+
+    @Test
+    public void fieldsMatchParsedPhenopacket() throws InvalidProtocolBufferException {
+        for (Phenopacket phenopacket : CohortReaderTest.exampleCohort().getMembersList()) {
+            LazyPhenopacket lazy = LazyPhenopacket.of(phenopacket.toByteArray());
+
+            assertThat(lazy.getId(), equalTo(phenopacket.getId()));
+            assertThat(lazy.hasSubject(), equalTo(phenopacket.hasSubject()));
+            assertThat(lazy.getSubject(), equalTo(phenopacket.getSubject()));
+            assertThat(lazy.getPhenotypicFeaturesList(), equalTo(phenopacket.getPhenotypicFeaturesList()));
+            assertThat(lazy.getMeasurementsList(), equalTo(phenopacket.getMeasurementsList()));
+            assertThat(lazy.getBiosamplesList(), equalTo(phenopacket.getBiosamplesList()));
+            assertThat(lazy.getInterpretationsList(), equalTo(phenopacket.getInterpretationsList()));
+            assertThat(lazy.getDiseasesList(), equalTo(phenopacket.getDiseasesList()));
+            assertThat(lazy.getMedicalActionsList(), equalTo(phenopacket.getMedicalActionsList()));
+            assertThat(lazy.getFilesList(), equalTo(phenopacket.getFilesList()));
+            assertThat(lazy.hasMetaData(), equalTo(phenopacket.hasMetaData()));
+            assertThat(lazy.getMetaData(), equalTo(phenopacket.getMetaData()));
+            assertThat(lazy.toPhenopacket(), equalTo(phenopacket));
+        }
+    }
+
+    @Test
+    public void decodedFieldsAreKept() throws InvalidProtocolBufferException {
+        LazyPhenopacket lazy = LazyPhenopacket.of(ByteBuffer.wrap(TestExamples.rareDiseasePhenopacket().toByteArray()));
+
+        assertThat(lazy.getSubject(), sameInstance(lazy.getSubject()));
+        assertThat(lazy.getPhenotypicFeaturesList(), sameInstance(lazy.getPhenotypicFeaturesList()));
+    }
+
+    @Test
+    public void repeatedSingularFieldsAreMerged() throws InvalidProtocolBufferException {
+        Phenopacket first = Phenopacket.newBuilder().setId("first").setSubject(Individual.newBuilder().setId("subject")).build();
+        Phenopacket second = Phenopacket.newBuilder().setId("second").setSubject(Individual.newBuilder().addAlternateIds("alt")).build();
+        ByteString bytes = first.toByteString().concat(second.toByteString());
+
+        LazyPhenopacket lazy = LazyPhenopacket.of(bytes);
+        Phenopacket parsed = Phenopacket.parseFrom(bytes);
+        assertThat(lazy.getId(), equalTo(parsed.getId()));
+        assertThat(lazy.getSubject(), equalTo(parsed.getSubject()));
+    }
+
+    @Test
+    public void missingFieldsAreEmpty() throws InvalidProtocolBufferException {
+        LazyPhenopacket lazy = LazyPhenopacket.of(new byte[0]);
+
+        assertThat(lazy.getId(), equalTo(""));
+        assertFalse(lazy.hasSubject());
+        assertThat(lazy.getSubject(), equalTo(Individual.getDefaultInstance()));
+        assertThat(lazy.getBiosamplesList().size(), equalTo(0));
+    }
+
+    @Test
+    public void rejectsTruncatedInput() {
+        byte[] bytes = TestExamples.rareDiseasePhenopacket().toByteArray();
+
+        assertThrows(InvalidProtocolBufferException.class, () -> LazyPhenopacket.of(Arrays.copyOf(bytes, bytes.length - 1)));
+    }
+}
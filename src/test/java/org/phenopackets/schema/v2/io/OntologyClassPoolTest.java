@@ -0,0 +1,147 @@
+package org.phenopackets.schema.v2.io;
+
+import com.google.protobuf.ByteString;
+import com.google.protobuf.CodedOutputStream;
+import com.google.protobuf.UnknownFieldSet;
+import org.junit.jupiter.api.Test;
+import org.phenopackets.schema.v2.Cohort;
+import org.phenopackets.schema.v2.Phenopacket;
+import org.phenopackets.schema.v2.core.Age;
+import org.phenopackets.schema.v2.core.Individual;
+import org.phenopackets.schema.v2.core.OntologyClass;
+import org.phenopackets.schema.v2.core.PhenotypicFeature;
+import org.phenopackets.schema.v2.core.TimeElement;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.not;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class OntologyClassPoolTest {
+
+    private static OntologyClass ontologyClass(String id, String label) {
+        return OntologyClass.newBuilder().setId(id).setLabel(label).build();
+    }
+
+    @Test
+    public void internReturnsCanonicalInstance() {
+        OntologyClassPool pool = new OntologyClassPool(100);
+        OntologyClass first = ontologyClass("HP:0001875", "Neutropenia");
+        OntologyClass second = ontologyClass("HP:0001875", "Neutropenia");
+
+        assertThat(pool.intern(first), sameInstance(first));
+        assertThat(pool.intern(second), sameInstance(first));
+        assertThat(pool.intern(ontologyClass("HP:0001875", "Low neutrophil count")), not(sameInstance(first)));
+        assertThat(pool.size(), equalTo(2));
+    }
+
+    @Test
+    public void internAllSharesTermsAcrossCohortMembers() throws IOException {
+        Cohort cohort = CohortReaderTest.exampleCohort();
+        OntologyClassPool pool = new OntologyClassPool(1_000);
+
+        List<Phenopacket> members = new ArrayList<>();
+        try (CohortReader reader = CohortReader.of(new ByteArrayInputStream(cohort.toByteArray())).internOntologyClasses(pool)) {
+            reader.forEach(members::add);
+        }
+
+        assertThat(members, equalTo(cohort.getMembersList()));
+        for (Phenopacket member : members) {
+            if (member.getSubject().hasTaxonomy()) {
+                assertThat(member.getSubject().getTaxonomy(), sameInstance(pool.intern(member.getSubject().getTaxonomy())));
+            }
+            for (PhenotypicFeature feature : member.getPhenotypicFeaturesList()) {
+                assertThat(feature.getType(), sameInstance(pool.intern(feature.getType())));
+            }
+        }
+    }
+
+    private static void assertTermsAreCanonical(OntologyClassPool pool, List<Phenopacket> members) {
+        for (Phenopacket member : members) {
+            for (PhenotypicFeature feature : member.getPhenotypicFeaturesList()) {
+                assertThat(feature.getType(), sameInstance(pool.intern(feature.getType())));
+            }
+        }
+    }
+
+    @Test
+    public void parallelAndJsonReadersInternWhileDecoding() throws IOException {
+        Cohort cohort = CohortReaderTest.exampleCohort();
+
+        OntologyClassPool pool = new OntologyClassPool(1_000);
+        Cohort parsed = new ParallelCohortParser().internOntologyClasses(pool).parse(cohort.toByteArray());
+        assertThat(parsed, equalTo(cohort));
+        assertTermsAreCanonical(pool, parsed.getMembersList());
+        // parsing again takes every term from the pool by its encoding
+        int size = pool.size();
+        assertTermsAreCanonical(pool, new ParallelCohortParser().internOntologyClasses(pool).parse(cohort.toByteArray()).getMembersList());
+        assertThat(pool.size(), equalTo(size));
+
+        OntologyClassPool jsonPool = new OntologyClassPool(1_000);
+        List<Phenopacket> members = new ArrayList<>();
+        try (CohortReader reader = CohortReader.ofJson(new StringReader(JsonMessageWriter.toJson(cohort))).internOntologyClasses(jsonPool)) {
+            reader.forEach(members::add);
+        }
+        assertThat(members, equalTo(cohort.getMembersList()));
+        assertTermsAreCanonical(jsonPool, members);
+    }
+
+    private static ByteString field(int number, ByteString value) throws IOException {
+        ByteString.Output output = ByteString.newOutput();
+        CodedOutputStream codedOutput = CodedOutputStream.newInstance(output);
+        codedOutput.writeBytes(number, value);
+        codedOutput.flush();
+        return output.toByteString();
+    }
+
+    @Test
+    public void decodingKeepsTheLastValueOfAOneof() throws IOException {
+        ByteString age = TimeElement.newBuilder().setAge(Age.newBuilder().setIso8601Duration("P3Y")).build().toByteString();
+        ByteString term = TimeElement.newBuilder().setOntologyClass(ontologyClass("HP:0003577", "Congenital onset")).build().toByteString();
+
+        // unknown fields are copied as they are, whatever their wire type
+        UnknownFieldSet.Field unknown = UnknownFieldSet.Field.newBuilder()
+                .addVarint(5)
+                .addFixed32(7)
+                .addFixed64(11)
+                .addLengthDelimited(ByteString.copyFromUtf8("unknown"))
+                .addGroup(UnknownFieldSet.newBuilder().addField(1, UnknownFieldSet.Field.newBuilder().addVarint(13).build()).build())
+                .build();
+        ByteString unknownFields = UnknownFieldSet.newBuilder().addField(99, unknown).build().toByteString();
+
+        // a time element holding both values, of which the last one read wins
+        for (ByteString timeElement : List.of(age.concat(unknownFields).concat(term), term.concat(age).concat(unknownFields))) {
+            ByteString subject = field(Individual.TIME_AT_LAST_ENCOUNTER_FIELD_NUMBER, timeElement);
+            byte[] cohort = field(Cohort.MEMBERS_FIELD_NUMBER, field(Phenopacket.SUBJECT_FIELD_NUMBER, subject)).toByteArray();
+
+            Cohort parsed = new ParallelCohortParser().internOntologyClasses(new OntologyClassPool(16)).parse(cohort);
+            assertThat(parsed, equalTo(Cohort.parseFrom(cohort)));
+        }
+    }
+
+    @Test
+    public void internAllReturnsOriginalWhenAlreadyCanonical() {
+        Cohort cohort = CohortReaderTest.exampleCohort();
+        OntologyClassPool pool = new OntologyClassPool(1_000);
+
+        Cohort interned = pool.internAll(cohort);
+        assertThat(interned, equalTo(cohort));
+        assertThat(pool.internAll(interned), sameInstance(interned));
+    }
+
+    @Test
+    public void evictsLeastRecentlyUsedTerms() {
+        OntologyClassPool pool = new OntologyClassPool(16);
+        for (int i = 0; i < 1_000; i++) {
+            pool.intern(ontologyClass(String.format("HP:%07d", i), "term " + i));
+        }
+        assertTrue(pool.size() <= 16);
+    }
+}
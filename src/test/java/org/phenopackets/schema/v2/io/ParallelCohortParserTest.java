@@ -0,0 +1,70 @@
+package org.phenopackets.schema.v2.io;
+
+import com.google.protobuf.InvalidProtocolBufferException;
+import org.junit.jupiter.api.Test;
+import org.phenopackets.schema.v2.Cohort;
+import org.phenopackets.schema.v2.Phenopacket;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class ParallelCohortParserTest {
+
+    private static Cohort largeCohort(int size) {
+        Cohort example = CohortReaderTest.exampleCohort();
+        Cohort.Builder cohort = example.toBuilder().clearMembers();
+        for (int i = 0; i < size; i++) {
+            Phenopacket member = example.getMembers(i % example.getMembersCount());
+            cohort.addMembers(member.toBuilder().setId(member.getId() + '-' + i));
+        }
+        return cohort.build();
+    }
+
+    @Test
+    public void parseExampleCohort() throws IOException {
+        Cohort cohort = CohortReaderTest.exampleCohort();
+
+        assertThat(new ParallelCohortParser().parse(cohort.toByteArray()), equalTo(cohort));
+    }
+
+    @Test
+    public void parseLargeCohortInOrder() throws IOException {
+        Cohort cohort = largeCohort(5_000);
+        ForkJoinPool forkJoinPool = new ForkJoinPool(4);
+        try {
+            ParallelCohortParser parser = new ParallelCohortParser(forkJoinPool);
+            assertThat(parser.parse(cohort.toByteArray()), equalTo(cohort));
+            assertThat(parser.parse(ByteBuffer.wrap(cohort.toByteArray())), equalTo(cohort));
+            assertThat(parser.parse(new ByteArrayInputStream(cohort.toByteArray())), equalTo(cohort));
+        } finally {
+            forkJoinPool.shutdown();
+        }
+    }
+
+    @Test
+    public void parseHeaderFieldsBetweenMembers() throws IOException {
+        Cohort cohort = CohortReaderTest.exampleCohort();
+        Cohort header = cohort.toBuilder().clearMembers().build();
+        byte[] bytes = Cohort.newBuilder().addMembers(cohort.getMembers(0)).build().toByteString()
+                .concat(header.toByteString())
+                .concat(Cohort.newBuilder().addAllMembers(cohort.getMembersList().subList(1, cohort.getMembersCount())).build().toByteString())
+                .toByteArray();
+
+        assertThat(new ParallelCohortParser().parse(bytes), equalTo(Cohort.parseFrom(bytes)));
+    }
+
+    @Test
+    public void rejectsTruncatedCohort() {
+        byte[] bytes = largeCohort(100).toByteArray();
+        byte[] truncated = Arrays.copyOf(bytes, bytes.length - 10);
+
+        assertThrows(InvalidProtocolBufferException.class, () -> new ParallelCohortParser().parse(truncated));
+    }
+}
@@ -0,0 +1,113 @@
+package org.phenopackets.schema.v2.io;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.phenopackets.schema.v2.Phenopacket;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class PhenopacketArchiveTest {
+
+    private static List<Phenopacket> phenopackets(int count) {
+        List<Phenopacket> examples = CohortReaderTest.exampleCohort().getMembersList();
+        List<Phenopacket> phenopackets = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            Phenopacket example = examples.get(i % examples.size());
+            phenopackets.add(example.toBuilder().setId(example.getId() + '-' + i).build());
+        }
+        return phenopackets;
+    }
+
+    private static Path writeArchive(Path directory, List<Phenopacket> phenopackets) throws IOException {
+        Path dataFile = directory.resolve("phenopackets.ppa");
+        try (PhenopacketArchiveWriter writer = PhenopacketArchiveWriter.create(dataFile)) {
+            writer.writeAll(phenopackets);
+            assertThat(writer.count(), equalTo(phenopackets.size()));
+        }
+        return dataFile;
+    }
+
+    @Test
+    public void lookUpById(@TempDir Path tempDir) throws IOException {
+        List<Phenopacket> phenopackets = phenopackets(1_000);
+        PhenopacketArchive archive = PhenopacketArchive.open(writeArchive(tempDir, phenopackets));
+
+        assertThat(archive.size(), equalTo(1_000));
+        for (Phenopacket phenopacket : phenopackets) {
+            assertThat(archive.get(phenopacket.getId()), equalTo(phenopacket));
+            assertThat(archive.getBytes(phenopacket.getId()), equalTo(phenopacket.toByteString()));
+            assertThat(archive.getLazy(phenopacket.getId()).getSubject(), equalTo(phenopacket.getSubject()));
+        }
+        assertFalse(archive.contains("no such id"));
+        assertThat(archive.get("no such id"), nullValue());
+    }
+
+    @Test
+    public void dataFileIsPhenopacketStream(@TempDir Path tempDir) throws IOException {
+        List<Phenopacket> phenopackets = phenopackets(10);
+        Path dataFile = writeArchive(tempDir, phenopackets);
+
+        List<Phenopacket> read = new ArrayList<>();
+        try (PhenopacketStreamReader reader = PhenopacketStreamReader.open(dataFile)) {
+            reader.forEach(read::add);
+        }
+        assertThat(read, equalTo(phenopackets));
+    }
+
+    @Test
+    public void duplicateIdReturnsFirstWritten(@TempDir Path tempDir) throws IOException {
+        List<Phenopacket> phenopackets = phenopackets(3);
+        Phenopacket first = phenopackets.get(0);
+        phenopackets.add(phenopackets.get(1).toBuilder().setId(first.getId()).build());
+
+        PhenopacketArchive archive = PhenopacketArchive.open(writeArchive(tempDir, phenopackets));
+        assertThat(archive.get(first.getId()), equalTo(first));
+        assertTrue(archive.contains(phenopackets.get(2).getId()));
+    }
+
+    @Test
+    public void entriesAreOrderedByHashThenWriteOrder() {
+        // hashes of both signs, some sharing their top bits and some equal
+        long[] hashes = {5L << 40 | 3, -1L, 5L << 40 | 1, Long.MIN_VALUE, 5L << 40 | 3, 0L, 5L << 40 | 2, Long.MAX_VALUE, -1L, 0L};
+        Integer[] expected = new Integer[hashes.length];
+        for (int i = 0; i < expected.length; i++) {
+            expected[i] = i;
+        }
+        Arrays.sort(expected, Comparator.comparingLong(i -> hashes[i]));
+
+        int[] order = PhenopacketArchiveWriter.hashOrder(hashes, hashes.length);
+        for (int i = 0; i < order.length; i++) {
+            assertThat(order[i], equalTo(expected[i]));
+        }
+    }
+
+    @Test
+    public void rejectsModifiedDataFile(@TempDir Path tempDir) throws IOException {
+        Path dataFile = writeArchive(tempDir, phenopackets(10));
+        Files.write(dataFile, new byte[]{0}, StandardOpenOption.APPEND);
+
+        assertThrows(IOException.class, () -> PhenopacketArchive.open(dataFile));
+    }
+
+    @Test
+    public void rejectsMissingIndex(@TempDir Path tempDir) throws IOException {
+        Path dataFile = writeArchive(tempDir, phenopackets(10));
+        Files.delete(PhenopacketArchive.indexFile(dataFile));
+
+        assertThrows(IOException.class, () -> PhenopacketArchive.open(dataFile));
+    }
+}
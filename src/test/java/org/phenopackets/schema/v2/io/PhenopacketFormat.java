@@ -31,8 +31,9 @@ public class PhenopacketFormat {
     }
 
     public static Phenopacket fromYaml(String yamlString) throws IOException {
-        String jsonString = FormatMapper.yamlToJson(yamlString);
-        return fromJson(jsonString);
+        Phenopacket.Builder phenoPacketBuilder = Phenopacket.newBuilder();
+        YamlMessageReader.merge(yamlString, phenoPacketBuilder);
+        return phenoPacketBuilder.build();
     }
 
 }
@@ -0,0 +1,66 @@
+package org.phenopackets.schema.v2.io;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.phenopackets.schema.v2.Phenopacket;
+import org.phenopackets.schema.v2.SchemaVersion;
+import org.phenopackets.schema.v2.examples.TestExamples;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class PhenopacketStreamTest {
+
+    @Test
+    public void writeThenRead(@TempDir Path tempDir) throws IOException {
+        List<Phenopacket> phenopackets = List.of(
+                TestExamples.rareDiseasePhenopacket(),
+                TestExamples.cancerPhenopacket(),
+                TestExamples.biosamplesPhenopacket());
+        Path path = tempDir.resolve("phenopackets.pps");
+
+        try (PhenopacketStreamWriter writer = PhenopacketStreamWriter.create(path)) {
+            writer.writeAll(phenopackets);
+            assertThat(writer.count(), equalTo(3L));
+        }
+
+        List<Phenopacket> read = new ArrayList<>();
+        try (PhenopacketStreamReader reader = PhenopacketStreamReader.open(path)) {
+            assertThat(reader.schemaVersion(), equalTo(SchemaVersion.v2_0));
+            reader.forEach(read::add);
+        }
+        assertThat(read, equalTo(phenopackets));
+    }
+
+    @Test
+    public void appendToExistingStream(@TempDir Path tempDir) throws IOException {
+        Path path = tempDir.resolve("phenopackets.pps");
+        try (PhenopacketStreamWriter writer = PhenopacketStreamWriter.append(path)) {
+            writer.write(TestExamples.rareDiseasePhenopacket());
+        }
+        try (PhenopacketStreamWriter writer = PhenopacketStreamWriter.append(path)) {
+            writer.write(TestExamples.severeCovidCaseWithCardiacComplications());
+        }
+
+        List<Phenopacket> read;
+        try (Stream<Phenopacket> phenopackets = PhenopacketStreamReader.open(path).phenopackets()) {
+            read = phenopackets.collect(Collectors.toList());
+        }
+        assertThat(read, equalTo(List.of(TestExamples.rareDiseasePhenopacket(), TestExamples.severeCovidCaseWithCardiacComplications())));
+    }
+
+    @Test
+    public void rejectsInputWithoutHeader() {
+        byte[] bytes = TestExamples.cancerPhenopacket().toByteArray();
+        assertThrows(IOException.class, () -> PhenopacketStreamReader.of(new ByteArrayInputStream(bytes)));
+    }
+}
@@ -0,0 +1,93 @@
+package org.phenopackets.schema.v2.io;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.dataformat.yaml.YAMLMapper;
+import com.google.protobuf.Message;
+import com.google.protobuf.util.JsonFormat;
+import org.junit.jupiter.api.Test;
+import org.phenopackets.schema.v2.Family;
+import org.phenopackets.schema.v2.Phenopacket;
+import org.phenopackets.schema.v2.examples.TestExamples;
+
+import java.io.IOException;
+import java.util.List;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+public class YamlMessageCodecTest {
+
+    private static List<Message> examples() {
+        return List.of(
+                TestExamples.rareDiseasePhenopacket(),
+                TestExamples.cancerPhenopacket(),
+                TestExamples.biosamplesPhenopacket(),
+                TestExamples.severeCovidCaseWithCardiacComplications(),
+                TestExamples.rareDiseaseKindred1aFamily(),
+                TestExamples.rareDiseaseBethlemMyopathyFamily(),
+                CohortReaderTest.exampleCohort());
+    }
+
+    @Test
+    public void writerOutputIsIdenticalToConvertedJson() throws IOException {
+        for (Message message : examples()) {
+            String viaJson = FormatMapper.jsonToYaml(JsonFormat.printer().print(message));
+            assertThat(YamlMessageWriter.toYaml(message), equalTo(viaJson));
+        }
+    }
+
+    @Test
+    public void labelledOutputIsIdenticalToConvertedJson() throws IOException {
+        Phenopacket phenopacket = TestExamples.cancerPhenopacket();
+        JsonNode jsonNode = new ObjectMapper().readTree(JsonFormat.printer().print(phenopacket));
+        String viaJson = new YAMLMapper().writeValueAsString(JsonNodeFactory.instance.objectNode().set("phenopacket", jsonNode));
+
+        assertThat(YamlMessageWriter.toYaml(phenopacket, "phenopacket"), equalTo(viaJson));
+    }
+
+    @Test
+    public void readerMatchesConvertedJson() throws IOException {
+        for (Message message : examples()) {
+            // YAML and the message it holds as converted by Jackson and JsonFormat, independently of the codec
+            String yaml = FormatMapper.jsonToYaml(JsonFormat.printer().print(message));
+            Message.Builder expected = message.newBuilderForType();
+            JsonFormat.parser().merge(FormatMapper.yamlToJson(yaml), expected);
+
+            Message.Builder builder = message.newBuilderForType();
+            YamlMessageReader.merge(yaml, builder);
+            assertThat(builder.build(), equalTo(expected.build()));
+        }
+    }
+
+    @Test
+    public void roundTrip() throws IOException {
+        for (Message message : examples()) {
+            Message.Builder builder = message.newBuilderForType();
+            YamlMessageReader.merge(YamlMessageWriter.toYaml(message), builder);
+            assertThat(builder.build(), equalTo(message));
+        }
+    }
+
+    @Test
+    public void readHandWrittenYaml() throws IOException {
+        String yaml = "id: 42\n" +
+                "proband:\n" +
+                "  id: proband\n" +
+                "  subject:\n" +
+                "    id: patient 1\n" +
+                "    sex: MALE\n" +
+                "consanguinousParents: true\n" +
+                "meta_data:\n" +
+                "  created: 2021-05-14T10:35:00Z\n" +
+                "  phenopacketSchemaVersion: 2.0\n";
+
+        Family.Builder builder = Family.newBuilder();
+        YamlMessageReader.merge(yaml, builder);
+
+        Family.Builder expected = Family.newBuilder();
+        JsonFormat.parser().merge(FormatMapper.yamlToJson(yaml), expected);
+        assertThat(builder.build(), equalTo(expected.build()));
+    }
+}
@@ -0,0 +1,103 @@
+package org.phenopackets.schema.v2.migration;
+
+import com.google.protobuf.CodedOutputStream;
+import org.junit.jupiter.api.Test;
+import org.phenopackets.schema.v1.core.Individual;
+import org.phenopackets.schema.v1.core.Variant;
+import org.phenopackets.schema.v2.Phenopacket;
+import org.phenopackets.schema.v2.io.PhenopacketStreamReader;
+import org.phenopackets.schema.v2.io.PhenopacketStreamWriter;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class PhenopacketMigratorTest {
+
+    private static org.phenopackets.schema.v1.Phenopacket v1Phenopacket(int index) {
+        return org.phenopackets.schema.v1.Phenopacket.newBuilder()
+                .setId("PPKT:" + index)
+                .setSubject(Individual.newBuilder().setId("patient-" + index))
+                .build();
+    }
+
+    private static byte[] encode(int count, int corrupt, int unconvertible) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        for (int i = 0; i < count; i++) {
+            if (i == corrupt) {
+                // a well-framed record holding a truncated string field
+                CodedOutputStream output = CodedOutputStream.newInstance(bytes);
+                output.writeUInt32NoTag(3);
+                output.writeRawBytes(new byte[]{0x0a, 0x10, 'x'});
+                output.flush();
+            } else if (i == unconvertible) {
+                v1Phenopacket(i).toBuilder().addVariants(Variant.getDefaultInstance()).build().writeDelimitedTo(bytes);
+            } else {
+                v1Phenopacket(i).writeDelimitedTo(bytes);
+            }
+        }
+        return bytes.toByteArray();
+    }
+
+    @Test
+    public void migratesInOrderAndReportsFailedRecords() throws IOException {
+        List<Phenopacket> converted = new ArrayList<>();
+        List<MigrationError> errors = new ArrayList<>();
+        PhenopacketMigrator migrator = new PhenopacketMigrator(new ForkJoinPool(4)).batchSize(7);
+
+        long failed = migrator.migrate(new ByteArrayInputStream(encode(1000, 123, 456)), converted::add, errors::add);
+
+        assertThat(failed, equalTo(2L));
+        assertThat(converted.size(), equalTo(998));
+        int expected = 0;
+        for (Phenopacket phenopacket : converted) {
+            if (expected == 123 || expected == 456) {
+                expected++;
+            }
+            assertThat(phenopacket.getId(), equalTo("PPKT:" + expected));
+            assertThat(phenopacket.getSubject().getId(), equalTo("patient-" + expected));
+            expected++;
+        }
+        assertThat(errors.get(0).index(), equalTo(123L));
+        assertThat(errors.get(0).id(), equalTo(""));
+        assertThat(errors.get(1).index(), equalTo(456L));
+        assertThat(errors.get(1).id(), equalTo("PPKT:456"));
+        assertThat(errors.get(1).message(), equalTo("Variant has no allele"));
+    }
+
+    @Test
+    public void migratesToAPhenopacketStream() throws IOException {
+        ByteArrayOutputStream stream = new ByteArrayOutputStream();
+        List<MigrationError> errors = new ArrayList<>();
+        try (PhenopacketStreamWriter writer = PhenopacketStreamWriter.of(stream)) {
+            new PhenopacketMigrator().migrate(new ByteArrayInputStream(encode(10, -1, -1)), writer, errors::add);
+        }
+
+        List<String> ids = new ArrayList<>();
+        try (PhenopacketStreamReader reader = PhenopacketStreamReader.of(new ByteArrayInputStream(stream.toByteArray()))) {
+            reader.forEach(phenopacket -> ids.add(phenopacket.getId()));
+        }
+        assertThat(ids.size(), equalTo(10));
+        assertThat(ids.get(9), equalTo("PPKT:9"));
+        assertThat(errors.size(), equalTo(0));
+    }
+
+    @Test
+    public void truncatedStreamIsRejected() throws IOException {
+        byte[] bytes = encode(20, -1, -1);
+        byte[] truncated = Arrays.copyOf(bytes, bytes.length - 3);
+
+        assertThrows(IOException.class, () -> new PhenopacketMigrator().migrate(new ByteArrayInputStream(truncated), phenopacket -> {
+        }, error -> {
+        }));
+        assertThrows(IllegalArgumentException.class, () -> new PhenopacketMigrator().batchSize(0));
+    }
+}
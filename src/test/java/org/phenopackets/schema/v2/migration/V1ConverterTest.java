@@ -0,0 +1,214 @@
+package org.phenopackets.schema.v2.migration;
+
+import org.ga4gh.vrsatile.v1.Expression;
+import org.ga4gh.vrsatile.v1.MoleculeContext;
+import org.ga4gh.vrsatile.v1.VariationDescriptor;
+import org.ga4gh.vrsatile.v1.VcfRecord;
+import org.junit.jupiter.api.Test;
+import org.phenopackets.schema.v1.core.Age;
+import org.phenopackets.schema.v1.core.Biosample;
+import org.phenopackets.schema.v1.core.Disease;
+import org.phenopackets.schema.v1.core.Gene;
+import org.phenopackets.schema.v1.core.HgvsAllele;
+import org.phenopackets.schema.v1.core.HtsFile;
+import org.phenopackets.schema.v1.core.Individual;
+import org.phenopackets.schema.v1.core.IscnAllele;
+import org.phenopackets.schema.v1.core.MetaData;
+import org.phenopackets.schema.v1.core.OntologyClass;
+import org.phenopackets.schema.v1.core.PhenotypicFeature;
+import org.phenopackets.schema.v1.core.SpdiAllele;
+import org.phenopackets.schema.v1.core.Variant;
+import org.phenopackets.schema.v1.core.VcfAllele;
+import org.phenopackets.schema.v1.examples.TestExamples;
+import org.phenopackets.schema.v2.Family;
+import org.phenopackets.schema.v2.Phenopacket;
+import org.phenopackets.schema.v2.core.File;
+import org.phenopackets.schema.v2.core.GenomicInterpretation;
+import org.phenopackets.schema.v2.core.Interpretation;
+import org.phenopackets.schema.v2.core.Sex;
+import org.phenopackets.schema.v2.core.TimeElement;
+
+import java.util.Map;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class V1ConverterTest {
+
+    private static final OntologyClass HETEROZYGOUS = OntologyClass.newBuilder().setId("GENO:0000135").setLabel("heterozygous").build();
+
+    private final V1Converter converter = new V1Converter();
+
+    private static org.phenopackets.schema.v1.Phenopacket.Builder phenopacket() {
+        return org.phenopackets.schema.v1.Phenopacket.newBuilder()
+                .setId("PPKT:1")
+                .setSubject(Individual.newBuilder()
+                        .setId("patient")
+                        .setSex(org.phenopackets.schema.v1.core.Sex.MALE)
+                        .setAgeAtCollection(Age.newBuilder().setAge("P3Y")))
+                .addDiseases(Disease.newBuilder()
+                        .setTerm(OntologyClass.newBuilder().setId("OMIM:164400").setLabel("Spinocerebellar ataxia 1"))
+                        .setAgeOfOnset(Age.newBuilder().setAge("P2Y"))
+                        .addTnmFinding(OntologyClass.newBuilder().setId("NCIT:C48766")))
+                .setMetaData(MetaData.newBuilder().setCreatedBy("curator").setPhenopacketSchemaVersion("1.0"));
+    }
+
+    @Test
+    public void convertsRenamedFields() {
+        Phenopacket converted = converter.convert(phenopacket()
+                .addPhenotypicFeatures(PhenotypicFeature.newBuilder()
+                        .setType(OntologyClass.newBuilder().setId("HP:0002090").setLabel("Pneumonia"))
+                        .setNegated(true)
+                        .setClassOfOnset(OntologyClass.newBuilder().setId("HP:0011463").setLabel("Childhood onset")))
+                .build());
+
+        assertThat(converted.getId(), equalTo("PPKT:1"));
+        assertThat(converted.getSubject().getSex(), equalTo(Sex.MALE));
+        assertThat(converted.getSubject().getTimeAtLastEncounter().getAge().getIso8601Duration(), equalTo("P3Y"));
+        assertThat(converted.getPhenotypicFeatures(0).getExcluded(), equalTo(true));
+        assertThat(converted.getPhenotypicFeatures(0).getOnset().getOntologyClass().getId(), equalTo("HP:0011463"));
+        assertThat(converted.getDiseases(0).getOnset().getAge().getIso8601Duration(), equalTo("P2Y"));
+        assertThat(converted.getDiseases(0).getClinicalTnmFinding(0).getId(), equalTo("NCIT:C48766"));
+        assertThat(converted.getMetaData().getCreatedBy(), equalTo("curator"));
+        assertThat(converted.getMetaData().getPhenopacketSchemaVersion(), equalTo("2.0"));
+        assertThat(converted.getInterpretationsCount(), equalTo(0));
+    }
+
+    @Test
+    public void genesAndVariantsBecomeAnInterpretation() {
+        Phenopacket converted = converter.convert(phenopacket()
+                .addGenes(Gene.newBuilder().setId("HGNC:10548").setSymbol("ATXN1").addAlternateIds("ensembl:ENSG00000124788"))
+                .addVariants(Variant.newBuilder()
+                        .setVcfAllele(VcfAllele.newBuilder()
+                                .setVcfVersion("VCFv4.2")
+                                .setGenomeAssembly("GRCh38")
+                                .setId("rs1")
+                                .setChr("6")
+                                .setPos(16327633)
+                                .setRef("C")
+                                .setAlt("T"))
+                        .setZygosity(HETEROZYGOUS))
+                .addBiosamples(Biosample.newBuilder()
+                        .setId("biosample")
+                        .addVariants(Variant.newBuilder()
+                                .setSpdiAllele(SpdiAllele.newBuilder()
+                                        .setId("spdi")
+                                        .setSeqId("NC_000006.12")
+                                        .setPosition(16327632)
+                                        .setDeletedSequence("C")
+                                        .setInsertedSequence("T"))))
+                .build());
+
+        assertThat(converted.getInterpretationsCount(), equalTo(1));
+        Interpretation interpretation = converted.getInterpretations(0);
+        assertThat(interpretation.getId(), equalTo("PPKT:1-interpretation"));
+        assertThat(interpretation.getDiagnosis().getDisease().getId(), equalTo("OMIM:164400"));
+        assertThat(interpretation.getDiagnosis().getGenomicInterpretationsCount(), equalTo(3));
+
+        GenomicInterpretation gene = interpretation.getDiagnosis().getGenomicInterpretations(0);
+        assertThat(gene.getSubjectOrBiosampleId(), equalTo("patient"));
+        assertThat(gene.getGene().getValueId(), equalTo("HGNC:10548"));
+        assertThat(gene.getGene().getSymbol(), equalTo("ATXN1"));
+
+        VariationDescriptor vcf = interpretation.getDiagnosis().getGenomicInterpretations(1).getVariantInterpretation().getVariationDescriptor();
+        assertThat(vcf.getId(), equalTo("rs1"));
+        assertThat(vcf.getAllelicState().getId(), equalTo("GENO:0000135"));
+        assertThat(vcf.getVcfRecord(), equalTo(VcfRecord.newBuilder()
+                .setGenomeAssembly("GRCh38")
+                .setChrom("6")
+                .setPos(16327633)
+                .setId("rs1")
+                .setRef("C")
+                .setAlt("T")
+                .build()));
+
+        assertThat(vcf.getMoleculeContext(), equalTo(MoleculeContext.genomic));
+
+        GenomicInterpretation spdi = interpretation.getDiagnosis().getGenomicInterpretations(2);
+        assertThat(spdi.getSubjectOrBiosampleId(), equalTo("biosample"));
+        assertThat(spdi.getVariantInterpretation().getVariationDescriptor().getExpressions(0),
+                equalTo(Expression.newBuilder().setSyntax("spdi").setValue("NC_000006.12:16327632:C:T").build()));
+        assertThat(spdi.getVariantInterpretation().getVariationDescriptor().getMoleculeContext(), equalTo(MoleculeContext.unspecified_molecule_context));
+    }
+
+    @Test
+    public void moleculeContextFollowsTheHgvsReferenceType() {
+        Map<String, MoleculeContext> expected = Map.of(
+                "NC_000006.12:g.16327633C>T", MoleculeContext.genomic,
+                "NC_012920.1:m.8993T>G", MoleculeContext.genomic,
+                "NM_000332.3:c.1A>G", MoleculeContext.transcript,
+                "NR_002196.1:n.601G>T", MoleculeContext.transcript,
+                "NM_000332.3:r.1a>g", MoleculeContext.transcript,
+                "NP_000323.2:p.Met1Val", MoleculeContext.protein,
+                "NC_000023.11(NM_004006.2):c.357+1G>A", MoleculeContext.transcript,
+                "not hgvs", MoleculeContext.unspecified_molecule_context);
+        org.phenopackets.schema.v1.Phenopacket.Builder phenopacket = phenopacket();
+        for (String hgvs : expected.keySet()) {
+            phenopacket.addVariants(Variant.newBuilder().setHgvsAllele(HgvsAllele.newBuilder().setId(hgvs).setHgvs(hgvs)));
+        }
+        phenopacket.addVariants(Variant.newBuilder().setIscnAllele(IscnAllele.newBuilder().setId("iscn").setIscn("t(8;9;11)(q12;p24;p12)")));
+
+        for (GenomicInterpretation call : converter.convert(phenopacket.build()).getInterpretations(0).getDiagnosis().getGenomicInterpretationsList()) {
+            VariationDescriptor descriptor = call.getVariantInterpretation().getVariationDescriptor();
+            assertThat(descriptor.getId(), descriptor.getMoleculeContext(),
+                    equalTo(expected.getOrDefault(descriptor.getId(), MoleculeContext.unspecified_molecule_context)));
+        }
+    }
+
+    @Test
+    public void htsFilesBecomeFilesWithAttributes() {
+        Phenopacket converted = converter.convert(phenopacket()
+                .addBiosamples(Biosample.newBuilder()
+                        .setId("biosample")
+                        .setIsControlSample(true)
+                        .setAgeOfIndividualAtCollection(Age.newBuilder().setAge("P1Y"))
+                        .addHtsFiles(HtsFile.newBuilder()
+                                .setUri("file://data/sample.bam")
+                                .setHtsFormat(HtsFile.HtsFormat.BAM)
+                                .setGenomeAssembly("GRCh38")
+                                .putIndividualToSampleIdentifiers("patient", "SAMPLE1")))
+                .addHtsFiles(HtsFile.newBuilder().setUri("file://data/notes.txt").setDescription("Notes"))
+                .build());
+
+        File bam = converted.getBiosamples(0).getFiles(0);
+        assertThat(bam.getUri(), equalTo("file://data/sample.bam"));
+        assertThat(bam.getFileAttributesMap(), equalTo(Map.of("fileFormat", "bam", "genomeAssembly", "GRCh38")));
+        assertThat(bam.getIndividualToFileIdentifiersMap(), equalTo(Map.of("patient", "SAMPLE1")));
+        assertThat(converted.getBiosamples(0).getMaterialSample().getId(), equalTo("EFO:0009654"));
+        assertThat(converted.getBiosamples(0).getTimeOfCollection(),
+                equalTo(TimeElement.newBuilder().setAge(org.phenopackets.schema.v2.core.Age.newBuilder().setIso8601Duration("P1Y")).build()));
+        assertThat(converted.getFiles(0).getFileAttributesMap(), equalTo(Map.of("description", "Notes")));
+    }
+
+    @Test
+    public void convertsTheExamples() {
+        Family family = converter.convert(TestExamples.rareDiseaseFamily());
+
+        assertThat(family.getId(), equalTo(TestExamples.rareDiseaseFamily().getId()));
+        assertThat(family.getRelativesCount(), equalTo(TestExamples.rareDiseaseFamily().getRelativesCount()));
+        assertThat(family.getPedigree().getPersonsCount(), equalTo(TestExamples.rareDiseaseFamily().getPedigree().getPersonsCount()));
+        VariationDescriptor hgvs = family.getProband().getInterpretations(0).getDiagnosis().getGenomicInterpretations(0)
+                .getVariantInterpretation().getVariationDescriptor();
+        assertThat(hgvs.getExpressions(0), equalTo(Expression.newBuilder().setSyntax("hgvs").setValue("NM_001361.4:c.403C>T").build()));
+        assertThat(family.getProband().getFiles(0).getFileAttributesMap().get("fileFormat"), equalTo("vcf"));
+
+        for (org.phenopackets.schema.v1.Phenopacket example : new org.phenopackets.schema.v1.Phenopacket[]{
+                TestExamples.cancerPhenopacket(), TestExamples.biosamplesPhenopacket()}) {
+            Phenopacket converted = converter.convert(example);
+            assertThat(converted.getBiosamplesCount(), equalTo(example.getBiosamplesCount()));
+            assertThat(converted.getPhenotypicFeaturesCount(), equalTo(example.getPhenotypicFeaturesCount()));
+            assertTrue(converted.getSerializedSize() > 0);
+        }
+    }
+
+    @Test
+    public void variantWithoutAlleleIsRejected() {
+        org.phenopackets.schema.v1.Phenopacket phenopacket = phenopacket()
+                .addVariants(Variant.newBuilder().setZygosity(HETEROZYGOUS))
+                .build();
+
+        assertThrows(IllegalArgumentException.class, () -> converter.convert(phenopacket));
+    }
+}
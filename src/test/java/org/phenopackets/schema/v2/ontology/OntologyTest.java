@@ -0,0 +1,152 @@
+package org.phenopackets.schema.v2.ontology;
+
+import org.junit.jupiter.api.Test;
+import org.phenopackets.schema.v2.Phenopacket;
+import org.phenopackets.schema.v2.core.OntologyClass;
+import org.phenopackets.schema.v2.core.PhenotypicFeature;
+import org.phenopackets.schema.v2.index.TermIndex;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.List;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class OntologyTest {
+
+    public static final String HPO_FRAGMENT = String.join("\n",
+            "format-version: 1.2",
+            "ontology: hp",
+            "",
+            "[Term]",
+            "id: HP:0001250",
+            "name: Seizure",
+            "alt_id: HP:0002279",
+            "is_a: HP:0012638 ! Abnormality of nervous system physiology",
+            "",
+            "[Term]",
+            "id: HP:0000001",
+            "name: All",
+            "",
+            "[Term]",
+            "id: HP:0000118",
+            "name: Phenotypic abnormality",
+            "is_a: HP:0000001 ! All",
+            "",
+            "[Term]",
+            "id: HP:0000707",
+            "name: Abnormality of the nervous system",
+            "is_a: HP:0000118 ! Phenotypic abnormality",
+            "",
+            "[Term]",
+            "id: HP:0012638",
+            "name: Abnormality of nervous system physiology",
+            "is_a: HP:0000707 ! Abnormality of the nervous system",
+            "",
+            "[Term]",
+            "id: HP:0002011",
+            "name: Morphological central nervous system abnormality",
+            "is_a: HP:0000707 ! Abnormality of the nervous system",
+            "",
+            "[Term]",
+            "id: HP:0000152",
+            "name: Abnormality of head or neck",
+            "is_a: HP:0000118 ! Phenotypic abnormality",
+            "",
+            "[Term]",
+            "id: HP:0000234",
+            "name: Abnormality of the head",
+            "is_a: HP:0000152 ! Abnormality of head or neck",
+            "",
+            "[Term]",
+            "id: HP:0000252",
+            "name: Microcephaly",
+            "is_a: HP:0000234 ! Abnormality of the head",
+            "is_a: HP:0002011 {source=\"PMID:1\"} ! Morphological central nervous system abnormality",
+            "",
+            "[Term]",
+            "id: HP:0000005",
+            "name: obsolete seizures",
+            "is_obsolete: true",
+            "replaced_by: HP:0001250",
+            "",
+            "[Typedef]",
+            "id: part_of",
+            "name: part of",
+            "");
+
+    public static Ontology hpoFragment() throws IOException {
+        return Ontology.readObo(new StringReader(HPO_FRAGMENT));
+    }
+
+    @Test
+    public void ancestorsAreNumberedFirst() throws IOException {
+        Ontology ontology = hpoFragment();
+
+        assertThat(ontology.size(), equalTo(9));
+        for (int term = 0; term < ontology.size(); term++) {
+            for (int parent : ontology.parents(term)) {
+                assertTrue(parent < term);
+            }
+        }
+        assertThat(ontology.label(ontology.number("HP:0000252")), equalTo("Microcephaly"));
+    }
+
+    @Test
+    public void subsumption() throws IOException {
+        Ontology ontology = hpoFragment();
+
+        assertTrue(ontology.isA("HP:0001250", "HP:0000707"));
+        assertTrue(ontology.isA("HP:0001250", "HP:0001250"));
+        assertTrue(ontology.isA("HP:0000252", "HP:0000707"));
+        assertTrue(ontology.isA("HP:0000252", "HP:0000152"));
+        assertFalse(ontology.isA("HP:0000707", "HP:0001250"));
+        assertFalse(ontology.isA("HP:0001250", "HP:0000152"));
+        assertFalse(ontology.isA("HP:9999999", "HP:0000001"));
+        // alternative and obsolete ids resolve to the current term
+        assertTrue(ontology.isA("HP:0002279", "HP:0012638"));
+        assertThat(ontology.number("HP:0000005"), equalTo(ontology.number("HP:0001250")));
+        assertThat(ontology.ancestorCount(ontology.number("HP:0000252")), equalTo(7));
+
+        int nervousSystem = ontology.number("HP:0000707");
+        assertThat(ontology.descendants(nervousSystem).length, equalTo(5));
+    }
+
+    @Test
+    public void rejectsCycles() {
+        String cyclic = "[Term]\nid: A:1\nis_a: A:2\n\n[Term]\nid: A:2\nis_a: A:1\n";
+
+        assertThrows(IOException.class, () -> Ontology.readObo(new StringReader(cyclic)));
+    }
+
+    private static Phenopacket member(String id, String... featureIds) {
+        Phenopacket.Builder member = Phenopacket.newBuilder().setId(id);
+        for (String featureId : featureIds) {
+            member.addPhenotypicFeatures(PhenotypicFeature.newBuilder().setType(OntologyClass.newBuilder().setId(featureId)));
+        }
+        return member.build();
+    }
+
+    @Test
+    public void expandQueriesBySubsumption() throws IOException {
+        TermIndex index = TermIndex.of(List.of(
+                member("seizures", "HP:0001250"),
+                member("microcephaly", "HP:0000252"),
+                member("alt seizures", "HP:0002279"),
+                member("unknown", "HP:1234567"),
+                member("head", "HP:0000234")));
+        OntologyTermIndex ontologyIndex = new OntologyTermIndex(index, hpoFragment());
+
+        assertThat(index.memberIds(ontologyIndex.members(TermIndex.TermField.PHENOTYPIC_FEATURE, "HP:0000707")),
+                equalTo(List.of("seizures", "microcephaly", "alt seizures")));
+        assertThat(index.memberIds(ontologyIndex.members(TermIndex.TermField.PHENOTYPIC_FEATURE, "HP:0000152")),
+                equalTo(List.of("microcephaly", "head")));
+        assertThat(index.memberIds(ontologyIndex.members(TermIndex.TermField.PHENOTYPIC_FEATURE, "HP:1234567")),
+                equalTo(List.of("unknown")));
+        assertTrue(ontologyIndex.members(TermIndex.TermField.DISEASE, "HP:0000001").isEmpty());
+    }
+}
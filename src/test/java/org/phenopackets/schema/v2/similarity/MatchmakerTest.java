@@ -0,0 +1,133 @@
+package org.phenopackets.schema.v2.similarity;
+
+import org.ga4gh.vrsatile.v1.GeneDescriptor;
+import org.junit.jupiter.api.Test;
+import org.phenopackets.schema.v2.Phenopacket;
+import org.phenopackets.schema.v2.core.*;
+import org.phenopackets.schema.v2.ontology.OntologyTest;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class MatchmakerTest {
+
+    private static final String SEIZURE = "HP:0001250";
+    private static final String MICROCEPHALY = "HP:0000252";
+
+    private static Phenopacket member(String id, String gene, String... featureIds) {
+        Phenopacket.Builder member = Phenopacket.newBuilder().setId(id);
+        for (String featureId : featureIds) {
+            member.addPhenotypicFeatures(PhenotypicFeature.newBuilder().setType(OntologyClass.newBuilder().setId(featureId)));
+        }
+        if (gene != null) {
+            member.addInterpretations(Interpretation.newBuilder()
+                    .setDiagnosis(Diagnosis.newBuilder()
+                            .addGenomicInterpretations(GenomicInterpretation.newBuilder()
+                                    .setInterpretationStatus(GenomicInterpretation.InterpretationStatus.CANDIDATE)
+                                    .setGene(GeneDescriptor.newBuilder().setValueId("HGNC:" + gene.length()).setSymbol(gene)))));
+        }
+        return member.build();
+    }
+
+    private static List<Phenopacket> members() {
+        return List.of(
+                member("seizure", null, SEIZURE),
+                member("microcephaly", "ASPM", MICROCEPHALY),
+                member("seizure and scn1a", "SCN1A", SEIZURE),
+                member("scn1a", "SCN1A"),
+                member("nothing", null));
+    }
+
+    private static Matchmaker matchmaker(List<Phenopacket> members) throws IOException {
+        return Matchmaker.builder(PhenotypeSimilarity.of(OntologyTest.hpoFragment(), members))
+                .addAll(members)
+                .build();
+    }
+
+    private static List<String> memberIds(Matchmaker matchmaker, Matchmaker.Result result) {
+        return result.matches().stream()
+                .map(match -> matchmaker.member(match.member()).getId())
+                .collect(Collectors.toList());
+    }
+
+    @Test
+    public void indexGenesByIdAndSymbol() throws IOException {
+        Matchmaker matchmaker = matchmaker(members());
+
+        assertThat(Matchmaker.genes(members().get(2)), equalTo(Set.of("HGNC:5", "SCN1A")));
+        assertThat(matchmaker.membersWithGene("SCN1A").toArray(), equalTo(new int[]{2, 3}));
+        assertThat(matchmaker.membersWithGene("HGNC:5").toArray(), equalTo(new int[]{2, 3}));
+        assertTrue(matchmaker.membersWithGene("BRCA1").isEmpty());
+    }
+
+    @Test
+    public void combinePhenotypeAndGeneScores() throws IOException {
+        Matchmaker matchmaker = matchmaker(members());
+        PhenotypeProfile seizure = matchmaker.similarity().profile(List.of(SEIZURE));
+
+        Matchmaker.Result both = matchmaker.match(seizure, List.of("SCN1A"), 10);
+        assertTrue(both.isComplete());
+        assertThat(memberIds(matchmaker, both).subList(0, 3), equalTo(List.of("seizure and scn1a", "seizure", "scn1a")));
+        assertEquals(1.0, both.matches().get(0).score(), 1e-9);
+        assertEquals(0.5, both.matches().get(1).score(), 1e-9);
+        assertEquals(0.5, both.matches().get(2).score(), 1e-9);
+
+        Matchmaker.Result genesOnly = matchmaker.match(matchmaker.similarity().profile(List.of()), List.of("ASPM"), 10);
+        assertThat(memberIds(matchmaker, genesOnly), equalTo(List.of("microcephaly")));
+
+        Matchmaker.Result phenotypeOnly = matchmaker.match(seizure, List.of(), 1);
+        assertThat(memberIds(matchmaker, phenotypeOnly), equalTo(List.of("seizure")));
+    }
+
+    @Test
+    public void returnPartialResultsAfterTimeout() throws IOException {
+        List<Phenopacket> members = new ArrayList<>();
+        for (int i = 0; i < 10_000; i++) {
+            members.add(member("member-" + i, i % 2 == 0 ? "SCN1A" : null, i % 3 == 0 ? SEIZURE : MICROCEPHALY));
+        }
+        Matchmaker matchmaker = Matchmaker.builder(PhenotypeSimilarity.of(OntologyTest.hpoFragment(), members))
+                .addAll(members)
+                .timeout(Duration.ofNanos(1))
+                .build();
+
+        Matchmaker.Result result = matchmaker.match(matchmaker.similarity().profile(List.of(SEIZURE)), List.of("SCN1A"), 10);
+        assertFalse(result.isComplete());
+    }
+
+    @Test
+    public void answerConcurrentQueries() throws Exception {
+        Matchmaker matchmaker = Matchmaker.builder(PhenotypeSimilarity.of(OntologyTest.hpoFragment(), members()))
+                .addAll(members())
+                .maxConcurrentQueries(2)
+                .timeout(Duration.ofSeconds(30))
+                .build();
+        PhenotypeProfile seizure = matchmaker.similarity().profile(List.of(SEIZURE));
+        List<String> expected = memberIds(matchmaker, matchmaker.match(seizure, List.of("SCN1A"), 3));
+
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<Matchmaker.Result>> results = new ArrayList<>();
+            for (int i = 0; i < 100; i++) {
+                results.add(executor.submit(() -> matchmaker.match(seizure, List.of("SCN1A"), 3)));
+            }
+            for (Future<Matchmaker.Result> result : results) {
+                assertThat(memberIds(matchmaker, result.get()), equalTo(expected));
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+}
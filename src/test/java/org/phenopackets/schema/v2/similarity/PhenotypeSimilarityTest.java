@@ -0,0 +1,139 @@
+package org.phenopackets.schema.v2.similarity;
+
+import org.junit.jupiter.api.Test;
+import org.phenopackets.schema.v2.Cohort;
+import org.phenopackets.schema.v2.Phenopacket;
+import org.phenopackets.schema.v2.core.OntologyClass;
+import org.phenopackets.schema.v2.core.PhenotypicFeature;
+import org.phenopackets.schema.v2.ontology.Ontology;
+import org.phenopackets.schema.v2.ontology.OntologyTest;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class PhenotypeSimilarityTest {
+
+    private static final String SEIZURE = "HP:0001250";
+    private static final String MICROCEPHALY = "HP:0000252";
+    private static final String ABNORMALITY_OF_THE_HEAD = "HP:0000234";
+    private static final String CNS_MORPHOLOGY = "HP:0002011";
+    private static final String NERVOUS_SYSTEM = "HP:0000707";
+
+    private static Phenopacket member(String id, String... featureIds) {
+        Phenopacket.Builder member = Phenopacket.newBuilder().setId(id);
+        for (String featureId : featureIds) {
+            member.addPhenotypicFeatures(PhenotypicFeature.newBuilder().setType(OntologyClass.newBuilder().setId(featureId)));
+        }
+        return member.build();
+    }
+
+    private static Cohort cohort() {
+        return Cohort.newBuilder()
+                .addMembers(member("seizure", SEIZURE))
+                .addMembers(member("microcephaly", MICROCEPHALY))
+                .addMembers(member("head", ABNORMALITY_OF_THE_HEAD))
+                .addMembers(member("cns", CNS_MORPHOLOGY))
+                .addMembers(member("none"))
+                .addMembers(Phenopacket.newBuilder().setId("excluded seizure")
+                        .addPhenotypicFeatures(PhenotypicFeature.newBuilder()
+                                .setType(OntologyClass.newBuilder().setId(SEIZURE))
+                                .setExcluded(true)))
+                .build();
+    }
+
+    @Test
+    public void informationContentAndMica() throws IOException {
+        Ontology ontology = OntologyTest.hpoFragment();
+        PhenotypeSimilarity similarity = PhenotypeSimilarity.of(ontology, cohort().getMembersList());
+
+        int seizure = ontology.number(SEIZURE);
+        int microcephaly = ontology.number(MICROCEPHALY);
+        int nervousSystem = ontology.number(NERVOUS_SYSTEM);
+        assertEquals(Math.log(6), similarity.informationContent(seizure), 1e-9);
+        assertEquals(-Math.log(3.0 / 6), similarity.informationContent(nervousSystem), 1e-9);
+        // unannotated terms are as informative as the rarest annotated ones
+        assertEquals(Math.log(6), similarity.informationContent(ontology.number("HP:0012638")), 1e-9);
+
+        assertThat(similarity.mica(seizure, microcephaly), equalTo(nervousSystem));
+        assertThat(similarity.mica(microcephaly, seizure), equalTo(nervousSystem));
+        assertThat(similarity.mica(seizure, seizure), equalTo(seizure));
+        assertEquals(similarity.informationContent(nervousSystem), similarity.resnik(seizure, microcephaly), 1e-9);
+        // cached
+        assertEquals(similarity.informationContent(nervousSystem), similarity.resnik(microcephaly, seizure), 1e-9);
+    }
+
+    @Test
+    public void scoreProfiles() throws IOException {
+        Ontology ontology = OntologyTest.hpoFragment();
+        PhenotypeSimilarity similarity = PhenotypeSimilarity.of(ontology, cohort().getMembersList());
+        Phenopacket seizure = member("a", SEIZURE, "HP:1234567");
+        Phenopacket altSeizure = member("b", "HP:0002279");
+
+        assertThat(similarity.profile(seizure).terms().length, equalTo(1));
+        assertEquals(1.0, similarity.score(seizure, altSeizure, PhenotypeSimilarity.Method.JACCARD), 1e-9);
+        assertEquals(Math.log(6), similarity.score(seizure, altSeizure, PhenotypeSimilarity.Method.RESNIK), 1e-9);
+
+        Phenopacket microcephaly = member("c", MICROCEPHALY);
+        // {Seizure, nervous system physiology, nervous system, phenotypic abnormality, all} against the 7 ancestors
+        // of microcephaly share 3 terms
+        assertEquals(3.0 / 9, similarity.score(seizure, microcephaly, PhenotypeSimilarity.Method.JACCARD), 1e-9);
+        assertEquals(0, similarity.score(seizure, member("d"), PhenotypeSimilarity.Method.RESNIK), 1e-9);
+    }
+
+    @Test
+    public void topMatches() throws IOException {
+        CohortSimilarityIndex index = CohortSimilarityIndex.of(OntologyTest.hpoFragment(), cohort());
+
+        List<CohortSimilarityIndex.Match> matches = index.topK(member("q", SEIZURE), 10, PhenotypeSimilarity.Method.RESNIK);
+        assertThat(matches.stream().map(CohortSimilarityIndex.Match::memberId).collect(Collectors.toList()),
+                equalTo(List.of("seizure", "microcephaly", "cns", "head")));
+        assertEquals(Math.log(6), matches.get(0).score(), 1e-9);
+
+        List<CohortSimilarityIndex.Match> top2 = index.topK(member("q", SEIZURE), 2, PhenotypeSimilarity.Method.RESNIK);
+        assertThat(top2.stream().map(CohortSimilarityIndex.Match::member).collect(Collectors.toList()), equalTo(List.of(0, 1)));
+
+        assertTrue(index.topK(member("q"), 5, PhenotypeSimilarity.Method.JACCARD).isEmpty());
+        assertThrows(IllegalArgumentException.class, () -> index.topK(member("q", SEIZURE), 0, PhenotypeSimilarity.Method.JACCARD));
+    }
+
+    @Test
+    public void parallelTopMatchesAgreeWithPairwiseScores() throws IOException {
+        Ontology ontology = OntologyTest.hpoFragment();
+        Random random = new Random(42);
+        List<Phenopacket> members = new ArrayList<>();
+        for (int i = 0; i < 20_000; i++) {
+            String[] features = new String[1 + random.nextInt(3)];
+            for (int j = 0; j < features.length; j++) {
+                features[j] = ontology.id(random.nextInt(ontology.size()));
+            }
+            members.add(member("member-" + i, features));
+        }
+        PhenotypeSimilarity similarity = PhenotypeSimilarity.of(ontology, members);
+        CohortSimilarityIndex index = CohortSimilarityIndex.of(similarity, members);
+        Phenopacket query = member("q", MICROCEPHALY, SEIZURE);
+
+        for (PhenotypeSimilarity.Method method : PhenotypeSimilarity.Method.values()) {
+            List<Integer> expected = IntStream.range(0, members.size())
+                    .boxed()
+                    .sorted(Comparator.comparingDouble((Integer member) -> -similarity.score(query, members.get(member), method)))
+                    .limit(25)
+                    .collect(Collectors.toList());
+
+            List<Integer> actual = index.topK(query, 25, method).stream()
+                    .map(CohortSimilarityIndex.Match::member)
+                    .collect(Collectors.toList());
+            assertThat(actual, equalTo(expected));
+        }
+    }
+}
@@ -0,0 +1,139 @@
+package org.phenopackets.schema.v2.validation;
+
+import com.google.protobuf.InvalidProtocolBufferException;
+import org.junit.jupiter.api.Test;
+import org.phenopackets.schema.v2.Phenopacket;
+import org.phenopackets.schema.v2.core.*;
+import org.phenopackets.schema.v2.examples.TestExamples;
+
+import java.util.List;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.hasItem;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class IncrementalValidatorTest {
+
+    private final PhenopacketValidator validator = new PhenopacketValidator();
+    private final IncrementalValidator incrementalValidator = new IncrementalValidator();
+
+    private static OntologyClass ontologyClass(String id) {
+        return OntologyClass.newBuilder().setId(id).setLabel(id).build();
+    }
+
+    private static Phenopacket phenopacket() {
+        Phenopacket.Builder phenopacket = Phenopacket.newBuilder()
+                .setId("PPKT:1")
+                .setSubject(Individual.newBuilder().setId("patient").setTaxonomy(ontologyClass("NCBITaxon:9606")))
+                .addDiseases(Disease.newBuilder().setTerm(ontologyClass("OMIM:101600")))
+                .setMetaData(MetaData.newBuilder()
+                        .addResources(Resource.newBuilder().setId("hp").setNamespacePrefix("HP"))
+                        .addResources(Resource.newBuilder().setId("ncbitaxon").setNamespacePrefix("NCBITaxon")));
+        for (int i = 0; i < 20; i++) {
+            phenopacket.addPhenotypicFeatures(PhenotypicFeature.newBuilder()
+                    .setType(ontologyClass(String.format("HP:%07d", i)))
+                    .setOnset(TimeElement.newBuilder().setAge(Age.newBuilder().setIso8601Duration(i == 3 ? "3 years" : "P3Y"))));
+        }
+        return phenopacket.build();
+    }
+
+    private IncrementalValidator.Result validate(Phenopacket phenopacket) {
+        IncrementalValidator.Result result = incrementalValidator.validate(phenopacket);
+        assertThat(result.errors(), equalTo(validator.validate(phenopacket)));
+        return result;
+    }
+
+    @Test
+    public void validateEveryElementOfTheFirstVersion() {
+        IncrementalValidator.Result result = validate(phenopacket());
+
+        assertThat(result.revalidatedPaths().size(), equalTo(23));
+        assertThat(result.revalidatedPaths().get(0), equalTo("subject"));
+        assertThat(result.revalidatedPaths().get(22), equalTo("metaData"));
+        assertThat(result.errors(), equalTo(List.of(
+                new ValidationError("phenotypicFeatures[3].onset.age.iso8601duration", "'3 years' is not an ISO 8601 duration"),
+                new ValidationError("diseases[0].term.id", "prefix 'OMIM' is not the namespacePrefix of any metaData.resources"))));
+    }
+
+    @Test
+    public void revalidateOnlyChangedElements() {
+        Phenopacket original = phenopacket();
+        validate(original);
+
+        Phenopacket.Builder edited = original.toBuilder();
+        edited.getPhenotypicFeaturesBuilder(3).getOnsetBuilder().getAgeBuilder().setIso8601Duration("P3Y");
+        edited.getPhenotypicFeaturesBuilder(7).setType(ontologyClass("HPO:0000007"));
+        IncrementalValidator.Result result = validate(edited.build());
+
+        assertThat(result.revalidatedPaths(), equalTo(List.of("phenotypicFeatures[3]", "phenotypicFeatures[7]")));
+        assertThat(result.errors(), equalTo(List.of(
+                new ValidationError("phenotypicFeatures[7].type.id", "prefix 'HPO' is not the namespacePrefix of any metaData.resources"),
+                new ValidationError("diseases[0].term.id", "prefix 'OMIM' is not the namespacePrefix of any metaData.resources"))));
+    }
+
+    @Test
+    public void recheckPrefixesWhenTheMetaDataChanges() {
+        Phenopacket original = phenopacket();
+        validate(original);
+
+        Phenopacket.Builder updated = original.toBuilder();
+        updated.getMetaDataBuilder()
+                .addResources(Resource.newBuilder().setId("omim").setNamespacePrefix("OMIM"))
+                .addUpdates(Update.newBuilder().setUpdatedBy("curator").setComment("Added OMIM"));
+        IncrementalValidator.Result result = validate(updated.build());
+
+        assertThat(result.revalidatedPaths(), equalTo(List.of("metaData")));
+        assertThat(result.errors(), equalTo(List.of(
+                new ValidationError("phenotypicFeatures[3].onset.age.iso8601duration", "'3 years' is not an ISO 8601 duration"))));
+
+        updated.getMetaDataBuilder().removeResources(0);
+        result = validate(updated.build());
+        assertThat(result.revalidatedPaths(), equalTo(List.of("metaData")));
+        assertThat(result.errors(), hasItem(new ValidationError("phenotypicFeatures[0].type.id", "prefix 'HP' is not the namespacePrefix of any metaData.resources")));
+    }
+
+    @Test
+    public void reuseElementsWhichHaveMoved() {
+        Phenopacket original = phenopacket();
+        validate(original);
+
+        IncrementalValidator.Result result = validate(original.toBuilder().removePhenotypicFeatures(0).build());
+
+        assertTrue(result.revalidatedPaths().isEmpty());
+        assertThat(result.errors().get(0).path(), equalTo("phenotypicFeatures[2].onset.age.iso8601duration"));
+    }
+
+    @Test
+    public void reuseTheStateOfEqualVersions() throws InvalidProtocolBufferException {
+        Phenopacket original = phenopacket();
+        validate(original);
+
+        assertTrue(validate(original).revalidatedPaths().isEmpty());
+        assertTrue(validate(Phenopacket.parseFrom(original.toByteArray())).revalidatedPaths().isEmpty());
+
+        incrementalValidator.clear();
+        assertThat(validate(original).revalidatedPaths().size(), equalTo(23));
+    }
+
+    @Test
+    public void validateTheExamples() {
+        validate(TestExamples.rareDiseasePhenopacket());
+        validate(TestExamples.urothelialCarcinomaPhenopacket());
+        validate(TestExamples.severeCovidCaseWithCardiacComplications());
+        validate(TestExamples.rareDiseaseBethlemMyopathyFamily().getProband());
+    }
+
+    @Test
+    public void evictTheLeastRecentlyValidated() {
+        IncrementalValidator small = new IncrementalValidator(1);
+        Phenopacket first = phenopacket();
+        Phenopacket second = first.toBuilder().setId("PPKT:2").build();
+        small.validate(first);
+        small.validate(second);
+
+        assertThat(small.validate(first).revalidatedPaths().size(), equalTo(23));
+        assertThrows(IllegalArgumentException.class, () -> new IncrementalValidator(0));
+    }
+}
@@ -0,0 +1,182 @@
+package org.phenopackets.schema.v2.validation;
+
+import com.google.protobuf.ByteString;
+import com.google.protobuf.CodedOutputStream;
+import com.google.protobuf.InvalidProtocolBufferException;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Test;
+import org.phenopackets.schema.v2.Cohort;
+import org.phenopackets.schema.v2.Family;
+import org.phenopackets.schema.v2.Phenopacket;
+import org.phenopackets.schema.v2.core.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class ParallelValidatorTest {
+
+    private static final ForkJoinPool POOL = new ForkJoinPool(4);
+
+    private final PhenopacketValidator validator = new PhenopacketValidator();
+    private final ParallelValidator parallelValidator = new ParallelValidator(POOL).batchSize(16);
+
+    @AfterAll
+    public static void shutdown() {
+        POOL.shutdown();
+    }
+
+    private static OntologyClass ontologyClass(String id) {
+        return OntologyClass.newBuilder().setId(id).setLabel(id).build();
+    }
+
+    private static Resource resource(String prefix) {
+        return Resource.newBuilder().setId(prefix.toLowerCase()).setNamespacePrefix(prefix).build();
+    }
+
+    /**
+     * Every seventh member has no id, every eleventh a malformed CURIE and every thirteenth a term with a prefix which
+     * is only declared in the meta data of some of the members.
+     */
+    private static Cohort cohort(int members) {
+        Cohort.Builder cohort = Cohort.newBuilder()
+                .setId("cohort")
+                .setMetaData(MetaData.newBuilder().addResources(resource("HP")));
+        for (int i = 0; i < members; i++) {
+            Phenopacket.Builder member = Phenopacket.newBuilder()
+                    .setId(i % 7 == 0 ? "" : "member-" + i)
+                    .addPhenotypicFeatures(PhenotypicFeature.newBuilder().setType(ontologyClass(i % 11 == 0 ? "HP_0001250" : "HP:0001250")));
+            if (i % 13 == 0) {
+                member.addDiseases(Disease.newBuilder().setTerm(ontologyClass("OMIM:" + (100_000 + i))));
+            }
+            if (i % 26 == 0) {
+                member.setMetaData(MetaData.newBuilder().addResources(resource("OMIM")));
+            }
+            cohort.addMembers(member);
+        }
+        return cohort.build();
+    }
+
+    private static List<ValidationError> errors(List<ValidationReport> reports) {
+        List<ValidationError> errors = new ArrayList<>();
+        for (ValidationReport report : reports) {
+            errors.addAll(report.errors());
+        }
+        return errors;
+    }
+
+    @Test
+    public void reportTheErrorsOfTheSequentialValidator() throws IOException {
+        Cohort cohort = cohort(1000);
+        List<ValidationReport> reports = new ArrayList<>();
+
+        long errors = parallelValidator.validateCohort(cohort, reports::add);
+
+        List<ValidationError> expected = validator.validate(cohort);
+        assertThat(errors(reports), equalTo(expected));
+        assertThat(errors, equalTo((long) expected.size()));
+        // only the invalid members are reported, in order, followed by the cohort itself
+        int previous = -1;
+        for (ValidationReport report : reports.subList(0, reports.size() - 1)) {
+            int index = report.index();
+            assertTrue(index > previous);
+            assertTrue(index % 7 == 0 || index % 11 == 0);
+            assertThat(report.id(), equalTo(index % 7 == 0 ? "" : "member-" + index));
+            previous = index;
+        }
+        ValidationReport last = reports.get(reports.size() - 1);
+        assertThat(last.index(), equalTo(-1));
+        assertThat(last.id(), equalTo("cohort"));
+        assertThat(last.errors().get(0), equalTo(new ValidationError("members[13].diseases[0].term.id", "prefix 'OMIM' is not the namespacePrefix of any metaData.resources")));
+    }
+
+    @Test
+    public void validateEncodedCohorts() throws IOException {
+        Cohort cohort = cohort(100);
+        List<ValidationReport> fromBytes = new ArrayList<>();
+        List<ValidationReport> fromStream = new ArrayList<>();
+
+        parallelValidator.validateCohort(cohort.toByteString(), fromBytes::add);
+        parallelValidator.validateCohort(cohort.toByteString().newInput(), fromStream::add);
+
+        List<ValidationError> expected = validator.validate(cohort);
+        assertThat(errors(fromBytes), equalTo(expected));
+        assertThat(errors(fromStream), equalTo(expected));
+    }
+
+    @Test
+    public void validCohortHasNoReports() {
+        Cohort cohort = Cohort.newBuilder()
+                .setId("cohort")
+                .addMembers(Phenopacket.newBuilder().setId("member").addPhenotypicFeatures(PhenotypicFeature.newBuilder().setType(ontologyClass("HP:0001250"))))
+                .setMetaData(MetaData.newBuilder().addResources(resource("HP")))
+                .build();
+        List<ValidationReport> reports = new ArrayList<>();
+
+        assertThat(parallelValidator.validateCohort(cohort, reports::add), equalTo(0L));
+        assertTrue(reports.isEmpty());
+    }
+
+    @Test
+    public void crossCheckFamilies() {
+        List<Family> families = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            Pedigree.Builder pedigree = Pedigree.newBuilder()
+                    .addPersons(Pedigree.Person.newBuilder().setIndividualId("proband").setPaternalId("father").setMaternalId("mother"))
+                    .addPersons(Pedigree.Person.newBuilder().setIndividualId("father"))
+                    .addPersons(Pedigree.Person.newBuilder().setIndividualId("mother"));
+            if (i % 5 == 0) {
+                pedigree.addPersons(Pedigree.Person.newBuilder().setIndividualId("father"));
+            }
+            families.add(Family.newBuilder()
+                    .setId("family-" + i)
+                    .setProband(Phenopacket.newBuilder().setId("proband").setSubject(Individual.newBuilder().setId("proband")))
+                    .addRelatives(Phenopacket.newBuilder().setId("father").setSubject(Individual.newBuilder().setId("father")))
+                    .addRelatives(Phenopacket.newBuilder().setId("mother").setSubject(Individual.newBuilder().setId(i % 10 == 0 ? "father" : "mother")))
+                    .setPedigree(pedigree)
+                    .setMetaData(MetaData.getDefaultInstance())
+                    .build());
+        }
+        List<ValidationReport> reports = new ArrayList<>();
+
+        parallelValidator.validateFamilies(families, reports::add);
+
+        assertThat(reports.size(), equalTo(10));
+        assertThat(reports.get(0).id(), equalTo("family-0"));
+        assertThat(reports.get(0).errors(), equalTo(List.of(
+                new ValidationError("pedigree.persons[3].individualId", "'father' is already a person of the pedigree"),
+                new ValidationError("relatives[1].subject.id", "'father' is already the subject of the proband or another relative"))));
+        assertThat(reports.get(1).index(), equalTo(5));
+        assertThat(reports.get(1).errors(), equalTo(List.of(
+                new ValidationError("pedigree.persons[3].individualId", "'father' is already a person of the pedigree"))));
+        for (ValidationReport report : reports) {
+            assertThat(report.errors(), equalTo(validator.validate(families.get(report.index()))));
+        }
+    }
+
+    @Test
+    public void rejectMalformedMembers() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        CodedOutputStream output = CodedOutputStream.newInstance(bytes);
+        output.writeMessage(Cohort.MEMBERS_FIELD_NUMBER, Phenopacket.newBuilder().setId("valid").build());
+        // a member holding a truncated string
+        output.writeByteArray(Cohort.MEMBERS_FIELD_NUMBER, new byte[]{(Phenopacket.ID_FIELD_NUMBER << 3) | 2, 10, 'x'});
+        output.flush();
+
+        InvalidProtocolBufferException e = assertThrows(InvalidProtocolBufferException.class,
+                () -> parallelValidator.validateCohort(ByteString.copyFrom(bytes.toByteArray()), report -> {}));
+        assertTrue(e.getMessage().startsWith("Invalid Cohort member 1"), e.getMessage());
+    }
+
+    @Test
+    public void rejectNonPositiveBatchSize() {
+        assertThrows(IllegalArgumentException.class, () -> new ParallelValidator().batchSize(0));
+    }
+}
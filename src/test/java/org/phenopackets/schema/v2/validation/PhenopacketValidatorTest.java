@@ -0,0 +1,168 @@
+package org.phenopackets.schema.v2.validation;
+
+import com.google.protobuf.ByteString;
+import com.google.protobuf.InvalidProtocolBufferException;
+import com.google.protobuf.Timestamp;
+import org.junit.jupiter.api.Test;
+import org.phenopackets.schema.v2.Cohort;
+import org.phenopackets.schema.v2.Family;
+import org.phenopackets.schema.v2.Phenopacket;
+import org.phenopackets.schema.v2.core.*;
+import org.phenopackets.schema.v2.examples.TestExamples;
+
+import java.util.List;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.hasItem;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class PhenopacketValidatorTest {
+
+    private final PhenopacketValidator validator = new PhenopacketValidator();
+
+    private static OntologyClass ontologyClass(String id) {
+        return OntologyClass.newBuilder().setId(id).setLabel(id).build();
+    }
+
+    private static MetaData metaData(String... prefixes) {
+        MetaData.Builder metaData = MetaData.newBuilder().setCreatedBy("test");
+        for (String prefix : prefixes) {
+            metaData.addResources(Resource.newBuilder().setId(prefix.toLowerCase()).setNamespacePrefix(prefix));
+        }
+        return metaData.build();
+    }
+
+    private static Phenopacket validPhenopacket() {
+        return Phenopacket.newBuilder()
+                .setId("PPKT:1")
+                .setSubject(Individual.newBuilder()
+                        .setId("patient 1")
+                        .setTaxonomy(ontologyClass("NCBITaxon:9606"))
+                        .setTimeAtLastEncounter(TimeElement.newBuilder().setAge(Age.newBuilder().setIso8601Duration("P3Y6M"))))
+                .addPhenotypicFeatures(PhenotypicFeature.newBuilder()
+                        .setType(ontologyClass("HP:0001250"))
+                        .setOnset(TimeElement.newBuilder().setGestationalAge(GestationalAge.newBuilder().setWeeks(33).setDays(2))))
+                .addPhenotypicFeatures(PhenotypicFeature.newBuilder()
+                        .setType(ontologyClass("HP:0000252"))
+                        .setOnset(TimeElement.newBuilder().setInterval(TimeInterval.newBuilder()
+                                .setStart(Timestamp.newBuilder().setSeconds(1_000))
+                                .setEnd(Timestamp.newBuilder().setSeconds(1_000).setNanos(1)))))
+                .setMetaData(metaData("HP", "NCBITaxon"))
+                .build();
+    }
+
+    @Test
+    public void validPhenopacketHasNoErrors() throws InvalidProtocolBufferException {
+        assertTrue(validator.validate(validPhenopacket()).isEmpty());
+        assertTrue(validator.validatePhenopacket(validPhenopacket().toByteString()).isEmpty());
+    }
+
+    @Test
+    public void collectAllErrors() throws InvalidProtocolBufferException {
+        Phenopacket.Builder phenopacket = validPhenopacket().toBuilder().clearId();
+        phenopacket.getSubjectBuilder().getTimeAtLastEncounterBuilder().getAgeBuilder().setIso8601Duration("3 years");
+        phenopacket.getPhenotypicFeaturesBuilder(0).setType(ontologyClass("HP_0001250"))
+                .getOnsetBuilder().getGestationalAgeBuilder().setDays(7);
+        phenopacket.getPhenotypicFeaturesBuilder(1).getOnsetBuilder().getIntervalBuilder().getEndBuilder().setSeconds(999);
+        phenopacket.addDiseases(Disease.newBuilder().setTerm(ontologyClass("OMIM:607208")))
+                .addDiseases(Disease.newBuilder().setTerm(ontologyClass("OMIM:100100")))
+                .addBiosamples(Biosample.newBuilder().setId("sample").setSampledTissue(OntologyClass.newBuilder().setLabel("no id")));
+
+        List<ValidationError> expected = List.of(
+                new ValidationError("id", "id is required"),
+                new ValidationError("subject.timeAtLastEncounter.age.iso8601duration", "'3 years' is not an ISO 8601 duration"),
+                new ValidationError("phenotypicFeatures[0].type.id", "'HP_0001250' is not a CURIE"),
+                new ValidationError("phenotypicFeatures[0].onset.gestationalAge.days", "days must be from 0 to 6 but was 7"),
+                new ValidationError("phenotypicFeatures[1].onset.interval", "start is after end"),
+                new ValidationError("biosamples[0].sampledTissue.id", "id is required"),
+                new ValidationError("diseases[0].term.id", "prefix 'OMIM' is not the namespacePrefix of any metaData.resources"));
+        List<ValidationError> errors = validator.validate(phenopacket.build());
+        assertThat(errors.size(), equalTo(expected.size()));
+        for (ValidationError error : expected) {
+            assertThat(errors, hasItem(error));
+        }
+        assertThat(validator.validatePhenopacket(phenopacket.build().toByteString()), equalTo(errors));
+    }
+
+    @Test
+    public void requireMetaDataOfTheOutermostMessage() {
+        Phenopacket member = validPhenopacket().toBuilder().clearMetaData().build();
+
+        assertThat(validator.validate(member), equalTo(List.of(
+                new ValidationError("metaData", "metaData is required"),
+                new ValidationError("subject.taxonomy.id", "prefix 'NCBITaxon' is not the namespacePrefix of any metaData.resources"),
+                new ValidationError("phenotypicFeatures[0].type.id", "prefix 'HP' is not the namespacePrefix of any metaData.resources"))));
+
+        // members may rely on the resources of their cohort
+        Cohort cohort = Cohort.newBuilder()
+                .setId("cohort")
+                .addMembers(member)
+                .addMembers(validPhenopacket())
+                .setMetaData(metaData("HP", "NCBITaxon"))
+                .build();
+        assertTrue(validator.validate(cohort).isEmpty());
+
+        Cohort missingPrefix = cohort.toBuilder().setMetaData(metaData("HP")).build();
+        assertThat(validator.validate(missingPrefix), equalTo(List.of(
+                new ValidationError("members[0].subject.taxonomy.id", "prefix 'NCBITaxon' is not the namespacePrefix of any metaData.resources"))));
+    }
+
+    @Test
+    public void resolvePedigreeIds() {
+        Phenopacket proband = validPhenopacket();
+        Phenopacket mother = validPhenopacket().toBuilder()
+                .setId("PPKT:2")
+                .setSubject(Individual.newBuilder().setId("mother"))
+                .build();
+        Pedigree pedigree = Pedigree.newBuilder()
+                .addPersons(Pedigree.Person.newBuilder().setIndividualId("patient 1").setMaternalId("mother").setPaternalId("0"))
+                .addPersons(Pedigree.Person.newBuilder().setIndividualId("mother"))
+                .build();
+        Family family = Family.newBuilder()
+                .setId("family")
+                .setProband(proband)
+                .addRelatives(mother)
+                .setPedigree(pedigree)
+                .setMetaData(metaData("HP", "NCBITaxon"))
+                .build();
+        assertTrue(validator.validate(family).isEmpty());
+
+        Family unresolved = family.toBuilder()
+                .setPedigree(pedigree.toBuilder()
+                        .setPersons(0, pedigree.getPersons(0).toBuilder().setPaternalId("father"))
+                        .setPersons(1, pedigree.getPersons(1).toBuilder().setIndividualId("mum")))
+                .build();
+        assertThat(validator.validate(unresolved), equalTo(List.of(
+                new ValidationError("pedigree.persons[0].paternalId", "'father' is not a person of the pedigree"),
+                new ValidationError("pedigree.persons[0].maternalId", "'mother' is not a person of the pedigree"),
+                new ValidationError("relatives[0].subject.id", "'mother' is not a person of the pedigree"))));
+    }
+
+    @Test
+    public void findErrorsInTheExamples() {
+        assertThat(validator.validate(TestExamples.urothelialCarcinomaPhenopacket()), equalTo(List.of(
+                new ValidationError("biosamples[0].sampledTissue.id", "'UBERON_0001256' is not a CURIE"))));
+        assertThat(validator.validate(TestExamples.rareDiseaseBethlemMyopathyFamily()), hasItem(
+                new ValidationError("proband.phenotypicFeatures[0].evidence[0].evidenceCode.id", "prefix 'ECO' is not the namespacePrefix of any metaData.resources")));
+    }
+
+    @Test
+    public void iso8601Durations() {
+        for (String valid : List.of("P3Y", "P1Y2M10DT2H30M", "P4W", "PT36H", "PT0.5S", "P0,5Y", "P1DT1S")) {
+            assertTrue(PhenopacketValidator.isIso8601Duration(valid), valid);
+        }
+        for (String invalid : List.of("", "P", "PT", "P1", "3Y", "P1H", "P1M1Y", "P1.5Y2M", "P1YT", "PT1D", "P-1Y", "P1Y ")) {
+            assertFalse(PhenopacketValidator.isIso8601Duration(invalid), invalid);
+        }
+    }
+
+    @Test
+    public void rejectMalformedBytes() {
+        ByteString truncated = validPhenopacket().toByteString().substring(0, 20);
+
+        assertThrows(InvalidProtocolBufferException.class, () -> validator.validatePhenopacket(truncated));
+    }
+}
@@ -0,0 +1,223 @@
+package org.phenopackets.schema.v2.variant;
+
+import com.google.protobuf.CodedOutputStream;
+import com.google.protobuf.InvalidProtocolBufferException;
+import org.ga4gh.vrsatile.v1.VariationDescriptor;
+import org.ga4gh.vrsatile.v1.VcfRecord;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.phenopackets.schema.v2.Cohort;
+import org.phenopackets.schema.v2.Phenopacket;
+import org.phenopackets.schema.v2.core.Diagnosis;
+import org.phenopackets.schema.v2.core.GenomicInterpretation;
+import org.phenopackets.schema.v2.core.Individual;
+import org.phenopackets.schema.v2.core.Interpretation;
+import org.phenopackets.schema.v2.core.KaryotypicSex;
+import org.phenopackets.schema.v2.core.OntologyClass;
+import org.phenopackets.schema.v2.core.Sex;
+import org.phenopackets.schema.v2.core.VariantInterpretation;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class CohortVariantAggregatorTest {
+
+    // chr1 holds a CAG repeat at 5-13, so deleting any one CAG normalizes to 4 ACAG>A
+    private static final String FASTA = ">chr1\n" +
+            "TTGACAGCAG\n" +
+            "CAGTCTAGGA\n" +
+            ">chr2\n" +
+            "ACGT\n";
+    private static final String INDEX = "chr1\t20\t6\t10\t11\n" +
+            "chr2\t4\t34\t4\t5\n";
+
+    private static final VcfRecord DELETION = vcf("chr1", 4, "ACAG", "A");
+    private static final VcfRecord SHIFTED_DELETION = vcf("1", 10, "GCAG", "G");
+    private static final VcfRecord SNV = vcf("chr2", 2, "C", "T");
+    private static final VcfRecord WRONG_REFERENCE = vcf("chr2", 2, "G", "T");
+
+    private VariantNormalizer normalizer;
+
+    @BeforeEach
+    public void setUp(@TempDir Path directory) throws IOException {
+        Path fasta = directory.resolve("reference.fa");
+        Files.writeString(fasta, FASTA);
+        Files.writeString(IndexedFasta.indexFile(fasta), INDEX);
+        normalizer = new VariantNormalizer(IndexedFasta.open(fasta), "GRCh38");
+    }
+
+    private static VcfRecord vcf(String chrom, long pos, String ref, String alt) {
+        return VcfRecord.newBuilder().setGenomeAssembly("GRCh38").setChrom(chrom).setPos(pos).setRef(ref).setAlt(alt).build();
+    }
+
+    private static GenomicInterpretation call(VcfRecord vcf, AllelicState allelicState) {
+        VariationDescriptor.Builder descriptor = VariationDescriptor.newBuilder().setVcfRecord(vcf);
+        if (allelicState != AllelicState.OTHER) {
+            descriptor.setAllelicState(OntologyClass.newBuilder().setId(allelicState.termId()));
+        }
+        return GenomicInterpretation.newBuilder()
+                .setInterpretationStatus(GenomicInterpretation.InterpretationStatus.CAUSATIVE)
+                .setVariantInterpretation(VariantInterpretation.newBuilder().setVariationDescriptor(descriptor))
+                .build();
+    }
+
+    private static Phenopacket member(String id, Sex sex, KaryotypicSex karyotypicSex, GenomicInterpretation... calls) {
+        Phenopacket.Builder member = Phenopacket.newBuilder()
+                .setId(id)
+                .setSubject(Individual.newBuilder().setId(id).setSex(sex).setKaryotypicSex(karyotypicSex));
+        for (GenomicInterpretation call : calls) {
+            member.addInterpretations(Interpretation.newBuilder()
+                    .setId(id + '-' + member.getInterpretationsCount())
+                    .setDiagnosis(Diagnosis.newBuilder().addGenomicInterpretations(call)));
+        }
+        return member.build();
+    }
+
+    private static Cohort cohort() {
+        return Cohort.newBuilder()
+                .setId("cohort")
+                .addMembers(member("m1", Sex.MALE, KaryotypicSex.XY,
+                        call(DELETION, AllelicState.HETEROZYGOUS), call(SHIFTED_DELETION, AllelicState.HETEROZYGOUS)))
+                .addMembers(member("m2", Sex.FEMALE, KaryotypicSex.XX, call(SHIFTED_DELETION, AllelicState.HOMOZYGOUS)))
+                .addMembers(member("m3", Sex.FEMALE, KaryotypicSex.XX,
+                        call(SNV, AllelicState.HETEROZYGOUS), call(WRONG_REFERENCE, AllelicState.HETEROZYGOUS)))
+                .addMembers(member("m4", Sex.MALE, KaryotypicSex.XY, call(SNV, AllelicState.HEMIZYGOUS)))
+                .addMembers(member("m5", Sex.UNKNOWN_SEX, KaryotypicSex.UNKNOWN_KARYOTYPE))
+                .build();
+    }
+
+    private static List<String> counts(VariantAggregation aggregation) {
+        List<String> counts = new ArrayList<>();
+        aggregation.forEachCount((variant, allelicState, sex, karyotypicSex, carriers) ->
+                counts.add(variant + " " + allelicState + " " + sex + " " + karyotypicSex + " " + carriers));
+        return counts;
+    }
+
+    @Test
+    public void countsCarriersOfNormalizedVariants() {
+        VariantAggregation aggregation = new CohortVariantAggregator(normalizer).aggregate(cohort());
+        NormalizedVariant deletion = normalizer.normalize(DELETION);
+        NormalizedVariant snv = normalizer.normalize(SNV);
+
+        assertThat(aggregation.variants(), equalTo(List.of(deletion, snv)));
+        assertThat(aggregation.memberCount(), equalTo(5L));
+        assertThat(aggregation.memberCount(Sex.MALE, KaryotypicSex.XY), equalTo(2L));
+        assertThat(aggregation.memberCount(Sex.FEMALE, KaryotypicSex.XY), equalTo(0L));
+        assertThat(aggregation.skippedVariants(), equalTo(1L));
+
+        assertThat(aggregation.carriers(deletion), equalTo(2));
+        assertThat(aggregation.carriers(deletion, AllelicState.HETEROZYGOUS), equalTo(1));
+        assertThat(aggregation.carriers(deletion, AllelicState.HOMOZYGOUS, Sex.FEMALE, KaryotypicSex.XX), equalTo(1));
+        assertThat(aggregation.alleleCount(deletion), equalTo(3L));
+
+        assertThat(aggregation.carriers(snv), equalTo(2));
+        assertThat(aggregation.carriers(snv, AllelicState.HEMIZYGOUS, Sex.MALE, KaryotypicSex.XY), equalTo(1));
+        assertThat(aggregation.carriers(snv, AllelicState.HOMOZYGOUS), equalTo(0));
+        assertThat(aggregation.alleleCount(snv), equalTo(2L));
+
+        assertThat(counts(aggregation), equalTo(List.of(
+                "GRCh38-1-4-ACAG-A HETEROZYGOUS MALE XY 1",
+                "GRCh38-1-4-ACAG-A HOMOZYGOUS FEMALE XX 1",
+                "GRCh38-2-2-C-T HETEROZYGOUS FEMALE XX 1",
+                "GRCh38-2-2-C-T HEMIZYGOUS MALE XY 1")));
+    }
+
+    @Test
+    public void memberWithTwoAllelicStatesIsOneCarrier() {
+        Cohort cohort = Cohort.newBuilder()
+                .addMembers(member("m1", Sex.FEMALE, KaryotypicSex.XX,
+                        call(DELETION, AllelicState.HETEROZYGOUS), call(SHIFTED_DELETION, AllelicState.OTHER)))
+                .build();
+        VariantAggregation aggregation = new CohortVariantAggregator(normalizer).aggregate(cohort);
+        NormalizedVariant deletion = normalizer.normalize(DELETION);
+
+        assertThat(aggregation.carriers(deletion), equalTo(1));
+        assertThat(aggregation.carriers(deletion, AllelicState.HETEROZYGOUS), equalTo(1));
+        assertThat(aggregation.carriers(deletion, AllelicState.OTHER), equalTo(1));
+    }
+
+    @Test
+    public void streamedCohortMatchesScan() throws IOException {
+        VcfRecord[] variants = {DELETION, SHIFTED_DELETION, SNV, WRONG_REFERENCE, vcf("chr1", 15, "C", "A")};
+        AllelicState[] states = AllelicState.values();
+        Sex[] sexes = {Sex.UNKNOWN_SEX, Sex.FEMALE, Sex.MALE, Sex.OTHER_SEX};
+        KaryotypicSex[] karyotypes = {KaryotypicSex.XX, KaryotypicSex.XY, KaryotypicSex.XXY};
+        Random random = new Random(42);
+        Cohort.Builder cohort = Cohort.newBuilder().setId("cohort");
+        // the expected carriers of each normalized variant, allelic state, sex and karyotypic sex
+        Map<String, Integer> expected = new HashMap<>();
+        long skipped = 0;
+        for (int i = 0; i < 2000; i++) {
+            Sex sex = sexes[random.nextInt(sexes.length)];
+            KaryotypicSex karyotypicSex = karyotypes[random.nextInt(karyotypes.length)];
+            GenomicInterpretation[] calls = new GenomicInterpretation[random.nextInt(4)];
+            Set<String> cells = new HashSet<>();
+            for (int j = 0; j < calls.length; j++) {
+                VcfRecord variant = variants[random.nextInt(variants.length)];
+                AllelicState state = states[random.nextInt(states.length)];
+                calls[j] = call(variant, state);
+                if (variant == WRONG_REFERENCE) {
+                    skipped++;
+                } else {
+                    cells.add(normalizer.normalize(variant) + " " + state + " " + sex + " " + karyotypicSex);
+                }
+            }
+            for (String cell : cells) {
+                expected.merge(cell, 1, Integer::sum);
+            }
+            cohort.addMembers(member("m" + i, sex, karyotypicSex, calls));
+        }
+
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            VariantAggregation aggregation = new CohortVariantAggregator(normalizer, pool)
+                    .batchSize(7)
+                    .aggregate(cohort.build().toByteString().newInput());
+            Map<String, Integer> actual = new HashMap<>();
+            aggregation.forEachCount((variant, allelicState, sex, karyotypicSex, carriers) ->
+                    actual.put(variant + " " + allelicState + " " + sex + " " + karyotypicSex, carriers));
+
+            assertThat(actual, equalTo(expected));
+            assertThat(aggregation.memberCount(), equalTo(2000L));
+            assertThat(aggregation.skippedVariants(), equalTo(skipped));
+            assertThat(counts(aggregation), equalTo(counts(new CohortVariantAggregator(normalizer).aggregate(cohort.build()))));
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    public void rejectsMalformedMembers() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        CodedOutputStream output = CodedOutputStream.newInstance(bytes);
+        output.writeMessage(Cohort.MEMBERS_FIELD_NUMBER, member("valid", Sex.FEMALE, KaryotypicSex.XX, call(SNV, AllelicState.HETEROZYGOUS)));
+        // a member holding a truncated string
+        output.writeByteArray(Cohort.MEMBERS_FIELD_NUMBER, new byte[]{(Phenopacket.ID_FIELD_NUMBER << 3) | 2, 10, 'x'});
+        output.flush();
+
+        InvalidProtocolBufferException e = assertThrows(InvalidProtocolBufferException.class,
+                () -> new CohortVariantAggregator(normalizer).aggregate(new ByteArrayInputStream(bytes.toByteArray())));
+        assertThat(e.getMessage().startsWith("Invalid Cohort member 1"), equalTo(true));
+    }
+
+    @Test
+    public void batchSizeMustBePositive() {
+        assertThrows(IllegalArgumentException.class, () -> new CohortVariantAggregator(normalizer).batchSize(0));
+    }
+}
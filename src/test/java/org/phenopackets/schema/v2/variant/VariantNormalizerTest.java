@@ -0,0 +1,199 @@
+package org.phenopackets.schema.v2.variant;
+
+import org.ga4gh.vrs.v1.Allele;
+import org.ga4gh.vrs.v1.LiteralSequenceExpression;
+import org.ga4gh.vrs.v1.SequenceLocation;
+import org.ga4gh.vrs.v1.SimpleInterval;
+import org.ga4gh.vrs.v1.Variation;
+import org.ga4gh.vrsatile.v1.Expression;
+import org.ga4gh.vrsatile.v1.VariationDescriptor;
+import org.ga4gh.vrsatile.v1.VcfRecord;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class VariantNormalizerTest {
+
+    // chr1 holds a CAG repeat at 5-13 and a run of six As at 30-35, with ten bases per line
+    private static final String FASTA = ">chr1 test\n" +
+            "TTGACAGCAG\n" +
+            "CAGTCTAGGA\n" +
+            "tccaattgca\n" +
+            "AAAAAC\n" +
+            ">chr2\n" +
+            "ACGT\n";
+    private static final String INDEX = "chr1\t36\t11\t10\t11\n" +
+            "chr2\t4\t57\t4\t5\n";
+
+    private Path directory;
+    private IndexedFasta reference;
+    private VariantNormalizer normalizer;
+
+    @BeforeEach
+    public void setUp(@TempDir Path directory) throws IOException {
+        this.directory = directory;
+        Path fasta = directory.resolve("reference.fa");
+        Files.writeString(fasta, FASTA);
+        Files.writeString(IndexedFasta.indexFile(fasta), INDEX);
+        reference = IndexedFasta.open(fasta);
+        normalizer = new VariantNormalizer(reference, "GRCh38");
+    }
+
+    private static VcfRecord vcf(String chrom, long pos, String ref, String alt) {
+        return VcfRecord.newBuilder().setGenomeAssembly("GRCh38").setChrom(chrom).setPos(pos).setRef(ref).setAlt(alt).build();
+    }
+
+    private static Allele vrs(long start, long end, String sequence) {
+        return vrs("ucsc:chr1", start, end, sequence);
+    }
+
+    private static Allele vrs(String sequenceId, long start, long end, String sequence) {
+        return Allele.newBuilder()
+                .setSequenceLocation(SequenceLocation.newBuilder()
+                        .setSequenceId(sequenceId)
+                        .setSimpleInterval(SimpleInterval.newBuilder().setStart(start).setEnd(end)))
+                .setLiteralSequenceExpression(LiteralSequenceExpression.newBuilder().setSequence(sequence))
+                .build();
+    }
+
+    @Test
+    public void readsBasesAcrossLines() {
+        assertThat(reference.sequence("chr1", 8, 14), equalTo("AGCAGT"));
+        assertThat(reference.sequence("1", 20, 24), equalTo("TCCA"));
+        assertThat(reference.base("chr2", 3), equalTo('T'));
+        assertThat(reference.length("2"), equalTo(4L));
+        assertThrows(IllegalArgumentException.class, () -> reference.sequence("chr1", 30, 37));
+        assertThrows(IllegalArgumentException.class, () -> reference.base("chr3", 0));
+    }
+
+    @Test
+    public void deletionInRepeatIsLeftAligned() {
+        NormalizedVariant expected = normalizer.normalize(vcf("chr1", 4, "ACAG", "A"));
+
+        assertThat(expected.key(), equalTo("GRCh38-1-4-ACAG-A"));
+        assertThat(normalizer.normalize(vcf("1", 10, "GCAG", "G")), equalTo(expected));
+        assertThat(normalizer.normalize(vcf("chr1", 7, "GCAGC", "GC")), equalTo(expected));
+        assertThat(normalizer.normalizeHgvs("chr1:g.11_13del"), equalTo(expected));
+        assertThat(normalizer.normalizeHgvs("chr1:g.8_10delCAG"), equalTo(expected));
+        assertThat(normalizer.normalize(vrs(10, 13, "")), equalTo(expected));
+    }
+
+    @Test
+    public void insertionInRepeatIsLeftAligned() {
+        NormalizedVariant expected = normalizer.normalize(vcf("chr1", 13, "G", "GCAG"));
+
+        assertThat(expected.key(), equalTo("GRCh38-1-4-A-ACAG"));
+        assertThat(normalizer.normalizeHgvs("chr1:g.11_13dup"), equalTo(expected));
+        assertThat(normalizer.normalizeHgvs("chr1:g.13_14insCAG"), equalTo(expected));
+        assertThat(normalizer.normalize(vrs(13, 13, "CAG")), equalTo(expected));
+        assertThat(normalizer.normalize(vcf("chr1", 35, "A", "AA")).key(), equalTo("GRCh38-1-29-C-CA"));
+        assertThat(normalizer.normalize(vcf("chr1", 34, "AA", "A")).key(), equalTo("GRCh38-1-29-CA-C"));
+    }
+
+    @Test
+    public void substitutionsAreTrimmed() {
+        NormalizedVariant expected = normalizer.normalize(vcf("chr1", 20, "A", "G"));
+
+        assertThat(normalizer.normalize(vcf("chr1", 19, "GA", "GG")), equalTo(expected));
+        assertThat(normalizer.normalizeHgvs("chr1:g.20A>G"), equalTo(expected));
+        assertThat(normalizer.normalize(vrs(19, 20, "G")), equalTo(expected));
+        assertThat(normalizer.normalizeHgvs("chr1:g.19_20delinsGG").key(), equalTo("GRCh38-1-20-A-G"));
+        assertThat(normalizer.normalize(VariationDescriptor.newBuilder()
+                .addExpressions(Expression.newBuilder().setSyntax("hgvs.g").setValue("chr1:g.20A>G"))
+                .build()), equalTo(expected));
+        assertThat(normalizer.normalize(VariationDescriptor.newBuilder()
+                .setVariation(Variation.newBuilder().setAllele(vrs(19, 20, "G")))
+                .build()), equalTo(expected));
+        assertThat(expected.toVcfRecord(), equalTo(vcf("1", 20, "A", "G")));
+    }
+
+    @Test
+    public void sequenceAliasesGiveOneKey() throws IOException {
+        Path report = directory.resolve("assembly_report.txt");
+        Files.writeString(report, "# Assembly name:  test\n" +
+                "# Sequence-Name\tSequence-Role\tAssigned-Molecule\tAssigned-Molecule-Location/Type\tGenBank-Accn\tRelationship\tRefSeq-Accn\tAssembly-Unit\tSequence-Length\tUCSC-style-name\n" +
+                "1\tassembled-molecule\t1\tChromosome\tCM000663.2\t=\tNC_000001.11\tPrimary Assembly\t36\tchr1\n" +
+                "2\tassembled-molecule\t2\tChromosome\tCM000664.2\t=\tNC_000002.12\tPrimary Assembly\t4\tchr2\n" +
+                "HSCHR1_CTG1_UNLOCALIZED\tunlocalized-scaffold\t1\tChromosome\tKI270706.1\t=\tNT_187361.1\tPrimary Assembly\t175055\tna\n");
+        IndexedFasta aliased = reference.withAssemblyReport(report)
+                .withAliases(Map.of("ga4gh:SQ.Ya6Rs7DHhDeg7YaOSg1EoNi3U_nQ9SvO", "1"));
+        VariantNormalizer aliasedNormalizer = new VariantNormalizer(aliased, "GRCh38");
+
+        NormalizedVariant expected = aliasedNormalizer.normalize(vcf("chr1", 20, "A", "G"));
+        assertThat(expected.key(), equalTo("GRCh38-1-20-A-G"));
+        assertThat(aliasedNormalizer.normalize(vcf("1", 20, "A", "G")), equalTo(expected));
+        assertThat(aliasedNormalizer.normalizeHgvs("NC_000001.11:g.20A>G"), equalTo(expected));
+        assertThat(aliasedNormalizer.normalize(vrs("refseq:NC_000001.11", 19, 20, "G")), equalTo(expected));
+        assertThat(aliasedNormalizer.normalize(vrs("ga4gh:SQ.Ya6Rs7DHhDeg7YaOSg1EoNi3U_nQ9SvO", 19, 20, "G")), equalTo(expected));
+        assertThat(aliasedNormalizer.normalize(vrs("genbank:CM000663.2", 19, 20, "G")), equalTo(expected));
+        assertThat(aliased.canonicalName("NC_000002.12"), equalTo("chr2"));
+        assertThat(aliased.contains("NT_187361.1"), equalTo(false));
+
+        // without the aliases, only the names of the reference are known
+        assertThrows(IllegalArgumentException.class, () -> normalizer.normalizeHgvs("NC_000001.11:g.20A>G"));
+        assertThrows(IllegalArgumentException.class, () -> reference.withAliases(Map.of("NC_000003.12", "chr3")));
+    }
+
+    @Test
+    public void variantsWhichDoNotMatchTheReferenceAreRejected() {
+        assertThrows(IllegalArgumentException.class, () -> normalizer.normalize(vcf("chr1", 20, "C", "G")));
+        assertThrows(IllegalArgumentException.class, () -> normalizer.normalize(vcf("chr1", 20, "A", "G,T")));
+        assertThrows(IllegalArgumentException.class, () -> normalizer.normalize(vcf("chr1", 20, "A", "<DEL>")));
+        assertThrows(IllegalArgumentException.class, () -> normalizer.normalize(vcf("chr1", 36, "CA", "C")));
+        assertThrows(IllegalArgumentException.class, () -> normalizer.normalize(vcf("chr3", 1, "A", "G")));
+        assertThrows(IllegalArgumentException.class, () -> normalizer.normalize(vcf("chr1", 20, "A", "G").toBuilder().setGenomeAssembly("GRCh37").build()));
+        assertThrows(IllegalArgumentException.class, () -> normalizer.normalizeHgvs("NM_001361.4:c.403C>T"));
+        assertThrows(IllegalArgumentException.class, () -> normalizer.normalizeHgvs("chr1:g.11_13delTTT"));
+        assertThrows(IllegalArgumentException.class, () -> normalizer.normalize(VariationDescriptor.getDefaultInstance()));
+    }
+
+    @Test
+    public void repeatedVariantsComeFromTheCache() throws Exception {
+        VcfRecord record = vcf("chr1", 10, "GCAG", "G");
+        NormalizedVariant normalized = normalizer.normalize(record);
+
+        assertSame(normalized, normalizer.normalize(record.toBuilder().setId("rs1").setQual("50").build()));
+        assertThat(normalizer.cacheSize(), equalTo(1));
+
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<String>> keys = new ArrayList<>();
+            for (int i = 0; i < 1_000; i++) {
+                int shift = i % 3;
+                keys.add(executor.submit(() -> normalizer.normalize(vcf("chr1", 4 + 3 * shift, reference.sequence("chr1", 3 + 3 * shift, 7 + 3 * shift), reference.sequence("chr1", 3 + 3 * shift, 4 + 3 * shift))).key()));
+            }
+            for (Future<String> key : keys) {
+                assertThat(key.get(), equalTo("GRCh38-1-4-ACAG-A"));
+            }
+        } finally {
+            executor.shutdown();
+        }
+        assertThat(normalizer.cacheSize(), equalTo(3));
+    }
+
+    @Test
+    public void malformedIndexIsRejected() throws IOException {
+        Path fasta = directory.resolve("malformed.fa");
+        Files.writeString(fasta, FASTA);
+        Files.writeString(IndexedFasta.indexFile(fasta), "chr1\t36\tx\t10\t11\n");
+        assertThrows(IOException.class, () -> IndexedFasta.open(fasta));
+
+        Files.writeString(IndexedFasta.indexFile(fasta), "chr1\t3600\t11\t10\t11\n");
+        assertThrows(IOException.class, () -> IndexedFasta.open(fasta));
+    }
+}